@@ -1,10 +1,11 @@
 use crate::{
-    DeCollectionHandle, DeScalarHandle, DeScalarHandleImpl, DeZSetHandle, SerOutputBatchHandle,
+    DeCollectionHandle, DeMapHandle, DeScalarHandle, DeScalarHandleImpl, DeZSetHandle,
+    SerOutputBatchHandle,
 };
 use dbsp::{
     algebra::ZRingValue,
     operator::{DelayedFeedback, NeighborhoodDescr},
-    CollectionHandle, InputHandle, RootCircuit, Stream, ZSet,
+    CollectionHandle, DBData, InputHandle, RootCircuit, Stream, UpsertHandle, ZSet,
 };
 use serde::{Deserialize, Serialize};
 use std::collections::BTreeMap;
@@ -165,6 +166,33 @@ impl Catalog {
         self.register_output_zset(name, stream);
     }
 
+    /// Add an input stream created with
+    /// [`RootCircuit::add_input_map`](`dbsp::RootCircuit::add_input_map`)
+    /// to the catalog.
+    ///
+    /// `stream` is the contents of the map as a Z-set of values; `key_func`
+    /// extracts the key from a value.  Inserting a value replaces the value
+    /// with the same key, if any; a deletion specifies only the key of the
+    /// value to delete.
+    pub fn register_input_map<K, Z, F>(
+        &mut self,
+        name: &str,
+        stream: Stream<RootCircuit, Z>,
+        handle: UpsertHandle<K, Option<Z::Key>>,
+        key_func: F,
+    ) where
+        K: DBData + for<'de> Deserialize<'de>,
+        Z: ZSet + Send + Sync,
+        Z::R: ZRingValue + Into<i64> + Sync,
+        Z::Key: for<'de> Deserialize<'de> + Serialize + Sync,
+        F: Fn(&Z::Key) -> K + Clone + Send + 'static,
+    {
+        self.register_input_collection_handle(name, DeMapHandle::new(handle, key_func));
+
+        // Inputs are also outputs.
+        self.register_output_zset(name, stream);
+    }
+
     /// Add a named input stream handle to the catalog.
     fn register_input_collection_handle<H>(&mut self, name: &str, handle: H)
     where
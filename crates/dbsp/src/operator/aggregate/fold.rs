@@ -1,6 +1,6 @@
 use crate::{
     algebra::{MonoidValue, Semigroup},
-    operator::aggregate::Aggregator,
+    operator::aggregate::{Aggregator, RunningAggregator},
     trace::Cursor,
     DBData, Timestamp,
 };
@@ -99,3 +99,35 @@ where
         (self.output)(acc)
     }
 }
+
+impl<V, R, A, S, O, SF, OF> RunningAggregator<V, R> for Fold<A, S, SF, OF>
+where
+    R: MonoidValue,
+    A: DBData,
+    SF: Fn(&mut A, &V, R) + Clone + 'static,
+    OF: Fn(A) -> O + Clone + 'static,
+    S: Semigroup<A> + Clone + 'static,
+    O: DBData,
+{
+    fn accumulate<C>(&self, accumulator: Option<A>, cursor: &mut C) -> Option<A>
+    where
+        C: Cursor<V, (), (), R>,
+    {
+        let mut non_empty = accumulator.is_some();
+        let mut acc = accumulator.unwrap_or_else(|| self.init.clone());
+
+        while cursor.key_valid() {
+            let mut weight = R::zero();
+
+            cursor.map_times(|_t, w| weight.add_assign_by_ref(w));
+            if !weight.is_zero() {
+                non_empty = true;
+                (self.step)(&mut acc, cursor.key(), weight);
+            }
+
+            cursor.step_key();
+        }
+
+        non_empty.then_some(acc)
+    }
+}
@@ -1,6 +1,6 @@
 use crate::{
     algebra::{MonoidValue, Semigroup},
-    operator::aggregate::Aggregator,
+    operator::aggregate::{Aggregator, RunningAggregator},
     trace::Cursor,
     DBData, Timestamp,
 };
@@ -60,3 +60,20 @@ where
         accumulator
     }
 }
+
+impl<V, R> RunningAggregator<V, R> for Min
+where
+    V: DBData,
+    R: MonoidValue,
+{
+    fn accumulate<C>(&self, accumulator: Option<V>, cursor: &mut C) -> Option<V>
+    where
+        C: Cursor<V, (), (), R>,
+    {
+        let value = <Self as Aggregator<V, (), R>>::aggregate(self, cursor);
+        match (accumulator, value) {
+            (Some(accumulator), Some(value)) => Some(min(accumulator, value)),
+            (accumulator, value) => accumulator.or(value),
+        }
+    }
+}
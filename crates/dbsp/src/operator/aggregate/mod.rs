@@ -17,12 +17,13 @@ use crate::{
         operator_traits::{BinaryOperator, Operator, UnaryOperator},
         Circuit, Scope, Stream, WithClock,
     },
+    operator::trace::{TraceBound, TraceBounds},
     time::Timestamp,
     trace::{
         cursor::{Cursor, CursorGroup},
         Batch, BatchReader, Builder, Spine,
     },
-    DBData, DBTimestamp, DBWeight, OrdIndexedZSet, OrdZSet,
+    DBData, DBTimestamp, DBWeight, OrdIndexedZSet, OrdZSet, RootCircuit,
 };
 
 // Some standard aggregators.
@@ -121,6 +122,26 @@ pub trait Aggregator<K, T, R>: Clone + 'static {
     }
 }
 
+/// An aggregator that can add new values to an accumulator without
+/// scanning the values that it has already aggregated.
+///
+/// Used by [`Stream::aggregate_append_only`], whose input only contains
+/// insertions: the accumulator of each group is updated with the values
+/// inserted in each step, so the operator keeps one accumulator per group
+/// instead of all the values of the group.
+pub trait RunningAggregator<K, R>: Aggregator<K, (), R> {
+    /// Adds the values of the Z-set under `cursor`, whose weights are all
+    /// positive, to `accumulator`, which is `None` if no values have been
+    /// aggregated yet.  Returns `None` if the result is still empty.
+    fn accumulate<C>(
+        &self,
+        accumulator: Option<Self::Accumulator>,
+        cursor: &mut C,
+    ) -> Option<Self::Accumulator>
+    where
+        C: Cursor<K, (), (), R>;
+}
+
 /// Aggregator used internally by [`Stream::aggregate_linear`].  Computes
 /// the total sum of weights.
 #[derive(Clone)]
@@ -312,6 +333,85 @@ where
             .aggregate_generic(WeightedCount)
     }
 
+    /// Like [`Self::aggregate`], but discards the state of old keys.
+    ///
+    /// `bound_func` maps a key `k` to the smallest key that can still be
+    /// updated once `k` has appeared in the input: the caller promises that
+    /// after the input contains `k` it never again contains keys smaller
+    /// than `bound_func(k)`.  This holds, e.g., when the first field of the
+    /// key is a timestamp with a bounded lateness.  The aggregates of
+    /// smaller keys can no longer change, so the operator drops their
+    /// values from the input trace and their aggregates from the output
+    /// trace.  Inputs that violate the promise produce incorrect results.
+    #[allow(clippy::type_complexity)]
+    pub fn aggregate_with_bound<A, F>(
+        &self,
+        bound_func: F,
+        aggregator: A,
+    ) -> Stream<C, OrdIndexedZSet<Z::Key, A::Output, Z::R>>
+    where
+        Z: IndexedZSet + Send,
+        A: Aggregator<Z::Val, <C as WithClock>::Time, Z::R>,
+        F: Fn(&Z::Key) -> Z::Key + 'static,
+        Z::R: ZRingValue,
+    {
+        self.aggregate_generic_with_bound::<A, F, OrdIndexedZSet<Z::Key, A::Output, Z::R>>(
+            bound_func, aggregator,
+        )
+    }
+
+    /// Like [`Self::aggregate_with_bound`], but can return any batch type.
+    pub fn aggregate_generic_with_bound<A, F, O>(&self, bound_func: F, aggregator: A) -> Stream<C, O>
+    where
+        Z: IndexedZSet + Send,
+        A: Aggregator<Z::Val, <C as WithClock>::Time, Z::R>,
+        F: Fn(&Z::Key) -> Z::Key + 'static,
+        O: Batch<Key = Z::Key, Val = A::Output, Time = ()>,
+        O::R: ZRingValue,
+    {
+        let circuit = self.circuit();
+        let stream = self.shard();
+
+        // Same circuit as in `aggregate_generic`, except that both the input
+        // trace and the output trace of `upsert` are truncated below `bound`.
+        // Each worker computes the bound from its own shard of the input;
+        // this is never larger than the bound computed over the whole input.
+        let bound = stream.key_bound(bound_func);
+        let output_bounds = <TraceBounds<Z::Key, A::Output>>::new();
+        output_bounds.add_key_bound(bound.clone());
+        output_bounds.add_val_bound(TraceBound::new());
+
+        circuit
+            .add_binary_operator(
+                AggregateIncremental::new(aggregator, circuit.clone()),
+                &stream,
+                &stream.trace_with_bound::<Spine<<<C as WithClock>::Time as Timestamp>::OrdValBatch<Z::Key, Z::Val, Z::R>>>(
+                    bound,
+                    TraceBound::new(),
+                ),
+            )
+            .upsert_with_bounds::<O>(output_bounds)
+            .mark_sharded()
+    }
+
+    /// Like [`Self::aggregate_linear`], but discards the state of old keys
+    /// as described in [`Self::aggregate_with_bound`].
+    pub fn aggregate_linear_with_bound<F, B, A>(
+        &self,
+        bound_func: B,
+        f: F,
+    ) -> Stream<C, OrdIndexedZSet<Z::Key, A, Z::R>>
+    where
+        Z: IndexedZSet,
+        A: DBData + MulByRef<Z::R, Output = A> + GroupValue,
+        F: Fn(&Z::Val) -> A + Clone + 'static,
+        B: Fn(&Z::Key) -> Z::Key + 'static,
+        Z::R: ZRingValue,
+    {
+        self.weigh(move |_k, v| f(v))
+            .aggregate_generic_with_bound(bound_func, WeightedCount)
+    }
+
     /// Convert indexed Z-set `Z` into a Z-set where the weight of each key
     /// is computed as:
     ///
@@ -367,6 +467,48 @@ where
     }
 }
 
+impl<Z> Stream<RootCircuit, Z>
+where
+    Z: Clone + 'static,
+{
+    /// Incremental aggregation operator for streams that only contain
+    /// insertions.
+    ///
+    /// Computes the same result as [`Self::aggregate`], but instead of
+    /// keeping a trace of the input and aggregating all the values of each
+    /// modified key again, it keeps the accumulator of each key and adds the
+    /// new values to it.  The input must not contain negative weights;
+    /// deletions produce incorrect results.
+    #[allow(clippy::type_complexity)]
+    pub fn aggregate_append_only<A>(
+        &self,
+        aggregator: A,
+    ) -> Stream<RootCircuit, OrdIndexedZSet<Z::Key, A::Output, Z::R>>
+    where
+        Z: IndexedZSet + Send,
+        A: RunningAggregator<Z::Val, Z::R>,
+        Z::R: ZRingValue,
+    {
+        self.aggregate_append_only_generic::<A, OrdIndexedZSet<Z::Key, A::Output, Z::R>>(
+            aggregator,
+        )
+    }
+
+    /// Like [`Self::aggregate_append_only`], but can return any batch type.
+    pub fn aggregate_append_only_generic<A, O>(&self, aggregator: A) -> Stream<RootCircuit, O>
+    where
+        Z: IndexedZSet + Send,
+        A: RunningAggregator<Z::Val, Z::R>,
+        O: Batch<Key = Z::Key, Val = A::Output, Time = ()>,
+        O::R: ZRingValue,
+    {
+        self.circuit()
+            .add_unary_operator(AggregateAppendOnly::new(aggregator), &self.shard())
+            .upsert::<O>()
+            .mark_sharded()
+    }
+}
+
 /// Non-incremental aggregation operator.
 struct Aggregate<Z, A, O> {
     aggregator: A,
@@ -420,6 +562,72 @@ where
     }
 }
 
+/// Incremental aggregation operator for inputs that only contain insertions.
+///
+/// Keeps the accumulator of each key received so far, and adds the values
+/// of each input batch to the accumulators of their keys using
+/// [`RunningAggregator::accumulate`].  Outputs the new aggregates of the
+/// modified keys as upserts.
+struct AggregateAppendOnly<Z, A>
+where
+    Z: IndexedZSet,
+    A: RunningAggregator<Z::Val, Z::R>,
+{
+    aggregator: A,
+    accumulators: BTreeMap<Z::Key, A::Accumulator>,
+}
+
+impl<Z, A> AggregateAppendOnly<Z, A>
+where
+    Z: IndexedZSet,
+    A: RunningAggregator<Z::Val, Z::R>,
+{
+    pub fn new(aggregator: A) -> Self {
+        Self {
+            aggregator,
+            accumulators: BTreeMap::new(),
+        }
+    }
+}
+
+impl<Z, A> Operator for AggregateAppendOnly<Z, A>
+where
+    Z: IndexedZSet,
+    A: RunningAggregator<Z::Val, Z::R>,
+{
+    fn name(&self) -> Cow<'static, str> {
+        Cow::from("AggregateAppendOnly")
+    }
+    fn fixedpoint(&self, _scope: Scope) -> bool {
+        true
+    }
+}
+
+impl<Z, A> UnaryOperator<Z, Vec<(Z::Key, Option<A::Output>)>> for AggregateAppendOnly<Z, A>
+where
+    Z: IndexedZSet,
+    A: RunningAggregator<Z::Val, Z::R>,
+{
+    fn eval(&mut self, delta: &Z) -> Vec<(Z::Key, Option<A::Output>)> {
+        let mut result = Vec::with_capacity(delta.key_count());
+
+        let mut cursor = delta.cursor();
+        while cursor.key_valid() {
+            let key = cursor.key().clone();
+            let accumulator = self.accumulators.remove(&key);
+            let accumulator = self
+                .aggregator
+                .accumulate(accumulator, &mut CursorGroup::new(&mut cursor, ()));
+            if let Some(accumulator) = accumulator {
+                result.push((key.clone(), Some(self.aggregator.finalize(accumulator.clone()))));
+                self.accumulators.insert(key, accumulator);
+            }
+            cursor.step_key();
+        }
+        result
+    }
+}
+
 /// Incremental version of the `Aggregate` operator that works
 /// in arbitrarily nested scopes.
 ///
@@ -1077,4 +1285,120 @@ mod test {
     fn count_test4() {
         count_test(4);
     }
+
+    #[test]
+    fn bounded_aggregate_test() {
+        let sum_output: Arc<Mutex<OrdIndexedZSet<usize, usize, isize>>> =
+            Arc::new(Mutex::new(indexed_zset! {}));
+        let weighted_sum_output: Arc<Mutex<OrdIndexedZSet<usize, isize, isize>>> =
+            Arc::new(Mutex::new(indexed_zset! {}));
+
+        let sum_output_clone = sum_output.clone();
+        let weighted_sum_output_clone = weighted_sum_output.clone();
+
+        let (mut dbsp, input_handle) = Runtime::init_circuit(1, move |circuit| {
+            let (input_stream, input_handle) = circuit.add_input_indexed_zset();
+            input_stream
+                .aggregate_with_bound(
+                    |key: &usize| key.saturating_sub(5),
+                    <Fold<_, DefaultSemigroup<_>, _, _>>::new(
+                        0,
+                        |sum: &mut usize, v: &usize, _w| *sum += v,
+                    ),
+                )
+                .inspect(move |batch| *sum_output.lock().unwrap() = batch.clone());
+
+            input_stream
+                .aggregate_linear_with_bound(
+                    |key: &usize| key.saturating_sub(5),
+                    |value: &usize| *value as isize,
+                )
+                .inspect(move |batch| *weighted_sum_output.lock().unwrap() = batch.clone());
+            Ok(input_handle)
+        })
+        .unwrap();
+
+        input_handle.append(&mut vec![(1, (10, 1))]);
+        dbsp.step().unwrap();
+        assert_eq!(
+            &*sum_output_clone.lock().unwrap(),
+            &indexed_zset! {1 => {10 => 1}}
+        );
+
+        // Key 10 moves the bound to 5.
+        input_handle.append(&mut vec![(10, (1, 1)), (1, (1, 1))]);
+        dbsp.step().unwrap();
+        assert_eq!(
+            &*sum_output_clone.lock().unwrap(),
+            &indexed_zset! {1 => {10 => -1, 11 => 1}, 10 => {1 => 1}}
+        );
+        assert_eq!(
+            &*weighted_sum_output_clone.lock().unwrap(),
+            &indexed_zset! {1 => {10 => -1, 11 => 1}, 10 => {1 => 1}}
+        );
+
+        // The traces are truncated at the end of a step, possibly before the
+        // bound is updated in the same step; an empty step makes sure that
+        // the new bound has been applied.
+        dbsp.step().unwrap();
+
+        // Keys above the bound are still updated incrementally, but the state
+        // of key 1 has been discarded: the late update is aggregated by itself
+        // and the old aggregate is not retracted.
+        input_handle.append(&mut vec![(10, (2, 1)), (8, (3, 1)), (1, (20, 1))]);
+        dbsp.step().unwrap();
+        assert_eq!(
+            &*sum_output_clone.lock().unwrap(),
+            &indexed_zset! {1 => {20 => 1}, 8 => {3 => 1}, 10 => {1 => -1, 3 => 1}}
+        );
+        assert_eq!(
+            &*weighted_sum_output_clone.lock().unwrap(),
+            &indexed_zset! {1 => {20 => 1}, 8 => {3 => 1}, 10 => {1 => -1, 3 => 1}}
+        );
+
+        dbsp.kill().unwrap();
+    }
+
+    #[test]
+    fn append_only_aggregate_test() {
+        type Output = OrdIndexedZSet<usize, usize, isize>;
+
+        let (mut dbsp, input_handle) = Runtime::init_circuit(2, move |circuit| {
+            let (input_stream, input_handle) =
+                circuit.add_input_indexed_zset::<usize, usize, isize>();
+
+            let sum = <Fold<_, DefaultSemigroup<_>, _, _>>::new(
+                0,
+                |sum: &mut usize, v: &usize, w: isize| *sum += v * (w as usize),
+            );
+            input_stream
+                .aggregate_append_only(sum.clone())
+                .apply2(&input_stream.aggregate(sum), |d1: &Output, d2: &Output| {
+                    (d1.clone(), d2.clone())
+                })
+                .inspect(|(d1, d2)| assert_eq!(d1, d2));
+
+            input_stream
+                .aggregate_append_only(Min)
+                .apply2(&input_stream.aggregate(Min), |d1: &Output, d2: &Output| {
+                    (d1.clone(), d2.clone())
+                })
+                .inspect(|(d1, d2)| assert_eq!(d1, d2));
+            Ok(input_handle)
+        })
+        .unwrap();
+
+        let mut inputs = vec![
+            vec![(1, (10, 1)), (2, (5, 2))],
+            vec![(1, (3, 1)), (1, (10, 1)), (3, (7, 1))],
+            vec![],
+            vec![(2, (1, 1)), (2, (5, 1)), (4, (4, 3))],
+        ];
+        for input in inputs.iter_mut() {
+            input_handle.append(input);
+            dbsp.step().unwrap();
+        }
+
+        dbsp.kill().unwrap();
+    }
 }
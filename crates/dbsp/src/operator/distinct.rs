@@ -9,7 +9,7 @@ use crate::{
     },
     circuit_cache_key,
     trace::{ord::OrdValSpine, Batch, BatchReader, Builder, Cursor as TraceCursor, Trace},
-    DBTimestamp, OrdIndexedZSet, Timestamp,
+    DBTimestamp, OrdIndexedZSet, RootCircuit, Timestamp,
 };
 use size_of::SizeOf;
 use std::{
@@ -106,6 +106,39 @@ where
     }
 }
 
+impl<Z> Stream<RootCircuit, Z>
+where
+    Z: Clone + 'static,
+{
+    /// Incrementally deduplicate an input stream that only contains
+    /// insertions.
+    ///
+    /// Computes the same result as [`Self::distinct`] for such streams:
+    /// each tuple is output with weight `1` the first time it appears in
+    /// the input, and it is never retracted.  The operator only checks
+    /// whether the tuple has been seen before, without tracking its
+    /// weight.  The input must not contain negative weights; deletions
+    /// produce incorrect results.
+    pub fn distinct_append_only(&self) -> Stream<RootCircuit, Z>
+    where
+        Z: IndexedZSet + Send,
+        Z::R: ZRingValue,
+    {
+        let circuit = self.circuit();
+        let stream = self.shard();
+
+        circuit.region("distinct_append_only", || {
+            circuit
+                .add_binary_operator(
+                    DistinctAppendOnly::new(),
+                    &stream,
+                    &stream.integrate_trace().delay_trace(),
+                )
+                .mark_sharded()
+        })
+    }
+}
+
 /// `Distinct` operator changes all weights in the support of a Z-set to 1.
 pub struct Distinct<Z> {
     _type: PhantomData<Z>,
@@ -263,6 +296,82 @@ where
     }
 }
 
+/// Incremental version of the distinct operator for inputs that only
+/// contain insertions.
+///
+/// Takes a stream `a` of insertions into relation `A` and a stream with
+/// the delayed value of `A`, and outputs the tuples of `a` that do not
+/// occur in `z^-1(A)`.
+struct DistinctAppendOnly<Z, I> {
+    _type: PhantomData<(Z, I)>,
+}
+
+impl<Z, I> DistinctAppendOnly<Z, I> {
+    pub fn new() -> Self {
+        Self { _type: PhantomData }
+    }
+}
+
+impl<Z, I> Default for DistinctAppendOnly<Z, I> {
+    fn default() -> Self {
+        Self::new()
+    }
+}
+
+impl<Z, I> Operator for DistinctAppendOnly<Z, I>
+where
+    Z: 'static,
+    I: 'static,
+{
+    fn name(&self) -> Cow<'static, str> {
+        Cow::from("DistinctAppendOnly")
+    }
+
+    fn fixedpoint(&self, _scope: Scope) -> bool {
+        true
+    }
+}
+
+impl<Z, I> BinaryOperator<Z, I, Z> for DistinctAppendOnly<Z, I>
+where
+    Z: IndexedZSet,
+    Z::R: ZRingValue,
+    I: BatchReader<Key = Z::Key, Val = Z::Val, Time = (), R = Z::R>,
+{
+    fn eval(&mut self, delta: &Z, delayed_integral: &I) -> Z {
+        let mut builder = Z::Builder::with_capacity((), delta.len());
+        let mut delta_cursor = delta.cursor();
+        let mut integral_cursor = delayed_integral.cursor();
+
+        while delta_cursor.key_valid() {
+            integral_cursor.seek_key(delta_cursor.key());
+            let key_seen =
+                integral_cursor.key_valid() && integral_cursor.key() == delta_cursor.key();
+
+            while delta_cursor.val_valid() {
+                let w = delta_cursor.weight();
+                let v = delta_cursor.val();
+                let seen = key_seen && {
+                    integral_cursor.seek_val(v);
+                    integral_cursor.val_valid() && integral_cursor.val() == v
+                };
+
+                if !seen && w.ge0() && !w.is_zero() {
+                    builder.push((
+                        Z::item_from(delta_cursor.key().clone(), v.clone()),
+                        HasOne::one(),
+                    ));
+                }
+                delta_cursor.step_val();
+            }
+
+            delta_cursor.step_key();
+        }
+
+        builder.done()
+    }
+}
+
 /// Track key/value pairs that must be recomputed at
 /// future times.  Represent them as `((key, value), Present)`
 /// tuples so we can use the `Batcher` API to compile them
@@ -825,6 +934,39 @@ mod test {
         }
     }
 
+    #[test]
+    fn distinct_append_only_test() {
+        let circuit = RootCircuit::build(move |circuit| {
+            let mut inputs = vec![
+                zset! { 1 => 1, 2 => 2 },
+                zset! { 2 => 1, 3 => 3 },
+                zset! {},
+                zset! { 1 => 2, 4 => 1, 5 => 1 },
+            ]
+            .into_iter();
+
+            let input =
+                circuit.add_source(Generator::new(move || inputs.next().unwrap_or_default()));
+
+            input
+                .distinct_append_only()
+                .apply2(
+                    &input.distinct(),
+                    |d1: &OrdZSet<usize, isize>, d2: &OrdZSet<usize, isize>| {
+                        (d1.clone(), d2.clone())
+                    },
+                )
+                .inspect(|(d1, d2)| assert_eq!(d1, d2));
+            Ok(())
+        })
+        .unwrap()
+        .0;
+
+        for _ in 0..4 {
+            circuit.step().unwrap();
+        }
+    }
+
     #[test]
     fn distinct_indexed_test() {
         let output1 = Arc::new(Mutex::new(OrdIndexedZSet::empty(())));
@@ -0,0 +1,161 @@
+use super::{DiffGroupTransformer, Monotonicity, NonIncrementalGroupTransformer};
+use crate::{
+    algebra::ZRingValue,
+    trace::Cursor,
+    DBData, DBWeight, IndexedZSet, OrdIndexedZSet, RootCircuit, Stream,
+};
+use num::ToPrimitive;
+use std::marker::PhantomData;
+
+impl<B> Stream<RootCircuit, B>
+where
+    B: IndexedZSet + Send,
+{
+    /// Number the values in each group.
+    ///
+    /// For each key in the input stream, outputs each value along with its
+    /// position, starting from 1, according to ascending order of values.
+    /// A value with weight `n` is numbered `n` times.
+    #[allow(clippy::type_complexity)]
+    pub fn row_number(&self) -> Stream<RootCircuit, OrdIndexedZSet<B::Key, (B::Val, i64), B::R>>
+    where
+        B::R: ZRingValue + ToPrimitive,
+    {
+        self.group_transform(DiffGroupTransformer::new(Rank::new(
+            RankKind::RowNumber,
+            |_: &B::Val| (),
+        )))
+    }
+
+    /// Rank the values in each group.
+    ///
+    /// For each key in the input stream, outputs each value along with its
+    /// rank according to ascending order of values.  Values with the same
+    /// `peer_key` have the same rank, and leave gaps in the ranks of the
+    /// following values.
+    ///
+    /// # Arguments
+    ///
+    /// * `peer_key` - function that computes the part of a value that
+    ///   determines its rank.
+    #[allow(clippy::type_complexity)]
+    pub fn rank<PK, PF>(
+        &self,
+        peer_key: PF,
+    ) -> Stream<RootCircuit, OrdIndexedZSet<B::Key, (B::Val, i64), B::R>>
+    where
+        B::R: ZRingValue + ToPrimitive,
+        PK: Eq + 'static,
+        PF: Fn(&B::Val) -> PK + 'static,
+    {
+        self.group_transform(DiffGroupTransformer::new(Rank::new(
+            RankKind::Rank,
+            peer_key,
+        )))
+    }
+
+    /// Rank the values in each group without gaps.
+    ///
+    /// Like [`rank`](`Self::rank`), except that the rank of a value is the
+    /// number of distinct peer keys that precede it, plus 1.
+    #[allow(clippy::type_complexity)]
+    pub fn dense_rank<PK, PF>(
+        &self,
+        peer_key: PF,
+    ) -> Stream<RootCircuit, OrdIndexedZSet<B::Key, (B::Val, i64), B::R>>
+    where
+        B::R: ZRingValue + ToPrimitive,
+        PK: Eq + 'static,
+        PF: Fn(&B::Val) -> PK + 'static,
+    {
+        self.group_transform(DiffGroupTransformer::new(Rank::new(
+            RankKind::DenseRank,
+            peer_key,
+        )))
+    }
+}
+
+#[derive(Clone, Copy, PartialEq, Eq)]
+enum RankKind {
+    RowNumber,
+    Rank,
+    DenseRank,
+}
+
+/// Implements the `row_number`, `rank`, and `dense_rank` operators.
+struct Rank<I, R, PF> {
+    name: String,
+    kind: RankKind,
+    peer_key: PF,
+    _phantom: PhantomData<(I, R)>,
+}
+
+impl<I, R, PF> Rank<I, R, PF> {
+    fn new(kind: RankKind, peer_key: PF) -> Self {
+        let name = match kind {
+            RankKind::RowNumber => "row-number",
+            RankKind::Rank => "rank",
+            RankKind::DenseRank => "dense-rank",
+        };
+        Self {
+            name: name.to_string(),
+            kind,
+            peer_key,
+            _phantom: PhantomData,
+        }
+    }
+}
+
+impl<I, R, PK, PF> NonIncrementalGroupTransformer<I, (I, i64), R> for Rank<I, R, PF>
+where
+    I: DBData,
+    R: DBWeight + ZRingValue + ToPrimitive,
+    PK: Eq + 'static,
+    PF: Fn(&I) -> PK + 'static,
+{
+    fn name(&self) -> &str {
+        self.name.as_str()
+    }
+
+    fn monotonicity(&self) -> Monotonicity {
+        Monotonicity::Ascending
+    }
+
+    fn transform<C, CB>(&mut self, cursor: &mut C, mut output_cb: CB)
+    where
+        C: Cursor<I, (), (), R>,
+        CB: FnMut((I, i64), R),
+    {
+        // Number of rows that precede the current value.
+        let mut position = 0i64;
+        let mut rank = 0i64;
+        let mut dense_rank = 0i64;
+        let mut previous: Option<PK> = None;
+
+        while cursor.key_valid() {
+            let w = cursor.weight();
+            // Values with non-positive weights are not part of the group.
+            if w.ge0() && !w.is_zero() {
+                let key = (self.peer_key)(cursor.key());
+                if previous.as_ref() != Some(&key) {
+                    rank = position + 1;
+                    dense_rank += 1;
+                    previous = Some(key);
+                }
+
+                let count = w.to_i64().expect("weight does not fit in i64");
+                match self.kind {
+                    RankKind::RowNumber => {
+                        for number in position + 1..=position + count {
+                            output_cb((cursor.key().clone(), number), R::one());
+                        }
+                    }
+                    RankKind::Rank => output_cb((cursor.key().clone(), rank), w),
+                    RankKind::DenseRank => output_cb((cursor.key().clone(), dense_rank), w),
+                }
+                position += count;
+            }
+            cursor.step_key();
+        }
+    }
+}
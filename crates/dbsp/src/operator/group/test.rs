@@ -5,6 +5,7 @@ use crate::{
         test_batch::{assert_batch_eq, TestBatch},
         BatchReader, Trace,
     },
+    operator::FilterMap,
     CollectionHandle, DBData, DBWeight, OrdIndexedZSet, OutputHandle, RootCircuit, Runtime,
 };
 use anyhow::Result as AnyResult;
@@ -124,6 +125,61 @@ where
 
         TestBatch::from_data(&result)
     }
+
+    /// Reference implementation of `row_number`, `rank`, and `dense_rank`:
+    /// sort the copies of the values in each group and count the copies
+    /// or the peer keys that precede each copy.
+    fn rank_by<PK, PF>(&self, kind: &str, peer_key: PF) -> TestBatch<K, (V, i64), (), R>
+    where
+        PK: Eq,
+        PF: Fn(&V) -> PK,
+    {
+        let mut result = Vec::new();
+        let mut cursor = self.cursor();
+
+        while cursor.key_valid() {
+            // One entry per copy of each value with a positive weight.
+            let mut copies = Vec::new();
+
+            while cursor.val_valid() {
+                let mut w = cursor.weight();
+                while w.ge0() && !w.is_zero() {
+                    copies.push(cursor.val().clone());
+                    w = w + R::one().neg();
+                }
+                cursor.step_val();
+            }
+            copies.sort();
+
+            for (i, v) in copies.iter().enumerate() {
+                let key = peer_key(v);
+                let preceding = copies[..i].iter().filter(|u| peer_key(*u) != key);
+                let number = match kind {
+                    "row_number" => i + 1,
+                    "rank" => preceding.count() + 1,
+                    "dense_rank" => {
+                        let mut peer_keys: Vec<PK> = Vec::new();
+                        for u in preceding {
+                            let k = peer_key(u);
+                            if !peer_keys.contains(&k) {
+                                peer_keys.push(k);
+                            }
+                        }
+                        peer_keys.len() + 1
+                    }
+                    _ => panic!("unknown ranking function {kind}"),
+                };
+                result.push((
+                    (cursor.key().clone(), (v.clone(), number as i64), ()),
+                    R::one(),
+                ));
+            }
+
+            cursor.step_key();
+        }
+
+        TestBatch::from_data(&result)
+    }
 }
 
 fn topk_test_circuit(
@@ -167,6 +223,72 @@ fn lead_test_circuit(
     Ok((input_handle, lead_handle))
 }
 
+fn rank_test_circuit(
+    circuit: &mut RootCircuit,
+) -> AnyResult<(
+    CollectionHandle<i32, (i32, i32)>,
+    OutputHandle<OrdIndexedZSet<i32, (i32, i64), i32>>,
+    OutputHandle<OrdIndexedZSet<i32, (i32, i64), i32>>,
+    OutputHandle<OrdIndexedZSet<i32, (i32, i64), i32>>,
+)> {
+    let (input_stream, input_handle) = circuit.add_input_indexed_zset::<i32, i32, i32>();
+
+    let row_number_handle = input_stream.row_number().integrate().output();
+    let rank_handle = input_stream.rank(|v| *v / 10).integrate().output();
+    let dense_rank_handle = input_stream.dense_rank(|v| *v / 10).integrate().output();
+
+    Ok((input_handle, row_number_handle, rank_handle, dense_rank_handle))
+}
+
+/// Lag over values whose copies are numbered apart within each distinct
+/// value, as the SQL compiler does for `LAG`.  Outputs the changes of the lag.
+#[allow(clippy::type_complexity)]
+fn numbered_lag_test_circuit(
+    circuit: &mut RootCircuit,
+) -> AnyResult<(
+    CollectionHandle<i32, (i32, i32)>,
+    OutputHandle<OrdIndexedZSet<i32, ((i32, i64), Option<i32>), i32>>,
+)> {
+    let (input_stream, input_handle) = circuit.add_input_indexed_zset::<i32, i32, i32>();
+
+    let lag_handle = input_stream
+        .map_index(|(k, v)| ((*k, *v), ()))
+        .row_number()
+        .map_index(|(kv, (_, n))| (kv.0, (kv.1, *n)))
+        .lag(1, |v| v.map(|(x, _)| *x))
+        .output();
+
+    Ok((input_handle, lag_handle))
+}
+
+#[test]
+fn test_numbered_lag_delta() {
+    let (mut dbsp, (input_handle, lag_handle)) =
+        Runtime::init_circuit(1, numbered_lag_test_circuit).unwrap();
+
+    for v in 0..1000 {
+        input_handle.push(0, (2 * v, 1));
+    }
+    dbsp.step().unwrap();
+    assert_eq!(lag_handle.consolidate().len(), 1000);
+
+    // A new value is inserted and the lag of the following value changes.
+    input_handle.push(0, (51, 1));
+    dbsp.step().unwrap();
+    assert_eq!(lag_handle.consolidate().len(), 3);
+
+    // A new copy follows the existing copy; the lag of the following value
+    // does not change.
+    input_handle.push(0, (100, 1));
+    dbsp.step().unwrap();
+    assert_eq!(lag_handle.consolidate().len(), 1);
+
+    // Deleting the copy undoes the insertion.
+    input_handle.push(0, (100, -1));
+    dbsp.step().unwrap();
+    assert_eq!(lag_handle.consolidate().len(), 1);
+}
+
 proptest! {
     #[test]
     fn test_topk(trace in input_trace(5, 1_000, 200, 20)) {
@@ -243,4 +365,27 @@ proptest! {
             assert_batch_eq(&lead_result, &ref_lead);
         }
     }
+
+    #[test]
+    fn test_rank(trace in input_trace(5, 100, 200, 20)) {
+        let (mut dbsp, (input_handle, row_number_handle, rank_handle, dense_rank_handle)) = Runtime::init_circuit(4, rank_test_circuit).unwrap();
+
+        let mut ref_trace = TestBatch::new(None);
+
+        for batch in trace.into_iter() {
+            let records = batch.iter().map(|(k, v, r)| ((*k, *v, ()), *r)).collect::<Vec<_>>();
+
+            let ref_batch = TestBatch::from_data(&records);
+            ref_trace.insert(ref_batch);
+
+            for (k, v, r) in batch.into_iter() {
+                input_handle.push(k, (v, r));
+            }
+            dbsp.step().unwrap();
+
+            assert_batch_eq(&row_number_handle.consolidate(), &ref_trace.rank_by("row_number", |_| ()));
+            assert_batch_eq(&rank_handle.consolidate(), &ref_trace.rank_by("rank", |v| *v / 10));
+            assert_batch_eq(&dense_rank_handle.consolidate(), &ref_trace.rank_by("dense_rank", |v| *v / 10));
+        }
+    }
 }
@@ -8,7 +8,7 @@ use crate::{
         Circuit, GlobalNodeId, RootCircuit, Scope, Stream, WithClock,
     },
     circuit_cache_key,
-    operator::FilterMap,
+    operator::{trace::TraceBound, FilterMap},
     time::Timestamp,
     trace::{cursor::Cursor as TraceCursor, Batch, BatchReader, Batcher, Builder, Spine, Trace},
     DBData, DBTimestamp, OrdIndexedZSet, OrdZSet,
@@ -222,6 +222,58 @@ where
     /// Like [`Self::join_index`], but can return any indexed Z-set type.
     #[track_caller]
     pub fn join_generic<I2, F, Z, It>(&self, other: &Stream<C, I2>, join_func: F) -> Stream<C, Z>
+    where
+        I2: IndexedZSet<Key = I1::Key, R = I1::R> + Send,
+        Z: IndexedZSet<R = I1::R>,
+        Z::R: MulByRef<Output = Z::R>,
+        F: Fn(&I1::Key, &I1::Val, &I2::Val) -> It + Clone + 'static,
+        It: IntoIterator<Item = (Z::Key, Z::Val)> + 'static,
+    {
+        self.join_generic_with_bounds(other, join_func, TraceBound::new(), TraceBound::new())
+    }
+
+    /// Like [`Self::join`], but discards the state of old keys.
+    ///
+    /// `bound_func` maps a key `k` to the smallest key that can still appear
+    /// in an input once that input has contained `k`, as in
+    /// [`Self::aggregate_with_bound`]; the promise must hold for both inputs.
+    /// The trace of each input is truncated below the bound computed from the
+    /// keys of the other input.  Inputs that violate the promise produce
+    /// incorrect results.
+    #[track_caller]
+    pub fn join_with_bound<I2, B, F, V>(
+        &self,
+        other: &Stream<C, I2>,
+        bound_func: B,
+        join_func: F,
+    ) -> Stream<C, OrdZSet<V, I1::R>>
+    where
+        I2: IndexedZSet<Key = I1::Key, R = I1::R> + Send,
+        B: Fn(&I1::Key) -> I1::Key + Clone + 'static,
+        F: Fn(&I1::Key, &I1::Val, &I2::Val) -> V + Clone + 'static,
+        V: DBData,
+    {
+        let left_bound = other.shard().key_bound(bound_func.clone());
+        let right_bound = self.shard().key_bound(bound_func);
+        self.join_generic_with_bounds(
+            other,
+            move |k, v1, v2| once((join_func(k, v1, v2), ())),
+            left_bound,
+            right_bound,
+        )
+    }
+
+    /// Like [`Self::join_generic`], but the traces of the left and right
+    /// inputs are truncated below `left_bound` and `right_bound`
+    /// respectively.
+    #[track_caller]
+    fn join_generic_with_bounds<I2, F, Z, It>(
+        &self,
+        other: &Stream<C, I2>,
+        join_func: F,
+        left_bound: TraceBound<I1::Key>,
+        right_bound: TraceBound<I1::Key>,
+    ) -> Stream<C, Z>
     where
         I2: IndexedZSet<Key = I1::Key, R = I1::R> + Send,
         Z: IndexedZSet<R = I1::R>,
@@ -272,8 +324,14 @@ where
         let left = self.shard();
         let right = other.shard();
 
-        let left_trace = left.trace::<Spine<<<C as WithClock>::Time as Timestamp>::OrdValBatch<I1::Key, I1::Val, I1::R>>>();
-        let right_trace = right.trace::<Spine<<<C as WithClock>::Time as Timestamp>::OrdValBatch<I1::Key, I2::Val, I1::R>>>();
+        let left_trace = left.trace_with_bound::<Spine<<<C as WithClock>::Time as Timestamp>::OrdValBatch<I1::Key, I1::Val, I1::R>>>(
+            left_bound,
+            TraceBound::new(),
+        );
+        let right_trace = right.trace_with_bound::<Spine<<<C as WithClock>::Time as Timestamp>::OrdValBatch<I1::Key, I2::Val, I1::R>>>(
+            right_bound,
+            TraceBound::new(),
+        );
 
         let left = self.circuit().add_binary_operator(
             JoinTrace::new(
@@ -1024,6 +1082,62 @@ mod test {
         }
     }
 
+    #[test]
+    fn join_with_bound_test() {
+        let circuit = RootCircuit::build(move |circuit| {
+            let mut input1 = vec![
+                zset! {(1, "a".to_string()) => 1},
+                // Key 10 moves the bound of the right trace to 5.
+                zset! {(10, "b".to_string()) => 1},
+                zset! {},
+                zset! {(1, "c".to_string()) => 1, (8, "d".to_string()) => 1},
+            ]
+            .into_iter();
+            let mut input2 = vec![
+                zset! {(1, "x".to_string()) => 1},
+                // Key 10 moves the bound of the left trace to 5.
+                zset! {(10, "y".to_string()) => 1},
+                zset! {},
+                zset! {(8, "z".to_string()) => 1},
+            ]
+            .into_iter();
+            // The traces are truncated at the end of a step, possibly before
+            // the bounds are updated in the same step, so the third step is
+            // empty.  In the last step "c" no longer joins with "x", whose key
+            // is below the bound.
+            let mut outputs = vec![
+                zset! {(1, "a x".to_string()) => 1},
+                zset! {(10, "b y".to_string()) => 1},
+                zset! {},
+                zset! {(8, "d z".to_string()) => 1},
+            ]
+            .into_iter();
+
+            let index1: Stream<_, OrdIndexedZSet<usize, String, isize>> = circuit
+                .add_source(Generator::new(move || input1.next().unwrap()))
+                .index();
+            let index2: Stream<_, OrdIndexedZSet<usize, String, isize>> = circuit
+                .add_source(Generator::new(move || input2.next().unwrap()))
+                .index();
+            index1
+                .join_with_bound(
+                    &index2,
+                    |k: &usize| k.saturating_sub(5),
+                    |&k: &usize, s1, s2| (k, format!("{} {}", s1, s2)),
+                )
+                .inspect(move |fm: &OrdZSet<(usize, String), _>| {
+                    assert_eq!(fm, &outputs.next().unwrap())
+                });
+            Ok(())
+        })
+        .unwrap()
+        .0;
+
+        for _ in 0..4 {
+            circuit.step().unwrap();
+        }
+    }
+
     fn do_join_test_mt(workers: usize) {
         let hruntime = Runtime::run(workers, || {
             join_test();
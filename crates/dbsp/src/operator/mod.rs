@@ -40,7 +40,9 @@ mod z1;
 
 #[cfg(feature = "with-csv")]
 pub use self::csv::CsvSource;
-pub use aggregate::{Aggregator, Avg, Fold, Max, MaxSemigroup, Min, MinSemigroup};
+pub use aggregate::{
+    Aggregator, Avg, Fold, Max, MaxSemigroup, Min, MinSemigroup, RunningAggregator,
+};
 pub use apply::Apply;
 pub use condition::Condition;
 pub use delta0::Delta0;
@@ -233,6 +233,30 @@ where
         trace.clone()
     }
 
+    /// Returns a trace bound that, after each step, holds the largest value
+    /// of `bound_func` applied to the largest key of any batch in `self` so
+    /// far.
+    pub(crate) fn key_bound<F>(&self, bound_func: F) -> TraceBound<B::Key>
+    where
+        B: BatchReader,
+        F: Fn(&B::Key) -> B::Key + 'static,
+    {
+        let bound = TraceBound::new();
+        let bound_clone = bound.clone();
+
+        self.apply(move |batch: &B| {
+            let mut cursor = batch.cursor();
+            cursor.fast_forward_keys();
+            if let Some(key) = cursor.get_key() {
+                let new_bound = bound_func(key);
+                if bound_clone.get().map_or(true, |old| old < new_bound) {
+                    bound_clone.set(new_bound);
+                }
+            }
+        });
+        bound
+    }
+
     // TODO: this method should replace `Stream::integrate()`.
     #[track_caller]
     pub fn integrate_trace(&self) -> Stream<C, Spine<B>>
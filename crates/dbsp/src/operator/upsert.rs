@@ -35,6 +35,19 @@ where
     /// This is a stateful operator that internally maintains the trace of the
     /// collection.
     pub fn upsert<B>(&self) -> Stream<C, B>
+    where
+        K: DBData,
+        V: DBData,
+        B::R: DBData + ZRingValue,
+        B: Batch<Key = K, Val = V, Time = ()>,
+    {
+        self.upsert_with_bounds(<TraceBounds<K, V>>::unbounded())
+    }
+
+    /// Like [`Self::upsert`], but the internal trace is truncated according
+    /// to `bounds`.  Upserts to keys below the key bound are applied as if
+    /// the key had no previous value.
+    pub(crate) fn upsert_with_bounds<B>(&self, bounds: TraceBounds<K, V>) -> Stream<C, B>
     where
         K: DBData,
         V: DBData,
@@ -63,8 +76,6 @@ where
         //                    z1trace             └───────┘
         // ```
         circuit.region("upsert", || {
-            let bounds = <TraceBounds<K, V>>::unbounded();
-
             let (ExportStream { local, export }, z1feedback) = circuit.add_feedback_with_export(
                 Z1Trace::new(false, circuit.root_scope(), bounds.clone()),
             );
@@ -36,14 +36,35 @@ void ExtendedTableElement(List<SqlNode> list) :
     final SqlNodeList columnList;
     final Span s = Span.of();
     final ColumnStrategy strategy;
+    SqlNode lateness = null;
+    boolean primaryKey = false;
 }
 {
+    // PRIMARY is not reserved, so a table constraint could also be parsed as a column
+    LOOKAHEAD(2)
+    (
+        <UNIQUE> { s.add(this); }
+        columnList = ParenthesizedSimpleIdentifierList() {
+            list.add(SqlDdlNodes.unique(s.end(columnList), name, columnList));
+        }
+    |
+        <PRIMARY>  { s.add(this); } <KEY>
+        columnList = ParenthesizedSimpleIdentifierList() {
+            list.add(SqlDdlNodes.primary(s.end(columnList), name, columnList));
+        }
+    |   <FOREIGN> ParenthesizedSimpleIdentifierList() <KEY> <REFERENCES>
+                  SimpleIdentifier() <LPAREN> ParenthesizedSimpleIdentifierList() <RPAREN> {
+            // Ignored, but parsed
+        }
+    )
+|
     LOOKAHEAD(2) id = SimpleIdentifier()
     (
         type = DataType()
         nullable = NullableOptDefaultTrue()
+        [ <LATENESS> lateness = Expression(ExprContext.ACCEPT_NON_QUERY) ]
         (
-            <PRIMARY> <KEY> /* ignored, but accepted */ {}
+            <PRIMARY> <KEY> { primaryKey = true; }
         |
             <FOREIGN> <KEY> <REFERENCES> SimpleIdentifier() <LPAREN> SimpleIdentifier() <RPAREN> /* ignored */ {}
         |
@@ -52,8 +73,8 @@ void ExtendedTableElement(List<SqlNode> list) :
         {
             strategy = nullable ? ColumnStrategy.NULLABLE : ColumnStrategy.NOT_NULLABLE;
             list.add(
-                SqlDdlNodes.column(s.add(id).end(this), id,
-                    type.withNullable(nullable), null, strategy));
+                new SqlExtendedColumnDeclaration(s.add(id).end(this), id,
+                    type.withNullable(nullable), strategy, lateness, primaryKey));
         }
     |
         { list.add(id); }
@@ -62,22 +83,6 @@ void ExtendedTableElement(List<SqlNode> list) :
     id = SimpleIdentifier() {
         list.add(id);
     }
-|
-    (
-        <UNIQUE> { s.add(this); }
-        columnList = ParenthesizedSimpleIdentifierList() {
-            list.add(SqlDdlNodes.unique(s.end(columnList), name, columnList));
-        }
-    |
-        <PRIMARY>  { s.add(this); } <KEY>
-        columnList = ParenthesizedSimpleIdentifierList() {
-            list.add(SqlDdlNodes.primary(s.end(columnList), name, columnList));
-        }
-    |   <FOREIGN> ParenthesizedSimpleIdentifierList() <KEY> <REFERENCES>
-                  SimpleIdentifier() <LPAREN> ParenthesizedSimpleIdentifierList() <RPAREN> {
-            // Ignored, but parsed
-        }
-    )
 }
 
 SqlNodeList AttributeDefList() :
@@ -137,20 +142,50 @@ SqlCreate SqlCreateType(Span s, boolean replace) :
     }
 }
 
+SqlNodeList TableProperties() :
+{
+    final Span s;
+    final List<SqlNode> list = new ArrayList<SqlNode>();
+}
+{
+    <LPAREN> { s = span(); }
+    TableProperty(list)
+    (
+        <COMMA> TableProperty(list)
+    )*
+    <RPAREN> {
+        return new SqlNodeList(list, s.end(this));
+    }
+}
+
+void TableProperty(List<SqlNode> list) :
+{
+    final SqlNode key;
+    final SqlNode value;
+}
+{
+    key = StringLiteral() <EQ> value = StringLiteral() {
+        list.add(key);
+        list.add(value);
+    }
+}
+
 SqlCreate SqlCreateExtendedTable(Span s, boolean replace) :
 {
     final boolean ifNotExists;
     final SqlIdentifier id;
     SqlNodeList tableElementList = null;
+    SqlNodeList properties = null;
     SqlNode query = null;
 }
 {
     <TABLE> ifNotExists = IfNotExistsOpt() id = CompoundIdentifier()
     [ tableElementList = ExtendedTableElementList() ]
+    [ <WITH> properties = TableProperties() ]
     [ <AS> query = OrderedQueryOrExpr(ExprContext.ACCEPT_QUERY) ]
     {
-        return SqlDdlNodes.createTable(s.end(this), replace, ifNotExists, id,
-            tableElementList, query);
+        return new SqlExtendedCreateTable(s.end(this), replace, ifNotExists, id,
+            tableElementList, query, properties);
     }
 }
 
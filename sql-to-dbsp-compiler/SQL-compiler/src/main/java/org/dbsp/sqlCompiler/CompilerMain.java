@@ -33,6 +33,7 @@ import org.dbsp.sqlCompiler.compiler.backend.rust.RustFileWriter;
 import org.dbsp.sqlCompiler.compiler.errors.CompilerMessages;
 import org.dbsp.sqlCompiler.compiler.errors.SourcePositionRange;
 import org.dbsp.sqlCompiler.compiler.backend.*;
+import org.dbsp.util.IdGen;
 import org.dbsp.util.Logger;
 
 import javax.annotation.Nullable;
@@ -47,9 +48,21 @@ import java.util.Objects;
  */
 public class CompilerMain {
     final CompilerOptions options;
+    /**
+     * If not null the input is read from this stream instead of the input file.
+     */
+    @Nullable
+    InputStream input;
+    /**
+     * If not null the output is written to this stream instead of the output file.
+     */
+    @Nullable
+    PrintStream output;
 
     CompilerMain() {
         this.options = new CompilerOptions();
+        this.input = null;
+        this.output = null;
     }
 
     void usage(JCommander commander) {
@@ -59,34 +72,58 @@ public class CompilerMain {
         commander.usage();
     }
 
-    void parseOptions(String[] argv) {
+    JCommander getCommander() {
         JCommander commander = JCommander.newBuilder()
                 .addObject(this.options)
                 .build();
         commander.setProgramName("sql-to-dbsp");
+        return commander;
+    }
+
+    /**
+     * Parse the options without terminating the process on errors.
+     * Help requests are not handled here.
+     * @return  An error message, or null if the options are valid.
+     */
+    @Nullable
+    String tryParseOptions(JCommander commander, String[] argv) {
         try {
             commander.parse(argv);
         } catch (ParameterException ex) {
-            System.err.println(ex.getMessage());
-            System.exit(1);
-        }
-        if (this.options.help) {
-            this.usage(commander);
-            System.exit(1);
+            return ex.getMessage();
         }
-
         for (Map.Entry<String, String> entry: options.ioOptions.loggingLevel.entrySet()) {
             try {
                 int level = Integer.parseInt(entry.getValue());
                 Logger.INSTANCE.setLoggingLevel(entry.getKey(), level);
             } catch (NumberFormatException ex) {
-                System.err.println("-T option must be followed by 'class=number'; could not parse " + entry);
-                System.exit(1);
+                return "-T option must be followed by 'class=number'; could not parse " + entry;
             }
         }
+        return null;
+    }
+
+    void parseOptions(String[] argv) {
+        JCommander commander = this.getCommander();
+        String error = this.tryParseOptions(commander, argv);
+        if (error != null) {
+            System.err.println(error);
+            System.exit(1);
+        }
+        if (this.options.help) {
+            this.usage(commander);
+            System.exit(1);
+        }
+        if (this.options.ioOptions.inputFile == null && !this.options.ioOptions.server) {
+            System.err.println("The following option is required: [Input file to compile]");
+            this.usage(commander);
+            System.exit(1);
+        }
     }
 
     PrintStream getOutputStream() throws IOException {
+        if (this.output != null)
+            return this.output;
         PrintStream outputStream;
         @Nullable String outputFile = this.options.ioOptions.outputFile;
         if (outputFile == null) {
@@ -98,7 +135,9 @@ public class CompilerMain {
     }
 
     InputStream getInputFile(@Nullable String inputFile) throws IOException {
-        if (inputFile == null) {
+        if (this.input != null) {
+            return this.input;
+        } else if (inputFile == null) {
             return System.in;
         } else {
             return Files.newInputStream(Paths.get(inputFile));
@@ -110,6 +149,12 @@ public class CompilerMain {
      */
     CompilerMessages run() {
         DBSPCompiler compiler = new DBSPCompiler(this.options);
+        try (IdGen.Scope ignored = compiler.idGen.enter()) {
+            return this.run(compiler);
+        }
+    }
+
+    CompilerMessages run(DBSPCompiler compiler) {
         try {
             InputStream input = this.getInputFile(this.options.ioOptions.inputFile);
             compiler.setEntireInput(this.options.ioOptions.inputFile, input);
@@ -175,7 +220,13 @@ public class CompilerMain {
     }
 
     public static void main(String[] argv) {
-        CompilerMessages messages = execute(argv);
+        CompilerMain main = new CompilerMain();
+        main.parseOptions(argv);
+        if (main.options.ioOptions.server) {
+            CompilerServer server = new CompilerServer(System.in, System.out);
+            System.exit(server.serve());
+        }
+        CompilerMessages messages = main.run();
         messages.show(System.err);
         System.exit(messages.exitCode);
     }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
+import org.dbsp.sqlCompiler.compiler.errors.CompilerMessages;
+import org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler.ViewCache;
+import org.dbsp.util.IdGen;
+import org.dbsp.util.Logger;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiler that stays resident and serves compilation requests,
+ * avoiding the JVM and Calcite startup costs for each program.
+ * Requests are read from an input stream and responses are written to
+ * an output stream, one JSON object per line.
+ * A request has the shape
+ * {"id": ..., "sql": "...", "options": ["-i", "-j", ...]}
+ * where "options" are command-line options; all fields are optional.
+ * If "sql" is missing the input file named in the options is compiled.
+ * The response has the shape
+ * {"id": ..., "exitCode": 0, "output": "...", "messages": [...], "latencyMs": 12.5,
+ *  "cacheHits": 10, "cacheMisses": 1}
+ * where "output" is the generated Rust or JIT JSON, "messages" are the
+ * errors and warnings in the format produced by the -je option,
+ * "latencyMs" is the time spent serving the request, and
+ * "cacheHits" and "cacheMisses" count the views whose Calcite plans
+ * were reused from previous requests, and respectively compiled.
+ * Each request is compiled by a fresh compiler; the only state shared
+ * between requests is a cache of compiled views.  The logging levels set
+ * with -T are restored when a request completes.
+ */
+public class CompilerServer {
+    final BufferedReader input;
+    final PrintStream output;
+    final ObjectMapper mapper;
+    /**
+     * Number of views whose compiled plans are kept across requests.
+     */
+    static final int VIEW_CACHE_CAPACITY = 10000;
+    final ViewCache viewCache;
+    /**
+     * Number of requests served.
+     */
+    int served;
+
+    public CompilerServer(InputStream input, PrintStream output) {
+        this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.output = output;
+        this.mapper = new ObjectMapper();
+        this.viewCache = new ViewCache(VIEW_CACHE_CAPACITY);
+        this.served = 0;
+    }
+
+    /**
+     * Compile a small program, to load and initialize the Calcite classes
+     * before the first request arrives.
+     */
+    void warmUp() {
+        CompilerMain main = new CompilerMain();
+        main.input = new ByteArrayInputStream(
+                ("CREATE TABLE T(COL1 INT NOT NULL, COL2 VARCHAR);\n" +
+                "CREATE VIEW V AS SELECT COL2, SUM(COL1) FROM T WHERE COL1 > 0 GROUP BY COL2;")
+                        .getBytes(StandardCharsets.UTF_8));
+        main.output = new PrintStream(new ByteArrayOutputStream());
+        main.run();
+    }
+
+    static String[] getOptions(@Nullable JsonNode options) {
+        if (options == null)
+            return new String[0];
+        if (!options.isArray())
+            throw new IllegalArgumentException("'options' must be an array of strings");
+        List<String> result = new ArrayList<>();
+        for (JsonNode option: options)
+            result.add(option.asText());
+        return result.toArray(new String[0]);
+    }
+
+    ArrayNode errorMessage(String message) {
+        ArrayNode result = this.mapper.createArrayNode();
+        ObjectNode error = result.addObject();
+        error.put("startLineNumber", 0);
+        error.put("startColumn", 0);
+        error.put("endLineNumber", 0);
+        error.put("endColumn", 0);
+        error.put("warning", false);
+        error.put("errorType", "Invalid request");
+        error.put("message", message);
+        return result;
+    }
+
+    /**
+     * Serve a single request.
+     * @param request  Request in JSON.
+     * @return         The response.
+     */
+    ObjectNode serve(String request) {
+        long start = System.nanoTime();
+        long hits = this.viewCache.getHits();
+        long misses = this.viewCache.getMisses();
+        ObjectNode response = this.mapper.createObjectNode();
+        int exitCode = 1;
+        String output = "";
+        JsonNode messages;
+        // The -T options of a request only apply to that request
+        Map<String, Integer> loggingLevels = Logger.INSTANCE.getLoggingLevels();
+        try {
+            JsonNode node = this.mapper.readTree(request);
+            if (!node.isObject())
+                throw new IllegalArgumentException("Request must be a JSON object");
+            JsonNode id = node.get("id");
+            if (id != null)
+                response.set("id", id);
+            String[] argv = getOptions(node.get("options"));
+            CompilerMain main = new CompilerMain();
+            JCommander commander = main.getCommander();
+            String error = main.tryParseOptions(commander, argv);
+            if (error != null) {
+                messages = this.errorMessage(error);
+            } else if (main.options.help) {
+                StringBuilder usage = new StringBuilder();
+                main.options.ioOptions.loggingLevel.clear();
+                commander.getUsageFormatter().usage(usage);
+                messages = this.errorMessage(usage.toString());
+            } else {
+                JsonNode sql = node.get("sql");
+                if (sql != null)
+                    main.input = new ByteArrayInputStream(sql.asText().getBytes(StandardCharsets.UTF_8));
+                else if (main.options.ioOptions.inputFile == null)
+                    throw new IllegalArgumentException("Request must contain 'sql' or an input file");
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                if (main.options.ioOptions.outputFile == null)
+                    main.output = new PrintStream(bytes, true, StandardCharsets.UTF_8.name());
+                DBSPCompiler compiler = new DBSPCompiler(main.options);
+                compiler.setViewCache(this.viewCache);
+                CompilerMessages result;
+                try (IdGen.Scope ignored = compiler.idGen.enter()) {
+                    result = main.run(compiler);
+                } catch (Throwable ex) {
+                    compiler.messages.reportError(ex);
+                    result = compiler.messages;
+                }
+                exitCode = result.exitCode;
+                messages = result.toJson();
+                output = bytes.toString(StandardCharsets.UTF_8.name());
+            }
+        } catch (JsonProcessingException ex) {
+            messages = this.errorMessage("Could not parse request: " + ex.getOriginalMessage());
+        } catch (IllegalArgumentException | IOException ex) {
+            messages = this.errorMessage(ex.getMessage());
+        } finally {
+            Logger.INSTANCE.setLoggingLevels(loggingLevels);
+        }
+        long end = System.nanoTime();
+        response.put("exitCode", exitCode);
+        response.put("output", output);
+        response.set("messages", messages);
+        response.put("latencyMs", (end - start) / 1e6);
+        response.put("cacheHits", this.viewCache.getHits() - hits);
+        response.put("cacheMisses", this.viewCache.getMisses() - misses);
+        this.served++;
+        return response;
+    }
+
+    /**
+     * Serve requests until the input is exhausted.
+     * Empty lines are ignored.
+     * @return  The exit code of the server.
+     */
+    public int serve() {
+        this.warmUp();
+        try {
+            String line;
+            while ((line = this.input.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                ObjectNode response = this.serve(line);
+                this.output.println(response.toString());
+                this.output.flush();
+            }
+        } catch (IOException ex) {
+            System.err.println("Error reading request: " + ex.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+}
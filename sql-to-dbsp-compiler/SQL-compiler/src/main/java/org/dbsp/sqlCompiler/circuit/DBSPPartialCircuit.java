@@ -73,7 +73,7 @@ public class DBSPPartialCircuit extends DBSPNode implements IDBSPOuterNode, IWri
     public void addOperator(DBSPOperator operator) {
         Logger.INSTANCE.belowLevel(this, 1)
                 .append("Adding ")
-                .append(operator.toString())
+                .appendSupplier(operator::toString)
                 .newline();
         if (this.operatorDeclarations.containsKey(operator.outputName)) {
             DBSPOperator previous = this.operatorDeclarations.get(operator.outputName);
@@ -4,6 +4,8 @@ import org.dbsp.sqlCompiler.compiler.errors.InternalCompilerError;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.ir.DBSPAggregate;
 import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPPathExpression;
+import org.dbsp.sqlCompiler.ir.path.DBSPSimplePathSegment;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeStream;
 import org.dbsp.util.IIndentStream;
@@ -49,6 +51,20 @@ public abstract class DBSPAggregateOperatorBase extends DBSPUnaryOperator {
         return Objects.requireNonNull(this.aggregate);
     }
 
+    /**
+     * True if the function of this operator is the Min or Max
+     * aggregator of the runtime.
+     */
+    public boolean isMinMax() {
+        if (this.function == null)
+            return false;
+        DBSPPathExpression path = this.function.as(DBSPPathExpression.class);
+        if (path == null || path.path.components.length != 1)
+            return false;
+        DBSPSimplePathSegment segment = path.path.components[0].as(DBSPSimplePathSegment.class);
+        return segment != null && (segment.identifier.equals("Min") || segment.identifier.equals("Max"));
+    }
+
     @Override
     public IIndentStream toString(IIndentStream builder) {
         DBSPType streamType = new DBSPTypeStream(this.outputType);
@@ -27,6 +27,7 @@ import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
 import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeIndexedZSet;
 
 import javax.annotation.Nullable;
 import java.util.List;
@@ -35,7 +36,8 @@ import java.util.Objects;
 public class DBSPFlatMapOperator extends DBSPUnaryOperator {
     public DBSPFlatMapOperator(CalciteObject node, DBSPExpression expression,
                                DBSPType resultType, DBSPOperator input) {
-        super(node, "flat_map", expression, resultType, true, input);
+        super(node, resultType.is(DBSPTypeIndexedZSet.class) ? "flat_map_index" : "flat_map",
+                expression, resultType, true, input);
         this.checkArgumentFunctionType(expression, 0, input);
     }
 
@@ -23,6 +23,7 @@
 
 package org.dbsp.sqlCompiler.circuit.operator;
 
+import org.dbsp.sqlCompiler.compiler.errors.InternalCompilerError;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
 import org.dbsp.sqlCompiler.ir.DBSPAggregate;
@@ -33,22 +34,50 @@ import org.dbsp.sqlCompiler.ir.type.DBSPTypeIndexedZSet;
 import javax.annotation.Nullable;
 import java.util.List;
 
+/**
+ * If the operator has a key bound, the keys of the input are never smaller
+ * than the bound computed from the largest key received so far, and the
+ * aggregate_with_bound operator discards the state of the smaller keys.
+ * If the operator is append-only its input only contains insertions, and the
+ * aggregate_append_only operator keeps one accumulator per key instead of
+ * all the rows of the input.
+ */
 public class DBSPIncrementalAggregateOperator extends DBSPAggregateOperatorBase {
     public final DBSPType keyType;
     public final DBSPType outputElementType;
     public final DBSPType weightType;
+    /**
+     * If not null, a closure that maps a key of the input to a lower
+     * bound on all the keys received after it.
+     */
+    @Nullable
+    public final DBSPExpression keyBound;
+    public final boolean appendOnly;
 
     public DBSPIncrementalAggregateOperator(
             CalciteObject node,
             DBSPType keyType, DBSPType outputElementType, DBSPType weightType,
             @Nullable DBSPExpression function,
-            @Nullable DBSPAggregate aggregate, DBSPOperator input, boolean isLinear) {
-        super(node, isLinear ? "aggregate_linear" : "aggregate",
+            @Nullable DBSPAggregate aggregate, @Nullable DBSPExpression keyBound,
+            boolean appendOnly, DBSPOperator input, boolean isLinear) {
+        super(node, operation(node, keyBound, appendOnly, isLinear),
                 new DBSPTypeIndexedZSet(node, keyType, outputElementType, weightType),
                 function, aggregate, false, input, isLinear);
         this.keyType = keyType;
         this.outputElementType = outputElementType;
         this.weightType = weightType;
+        this.keyBound = keyBound;
+        this.appendOnly = appendOnly;
+    }
+
+    static String operation(CalciteObject node, @Nullable DBSPExpression keyBound,
+                            boolean appendOnly, boolean isLinear) {
+        if (appendOnly) {
+            if (isLinear || keyBound != null)
+                throw new InternalCompilerError("Unsupported append-only aggregate", node);
+            return "aggregate_append_only";
+        }
+        return (isLinear ? "aggregate_linear" : "aggregate") + (keyBound != null ? "_with_bound" : "");
     }
 
     @Override
@@ -62,7 +91,7 @@ public class DBSPIncrementalAggregateOperator extends DBSPAggregateOperatorBase
         DBSPType outputElementType = outputType.to(DBSPTypeIndexedZSet.class).elementType;
         return new DBSPIncrementalAggregateOperator(
                 this.getNode(), this.keyType, outputElementType, this.weightType,
-                expression, this.aggregate, this.input(), this.isLinear);
+                expression, this.aggregate, this.keyBound, this.appendOnly, this.input(), this.isLinear);
     }
 
     @Override
@@ -70,7 +99,7 @@ public class DBSPIncrementalAggregateOperator extends DBSPAggregateOperatorBase
         if (force || this.inputsDiffer(newInputs))
             return new DBSPIncrementalAggregateOperator(
                     this.getNode(), this.keyType, this.outputElementType, this.weightType,
-                    this.function, this.aggregate, newInputs.get(0), this.isLinear);
+                    this.function, this.aggregate, this.keyBound, this.appendOnly, newInputs.get(0), this.isLinear);
         return this;
     }
 }
@@ -28,9 +28,16 @@ import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
 
 import java.util.List;
 
+/**
+ * If the operator is append-only its input only contains insertions, and the
+ * distinct_append_only operator outputs each row the first time it appears.
+ */
 public class DBSPIncrementalDistinctOperator extends DBSPUnaryOperator {
-    public DBSPIncrementalDistinctOperator(CalciteObject node, DBSPOperator input) {
-        super(node, "distinct", null, input.outputType, false, input);
+    public final boolean appendOnly;
+
+    public DBSPIncrementalDistinctOperator(CalciteObject node, DBSPOperator input, boolean appendOnly) {
+        super(node, appendOnly ? "distinct_append_only" : "distinct", null, input.outputType, false, input);
+        this.appendOnly = appendOnly;
     }
 
     @Override
@@ -43,7 +50,7 @@ public class DBSPIncrementalDistinctOperator extends DBSPUnaryOperator {
     public DBSPOperator withInputs(List<DBSPOperator> newInputs, boolean force) {
         if (force || this.inputsDiffer(newInputs))
             return new DBSPIncrementalDistinctOperator(
-                    this.getNode(), newInputs.get(0));
+                    this.getNode(), newInputs.get(0), this.appendOnly);
         return this;
     }
 }
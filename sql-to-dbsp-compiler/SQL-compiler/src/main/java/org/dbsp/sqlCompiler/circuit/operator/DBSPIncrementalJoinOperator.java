@@ -34,20 +34,33 @@ import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * If the operator has a key bound, the keys of each input are never smaller
+ * than the bound computed from the largest key received so far by that input,
+ * and the join_with_bound operator discards the state of the smaller keys.
+ */
 public class DBSPIncrementalJoinOperator extends DBSPOperator {
     public final DBSPType elementResultType;
     public final DBSPType weightType;
+    /**
+     * If not null, a closure that maps a key of an input to a lower
+     * bound on all the keys received by that input after it.
+     */
+    @Nullable
+    public final DBSPExpression keyBound;
 
     public DBSPIncrementalJoinOperator(
             CalciteObject node, DBSPType elementResultType, DBSPType weightType,
-            DBSPExpression function, boolean isMultiset,
+            DBSPExpression function, @Nullable DBSPExpression keyBound, boolean isMultiset,
             DBSPOperator left, DBSPOperator right) {
-        super(node, "join", function, TypeCompiler.makeZSet(elementResultType, weightType), isMultiset);
+        super(node, keyBound != null ? "join_with_bound" : "join", function,
+                TypeCompiler.makeZSet(elementResultType, weightType), isMultiset);
         this.addInput(left);
         this.addInput(right);
         this.elementResultType = elementResultType;
         this.checkResultType(function, elementResultType);
         this.weightType = weightType;
+        this.keyBound = keyBound;
     }
 
     @Override
@@ -55,7 +68,7 @@ public class DBSPIncrementalJoinOperator extends DBSPOperator {
         DBSPTypeZSet zsetOutputType = outputType.to(DBSPTypeZSet.class);
         return new DBSPIncrementalJoinOperator(
                 this.getNode(), zsetOutputType.elementType, zsetOutputType.weightType,
-                Objects.requireNonNull(expression),
+                Objects.requireNonNull(expression), this.keyBound,
                 this.isMultiset, this.inputs.get(0), this.inputs.get(1));
     }
 
@@ -64,7 +77,7 @@ public class DBSPIncrementalJoinOperator extends DBSPOperator {
         if (force || this.inputsDiffer(newInputs))
             return new DBSPIncrementalJoinOperator(
                     this.getNode(), this.elementResultType, this.weightType,
-                    this.getFunction(), this.isMultiset, newInputs.get(0), newInputs.get(1));
+                    this.getFunction(), this.keyBound, this.isMultiset, newInputs.get(0), newInputs.get(1));
         return this;
     }
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.circuit.operator;
+
+import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeIndexedZSet;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeRawTuple;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Matches each value in each group of an IndexedZSet with the value
+ * that is 'offset' positions before it (lag) or after it (lead) in the
+ * natural order of the values, and outputs the value together with the
+ * projection of the matched value.
+ * The projection function receives None when there is no such value.
+ * This corresponds to the DBSP lag and lead operators.
+ * Like DBSPIndexedTopKOperator this operator is always incremental.
+ */
+public class DBSPIndexedLagOperator extends DBSPUnaryOperator {
+    /**
+     * Distance to the matched value.
+     */
+    public final long offset;
+    /**
+     * If true match with previous values, otherwise with subsequent values.
+     */
+    public final boolean lag;
+
+    static DBSPType outputType(DBSPOperator source, DBSPExpression projection) {
+        DBSPTypeIndexedZSet inputType = source.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPType projectedType = projection.to(DBSPClosureExpression.class).getResultType();
+        return new DBSPTypeIndexedZSet(source.getNode(), inputType.keyType,
+                new DBSPTypeRawTuple(inputType.elementType, projectedType),
+                inputType.weightType);
+    }
+
+    public DBSPIndexedLagOperator(CalciteObject node, long offset, boolean lag,
+                                  DBSPExpression projection, DBSPOperator source) {
+        super(node, lag ? "lag" : "lead", projection,
+                outputType(source, projection), source.isMultiset, source);
+        this.offset = offset;
+        this.lag = lag;
+    }
+
+    @Override
+    public void accept(CircuitVisitor visitor) {
+        if (visitor.preorder(this).stop()) return;
+        visitor.postorder(this);
+    }
+
+    @Override
+    public DBSPOperator withFunction(@Nullable DBSPExpression expression, DBSPType outputType) {
+        return new DBSPIndexedLagOperator(this.getNode(), this.offset, this.lag,
+                Objects.requireNonNull(expression), this.input());
+    }
+
+    @Override
+    public DBSPOperator withInputs(List<DBSPOperator> newInputs, boolean force) {
+        if (force || this.inputsDiffer(newInputs))
+            return new DBSPIndexedLagOperator(
+                    this.getNode(), this.offset, this.lag, this.getFunction(), newInputs.get(0));
+        return this;
+    }
+}
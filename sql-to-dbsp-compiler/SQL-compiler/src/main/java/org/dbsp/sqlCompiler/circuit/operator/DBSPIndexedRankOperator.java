@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.circuit.operator;
+
+import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeIndexedZSet;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeRawTuple;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Numbers the values in each group of an IndexedZSet.
+ * Each value is output together with its position, starting from 1,
+ * in the natural order of the values; the caller has to build values
+ * whose order matches the desired collation.
+ * This corresponds to the DBSP row_number, rank, and dense_rank operators.
+ * Like DBSPIndexedTopKOperator this operator is always incremental.
+ */
+public class DBSPIndexedRankOperator extends DBSPUnaryOperator {
+    public enum Kind {
+        ROW_NUMBER("row_number"),
+        RANK("rank"),
+        DENSE_RANK("dense_rank");
+
+        public final String operation;
+
+        Kind(String operation) {
+            this.operation = operation;
+        }
+    }
+
+    public final Kind kind;
+
+    static DBSPType outputType(DBSPOperator source) {
+        DBSPTypeIndexedZSet inputType = source.outputType.to(DBSPTypeIndexedZSet.class);
+        return new DBSPTypeIndexedZSet(source.getNode(), inputType.keyType,
+                new DBSPTypeRawTuple(inputType.elementType, DBSPTypeInteger.SIGNED_64),
+                inputType.weightType);
+    }
+
+    /**
+     * Create an operator that numbers the values in each group.
+     * @param peerKey  Function that computes the part of a value that determines
+     *                 its rank.  Values with the same peer key have the same rank.
+     *                 Must be null for ROW_NUMBER, which numbers all values differently.
+     */
+    public DBSPIndexedRankOperator(CalciteObject node, Kind kind,
+                                   @Nullable DBSPExpression peerKey, DBSPOperator source) {
+        super(node, kind.operation, peerKey, outputType(source), source.isMultiset, source);
+        this.kind = kind;
+    }
+
+    @Override
+    public void accept(CircuitVisitor visitor) {
+        if (visitor.preorder(this).stop()) return;
+        visitor.postorder(this);
+    }
+
+    @Override
+    public DBSPOperator withFunction(@Nullable DBSPExpression expression, DBSPType outputType) {
+        return new DBSPIndexedRankOperator(this.getNode(), this.kind, expression, this.input());
+    }
+
+    @Override
+    public DBSPOperator withInputs(List<DBSPOperator> newInputs, boolean force) {
+        if (force || this.inputsDiffer(newInputs))
+            return new DBSPIndexedRankOperator(
+                    this.getNode(), this.kind, this.function, newInputs.get(0));
+        return this;
+    }
+}
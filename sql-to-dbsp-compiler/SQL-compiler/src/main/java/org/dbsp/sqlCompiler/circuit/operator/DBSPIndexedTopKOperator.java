@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.circuit.operator;
+
+import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPUSizeLiteral;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Keeps only the first 'limit' values in each group of an IndexedZSet.
+ * Values are compared using their natural order; the caller has to
+ * build values whose order matches the desired collation.
+ * This corresponds to the DBSP topk_asc and topk_desc operators.
+ * Like DBSPWindowAggregateOperator this operator is always incremental:
+ * it consumes changes and produces changes, so the non-incremental
+ * version has to be wrapped in a differential and an integral.
+ */
+public class DBSPIndexedTopKOperator extends DBSPUnaryOperator {
+    /**
+     * Number of values to keep in each group.
+     */
+    public final long limit;
+    /**
+     * If true keep the smallest values, otherwise the largest ones.
+     */
+    public final boolean ascending;
+
+    public DBSPIndexedTopKOperator(CalciteObject node, long limit, boolean ascending, DBSPOperator source) {
+        super(node, ascending ? "topk_asc" : "topk_desc",
+                new DBSPUSizeLiteral(limit), source.outputType, source.isMultiset, source);
+        this.limit = limit;
+        this.ascending = ascending;
+    }
+
+    @Override
+    public void accept(CircuitVisitor visitor) {
+        if (visitor.preorder(this).stop()) return;
+        visitor.postorder(this);
+    }
+
+    @Override
+    public DBSPOperator withFunction(@Nullable DBSPExpression expression, DBSPType outputType) {
+        // The function is just the constant limit.
+        return this;
+    }
+
+    @Override
+    public DBSPOperator withInputs(List<DBSPOperator> newInputs, boolean force) {
+        if (force || this.inputsDiffer(newInputs))
+            return new DBSPIndexedTopKOperator(
+                    this.getNode(), this.limit, this.ascending, newInputs.get(0));
+        return this;
+    }
+}
@@ -33,8 +33,22 @@ import javax.annotation.Nullable;
 import java.util.List;
 
 public class DBSPSourceOperator extends DBSPOperator {
-    public DBSPSourceOperator(CalciteObject node, DBSPType outputType, @Nullable String comment, String name) {
+    /**
+     * Indexes of the fields that form the primary key of the table;
+     * empty if the table has no primary key.
+     * A source with a primary key never contains two rows with the same key,
+     * so its output is a set.
+     */
+    public final List<Integer> primaryKey;
+
+    public DBSPSourceOperator(CalciteObject node, DBSPType outputType, @Nullable String comment, String name,
+                              List<Integer> primaryKey) {
         super(node, "", null, outputType, false, comment, name);
+        this.primaryKey = primaryKey;
+    }
+
+    public boolean hasPrimaryKey() {
+        return !this.primaryKey.isEmpty();
     }
 
     @Override
@@ -45,14 +59,14 @@ public class DBSPSourceOperator extends DBSPOperator {
 
     @Override
     public DBSPOperator withFunction(@Nullable DBSPExpression unused, DBSPType outputType) {
-        return new DBSPSourceOperator(this.getNode(), outputType, this.comment, this.outputName);
+        return new DBSPSourceOperator(this.getNode(), outputType, this.comment, this.outputName, this.primaryKey);
     }
 
     @Override
     public DBSPOperator withInputs(List<DBSPOperator> newInputs, boolean force) {
         if (force || this.inputsDiffer(newInputs))
             return new DBSPSourceOperator(
-                    this.getNode(), this.outputType, this.comment, this.outputName);
+                    this.getNode(), this.outputType, this.comment, this.outputName, this.primaryKey);
         return this;
     }
 
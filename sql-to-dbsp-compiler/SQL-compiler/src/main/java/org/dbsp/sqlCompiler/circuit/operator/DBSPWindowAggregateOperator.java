@@ -36,7 +36,9 @@ import java.util.List;
 /**
  * This operator does not correspond to any standard DBSP operator currently.
  * It is implemented as a sequence of 2 DBSP operators: partitioned_rolling_aggregate and
- * map_index.
+ * map_index.  If the operator has a lateness, the input is first indexed
+ * by timestamp, and the partitioned_rolling_aggregate_with_watermark operator
+ * uses the watermark of the input to discard old state.
  */
 public class DBSPWindowAggregateOperator extends DBSPAggregateOperatorBase {
     public final DBSPType partitionKeyType;
@@ -44,11 +46,17 @@ public class DBSPWindowAggregateOperator extends DBSPAggregateOperatorBase {
     public final DBSPType aggregateType;
     public final DBSPType weightType;
     public final DBSPExpression window;
+    /**
+     * If not null, the timestamps in the input are never smaller than the
+     * largest timestamp received so far minus this value.
+     */
+    @Nullable
+    public final DBSPExpression lateness;
 
     public DBSPWindowAggregateOperator(
             CalciteObject node,
             @Nullable DBSPExpression function, @Nullable DBSPAggregate aggregate,
-            DBSPExpression window,
+            DBSPExpression window, @Nullable DBSPExpression lateness,
             DBSPType partitionKeyType, DBSPType timestampType, DBSPType aggregateType, DBSPType weightType,
             DBSPOperator input) {
         super(node, "window_aggregate",
@@ -57,6 +65,7 @@ public class DBSPWindowAggregateOperator extends DBSPAggregateOperatorBase {
                 function, aggregate,
                 true, input, false);
         this.window = window;
+        this.lateness = lateness;
         this.partitionKeyType = partitionKeyType;
         this.timestampType = timestampType;
         this.aggregateType = aggregateType;
@@ -70,7 +79,7 @@ public class DBSPWindowAggregateOperator extends DBSPAggregateOperatorBase {
         if (outputTuple.tupFields.length != 2)
             throw new InternalCompilerError("Expected two fields in output element type " + outputTuple, this);
         return new DBSPWindowAggregateOperator(
-                this.getNode(), expression, this.aggregate, this.window,
+                this.getNode(), expression, this.aggregate, this.window, this.lateness,
                 outputTuple.tupFields[0], outputTuple.tupFields[1],
                 ixOutputType.elementType, ixOutputType.weightType,
                 this.input());
@@ -80,7 +89,7 @@ public class DBSPWindowAggregateOperator extends DBSPAggregateOperatorBase {
     public DBSPOperator withInputs(List<DBSPOperator> newInputs, boolean force) {
         if (force || this.inputsDiffer(newInputs))
             return new DBSPWindowAggregateOperator(
-                    this.getNode(), this.function, this.aggregate, this.window,
+                    this.getNode(), this.function, this.aggregate, this.window, this.lateness,
                     this.partitionKeyType, this.timestampType, this.aggregateType, this.weightType,
                     newInputs.get(0));
         return this;
@@ -57,12 +57,25 @@ public class CompilerOptions {
         public boolean throwOnError = false;
         @Parameter(names = "-alltables", description = "Generate an input for each CREATE TABLE, even if the table is not used by any view")
         public boolean generateInputForEveryTable = false;
+        @Parameter(names = "-threads", description = "Number of threads used to compile independent views concurrently")
+        public int threads = 1;
+        @Parameter(names = "-appendOnly", description = "Assume that rows are never deleted from tables")
+        public boolean appendOnly = false;
+        /**
+         * If positive, the rows of each group are split among this many partitions,
+         * which are aggregated separately before combining the partial results.
+         */
+        @Parameter(names = "-partialAggregates",
+                description = "Pre-aggregate each group in this many partitions, so that large groups are spread across workers (0 to disable)")
+        public int partialAggregates = 0;
 
         /**
          * Only compare fields that matter.
          */
         public boolean same(Optimizer optimizer) {
-            return incrementalize == optimizer.incrementalize;
+            return incrementalize == optimizer.incrementalize &&
+                    appendOnly == optimizer.appendOnly &&
+                    partialAggregates == optimizer.partialAggregates;
         }
 
         @Override
@@ -72,6 +85,9 @@ public class CompilerOptions {
                     ", optimizationLevel=" + optimizationLevel +
                     ", throwOnError=" + throwOnError +
                     ", generateInputForEveryTable=" + generateInputForEveryTable +
+                    ", threads=" + threads +
+                    ", appendOnly=" + appendOnly +
+                    ", partialAggregates=" + partialAggregates +
                     '}';
         }
     }
@@ -98,7 +114,11 @@ public class CompilerOptions {
         @Parameter(names = "-js", description = "Emit a JSON file containing the schema of all views and tables involved")
         @Nullable
         public String emitJsonSchema = null;
-        @Parameter(description = "Input file to compile", required = true)
+        @Parameter(names = "-server", description = "Run as a compilation server: read JSON requests from stdin and write JSON responses to stdout")
+        public boolean server = false;
+        @Parameter(names = "-split", description = "Generate the code of each view in a separate Rust module with its own function, so rustc can compile the views in parallel")
+        public boolean splitCircuit = false;
+        @Parameter(description = "Input file to compile")
         @Nullable
         public String inputFile = null;
         @Parameter(names = "-f", description = "Name of function to generate")
@@ -128,6 +148,8 @@ public class CompilerOptions {
                     ", emitPng=" + emitPng +
                     ", emitJsonErrors=" + emitJsonErrors +
                     ", emitJsonSchema='" + emitJsonSchema + '\'' +
+                    ", server=" + server +
+                    ", splitCircuit=" + splitCircuit +
                     ", inputFile='" + inputFile + '\'' +
                     ", functionName='" + functionName + '\'' +
                     ", lexicalRules=" + lexicalRules +
@@ -43,6 +43,9 @@ import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.frontend.TypeCompiler;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitOptimizer;
 import org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler.CalciteCompiler;
+import org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler.ViewCache;
+import org.dbsp.sqlCompiler.compiler.frontend.statements.CreateTableStatement;
+import org.dbsp.sqlCompiler.compiler.frontend.statements.CreateViewStatement;
 import org.dbsp.sqlCompiler.compiler.frontend.statements.FrontEndStatement;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteToDBSPCompiler;
 import org.dbsp.sqlCompiler.compiler.frontend.TableContents;
@@ -51,6 +54,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeWeight;
 import org.dbsp.util.IWritesLogs;
+import org.dbsp.util.IdGen;
 import org.dbsp.util.Logger;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
 
@@ -58,6 +62,9 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * This class compiles SQL statements into DBSP circuits.
@@ -114,6 +121,12 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
     public final @Nullable ObjectNode ios;
     public final TypeCompiler typeCompiler;
     public boolean hasWarnings;
+    /**
+     * Generates the ids and names of all nodes created by this compiler.
+     * Each public entry point makes it current for the calling thread,
+     * so several compilers can run concurrently in the same JVM.
+     */
+    public final IdGen idGen;
 
     /**
      * Circuit produced by the compiler.
@@ -121,33 +134,36 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
     public @Nullable DBSPCircuit circuit;
 
     public DBSPCompiler(CompilerOptions options) {
-        this.options = options;
-        this.mapper = new ObjectMapper();
-        this.frontend = new CalciteCompiler(options);
-        this.midend = new CalciteToDBSPCompiler(true, options, this);
-        this.messages = new CompilerMessages(this);
-        this.sources = new SourceFileContents();
-        this.circuit = null;
-        this.typeCompiler = new TypeCompiler(this);
-
-        if (options.ioOptions.emitJsonSchema != null) {
-            this.inputs = this.mapper.createArrayNode();
-            this.outputs = this.mapper.createArrayNode();
-            this.ios = this.mapper.createObjectNode();
-            this.ios.set("inputs", this.inputs);
-            this.ios.set("outputs", this.outputs);
-        } else {
-            this.inputs = null;
-            this.outputs = null;
-            this.ios = null;
-        }
-        if (options.ioOptions.jit) {
-            // The JIT has hardwired I32 for the weight type.
-            this.weightTypeImplementation = DBSPTypeInteger.SIGNED_32;
-        } else {
-            this.weightTypeImplementation = DBSPTypeInteger.SIGNED_64;
+        this.idGen = new IdGen();
+        try (IdGen.Scope ignored = this.idGen.enter()) {
+            this.options = options;
+            this.mapper = new ObjectMapper();
+            this.frontend = new CalciteCompiler(options);
+            this.midend = new CalciteToDBSPCompiler(true, options, this);
+            this.messages = new CompilerMessages(this);
+            this.sources = new SourceFileContents();
+            this.circuit = null;
+            this.typeCompiler = new TypeCompiler(this);
+
+            if (options.ioOptions.emitJsonSchema != null) {
+                this.inputs = this.mapper.createArrayNode();
+                this.outputs = this.mapper.createArrayNode();
+                this.ios = this.mapper.createObjectNode();
+                this.ios.set("inputs", this.inputs);
+                this.ios.set("outputs", this.outputs);
+            } else {
+                this.inputs = null;
+                this.outputs = null;
+                this.ios = null;
+            }
+            if (options.ioOptions.jit) {
+                // The JIT has hardwired I32 for the weight type.
+                this.weightTypeImplementation = DBSPTypeInteger.SIGNED_32;
+            } else {
+                this.weightTypeImplementation = DBSPTypeInteger.SIGNED_64;
+            }
+            this.weightVar = DBSPTypeWeight.INSTANCE.var("w");
         }
-        this.weightVar = DBSPTypeWeight.INSTANCE.var("w");
     }
 
     /**
@@ -185,6 +201,15 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
         this.messages.reportError(range, warning, errorType, message);
     }
 
+    /**
+     * Reuse the Calcite plans of views found in the cache, and
+     * add the plans of newly compiled views to the cache.
+     * @param cache  Cache shared by several compilations; if null, views are not cached.
+     */
+    public void setViewCache(@Nullable ViewCache cache) {
+        this.frontend.setViewCache(cache);
+    }
+
     /**
      * @param generate
      * If 'false' the next "create view" statements will not generate
@@ -203,6 +228,29 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
     }
 
     private void compileInternal(String statements, boolean many, @Nullable String comment) {
+        try (IdGen.Scope ignored = this.idGen.enter()) {
+            this.compileInScope(statements, many, comment);
+        }
+    }
+
+    /**
+     * Wait for a statement compiled on another thread.
+     * Rethrows the exception that occurred during compilation, if any.
+     */
+    static FrontEndStatement getResult(CompletableFuture<FrontEndStatement> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw ex;
+        }
+    }
+
+    private void compileInScope(String statements, boolean many, @Nullable String comment) {
         if (this.inputSources != InputSource.File) {
             // If we read from file we already have read the entire data.
             // Otherwise, we append the statements to the sources.
@@ -214,17 +262,34 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
                 if (statements.isEmpty())
                     return;
                 SqlNodeList nodes = this.frontend.parseStatements(statements);
-                for (SqlNode node : nodes) {
-                    FrontEndStatement fe = this.frontend.compile(
-                            node.toString(), node, null, this.inputs, this.outputs);
-                    this.midend.compile(fe);
+                List<CompletableFuture<FrontEndStatement>> compiled = null;
+                if (this.options.optimizerOptions.threads > 1)
+                    compiled = this.frontend.compileConcurrently(
+                            nodes, this.options.optimizerOptions.threads, this.idGen);
+                if (compiled == null) {
+                    for (SqlNode node : nodes) {
+                        FrontEndStatement fe = this.frontend.compile(
+                                node.toString(), node, null, this.inputs, this.outputs);
+                        this.midend.compile(fe);
+                    }
+                } else {
+                    // The midend is invoked in program order, so the result
+                    // does not depend on the order in which views are compiled.
+                    for (CompletableFuture<FrontEndStatement> future : compiled) {
+                        FrontEndStatement fe = getResult(future);
+                        if (fe.is(CreateTableStatement.class) && this.inputs != null)
+                            this.inputs.add(fe.to(CreateTableStatement.class).getDefinedObjectSchema());
+                        else if (fe.is(CreateViewStatement.class) && this.outputs != null)
+                            this.outputs.add(fe.to(CreateViewStatement.class).getDefinedObjectSchema());
+                        this.midend.compile(fe);
+                    }
                 }
             } else {
                 SqlNode node = this.frontend.parse(statements);
                 Logger.INSTANCE.belowLevel(this, 2)
                         .append("Parsing result")
                         .newline()
-                        .append(node.toString())
+                        .appendSupplier(node::toString)
                         .newline();
                 FrontEndStatement fe = this.frontend.compile(
                         statements, node, comment, this.inputs, this.outputs);
@@ -268,11 +333,13 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
     }
 
     public void optimize() {
-        if (this.circuit == null) {
-            this.circuit = this.getFinalCircuit("tmp");
+        try (IdGen.Scope ignored = this.idGen.enter()) {
+            if (this.circuit == null) {
+                this.circuit = this.getFinalCircuit("tmp");
+            }
+            CircuitOptimizer optimizer = new CircuitOptimizer(this);
+            this.circuit = optimizer.optimize(circuit);
         }
-        CircuitOptimizer optimizer = new CircuitOptimizer(this);
-        this.circuit = optimizer.optimize(circuit);
     }
 
     public void compileStatement(String statement) {
@@ -307,13 +374,15 @@ public class DBSPCompiler implements IWritesLogs, ICompilerComponent, IErrorRepo
      * @param name  Name to use for the produced circuit.
      */
     public DBSPCircuit getFinalCircuit(String name) {
-        if (this.circuit == null) {
-            DBSPPartialCircuit circuit = this.midend.getFinalCircuit();
-            this.circuit = circuit.seal(name);
+        try (IdGen.Scope ignored = this.idGen.enter()) {
+            if (this.circuit == null) {
+                DBSPPartialCircuit circuit = this.midend.getFinalCircuit();
+                this.circuit = circuit.seal(name);
+            }
+            DBSPCircuit result = this.circuit.rename(name);
+            this.circuit = null;
+            return result;
         }
-        DBSPCircuit result = this.circuit.rename(name);
-        this.circuit = null;
-        return result;
     }
 
     /**
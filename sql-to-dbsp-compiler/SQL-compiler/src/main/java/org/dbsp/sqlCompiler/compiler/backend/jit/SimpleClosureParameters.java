@@ -147,11 +147,11 @@ public class SimpleClosureParameters
             Logger.INSTANCE.belowLevel(this, 2)
                     .append("SimpleClosureParameters replaces")
                     .newline()
-                    .append(closure.toString())
+                    .appendSupplier(closure::toString)
                     .newline()
                     .append("with")
                     .newline()
-                    .append(result.toString());
+                    .appendSupplier(result::toString);
         return result;
     }
 
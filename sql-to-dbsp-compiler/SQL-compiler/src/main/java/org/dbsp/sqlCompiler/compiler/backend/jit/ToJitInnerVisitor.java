@@ -279,9 +279,9 @@ public class ToJitInnerVisitor extends InnerVisitor implements IWritesLogs {
     void map(DBSPExpression expression, JITInstructionPair pair) {
         Logger.INSTANCE.belowLevel(this, 2)
                 .append("Compiled ")
-                .append(expression.toString())
+                .appendSupplier(expression::toString)
                 .append(" to ")
-                .append(pair.toString())
+                .appendSupplier(pair::toString)
                 .newline();
         Utilities.putNew(this.expressionToValues, expression, pair);
     }
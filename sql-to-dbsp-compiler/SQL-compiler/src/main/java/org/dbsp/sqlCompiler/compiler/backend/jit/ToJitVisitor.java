@@ -111,7 +111,7 @@ public class ToJitVisitor extends CircuitVisitor implements IWritesLogs {
         Logger.INSTANCE.belowLevel(this, 4)
                 .append("Canonicalizing")
                 .newline()
-                .append(function.toString())
+                .appendSupplier(function::toString)
                 .newline();
 
         IRTransform normalizer = this.normalizer(simpleParameters);
@@ -121,7 +121,7 @@ public class ToJitVisitor extends CircuitVisitor implements IWritesLogs {
         Logger.INSTANCE.belowLevel(this, 4)
                 .append("Converting function to JIT")
                 .newline()
-                .append(function.toString())
+                .appendSupplier(function::toString)
                 .newline();
         DBSPType resultType = function.getResultType();
         JITParameterMapping mapping = new JITParameterMapping(this.getTypeCatalog());
@@ -481,6 +481,12 @@ public class ToJitVisitor extends CircuitVisitor implements IWritesLogs {
     }
 
     public static JITProgram circuitToJIT(DBSPCompiler compiler, DBSPCircuit circuit) {
+        try (IdGen.Scope ignored = compiler.idGen.enter()) {
+            return convertCircuit(compiler, circuit);
+        }
+    }
+
+    static JITProgram convertCircuit(DBSPCompiler compiler, DBSPCircuit circuit) {
         Passes rewriter = new Passes(compiler);
         rewriter.add(new BlockClosures(compiler));
         rewriter.add(new ResolveWeightType(compiler, compiler.getWeightTypeImplementation()).circuitRewriter());
@@ -0,0 +1,22 @@
+package org.dbsp.sqlCompiler.compiler.backend.rust;
+
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.DeadCode;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.FanoutVisitor;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.Passes;
+
+/**
+ * Fuses chains of maps, filters, and index operators into single operators.
+ * This is only applied when generating Rust: the JIT has no operator
+ * that can express a fused chain.
+ */
+public class FuseOperators extends Passes {
+    public FuseOperators(IErrorReporter reporter) {
+        super(reporter);
+        FanoutVisitor fanout = new FanoutVisitor(reporter);
+        this.add(fanout);
+        // An operator with multiple consumers would be computed multiple times
+        this.add(new FuseOperatorsVisitor(reporter, op -> fanout.getFanout(op) == 1));
+        this.add(new DeadCode(reporter, false));
+    }
+}
@@ -0,0 +1,276 @@
+package org.dbsp.sqlCompiler.compiler.backend.rust;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFilterOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFlatMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.sqlCompiler.compiler.frontend.CollectIdentifiers;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.BetaReduction;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerPasses;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.Simplify;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitCloneVisitor;
+import org.dbsp.sqlCompiler.ir.expression.DBSPApplyMethodExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBinaryExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBlockExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPIfExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPOpcode;
+import org.dbsp.sqlCompiler.ir.expression.DBSPPathExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPSomeExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
+import org.dbsp.sqlCompiler.ir.path.DBSPPath;
+import org.dbsp.sqlCompiler.ir.statement.DBSPLetStatement;
+import org.dbsp.sqlCompiler.ir.statement.DBSPStatement;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeAny;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeZSet;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBool;
+import org.dbsp.util.FreshName;
+import org.dbsp.util.Linq;
+import org.dbsp.util.Utilities;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * You probably don't want to use this visitor directly, consider using
+ * FuseOperators, which also removes the operators that become dead.
+ * Fuses chains of maps and filters, optionally followed by an index,
+ * into a single operator, so that each batch is traversed only once.
+ * - A chain of filters becomes a filter with the conjunction of the conditions.
+ * - A chain of maps becomes a map; a chain of maps followed by an index becomes an index.
+ * - A chain containing both maps and filters becomes a flat_map
+ *   (or a flat_map_index, if it ends in an index) whose function returns an Option.
+ * - A chain may contain one flat_map, preceded only by maps; the maps and filters
+ *   that follow it are applied to the iterator returned by its function.
+ * The intermediate values of the chain are bound to variables, so no
+ * computation is duplicated.
+ * An operator can only be fused with its consumer if it has no other consumers.
+ */
+public class FuseOperatorsVisitor extends CircuitCloneVisitor {
+    /**
+     * If this function returns 'true' the operator can be fused with its consumer.
+     */
+    protected final Function<DBSPOperator, Boolean> canFuse;
+
+    public FuseOperatorsVisitor(IErrorReporter reporter, Function<DBSPOperator, Boolean> canFuse) {
+        super(reporter, false);
+        this.canFuse = canFuse;
+    }
+
+    /**
+     * True if the operator is a map or filter that can be part of a chain.
+     */
+    static boolean isFusable(DBSPOperator operator) {
+        if (!operator.is(DBSPMapOperator.class) && !operator.is(DBSPFilterOperator.class))
+            return false;
+        return operator.inputs.get(0).getType().is(DBSPTypeZSet.class);
+    }
+
+    /**
+     * True if the operator is a flat_map that can be part of a chain.
+     */
+    static boolean isFusableFlatMap(DBSPOperator operator) {
+        if (!operator.is(DBSPFlatMapOperator.class))
+            return false;
+        return operator.getFunction().is(DBSPClosureExpression.class) &&
+                operator.inputs.get(0).getType().is(DBSPTypeZSet.class);
+    }
+
+    /**
+     * Find the chain of operators in the original circuit that can be fused with 'operator'.
+     * @return The chain, starting with its first operator and ending with 'operator'.
+     */
+    List<DBSPOperator> getChain(DBSPOperator operator) {
+        List<DBSPOperator> chain = new ArrayList<>();
+        chain.add(operator);
+        boolean flatMap = operator.is(DBSPFlatMapOperator.class);
+        DBSPOperator source = operator.inputs.get(0);
+        while (!flatMap && isFusable(source) && this.canFuse.apply(source)) {
+            chain.add(0, source);
+            source = source.inputs.get(0);
+        }
+        if (!flatMap && isFusableFlatMap(source) && this.canFuse.apply(source)) {
+            chain.add(0, source);
+            source = source.inputs.get(0);
+            flatMap = true;
+        }
+        // Only maps can precede a flat_map
+        while (flatMap && source.is(DBSPMapOperator.class) && isFusable(source) && this.canFuse.apply(source)) {
+            chain.add(0, source);
+            source = source.inputs.get(0);
+        }
+        return chain;
+    }
+
+    DBSPExpression reduce(DBSPExpression expression) {
+        InnerPasses passes = new InnerPasses(
+                new BetaReduction(this.errorReporter),
+                new Simplify(this.errorReporter));
+        return passes.apply(expression).to(DBSPExpression.class);
+    }
+
+    /**
+     * Generate the body of the function of a fused chain.
+     * @param chain     Operators to fuse.
+     * @param index     Index of the first operator in the chain to generate.
+     * @param current   Expression holding the current row.
+     * @param fresh     Generator for the names of the intermediate rows.
+     * @param optional  If true the result is wrapped in an Option.
+     */
+    DBSPExpression generate(CalciteObject node, List<DBSPOperator> chain, int index,
+                            DBSPExpression current, FreshName fresh, boolean optional) {
+        if (index == chain.size())
+            return optional ? new DBSPSomeExpression(node, current) : current;
+        DBSPOperator operator = chain.get(index);
+        DBSPExpression applied = this.reduce(
+                operator.getFunction().to(DBSPClosureExpression.class).call(current));
+        if (operator.is(DBSPFilterOperator.class)) {
+            DBSPExpression rest = this.generate(node, chain, index + 1, current, fresh, optional);
+            DBSPExpression none = new DBSPPathExpression(rest.getType(), new DBSPPath("None"));
+            return new DBSPIfExpression(node, applied, rest, none);
+        } else if (operator.is(DBSPIndexOperator.class) || operator.is(DBSPFlatMapOperator.class)) {
+            // Always the last one
+            return optional ? new DBSPSomeExpression(node, applied) : applied;
+        } else {
+            DBSPVariablePath row = new DBSPVariablePath(fresh.freshName("row"), applied.getType());
+            List<DBSPStatement> statements = new ArrayList<>();
+            statements.add(new DBSPLetStatement(row.variable, applied));
+            DBSPExpression rest = this.generate(node, chain, index + 1, row, fresh, optional);
+            return new DBSPBlockExpression(statements, rest);
+        }
+    }
+
+    /**
+     * Fuse a chain of filters into a single filter.
+     */
+    DBSPOperator fuseFilters(List<DBSPOperator> chain, DBSPOperator input) {
+        DBSPOperator last = Utilities.last(chain);
+        DBSPClosureExpression first = chain.get(0).getFunction().to(DBSPClosureExpression.class);
+        DBSPVariablePath row = first.parameters[0].asVariableReference();
+        DBSPExpression condition = first.body;
+        for (int i = 1; i < chain.size(); i++) {
+            DBSPExpression next = this.reduce(chain.get(i).getFunction().to(DBSPClosureExpression.class).call(row));
+            condition = new DBSPBinaryExpression(last.getNode(), DBSPTypeBool.INSTANCE, DBSPOpcode.AND, condition, next);
+        }
+        return new DBSPFilterOperator(last.getNode(), condition.closure(first.parameters), input);
+    }
+
+    /**
+     * Apply 'method' to the value of 'expression'.  If the expression is a block,
+     * the method is applied to its last expression, since Rust does not allow
+     * a block at the start of a statement to be followed by a method call.
+     */
+    static DBSPExpression applyToValue(CalciteObject node, DBSPExpression expression,
+                                       String method, DBSPExpression argument) {
+        DBSPBlockExpression block = expression.as(DBSPBlockExpression.class);
+        if (block != null && block.lastExpression != null)
+            return new DBSPBlockExpression(block.contents,
+                    applyToValue(node, block.lastExpression, method, argument));
+        return new DBSPApplyMethodExpression(node, method, DBSPTypeAny.INSTANCE, expression, argument);
+    }
+
+    /**
+     * Fuse a chain that contains a flat_map.
+     * The maps that precede the flat_map are applied to the row before calling
+     * its function, and the operators that follow it are applied to each element
+     * produced by the returned iterator:
+     * flat_map(|x| { let row = f(x); g(row).map(move |e| h(e)) }),
+     * or .flat_map(...) if the operators that follow contain filters.
+     */
+    DBSPOperator fuseFlatMap(List<DBSPOperator> chain, int flatMapIndex,
+                             DBSPOperator input, FreshName fresh) {
+        DBSPOperator last = Utilities.last(chain);
+        CalciteObject node = last.getNode();
+        DBSPClosureExpression first = chain.get(0).getFunction().to(DBSPClosureExpression.class);
+        DBSPExpression body = this.generate(node, chain.subList(0, flatMapIndex + 1), 0,
+                first.parameters[0].asVariableReference(), fresh, false);
+        List<DBSPOperator> rest = chain.subList(flatMapIndex + 1, chain.size());
+        if (!rest.isEmpty()) {
+            DBSPOperator flatMap = chain.get(flatMapIndex);
+            DBSPVariablePath element = new DBSPVariablePath(fresh.freshName("e"),
+                    flatMap.getType().to(DBSPTypeZSet.class).elementType);
+            boolean optional = Linq.any(rest, o -> o.is(DBSPFilterOperator.class));
+            DBSPExpression each = this.generate(node, rest, 0, element, fresh, optional);
+            body = applyToValue(node, body, optional ? "flat_map" : "map",
+                    each.closure(element.asParameter()));
+        }
+        return new DBSPFlatMapOperator(node, body.closure(first.parameters), last.outputType, input);
+    }
+
+    DBSPOperator fuse(List<DBSPOperator> chain) {
+        DBSPOperator last = Utilities.last(chain);
+        CalciteObject node = last.getNode();
+        DBSPOperator input = this.mapped(chain.get(0).inputs.get(0));
+        if (Linq.all(chain, o -> o.is(DBSPFilterOperator.class)))
+            return this.fuseFilters(chain, input);
+
+        Set<String> used = new HashSet<>();
+        CollectIdentifiers collector = new CollectIdentifiers(this.errorReporter, used);
+        for (DBSPOperator operator: chain)
+            collector.apply(operator.getFunction());
+        FreshName fresh = new FreshName(used);
+        for (int i = 0; i < chain.size(); i++)
+            if (chain.get(i).is(DBSPFlatMapOperator.class))
+                return this.fuseFlatMap(chain, i, input, fresh);
+        DBSPClosureExpression first = chain.get(0).getFunction().to(DBSPClosureExpression.class);
+        boolean optional = Linq.any(chain, o -> o.is(DBSPFilterOperator.class));
+        DBSPExpression body = this.generate(node, chain, 0,
+                first.parameters[0].asVariableReference(), fresh, optional);
+        DBSPClosureExpression function = body.closure(first.parameters);
+        if (optional)
+            return new DBSPFlatMapOperator(node, function, last.outputType, input);
+        if (last.is(DBSPIndexOperator.class)) {
+            DBSPIndexOperator index = last.to(DBSPIndexOperator.class);
+            return new DBSPIndexOperator(node, function, index.keyType, index.elementType,
+                    index.weightType, index.isMultiset, input);
+        }
+        DBSPMapOperator map = last.to(DBSPMapOperator.class);
+        return new DBSPMapOperator(node, function, map.outputElementType, map.weightType, input);
+    }
+
+    void fuseChain(DBSPOperator operator) {
+        List<DBSPOperator> chain = this.getChain(operator);
+        if (chain.size() < 2) {
+            this.replace(operator);
+            return;
+        }
+        DBSPOperator result = this.fuse(chain);
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPMapOperator operator) {
+        if (isFusable(operator))
+            this.fuseChain(operator);
+        else
+            super.postorder(operator);
+    }
+
+    @Override
+    public void postorder(DBSPFilterOperator operator) {
+        if (isFusable(operator))
+            this.fuseChain(operator);
+        else
+            super.postorder(operator);
+    }
+
+    @Override
+    public void postorder(DBSPIndexOperator operator) {
+        this.fuseChain(operator);
+    }
+
+    @Override
+    public void postorder(DBSPFlatMapOperator operator) {
+        if (isFusableFlatMap(operator))
+            this.fuseChain(operator);
+        else
+            super.postorder(operator);
+    }
+}
@@ -2,6 +2,7 @@ package org.dbsp.sqlCompiler.compiler.backend.rust;
 
 import org.dbsp.sqlCompiler.circuit.operator.*;
 import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.BetaReduction;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitCloneVisitor;
 import org.dbsp.sqlCompiler.ir.DBSPAggregate;
 import org.dbsp.sqlCompiler.ir.expression.*;
@@ -104,6 +105,27 @@ public class LowerCircuitVisitor extends CircuitCloneVisitor {
         }
     }
 
+    /**
+     * Post-process the output of a linear aggregate operator.
+     * @param node        Original aggregate operator.
+     * @param keyType     Type of the group keys.
+     * @param sums        Lowered linear aggregate, producing the sums of the linear functions.
+     * @param outputType  Type of the aggregate value produced by the original operator.
+     */
+    DBSPOperator linearPostprocess(DBSPAggregateOperatorBase node, DBSPType keyType,
+                                   DBSPOperator sums, DBSPType outputType) {
+        DBSPType accumulatorType = sums.outputType.to(DBSPTypeIndexedZSet.class).elementType;
+        DBSPClosureExpression post = node.getAggregate().getLinearPostprocessing(
+                this.errorReporter, accumulatorType);
+        DBSPVariablePath kv = new DBSPTypeRawTuple(keyType.ref(), accumulatorType.ref()).var("kv");
+        BetaReduction reducer = new BetaReduction(this.errorReporter);
+        DBSPExpression value = reducer.apply(post.call(kv.field(1))).to(DBSPExpression.class);
+        DBSPExpression function = new DBSPRawTupleExpression(kv.field(0).deref().applyClone(), value)
+                .closure(kv.asParameter());
+        return new DBSPMapIndexOperator(node.getNode(), function,
+                keyType, outputType, DBSPTypeWeight.INSTANCE, sums);
+    }
+
     @Override
     public void postorder(DBSPAggregateOperator node) {
         if (node.function != null) {
@@ -112,15 +134,18 @@ public class LowerCircuitVisitor extends CircuitCloneVisitor {
             return;
         }
 
-        DBSPExpression function;
         if (node.isLinear) {
-            function = node.getAggregate().combineLinear();
-        } else {
-            DBSPAggregate.Implementation impl = node.getAggregate().combine(this.errorReporter);
-            function = impl.asFold();
+            DBSPClosureExpression function = node.getAggregate().combineLinear();
+            DBSPOperator sums = new DBSPAggregateOperator(node.getNode(), node.keyType,
+                    function.getResultType(), node.weightType, function, null, this.mapped(node.input()), true);
+            this.addOperator(sums);
+            this.map(node, this.linearPostprocess(node, node.keyType, sums, node.outputElementType));
+            return;
         }
+        DBSPAggregate.Implementation impl = node.getAggregate().combine(this.errorReporter);
+        DBSPExpression function = impl.asFold();
         DBSPOperator result = new DBSPAggregateOperator(node.getNode(), node.keyType, node.outputElementType,
-                node.weightType, function, null, this.mapped(node.input()), node.isLinear);
+                node.weightType, function, null, this.mapped(node.input()), false);
         this.map(node, result);
     }
 
@@ -131,15 +156,20 @@ public class LowerCircuitVisitor extends CircuitCloneVisitor {
             super.postorder(node);
             return;
         }
-        DBSPExpression function;
         if (node.isLinear) {
-            function = node.getAggregate().combineLinear();
-        } else {
-            DBSPAggregate.Implementation impl = node.getAggregate().combine(this.errorReporter);
-            function = impl.asFold();
+            DBSPClosureExpression function = node.getAggregate().combineLinear();
+            DBSPOperator sums = new DBSPIncrementalAggregateOperator(node.getNode(), node.keyType,
+                    function.getResultType(), DBSPTypeWeight.INSTANCE, function, null, node.keyBound,
+                    false, this.mapped(node.input()), true);
+            this.addOperator(sums);
+            this.map(node, this.linearPostprocess(node, node.keyType, sums, node.outputElementType));
+            return;
         }
+        DBSPAggregate.Implementation impl = node.getAggregate().combine(this.errorReporter);
+        DBSPExpression function = impl.asFold();
         DBSPOperator result = new DBSPIncrementalAggregateOperator(node.getNode(), node.keyType, node.outputElementType,
-                DBSPTypeWeight.INSTANCE, function, null, this.mapped(node.input()), node.isLinear);
+                DBSPTypeWeight.INSTANCE, function, null, node.keyBound, node.appendOnly,
+                this.mapped(node.input()), false);
         this.map(node, result);
     }
 
@@ -152,7 +182,7 @@ public class LowerCircuitVisitor extends CircuitCloneVisitor {
         DBSPAggregate.Implementation impl = node.getAggregate().combine(this.errorReporter);
         DBSPExpression function = impl.asFold();
         DBSPOperator result = new DBSPWindowAggregateOperator(node.getNode(),
-                function, null, node.window,
+                function, null, node.window, node.lateness,
                 node.partitionKeyType, node.timestampType, node.aggregateType,
                 DBSPTypeWeight.INSTANCE, this.mapped(node.input()));
         this.map(node, result);
@@ -14,6 +14,7 @@ import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeSemigroup;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeTuple;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeWeight;
+import org.dbsp.util.IdGen;
 import org.dbsp.util.IndentStream;
 import org.dbsp.util.Linq;
 import org.dbsp.util.Logger;
@@ -65,6 +66,7 @@ public class RustFileWriter implements ICompilerComponent {
     final FindResources finder;
     final CircuitVisitor findInCircuit;
     final LowerCircuitVisitor lower;
+    final FuseOperators fuse;
     final BetaReduction reducer;
     final CircuitRewriter circuitReducer;
 
@@ -108,7 +110,9 @@ public class RustFileWriter implements ICompilerComponent {
             "        FilterMap,\n" +
             "        Fold,\n" +
             "        time_series::{RelRange, RelOffset, OrdPartitionedIndexedZSet},\n" +
+            "        Max,\n" +
             "        MaxSemigroup,\n" +
+            "        Min,\n" +
             "        MinSemigroup,\n" +
             "    },\n" +
             "    trace::ord::{OrdIndexedZSet, OrdZSet},\n" +
@@ -197,6 +201,7 @@ public class RustFileWriter implements ICompilerComponent {
         this.finder = new FindResources(compiler);
         this.findInCircuit = this.finder.getCircuitVisitor();
         this.lower = new LowerCircuitVisitor(compiler);
+        this.fuse = new FuseOperators(compiler);
         this.reducer = new BetaReduction(compiler);
         this.circuitReducer = reducer.circuitRewriter();
     }
@@ -328,6 +333,12 @@ public class RustFileWriter implements ICompilerComponent {
     }
 
     public void write() {
+        try (IdGen.Scope ignored = this.compiler.idGen.enter()) {
+            this.writeInScope();
+        }
+    }
+
+    void writeInScope() {
         // Lower the circuits
         List<IDBSPNode> lowered = new ArrayList<>();
         for (IDBSPNode node: this.toWrite) {
@@ -339,6 +350,10 @@ public class RustFileWriter implements ICompilerComponent {
                 DBSPCircuit outer = node.to(DBSPCircuit.class);
                 // Lowering implements aggregates and inlines some calls.
                 outer = this.lower.apply(outer);
+                if (!this.compiler.options.ioOptions.jit &&
+                        this.compiler.options.optimizerOptions.optimizationLevel >= 2)
+                    // Traverse each batch once for a chain of stateless operators.
+                    outer = this.fuse.apply(outer);
                 // Beta reduction is beneficial after implementing aggregates.
                 outer = this.circuitReducer.apply(outer);
                 // Find the resources used to generate the correct Rust preamble
@@ -356,7 +371,8 @@ public class RustFileWriter implements ICompilerComponent {
             } else {
                 DBSPCircuit outer = node.to(DBSPCircuit.class);
                 if (this.emitHandles)
-                    str = ToRustHandleVisitor.toRustString(this.compiler, outer, outer.name);
+                    str = ToRustHandleVisitor.toRustString(this.compiler, outer, outer.name,
+                            this.compiler.options.ioOptions.splitCircuit);
                 else
                     str = ToRustVisitor.toRustString(this.getCompiler(), outer);
             }
@@ -31,11 +31,19 @@ import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
 import org.dbsp.sqlCompiler.circuit.operator.DBSPSinkOperator;
 import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
 import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
 import org.dbsp.sqlCompiler.compiler.visitors.VisitDecision;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPRawTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeZSet;
 import org.dbsp.util.IndentStream;
+import org.dbsp.util.Linq;
 import org.dbsp.util.Utilities;
 
+import java.util.*;
+
 /**
  * Generate Rust for a circuit, but with an API using handles.
  * Output generated has this structure:
@@ -44,30 +52,90 @@ import org.dbsp.util.Utilities;
  *         let mut catalog = Catalog::new();
  *         let (input, handle0) = circuit.add_input_zset::<TestStruct, i32>();
  *         catalog.register_input_zset("test_input1", input, handles.0);
+ *         let (keyed_upsert, handle1) = circuit.add_input_map::<i32, TestStruct, i32>();
+ *         let keyed = keyed_upsert.map(|(_, v)| v.clone());
+ *         catalog.register_input_map("keyed", keyed, handle1, move |r: &TestStruct| r.0.clone());
  *         catalog.register_output_zset("test_output1", input);
  *         Ok(catalog)
  *     }).unwrap();
  *     (circuit, catalog)
  * }
+ * If 'split' is true, the operators that compute each view are generated in a
+ * separate function, in a separate module, which is invoked by the main function.
+ * This allows the Rust compiler to compile the views in parallel,
+ * and to recompile only the views that have changed.
+ * The stream produced by an upsert handle contains the changes of the table,
+ * so a circuit that is not incremental integrates it.
  */
 public class ToRustHandleVisitor extends ToRustVisitor {
     private final String functionName;
+    private final boolean split;
+    /**
+     * True if the circuit consumes the changes of its inputs.
+     */
+    private final boolean incremental;
     int inputHandleIndex = 0;
 
-    public ToRustHandleVisitor(IErrorReporter reporter, IndentStream builder, String functionName) {
+    public ToRustHandleVisitor(IErrorReporter reporter, IndentStream builder, String functionName,
+                               boolean split, boolean incremental) {
         super(reporter, builder);
         this.functionName = functionName;
+        this.split = split;
+        this.incremental = incremental;
+    }
+
+    public ToRustHandleVisitor(IErrorReporter reporter, IndentStream builder, String functionName) {
+        this(reporter, builder, functionName, false, false);
+    }
+
+    /**
+     * The function that extracts the primary key from a row of a source.
+     */
+    static DBSPClosureExpression keyFunction(DBSPSourceOperator operator) {
+        DBSPTypeZSet type = operator.getType().to(DBSPTypeZSet.class);
+        DBSPVariablePath row = type.elementType.ref().var("r");
+        List<DBSPExpression> fields = Linq.map(operator.primaryKey, k -> row.field(k).applyClone());
+        DBSPExpression key = fields.size() == 1 ?
+                fields.get(0) : new DBSPRawTupleExpression(fields.toArray(new DBSPExpression[0]));
+        return key.closure(row.asParameter());
     }
 
     @Override
     public VisitDecision preorder(DBSPSourceOperator operator) {
+        DBSPTypeZSet type = operator.getType().to(DBSPTypeZSet.class);
+        if (operator.hasPrimaryKey()) {
+            // A table with a primary key receives upserts:
+            // an insertion replaces the row with the same key.
+            this.writeComments(operator)
+                    .append("let (")
+                    .append(this.getName(operator))
+                    .append("_upsert, handle")
+                    .append(this.inputHandleIndex++)
+                    .append(") = circuit.add_input_map::<");
+            keyFunction(operator).getResultType().accept(this.innerVisitor);
+            this.builder.append(", ");
+            type.elementType.accept(this.innerVisitor);
+            this.builder.append(", ");
+            type.weightType.accept(this.innerVisitor);
+            this.builder.append(">();")
+                    .newline()
+                    .append("let ")
+                    .append(this.getName(operator))
+                    .append(" = ")
+                    .append(this.getName(operator))
+                    .append("_upsert.map(|(_, v)| v.clone())");
+            if (!this.incremental)
+                // The circuit expects the whole table at every step
+                this.builder.append(".integrate()");
+            this.builder.append(";");
+            return VisitDecision.STOP;
+        }
         this.writeComments(operator)
                 .append("let (")
-                .append(operator.outputName)
+                .append(this.getName(operator))
                 .append(", handle")
                 .append(this.inputHandleIndex++)
                 .append(") = circuit.add_input_zset::<");
-        DBSPTypeZSet type = operator.getType().to(DBSPTypeZSet.class);
         type.elementType.accept(this.innerVisitor);
         this.builder.append(", ");
         type.weightType.accept(this.innerVisitor);
@@ -87,8 +155,147 @@ public class ToRustHandleVisitor extends ToRustVisitor {
         return VisitDecision.STOP;
     }
 
-    @Override
-    public VisitDecision preorder(DBSPPartialCircuit circuit) {
+    /**
+     * A set of operators that is generated as a separate function.
+     */
+    static class Part {
+        final String name;
+        final List<DBSPOperator> operators;
+        /**
+         * Operators in other parts whose outputs are used by this part.
+         */
+        final Set<DBSPOperator> parameters;
+        /**
+         * Operators in this part whose outputs are used by later parts.
+         */
+        final Set<DBSPOperator> results;
+
+        Part(String name) {
+            this.name = name;
+            this.operators = new ArrayList<>();
+            this.parameters = new LinkedHashSet<>();
+            this.results = new LinkedHashSet<>();
+        }
+    }
+
+    /**
+     * Add to the part all the ancestors of the operator
+     * that do not belong to any part yet.
+     */
+    static void collect(DBSPOperator operator, Part part, Map<DBSPOperator, Part> partOf) {
+        if (partOf.containsKey(operator))
+            return;
+        partOf.put(operator, part);
+        for (DBSPOperator input: operator.inputs)
+            collect(input, part, partOf);
+    }
+
+    String partName(String name) {
+        if (name.matches("[a-zA-Z_][a-zA-Z0-9_]*"))
+            return this.functionName + "_" + name;
+        return this.functionName + "_" + Utilities.hash(name).substring(0, 8);
+    }
+
+    /**
+     * Partition the operators of a circuit.
+     * Each view gets a part containing the operators that are needed
+     * to compute the view and are not needed by the views before it.
+     * Operators that do not contribute to any view are in a last part.
+     * The sources are not in any part.
+     */
+    List<Part> partition(DBSPPartialCircuit circuit) {
+        Map<DBSPOperator, Part> partOf = new IdentityHashMap<>();
+        for (DBSPOperator source: circuit.inputOperators)
+            partOf.put(source, null);
+        Map<Part, Integer> index = new IdentityHashMap<>();
+        List<Part> parts = new ArrayList<>();
+        for (DBSPSinkOperator sink: circuit.outputOperators) {
+            Part part = new Part(this.partName(sink.getName()));
+            collect(sink, part, partOf);
+            index.put(part, parts.size());
+            parts.add(part);
+        }
+        Part rest = new Part(this.functionName + "_other");
+        for (DBSPOperator operator: circuit.getAllOperators()) {
+            if (!partOf.containsKey(operator))
+                partOf.put(operator, rest);
+            Part part = partOf.get(operator);
+            if (part == null)
+                continue;
+            part.operators.add(operator);
+            for (DBSPOperator input: operator.inputs) {
+                Part inputPart = partOf.get(input);
+                if (inputPart == part)
+                    continue;
+                part.parameters.add(input);
+                if (inputPart != null)
+                    inputPart.results.add(input);
+            }
+        }
+        if (!rest.operators.isEmpty())
+            parts.add(rest);
+        return Linq.where(parts, p -> !p.operators.isEmpty());
+    }
+
+    void streamType(DBSPOperator operator) {
+        this.builder.append("Stream<dbsp::RootCircuit, ");
+        operator.outputType.accept(this.innerVisitor);
+        this.builder.append(">");
+    }
+
+    void generatePart(Part part) {
+        this.builder.append("mod ")
+                .append(part.name)
+                .append(" {")
+                .increase()
+                .append("use super::*;")
+                .newline()
+                .newline()
+                .append("pub fn build(circuit: &mut dbsp::RootCircuit, catalog: &mut Catalog");
+        for (DBSPOperator parameter: part.parameters) {
+            this.builder.append(", ")
+                    .append(this.getName(parameter))
+                    .append(": ");
+            this.streamType(parameter);
+        }
+        this.builder.append(") -> (");
+        for (DBSPOperator result: part.results) {
+            this.streamType(result);
+            this.builder.append(", ");
+        }
+        this.builder.append(") {")
+                .increase();
+        for (DBSPOperator operator: part.operators) {
+            super.processNode(operator);
+            DBSPSinkOperator sink = operator.as(DBSPSinkOperator.class);
+            if (sink != null)
+                this.registerOutput(sink);
+        }
+        this.builder.append("(");
+        for (DBSPOperator result: part.results)
+            this.builder.append(this.getName(result))
+                    .append(", ");
+        this.builder.append(")")
+                .newline()
+                .decrease()
+                .append("}")
+                .newline()
+                .decrease()
+                .append("}")
+                .newline();
+    }
+
+    void registerOutput(DBSPSinkOperator o) {
+        this.builder.append("catalog.register_output_zset(")
+                .append(Utilities.doubleQuote(this.getName(o)))
+                .append(", ")
+                .append(this.getName(o.input()))
+                .append(");")
+                .newline();
+    }
+
+    VisitDecision generateSplit(DBSPPartialCircuit circuit) {
+        List<Part> parts = this.partition(circuit);
         this.builder.append("pub fn ")
                 .append(this.functionName)
                 .append("(workers: usize) -> (DBSPHandle, Catalog) {")
@@ -98,31 +305,88 @@ public class ToRustHandleVisitor extends ToRustVisitor {
                 .increase()
                 .append("let mut catalog = Catalog::new();");
 
-        for (IDBSPNode node : circuit.getAllOperators())
-            super.processNode(node);
+        for (DBSPOperator source: circuit.inputOperators)
+            super.processNode(source);
+        for (Part part: parts) {
+            if (!part.results.isEmpty()) {
+                this.builder.append("let (");
+                for (DBSPOperator result: part.results)
+                    this.builder.append(this.getName(result))
+                            .append(", ");
+                this.builder.append(") = ");
+            }
+            this.builder.append(part.name)
+                    .append("::build(circuit, &mut catalog");
+            for (DBSPOperator parameter: part.parameters)
+                this.builder.append(", ")
+                        .append(this.getName(parameter))
+                        .append(".clone()");
+            this.builder.append(");")
+                    .newline();
+        }
+        this.registerInputs(circuit);
+        this.builder.append("Ok(catalog)")
+                .newline()
+                .decrease()
+                .append("}).unwrap();")
+                .newline();
 
-        // Register input streams in the catalog.
+        this.builder
+                .append("(circuit, catalog)")
+                .newline()
+                .decrease()
+                .append("}")
+                .newline();
+        for (Part part: parts) {
+            this.builder.newline();
+            this.generatePart(part);
+        }
+        return VisitDecision.STOP;
+    }
+
+    void registerInputs(DBSPPartialCircuit circuit) {
         int index = 0;
         for (DBSPOperator i : circuit.inputOperators) {
-            this.builder.append("catalog.register_input_zset(")
-                    .append(Utilities.doubleQuote(i.getName()))
+            DBSPSourceOperator source = i.as(DBSPSourceOperator.class);
+            boolean keyed = source != null && source.hasPrimaryKey();
+            this.builder.append(keyed ? "catalog.register_input_map(" : "catalog.register_input_zset(")
+                    .append(Utilities.doubleQuote(this.getName(i)))
                     .append(", ")
-                    .append(i.outputName)
+                    .append(this.getName(i))
                     .append(".clone(), handle")
-                    .append(index++)
-                    .append(");")
+                    .append(index++);
+            if (keyed) {
+                this.builder.append(", ");
+                keyFunction(source).accept(this.innerVisitor);
+            }
+            this.builder.append(");")
                     .newline();
         }
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPPartialCircuit circuit) {
+        this.assignNames(circuit);
+        if (this.split)
+            return this.generateSplit(circuit);
+        this.builder.append("pub fn ")
+                .append(this.functionName)
+                .append("(workers: usize) -> (DBSPHandle, Catalog) {")
+                .increase()
+                .newline()
+                .append("let (circuit, catalog) = Runtime::init_circuit(workers, |circuit| {")
+                .increase()
+                .append("let mut catalog = Catalog::new();");
+
+        for (IDBSPNode node : circuit.getAllOperators())
+            super.processNode(node);
+
+        // Register input streams in the catalog.
+        this.registerInputs(circuit);
 
         // Register output streams in the catalog.
-        for (DBSPSinkOperator o : circuit.outputOperators) {
-            this.builder.append("catalog.register_output_zset(")
-                    .append(Utilities.doubleQuote(o.getName()))
-                    .append(", ")
-                    .append(o.input().getName())
-                    .append(");")
-                    .newline();
-        }
+        for (DBSPSinkOperator o : circuit.outputOperators)
+            this.registerOutput(o);
 
         this.builder.append("Ok(catalog)")
                 .newline()
@@ -139,10 +403,15 @@ public class ToRustHandleVisitor extends ToRustVisitor {
         return VisitDecision.STOP;
     }
 
-    public static String toRustString(IErrorReporter reporter, IDBSPOuterNode node, String functionName) {
+    public static String toRustString(DBSPCompiler compiler, IDBSPOuterNode node, String functionName) {
+        return toRustString(compiler, node, functionName, false);
+    }
+
+    public static String toRustString(DBSPCompiler compiler, IDBSPOuterNode node, String functionName, boolean split) {
         StringBuilder builder = new StringBuilder();
         IndentStream stream = new IndentStream(builder);
-        ToRustVisitor visitor = new ToRustHandleVisitor(reporter, stream, functionName);
+        ToRustVisitor visitor = new ToRustHandleVisitor(compiler, stream, functionName, split,
+                compiler.options.optimizerOptions.incrementalize);
         node.accept(visitor);
         return builder.toString();
     }
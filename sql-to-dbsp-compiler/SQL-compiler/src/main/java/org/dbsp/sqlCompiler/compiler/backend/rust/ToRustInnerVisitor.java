@@ -389,7 +389,15 @@ public class ToRustInnerVisitor extends InnerVisitor {
 
     @Override
     public VisitDecision preorder(DBSPU64Literal literal) {
-        String val = Long.toString(Objects.requireNonNull(literal.value));
+        // The value is unsigned
+        String val = Long.toUnsignedString(Objects.requireNonNull(literal.value));
+        this.builder.append(literal.wrapSome(val + literal.getIntegerType().getRustString()));
+        return VisitDecision.STOP;
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPU128Literal literal) {
+        String val = Objects.requireNonNull(literal.value).toString();
         this.builder.append(literal.wrapSome(val + literal.getIntegerType().getRustString()));
         return VisitDecision.STOP;
     }
@@ -567,7 +575,13 @@ public class ToRustInnerVisitor extends InnerVisitor {
 
     @Override
     public VisitDecision preorder(DBSPCloneExpression expression) {
+        // Method calls bind tighter than the dereference operator
+        boolean parens = expression.expression.is(DBSPDerefExpression.class);
+        if (parens)
+            this.builder.append("(");
         expression.expression.accept(this);
+        if (parens)
+            this.builder.append(")");
         this.builder.append(".clone()");
         return VisitDecision.STOP;
     }
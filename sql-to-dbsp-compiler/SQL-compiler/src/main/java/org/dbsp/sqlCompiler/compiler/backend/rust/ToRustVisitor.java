@@ -26,6 +26,7 @@ package org.dbsp.sqlCompiler.compiler.backend.rust;
 import org.dbsp.sqlCompiler.circuit.*;
 import org.dbsp.sqlCompiler.circuit.operator.*;
 import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.visitors.VisitDecision;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
@@ -37,6 +38,11 @@ import org.dbsp.sqlCompiler.ir.type.*;
 import org.dbsp.util.*;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * This visitor generate a Rust implementation of the program.
@@ -45,32 +51,89 @@ public class ToRustVisitor extends CircuitVisitor {
     protected final IndentStream builder;
     public final InnerVisitor innerVisitor;
 
+    /**
+     * Names of the streams produced by operators in the generated code.
+     */
+    final Map<DBSPOperator, String> operatorNames;
+
     public ToRustVisitor(IErrorReporter reporter, IndentStream builder) {
         super(reporter, true);
         this.builder = builder;
         this.innerVisitor = new ToRustInnerVisitor(reporter, builder, false);
+        this.operatorNames = new IdentityHashMap<>();
+    }
+
+    /**
+     * Name of the stream produced by the operator in the generated code.
+     */
+    String getName(DBSPOperator operator) {
+        String name = this.operatorNames.get(operator);
+        if (name != null)
+            return name;
+        return operator.getName();
+    }
+
+    /**
+     * Give to each stream a name derived from the code that computes it.
+     * Sources and sinks keep the names of the tables and views.
+     * The name of any other operator is a hash of the code generated
+     * for the operator, which includes the names of its inputs.
+     * Unlike the numbered names of the operators, these names do not
+     * change when unrelated parts of the program change, so small
+     * changes in the program produce small changes in the generated code.
+     */
+    void assignNames(DBSPPartialCircuit circuit) {
+        this.operatorNames.clear();
+        Set<String> used = new HashSet<>();
+        for (IDBSPNode node : circuit.getAllOperators()) {
+            DBSPOperator op = node.as(DBSPOperator.class);
+            if (op != null && (op.is(DBSPSourceOperator.class) || op.is(DBSPSinkOperator.class))) {
+                this.operatorNames.put(op, op.getName());
+                used.add(op.getName());
+            }
+        }
+        for (IDBSPNode node : circuit.getAllOperators()) {
+            DBSPOperator op = node.as(DBSPOperator.class);
+            if (op == null || this.operatorNames.containsKey(op))
+                continue;
+            StringBuilder code = new StringBuilder();
+            ToRustVisitor visitor = new ToRustVisitor(this.errorReporter, new IndentStream(code));
+            visitor.operatorNames.putAll(this.operatorNames);
+            visitor.operatorNames.put(op, "");
+            op.accept(visitor);
+            // Comments contain node ids, which are not stable.
+            String[] lines = code.toString().split("\n");
+            String signature = String.join("\n",
+                    Linq.where(Arrays.asList(lines), l -> !l.trim().startsWith("//")));
+            String name = "stream_" + Utilities.hash(signature).substring(0, 8);
+            String unique = name;
+            for (int i = 1; used.contains(unique); i++)
+                unique = name + "_" + i;
+            used.add(unique);
+            this.operatorNames.put(op, unique);
+        }
     }
 
     //////////////// Operators
 
     private void genRcCell(DBSPOperator op) {
         this.builder.append("let ")
-                .append(op.getName())
+                .append(this.getName(op))
                 .append(" = Rc::new(RefCell::<");
         op.getType().accept(this.innerVisitor);
         this.builder.append(">::new(Default::default()));")
                 .newline();
         this.builder.append("let ")
-                .append(op.getName())
+                .append(this.getName(op))
                 .append("_external = ")
-                .append(op.getName())
+                .append(this.getName(op))
                 .append(".clone();")
                 .newline();
         if (op instanceof DBSPSourceOperator) {
             this.builder.append("let ")
-                    .append(op.getName())
+                    .append(this.getName(op))
                     .append(" = Generator::new(move || ")
-                    .append(op.getName())
+                    .append(this.getName(op))
                     .append(".borrow().clone());")
                     .newline();
         }
@@ -88,7 +151,11 @@ public class ToRustVisitor extends CircuitVisitor {
     }
 
     void generateOperator(DBSPOperator operator) {
-        String str = operator.getNode().toString();
+        // Calcite numbers the relational nodes globally; drop the numbers
+        // so that the comments do not change when other views change.
+        String str = operator.getNode().toString()
+                .replaceAll("rel#\\d+:", "")
+                .replaceAll("#\\d+", "");
         this.writeComments(str);
         operator.accept(this);
         this.builder.newline();
@@ -116,6 +183,7 @@ public class ToRustVisitor extends CircuitVisitor {
 
     @Override
     public VisitDecision preorder(DBSPPartialCircuit circuit) {
+        this.assignNames(circuit);
         // function prototype:
         // fn name() -> impl FnMut(T0, T1) -> (O0, O1) {
         boolean first = true;
@@ -142,15 +210,15 @@ public class ToRustVisitor extends CircuitVisitor {
 
         // Create the closure and return it.
         this.builder.append("return move |")
-                .joinS(", ", Linq.map(circuit.inputOperators, DBSPOperator::getName))
+                .joinS(", ", Linq.map(circuit.inputOperators, this::getName))
                 .append("| {")
                 .increase();
 
         for (DBSPOperator i : circuit.inputOperators)
             builder.append("*")
-                    .append(i.getName())
+                    .append(this.getName(i))
                     .append("_external.borrow_mut() = ")
-                    .append(i.getName())
+                    .append(this.getName(i))
                     .append(";")
                     .newline();
         this.builder.append("root.0.step().unwrap();")
@@ -158,7 +226,7 @@ public class ToRustVisitor extends CircuitVisitor {
                 .append("return ")
                 .append("(")
                 .intercalateS(", ",
-                        Linq.map(circuit.outputOperators, o -> o.getName() + "_external.borrow().clone()"))
+                        Linq.map(circuit.outputOperators, o -> this.getName(o) + "_external.borrow().clone()"))
                 .append(")")
                 .append(";")
                 .newline()
@@ -175,10 +243,10 @@ public class ToRustVisitor extends CircuitVisitor {
     public VisitDecision preorder(DBSPSourceOperator operator) {
         this.writeComments(operator)
                 .append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(" = ")
                 .append("circuit.add_source(")
-                .append(operator.outputName)
+                .append(this.getName(operator))
                 .append(");");
         return VisitDecision.STOP;
     }
@@ -188,11 +256,11 @@ public class ToRustVisitor extends CircuitVisitor {
         DBSPType streamType = new DBSPTypeStream(operator.outputType);
         this.writeComments(operator)
                 .append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(": ");
         streamType.accept(this.innerVisitor);
         this.builder.append(" = ")
-                .append(operator.input().getName())
+                .append(this.getName(operator.input()))
                 .append(".")
                 .append(operator.operation)
                 .append("();");
@@ -203,11 +271,11 @@ public class ToRustVisitor extends CircuitVisitor {
     public VisitDecision preorder(DBSPSinkOperator operator) {
         this.writeComments(operator.query);
         this.writeComments(operator)
-                .append(operator.input().getName())
+                .append(this.getName(operator.input()))
                 .append(".")
                 .append(operator.operation) // inspect
                 .append("(move |m| { *")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(".borrow_mut() = ")
                 .append("m.clone() });");
         return VisitDecision.STOP;
@@ -218,12 +286,12 @@ public class ToRustVisitor extends CircuitVisitor {
         DBSPType streamType = new DBSPTypeStream(operator.outputType);
         this.writeComments(operator)
                 .append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(": ");
         streamType.accept(this.innerVisitor);
         this.builder.append(" = ");
         if (!operator.inputs.isEmpty())
-            builder.append(operator.inputs.get(0).getName())
+            builder.append(this.getName(operator.inputs.get(0)))
                     .append(".");
         builder.append(operator.operation)
                 .append("(");
@@ -231,7 +299,7 @@ public class ToRustVisitor extends CircuitVisitor {
             if (i > 1)
                 builder.append(",");
             builder.append("&")
-                    .append(operator.inputs.get(i).getName());
+                    .append(this.getName(operator.inputs.get(i)));
         }
         if (operator.function != null) {
             if (operator.inputs.size() > 1)
@@ -247,13 +315,41 @@ public class ToRustVisitor extends CircuitVisitor {
         // We generate two DBSP operator calls: partitioned_rolling_aggregate
         // and map_index
         DBSPType streamType = new DBSPTypeStream(operator.outputType);
-        String tmp = new NameGen("stream").nextName();
-        this.writeComments(operator)
-                .append("let ")
-                .append(tmp)
-                .append(" = ")
-                .append(operator.input().getName())
-                .append(".partitioned_rolling_aggregate(");
+        String tmp = this.getName(operator) + "_rolling";
+        this.writeComments(operator);
+        if (operator.lateness == null) {
+            this.builder.append("let ")
+                    .append(tmp)
+                    .append(" = ")
+                    .append(this.getName(operator.input()))
+                    .append(".partitioned_rolling_aggregate(");
+        } else {
+            // Index the input by timestamp, and compute its watermark,
+            // which bounds the state kept by the rolling aggregate.
+            String byTs = this.getName(operator) + "_ts";
+            String watermark = this.getName(operator) + "_watermark";
+            this.builder.append("let ")
+                    .append(byTs)
+                    .append(" = ")
+                    .append(this.getName(operator.input()))
+                    .append(".map_index(|(key, (ts, v))| (*ts, (key.clone(), v.clone())));")
+                    .newline()
+                    .append("let ")
+                    .append(watermark)
+                    .append(" = ")
+                    .append(byTs)
+                    .append(".watermark_monotonic(move |ts| ts.saturating_sub(");
+            operator.lateness.accept(this.innerVisitor);
+            this.builder.append("));")
+                    .newline()
+                    .append("let ")
+                    .append(tmp)
+                    .append(" = ")
+                    .append(byTs)
+                    .append(".partitioned_rolling_aggregate_with_watermark(&")
+                    .append(watermark)
+                    .append(", |(key, v)| (key.clone(), v.clone()), ");
+        }
         operator.getFunction().accept(this.innerVisitor);
         builder.append(", ");
         operator.window.accept(this.innerVisitor);
@@ -261,7 +357,7 @@ public class ToRustVisitor extends CircuitVisitor {
                 .newline();
 
         this.builder.append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(": ");
         streamType.accept(this.innerVisitor);
         builder.append(" = " )
@@ -270,19 +366,43 @@ public class ToRustVisitor extends CircuitVisitor {
         return VisitDecision.STOP;
     }
 
+    @Override
+    public VisitDecision preorder(DBSPIndexedLagOperator operator) {
+        DBSPType streamType = new DBSPTypeStream(operator.outputType);
+        this.writeComments(operator)
+                .append("let ")
+                .append(this.getName(operator))
+                .append(": ");
+        streamType.accept(this.innerVisitor);
+        this.builder.append(" = ")
+                .append(this.getName(operator.input()))
+                .append(".")
+                .append(operator.operation)
+                .append("(")
+                .append(operator.offset)
+                .append(", ");
+        operator.getFunction().accept(this.innerVisitor);
+        this.builder.append(");");
+        return VisitDecision.STOP;
+    }
+
     @Override
     public VisitDecision preorder(DBSPIncrementalAggregateOperator operator) {
         DBSPType streamType = new DBSPTypeStream(operator.outputType);
         this.writeComments(operator)
                 .append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(": ");
         streamType.accept(this.innerVisitor);
         this.builder.append(" = ");
-        builder.append(operator.input().getName())
+        builder.append(this.getName(operator.input()))
                     .append(".");
         builder.append(operator.operation)
                 .append("(");
+        if (operator.keyBound != null) {
+            operator.keyBound.accept(this.innerVisitor);
+            builder.append(", ");
+        }
         operator.getFunction().accept(this.innerVisitor);
         builder.append(");");
         return VisitDecision.STOP;
@@ -292,19 +412,19 @@ public class ToRustVisitor extends CircuitVisitor {
     public VisitDecision preorder(DBSPSumOperator operator) {
         this.writeComments(operator)
                     .append("let ")
-                    .append(operator.getName())
+                    .append(this.getName(operator))
                     .append(": ");
         new DBSPTypeStream(operator.outputType).accept(this.innerVisitor);
         this.builder.append(" = ");
         if (!operator.inputs.isEmpty())
-            this.builder.append(operator.inputs.get(0).getName())
+            this.builder.append(this.getName(operator.inputs.get(0)))
                         .append(".");
         this.builder.append(operator.operation)
                     .append("([");
         for (int i = 1; i < operator.inputs.size(); i++) {
             if (i > 1)
                 this.builder.append(", ");
-            this.builder.append("&").append(operator.inputs.get(i).getName());
+            this.builder.append("&").append(this.getName(operator.inputs.get(i)));
         }
         this.builder.append("]);");
         return VisitDecision.STOP;
@@ -319,7 +439,7 @@ public class ToRustVisitor extends CircuitVisitor {
     }
 
      IIndentStream writeComments(DBSPOperator operator) {
-        return this.writeComments(operator.getClass().getSimpleName() + " " + operator.id +
+        return this.writeComments(operator.getClass().getSimpleName() +
                 (operator.comment != null ? "\n" + operator.comment : ""));
     }
 
@@ -327,17 +447,21 @@ public class ToRustVisitor extends CircuitVisitor {
     public VisitDecision preorder(DBSPIncrementalJoinOperator operator) {
         this.writeComments(operator)
                 .append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(": ");
         new DBSPTypeStream(operator.outputType).accept(this.innerVisitor);
         this.builder.append(" = ");
         if (!operator.inputs.isEmpty())
-            this.builder.append(operator.inputs.get(0).getName())
+            this.builder.append(this.getName(operator.inputs.get(0)))
                     .append(".");
         this.builder.append(operator.operation)
                 .append("(&");
-        this.builder.append(operator.inputs.get(1).getName());
+        this.builder.append(this.getName(operator.inputs.get(1)));
         this.builder.append(", ");
+        if (operator.keyBound != null) {
+            operator.keyBound.accept(this.innerVisitor);
+            this.builder.append(", ");
+        }
         operator.getFunction().accept(this.innerVisitor);
         this.builder.append(");");
         return VisitDecision.STOP;
@@ -347,7 +471,7 @@ public class ToRustVisitor extends CircuitVisitor {
     public VisitDecision preorder(DBSPConstantOperator operator) {
         assert operator.function != null;
         builder.append("let ")
-                .append(operator.getName())
+                .append(this.getName(operator))
                 .append(" = ")
                 .append("circuit.add_source(Generator::new(|| ");
         operator.function.accept(this.innerVisitor);
@@ -355,13 +479,16 @@ public class ToRustVisitor extends CircuitVisitor {
         return VisitDecision.STOP;
     }
 
-    public static String toRustString(IErrorReporter reporter, IDBSPOuterNode node) {
-        StringBuilder builder = new StringBuilder();
-        IndentStream stream = new IndentStream(builder);
-        LowerCircuitVisitor lower = new LowerCircuitVisitor(reporter);
-        node = lower.apply(node.to(DBSPCircuit.class));
-        ToRustVisitor visitor = new ToRustVisitor(reporter, stream);
-        node.accept(visitor);
-        return builder.toString();
+    public static String toRustString(DBSPCompiler compiler, IDBSPOuterNode node) {
+        // Lowering creates operators, whose names must not clash with the compiler's names
+        try (IdGen.Scope ignored = compiler.idGen.enter()) {
+            StringBuilder builder = new StringBuilder();
+            IndentStream stream = new IndentStream(builder);
+            LowerCircuitVisitor lower = new LowerCircuitVisitor(compiler);
+            node = lower.apply(node.to(DBSPCircuit.class));
+            ToRustVisitor visitor = new ToRustVisitor(compiler, stream);
+            node.accept(visitor);
+            return builder.toString();
+        }
     }
 }
@@ -35,6 +35,8 @@ import org.dbsp.sqlCompiler.ir.DBSPAggregate;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI64Literal;
 import org.dbsp.sqlCompiler.ir.type.*;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBool;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeFP;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
 import org.dbsp.sqlCompiler.ir.expression.*;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeNull;
@@ -44,6 +46,7 @@ import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.USER;
 
@@ -74,7 +77,11 @@ public class AggregateCompiler implements ICompilerComponent {
     // null only for COUNT(*)
     @Nullable
     private final DBSPExpression aggArgument;
-    private final NameGen generator;
+    /**
+     * Accumulator names are numbered within each aggregate, so they do
+     * not depend on the other statements of the program.
+     */
+    private int accumulatorCount;
     private final RelNode aggregateNode;
 
 
@@ -91,7 +98,7 @@ public class AggregateCompiler implements ICompilerComponent {
         this.v = v;
         this.isDistinct = call.isDistinct();
         this.aggFunction = call.getAggregation();
-        this.generator = new NameGen("a");
+        this.accumulatorCount = 0;
         this.filterArgument = call.filterArg;
         List<Integer> argList = call.getArgList();
         if (argList.size() == 0) {
@@ -109,7 +116,7 @@ public class AggregateCompiler implements ICompilerComponent {
     }
 
     public String genAccumulatorName() {
-        return this.generator.nextName();
+        return "a" + this.accumulatorCount++;
     }
 
     <T> boolean process(SqlAggFunction function, Class<T> clazz, Consumer<T> method) {
@@ -137,6 +144,83 @@ public class AggregateCompiler implements ICompilerComponent {
         return this.v.field(this.filterArgument);
     }
 
+    /**
+     * Contribution of the current row to a linear aggregate:
+     * 'value' if the row is selected by the filter, 'zero' otherwise.
+     */
+    DBSPExpression filterLinear(DBSPExpression value, DBSPExpression zero) {
+        DBSPExpression filter = this.filterArgument();
+        if (filter == null)
+            return value;
+        return new DBSPIfExpression(value.getNode(), ExpressionCompiler.wrapBoolIfNeeded(filter), value, zero);
+    }
+
+    /**
+     * Type used to add up values of the specified type in a linear aggregate,
+     * or null if such values cannot be added this way.
+     * Integers are added as i64, which does not overflow for the narrower types.
+     * Decimal values do not have a zero in the runtime, so they are not linear.
+     */
+    @Nullable
+    static DBSPType linearSumType(DBSPType valueType) {
+        if (valueType.is(DBSPTypeInteger.class))
+            return DBSPTypeInteger.SIGNED_64;
+        if (valueType.is(DBSPTypeFP.class))
+            return valueType.setMayBeNull(false);
+        return null;
+    }
+
+    /**
+     * Convert a value to the specified non-nullable sum type; NULL is converted to 0.
+     */
+    DBSPExpression linearValue(CalciteObject node, DBSPExpression value, DBSPType sumType) {
+        DBSPExpression zero = sumType.to(IsNumericType.class).getZero();
+        DBSPType valueType = value.getType();
+        if (valueType.mayBeNull) {
+            DBSPExpression unwrapped = new DBSPApplyMethodExpression(
+                    node, "unwrap", valueType.setMayBeNull(false), value);
+            if (!valueType.setMayBeNull(false).sameType(sumType))
+                unwrapped = unwrapped.cast(sumType);
+            return new DBSPIfExpression(node, new DBSPIsNullExpression(node, value), zero, unwrapped);
+        }
+        if (!valueType.sameType(sumType))
+            return value.cast(sumType);
+        return value;
+    }
+
+    /**
+     * Linear form of an aggregate that adds up values and counts the non-null values:
+     * |row| Tuple2(value, indicator).  Returns null if the values cannot be added.
+     */
+    @Nullable
+    DBSPClosureExpression sumAndCount(CalciteObject node, DBSPType sumType) {
+        DBSPExpression value = this.getAggregatedValue();
+        DBSPExpression count = new DBSPI64Literal(1L);
+        if (value.getType().mayBeNull)
+            count = new DBSPUnaryExpression(node, DBSPTypeInteger.SIGNED_64,
+                    DBSPOpcode.INDICATOR, value);
+        DBSPExpression sum = this.filterLinear(this.linearValue(node, value, sumType),
+                sumType.to(IsNumericType.class).getZero());
+        count = this.filterLinear(count, new DBSPI64Literal(0L));
+        return new DBSPTupleExpression(sum, count).closure(this.v.asParameter());
+    }
+
+    /**
+     * Post-processing for the result of sumAndCount:
+     * |a| if a.1 == 0 { None } else { result(a) }.
+     * @param pairType  Type of the sum produced by sumAndCount.
+     * @param result    Computes the result from the variable standing for the sum.
+     */
+    DBSPClosureExpression sumAndCountPost(
+            CalciteObject node, DBSPType pairType, Function<DBSPVariablePath, DBSPExpression> result) {
+        DBSPVariablePath a = pairType.var(this.genAccumulatorName());
+        DBSPExpression empty = ExpressionCompiler.makeBinaryExpression(node, DBSPTypeBool.INSTANCE,
+                DBSPOpcode.EQ, Linq.list(a.field(1), new DBSPI64Literal(0L)));
+        DBSPExpression value = new DBSPIfExpression(node, empty,
+                DBSPLiteral.none(this.nullableResultType), result.apply(a).cast(this.nullableResultType));
+        return value.closure(a.asParameter());
+    }
+
     void processCount(SqlCountAggFunction function) {
         // The result of 'count' can never be null.
         CalciteObject node = new CalciteObject(function);
@@ -158,7 +242,7 @@ public class AggregateCompiler implements ICompilerComponent {
         }
 
         @Nullable
-        DBSPClosureExpression linear = argument.closure(this.v.asParameter());
+        DBSPClosureExpression linear = this.filterLinear(argument, zero).closure(this.v.asParameter());
         DBSPVariablePath accumulator = this.resultType.var(this.genAccumulatorName());
         if (this.isDistinct) {
             linear = null;
@@ -172,13 +256,14 @@ public class AggregateCompiler implements ICompilerComponent {
                     node, DBSPOpcode.AGG_ADD, this.resultType,
                     accumulator, weighted, this.filterArgument());
         }
-        if (this.filterArgument >= 0)
-            // no longer linear, since it returns 0 instead of nothing for an empty collection
-            linear = null;
+        @Nullable
+        DBSPClosureExpression combine = null;
+        if (!this.isDistinct)
+            combine = this.combineAccumulators(node, DBSPOpcode.AGG_ADD, this.resultType);
         DBSPType semigroup = new DBSPTypeUser(node, USER, "DefaultSemigroup", false, this.resultType);
         this.setFoldingFunction(new DBSPAggregate.Implementation(
-                node, zero, this.makeRowClosure(increment, accumulator),
-                zero, semigroup, linear));
+                node, zero, this.makeRowClosure(increment, accumulator), null,
+                zero, semigroup, linear, null, combine));
     }
 
     private DBSPExpression getAggregatedValue() {
@@ -209,6 +294,16 @@ public class AggregateCompiler implements ICompilerComponent {
         return binOp.cast(type);
     }
 
+    /**
+     * A closure |left, right| op(left, right) which combines two accumulators of the specified type.
+     */
+    DBSPClosureExpression combineAccumulators(CalciteObject node, DBSPOpcode op, DBSPType type) {
+        DBSPVariablePath left = type.var(this.genAccumulatorName());
+        DBSPVariablePath right = type.var(this.genAccumulatorName());
+        return this.aggregateOperation(node, op, type, left, right, null)
+                .closure(left.asParameter(), right.asParameter());
+    }
+
     void processMinMax(SqlMinMaxAggFunction function) {
         DBSPExpression zero = DBSPLiteral.none(this.nullableResultType);
         CalciteObject node = new CalciteObject(function);
@@ -231,8 +326,10 @@ public class AggregateCompiler implements ICompilerComponent {
         DBSPExpression increment = this.aggregateOperation(
                 node, call, this.nullableResultType, accumulator, aggregatedValue, this.filterArgument());
         DBSPType semigroup = new DBSPTypeUser(node, USER, semigroupName, false, accumulator.getType());
+        DBSPClosureExpression combine = this.combineAccumulators(node, call, this.nullableResultType);
         this.setFoldingFunction(new DBSPAggregate.Implementation(
-                node, zero, this.makeRowClosure(increment, accumulator), zero, semigroup, null));
+                node, zero, this.makeRowClosure(increment, accumulator), null, zero, semigroup,
+                null, null, combine));
     }
 
     void processSum(SqlSumAggFunction function) {
@@ -254,10 +351,25 @@ public class AggregateCompiler implements ICompilerComponent {
                     node, DBSPOpcode.AGG_ADD, this.nullableResultType,
                     accumulator, weighted, this.filterArgument());
         }
+        @Nullable
+        DBSPClosureExpression linear = null;
+        @Nullable
+        DBSPClosureExpression linearPost = null;
+        @Nullable
+        DBSPClosureExpression combine = null;
+        DBSPType sumType = linearSumType(aggregatedValue.getType());
+        if (!this.isDistinct && sumType != null) {
+            // The sum is NULL when no non-null value has been added
+            linear = this.sumAndCount(node, sumType);
+            linearPost = this.sumAndCountPost(node, linear.getResultType(), a -> a.field(0));
+        }
+        if (!this.isDistinct)
+            combine = this.combineAccumulators(node, DBSPOpcode.AGG_ADD, this.nullableResultType);
         DBSPType semigroup = new DBSPTypeUser(CalciteObject.EMPTY, USER, "DefaultOptSemigroup",
                 false, accumulator.getType().setMayBeNull(false));
         this.setFoldingFunction(new DBSPAggregate.Implementation(
-                node, zero, this.makeRowClosure(increment, accumulator), zero, semigroup, null));
+                node, zero, this.makeRowClosure(increment, accumulator), null, zero, semigroup,
+                linear, linearPost, combine));
     }
 
     void processSumZero(SqlSumEmptyIsZeroAggFunction function) {
@@ -269,12 +381,23 @@ public class AggregateCompiler implements ICompilerComponent {
 
         @Nullable
         DBSPClosureExpression linear = null;
+        @Nullable
+        DBSPClosureExpression linearPost = null;
         if (this.isDistinct) {
             increment = this.aggregateOperation(
                     node, DBSPOpcode.AGG_ADD,
                     this.resultType, accumulator, aggregatedValue, this.filterArgument());
         } else {
-            linear = aggregatedValue.closure(this.v.asParameter());
+            DBSPType sumType = linearSumType(this.resultType);
+            if (sumType != null) {
+                DBSPExpression value = this.linearValue(node, aggregatedValue, sumType);
+                linear = this.filterLinear(value, sumType.to(IsNumericType.class).getZero())
+                        .closure(this.v.asParameter());
+                if (!sumType.sameType(this.resultType)) {
+                    DBSPVariablePath a = sumType.var(this.genAccumulatorName());
+                    linearPost = a.cast(this.resultType).closure(a.asParameter());
+                }
+            }
             DBSPExpression weighted = new DBSPBinaryExpression(
                     node, aggregatedValue.getType(),
                     DBSPOpcode.MUL_WEIGHT, aggregatedValue, this.compiler.weightVar);
@@ -282,16 +405,18 @@ public class AggregateCompiler implements ICompilerComponent {
                     node, DBSPOpcode.AGG_ADD, this.resultType,
                     accumulator, weighted, this.filterArgument());
         }
+        @Nullable
+        DBSPClosureExpression combine = null;
+        if (!this.isDistinct)
+            combine = this.combineAccumulators(node, DBSPOpcode.AGG_ADD, this.resultType);
         String semigroupName = "DefaultSemigroup";
-        if (this.filterArgument >= 0)
-            // If we are filtering the sum is no longer linear
-            linear = null;
         if (accumulator.getType().mayBeNull)
             semigroupName = "DefaultOptSemigroup";
         DBSPType semigroup = new DBSPTypeUser(node, USER, semigroupName, false,
                 accumulator.getType().setMayBeNull(false));
         this.setFoldingFunction(new DBSPAggregate.Implementation(
-                node, zero, this.makeRowClosure(increment, accumulator), zero, semigroup, linear));
+                node, zero, this.makeRowClosure(increment, accumulator), null, zero, semigroup,
+                linear, linearPost, combine));
     }
 
     void processSingle(SqlSingleValueAggFunction function) {
@@ -369,8 +494,31 @@ public class AggregateCompiler implements ICompilerComponent {
         DBSPType semigroup = new DBSPTypeUser(node, USER, "PairSemigroup", false, i64, i64,
                 new DBSPTypeUser(node, USER, "DefaultOptSemigroup", false, DBSPTypeInteger.SIGNED_64),
                 new DBSPTypeUser(node, USER, "DefaultOptSemigroup", false, DBSPTypeInteger.SIGNED_64));
+        @Nullable
+        DBSPClosureExpression linear = null;
+        @Nullable
+        DBSPClosureExpression linearPost = null;
+        @Nullable
+        DBSPClosureExpression combine = null;
+        DBSPType sumType = linearSumType(aggregatedValueType);
+        if (!this.isDistinct && sumType != null) {
+            linear = this.sumAndCount(node, sumType);
+            linearPost = this.sumAndCountPost(node, linear.getResultType(),
+                    s -> ExpressionCompiler.makeBinaryExpression(node, this.resultType, DBSPOpcode.DIV,
+                            Linq.list(s.field(0), s.field(1))));
+        }
+        if (!this.isDistinct) {
+            DBSPVariablePath left = pairType.var(this.genAccumulatorName());
+            DBSPVariablePath right = pairType.var(this.genAccumulatorName());
+            DBSPExpression sums = this.aggregateOperation(node, DBSPOpcode.AGG_ADD, i64,
+                    left.field(sumIndex), right.field(sumIndex), null);
+            DBSPExpression counts = this.aggregateOperation(node, DBSPOpcode.AGG_ADD, i64,
+                    left.field(countIndex), right.field(countIndex), null);
+            combine = new DBSPRawTupleExpression(sums, counts).closure(left.asParameter(), right.asParameter());
+        }
         this.setFoldingFunction(new DBSPAggregate.Implementation(
-                node, zero, this.makeRowClosure(increment, accumulator), post, postZero, semigroup, null));
+                node, zero, this.makeRowClosure(increment, accumulator), post, postZero, semigroup,
+                linear, linearPost, combine));
     }
 
     public DBSPAggregate.Implementation compile() {
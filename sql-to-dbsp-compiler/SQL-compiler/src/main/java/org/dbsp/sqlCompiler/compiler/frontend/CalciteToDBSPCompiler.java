@@ -33,6 +33,8 @@ import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.*;
 import org.apache.calcite.sql.*;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.dbsp.sqlCompiler.compiler.errors.InternalCompilerError;
 import org.dbsp.sqlCompiler.compiler.errors.UnimplementedException;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
@@ -47,12 +49,17 @@ import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
 import org.dbsp.sqlCompiler.ir.DBSPAggregate;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPBoolLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI64Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPIntervalMillisLiteral;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU64Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU128Literal;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPZSetLiteral;
 import org.dbsp.sqlCompiler.ir.path.DBSPPath;
 import org.dbsp.sqlCompiler.ir.expression.*;
 import org.dbsp.sqlCompiler.ir.path.DBSPSimplePathSegment;
 import org.dbsp.sqlCompiler.ir.type.*;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBool;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeDate;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeTimestamp;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeVoid;
@@ -60,8 +67,10 @@ import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeWeight;
 import org.dbsp.util.*;
 
 import javax.annotation.Nullable;
+import java.math.BigInteger;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -142,7 +151,7 @@ public class CalciteToDBSPCompiler extends RelVisitor
         if (value != null) {
             Logger.INSTANCE.belowLevel(this, 4)
                     .append("Processing ")
-                    .append(node.toString())
+                    .appendSupplier(node::toString)
                     .newline();
             method.accept(value);
             return true;
@@ -291,6 +300,269 @@ public class CalciteToDBSPCompiler extends RelVisitor
         this.assignOperator(uncollect, flatMap);
     }
 
+    /**
+     * The index of the column named by a DESCRIPTOR operand of a window table function.
+     */
+    static int descriptorColumn(RexNode operand) {
+        if (!(operand instanceof RexCall) || operand.getKind() != SqlKind.DESCRIPTOR)
+            throw new UnimplementedException(new CalciteObject(operand));
+        RexCall call = (RexCall) operand;
+        if (call.getOperands().size() != 1 || !(call.getOperands().get(0) instanceof RexInputRef))
+            throw new UnsupportedException("Window table functions require a single time column",
+                    new CalciteObject(operand));
+        return ((RexInputRef) call.getOperands().get(0)).getIndex();
+    }
+
+    /**
+     * The value in milliseconds of an interval operand of a window table function.
+     */
+    static long windowInterval(RexNode operand) {
+        CalciteObject node = new CalciteObject(operand);
+        if (!(operand instanceof RexLiteral))
+            throw new UnsupportedException("Window table function arguments must be constant", node);
+        RexLiteral literal = (RexLiteral) operand;
+        if (!SqlTypeName.DAY_INTERVAL_TYPES.contains(literal.getTypeName()))
+            throw new UnsupportedException("Window table functions only support intervals in days or smaller units",
+                    node);
+        return Objects.requireNonNull(literal.getValueAs(Long.class));
+    }
+
+    /**
+     * Windowing table functions append the columns window_start and window_end to the input.
+     * TUMBLE(TABLE t, DESCRIPTOR(ts), size [, offset]) assigns each row to one window:
+     * map(|t| Tuple::new(t.0.clone(), ..., start, start + size)), where
+     * start = tumble_start(t.ts, size, offset).
+     * HOP(TABLE t, DESCRIPTOR(ts), slide, size [, offset]) assigns each row to all the
+     * windows that contain it, by flattening the vector produced by hop_start(t.ts, slide, size, offset):
+     * map(|t| Tuple::new(t.0.clone(), ..., starts)).flat_map(...).map(|t| Tuple::new(..., t.n + size))
+     */
+    public void visitTableFunctionScan(LogicalTableFunctionScan tf) {
+        CalciteObject node = new CalciteObject(tf);
+        RexNode invocation = tf.getCall();
+        if (!(invocation instanceof RexCall) || tf.getInputs().size() != 1)
+            throw new UnimplementedException(node);
+        RexCall call = (RexCall) invocation;
+        SqlOperator operator = call.getOperator();
+        // The kind of the window table functions is OTHER_FUNCTION
+        boolean tumble = operator == SqlStdOperatorTable.TUMBLE;
+        if (!tumble && operator != SqlStdOperatorTable.HOP)
+            throw new UnimplementedException(node);
+
+        RelNode input = tf.getInput(0);
+        DBSPOperator opInput = this.getInputAs(input, true);
+        DBSPTypeTuple inputType = this.convertType(input.getRowType()).to(DBSPTypeTuple.class);
+        DBSPTypeTuple outputType = this.convertType(tf.getRowType()).to(DBSPTypeTuple.class);
+        List<RexNode> operands = call.getOperands();
+        int timeColumn = descriptorColumn(operands.get(0));
+        DBSPType columnType = inputType.getFieldType(timeColumn);
+        if (!columnType.is(DBSPTypeTimestamp.class))
+            throw new UnsupportedException("Window table functions require a TIMESTAMP time column", node);
+        DBSPType startType = outputType.getFieldType(inputType.size());
+        DBSPType endType = outputType.getFieldType(inputType.size() + 1);
+
+        DBSPVariablePath t = inputType.ref().var("t");
+        DBSPExpression time = t.field(timeColumn).applyCloneIfNeeded();
+        DBSPType timeType = columnType.setMayBeNull(false);
+        if (columnType.mayBeNull) {
+            // The window columns are never NULL: rows with a NULL time do not belong to any window
+            DBSPExpression notNull = new DBSPUnaryExpression(node, DBSPTypeBool.INSTANCE, DBSPOpcode.NOT,
+                    t.field(timeColumn).is_null());
+            opInput = new DBSPFilterOperator(node, notNull.closure(t.asParameter()), opInput);
+            this.circuit.addOperator(opInput);
+            time = time.cast(timeType);
+        }
+        List<DBSPExpression> fields = new ArrayList<>();
+        for (int i = 0; i < inputType.size(); i++)
+            fields.add(t.field(i).applyCloneIfNeeded());
+        long size;
+        if (tumble) {
+            size = windowInterval(operands.get(1));
+            long offset = operands.size() > 2 ? windowInterval(operands.get(2)) : 0;
+            if (size <= 0)
+                throw new UnsupportedException("TUMBLE window size must be positive", node);
+            DBSPExpression start = new DBSPApplyExpression(node, "tumble_start_Timestamp",
+                    timeType, time, new DBSPI64Literal(size), new DBSPI64Literal(offset));
+            fields.add(start.cast(startType));
+            DBSPExpression end = ExpressionCompiler.makeBinaryExpression(node, timeType, DBSPOpcode.ADD,
+                    Linq.list(start, new DBSPIntervalMillisLiteral(size, false)));
+            fields.add(end.cast(endType));
+            DBSPExpression mapper = new DBSPTupleExpression(fields, false).closure(t.asParameter());
+            DBSPMapOperator map = new DBSPMapOperator(node, mapper, outputType, DBSPTypeWeight.INSTANCE, opInput);
+            this.assignOperator(tf, map);
+            return;
+        }
+
+        long slide = windowInterval(operands.get(1));
+        size = windowInterval(operands.get(2));
+        long offset = operands.size() > 3 ? windowInterval(operands.get(3)) : 0;
+        if (slide <= 0 || size <= 0)
+            throw new UnsupportedException("HOP window slide and size must be positive", node);
+        // Append the vector with the starts of all the windows that contain the row
+        DBSPTypeVec startsType = new DBSPTypeVec(timeType, false);
+        fields.add(new DBSPApplyExpression(node, "hop_start_Timestamp", startsType,
+                time, new DBSPI64Literal(slide), new DBSPI64Literal(size), new DBSPI64Literal(offset)));
+        DBSPTypeTuple startsTupleType = new DBSPTypeTuple(Linq.map(fields, DBSPExpression::getType));
+        DBSPExpression mapper = new DBSPTupleExpression(fields, false).closure(t.asParameter());
+        DBSPMapOperator starts = new DBSPMapOperator(node, mapper, startsTupleType, DBSPTypeWeight.INSTANCE, opInput);
+        this.circuit.addOperator(starts);
+
+        // Produce one row for each window
+        List<Integer> outputFields = IntStream.range(0, inputType.size())
+                .boxed()
+                .collect(Collectors.toList());
+        outputFields.add(DBSPFlatmap.ITERATED_ELEMENT);
+        DBSPTypeTuple flatType = new DBSPTypeTuple(Linq.map(outputFields,
+                f -> f == DBSPFlatmap.ITERATED_ELEMENT ? timeType : inputType.getFieldType(f)));
+        DBSPFlatmap flatmap = new DBSPFlatmap(node, startsTupleType, inputType.size(), outputFields, null);
+        DBSPFlatMapOperator flatMap = new DBSPFlatMapOperator(node, flatmap,
+                TypeCompiler.makeZSet(flatType, DBSPTypeWeight.INSTANCE), starts);
+        this.circuit.addOperator(flatMap);
+
+        // Append the window end
+        DBSPVariablePath w = flatType.ref().var("w");
+        fields.clear();
+        for (int i = 0; i < inputType.size(); i++)
+            fields.add(w.field(i).applyCloneIfNeeded());
+        DBSPExpression start = w.field(inputType.size()).applyCloneIfNeeded();
+        fields.add(start.cast(startType));
+        DBSPExpression end = ExpressionCompiler.makeBinaryExpression(node, timeType, DBSPOpcode.ADD,
+                Linq.list(start, new DBSPIntervalMillisLiteral(size, false)));
+        fields.add(end.cast(endType));
+        mapper = new DBSPTupleExpression(fields, false).closure(w.asParameter());
+        DBSPMapOperator map = new DBSPMapOperator(node, mapper, outputType, DBSPTypeWeight.INSTANCE, flatMap);
+        this.assignOperator(tf, map);
+    }
+
+    /**
+     * True if the aggregate computes a single MIN or MAX.  These are implemented
+     * using the Min and Max aggregators of the runtime, which read the extreme
+     * value from the sorted trace of each group, instead of folding over all the
+     * rows of the group each time the group changes.
+     */
+    boolean isMinMax(List<AggregateCall> aggregates) {
+        if (this.options.ioOptions.jit || aggregates.size() != 1)
+            return false;
+        AggregateCall call = aggregates.get(0);
+        SqlKind kind = call.getAggregation().getKind();
+        return (kind == SqlKind.MIN || kind == SqlKind.MAX) && call.getArgList().size() == 1;
+    }
+
+    /**
+     * The argument of a MIN or MAX aggregate call.  Rows that do not satisfy
+     * the FILTER of the aggregate contribute a NULL value.
+     * @param call  MIN or MAX aggregate call.
+     * @param t     Variable holding a reference to the input row.
+     */
+    DBSPExpression minMaxArgument(CalciteObject node, AggregateCall call, DBSPVariablePath t) {
+        DBSPExpression value = t.field(call.getArgList().get(0)).applyCloneIfNeeded();
+        if (call.filterArg < 0)
+            return value;
+        DBSPType type = value.getType().setMayBeNull(true);
+        DBSPExpression filter = ExpressionCompiler.wrapBoolIfNeeded(t.field(call.filterArg));
+        return new DBSPIfExpression(node, filter, value.cast(type), DBSPLiteral.none(type));
+    }
+
+    /**
+     * The value that is indexed by the group key for a MIN or MAX aggregate.
+     * The argument of the aggregate is the last field of the result.
+     * Since None is smaller than any other value, for MIN the argument is
+     * preceded by a field that orders NULL values last.
+     */
+    DBSPTupleExpression minMaxValue(CalciteObject node, AggregateCall call, DBSPVariablePath t) {
+        DBSPExpression value = this.minMaxArgument(node, call, t);
+        if (call.getAggregation().getKind() == SqlKind.MIN && value.getType().mayBeNull)
+            return new DBSPTupleExpression(
+                    new DBSPIsNullExpression(node, this.minMaxArgument(node, call, t)), value);
+        return new DBSPTupleExpression(value);
+    }
+
+    /**
+     * Flatten the output of an aggregate operator into a set of tuples
+     * containing the group keys followed by the aggregate values.
+     * @param agg                  Aggregate operator; not yet added to the circuit.
+     * @param tuple                Type of the result.
+     * @param groupCount           Number of group keys.
+     * @param firstAggregateField  Field of the aggregate value that holds the first aggregate.
+     */
+    DBSPMapOperator flattenAggregate(CalciteObject node, DBSPAggregateOperator agg,
+                                     DBSPTypeTuple tuple, int groupCount, int firstAggregateField) {
+        DBSPTypeRawTuple kvType = new DBSPTypeRawTuple(agg.keyType.ref(), agg.outputElementType.ref());
+        DBSPVariablePath kv = kvType.var("kv");
+        DBSPExpression[] flattenFields = new DBSPExpression[tuple.size()];
+        for (int i = 0; i < groupCount; i++)
+            flattenFields[i] = kv.field(0).field(i).applyCloneIfNeeded();
+        for (int i = groupCount; i < tuple.size(); i++) {
+            DBSPExpression flattenField = kv.field(1).field(firstAggregateField + i - groupCount).applyCloneIfNeeded();
+            // Here we correct from the type produced by the Folder (typeFromAggregate) to the
+            // actual expected type of the field.
+            flattenFields[i] = flattenField.cast(tuple.getFieldType(i));
+        }
+        DBSPExpression mapper = new DBSPTupleExpression(flattenFields).closure(kv.asParameter());
+        this.circuit.addOperator(agg);
+        return new DBSPMapOperator(node, mapper, tuple, DBSPTypeWeight.INSTANCE, agg);
+    }
+
+    /**
+     * True if some, but not all, the components of the aggregate are linear.
+     */
+    boolean isPartiallyLinear(DBSPAggregate fold) {
+        if (this.options.ioOptions.jit || fold.isLinear())
+            return false;
+        return Linq.any(fold.components, c -> c.linearFunction != null);
+    }
+
+    /**
+     * Compute the linear components of an aggregate separately from the other
+     * components, and join the results on the group key.
+     * The linear components are then maintained by adding up the changes,
+     * without reading the rows of the group.
+     * @param fold        Aggregate with some linear components.
+     * @param index       Input indexed by the group key.
+     * @param tuple       Type of the result.
+     * @param groupCount  Number of group keys.
+     */
+    DBSPOperator splitLinear(CalciteObject node, DBSPAggregate fold, DBSPIndexOperator index,
+                             DBSPTypeTuple tuple, int groupCount) {
+        List<DBSPAggregate.Implementation> linear = new ArrayList<>();
+        List<DBSPAggregate.Implementation> other = new ArrayList<>();
+        for (DBSPAggregate.Implementation impl: fold.components) {
+            if (impl.linearFunction != null)
+                linear.add(impl);
+            else
+                other.add(impl);
+        }
+        DBSPAggregate linearFold = new DBSPAggregate(fold.getNode(), fold.rowVar,
+                linear.toArray(new DBSPAggregate.Implementation[0]), fold.isWindowAggregate);
+        DBSPAggregate otherFold = new DBSPAggregate(fold.getNode(), fold.rowVar,
+                other.toArray(new DBSPAggregate.Implementation[0]), fold.isWindowAggregate);
+        DBSPAggregateOperator linearAgg = new DBSPAggregateOperator(node, index.keyType,
+                linearFold.defaultZeroType(), DBSPTypeWeight.INSTANCE, null, linearFold, index, true);
+        this.circuit.addOperator(linearAgg);
+        DBSPAggregateOperator otherAgg = new DBSPAggregateOperator(node, index.keyType,
+                otherFold.defaultZeroType(), DBSPTypeWeight.INSTANCE, null, otherFold, index, false);
+        this.circuit.addOperator(otherAgg);
+
+        DBSPVariablePath k = index.keyType.var("k");
+        DBSPVariablePath l = linearAgg.outputElementType.ref().var("l");
+        DBSPVariablePath r = otherAgg.outputElementType.ref().var("r");
+        DBSPExpression[] fields = new DBSPExpression[tuple.size()];
+        for (int i = 0; i < groupCount; i++)
+            fields[i] = k.field(i).applyCloneIfNeeded();
+        int linearIndex = 0;
+        int otherIndex = 0;
+        for (int i = groupCount; i < tuple.size(); i++) {
+            DBSPExpression field;
+            if (fold.components[i - groupCount].linearFunction != null)
+                field = l.field(linearIndex++);
+            else
+                field = r.field(otherIndex++);
+            fields[i] = field.applyCloneIfNeeded().cast(tuple.getFieldType(i));
+        }
+        DBSPExpression join = new DBSPTupleExpression(fields)
+                .closure(k.asRefParameter(), l.asParameter(), r.asParameter());
+        return new DBSPJoinOperator(node, tuple, DBSPTypeWeight.INSTANCE, join, false, linearAgg, otherAgg);
+    }
+
     public void visitAggregate(LogicalAggregate aggregate) {
         CalciteObject node = new CalciteObject(aggregate);
         DBSPType type = this.convertType(aggregate.getRowType());
@@ -312,41 +584,48 @@ public class CalciteToDBSPCompiler extends RelVisitor
             }
             DBSPExpression keyExpression = new DBSPRawTupleExpression(groups);
             DBSPType[] aggTypes = Utilities.arraySlice(tuple.tupFields, aggregate.getGroupCount());
-            DBSPTypeTuple aggType = new DBSPTypeTuple(aggTypes);
 
-            DBSPExpression groupKeys =
-                    new DBSPRawTupleExpression(
-                            keyExpression,
-                            DBSPTupleExpression.flatten(t)).closure(
-                    t.asParameter());
-            DBSPIndexOperator index = new DBSPIndexOperator(
-                    node, groupKeys,
-                    keyExpression.getType(), inputRowType, DBSPTypeWeight.INSTANCE, false, opInput);
-            this.circuit.addOperator(index);
             DBSPType groupType = keyExpression.getType();
-            DBSPAggregate fold = this.createAggregate(aggregate, aggregates, tuple, inputRowType, aggregate.getGroupCount());
-            // The aggregate operator will not return a stream of type aggType, but a stream
-            // with a type given by fd.defaultZero.
-            DBSPTypeTuple typeFromAggregate = fold.defaultZeroType();
-            DBSPAggregateOperator agg = new DBSPAggregateOperator(node, groupType,
-                    typeFromAggregate, DBSPTypeWeight.INSTANCE, null, fold, index, fold.isLinear());
-
-            // Flatten the resulting set
-            DBSPTypeRawTuple kvType = new DBSPTypeRawTuple(groupType.ref(), typeFromAggregate.ref());
-            DBSPVariablePath kv = kvType.var("kv");
-            DBSPExpression[] flattenFields = new DBSPExpression[aggregate.getGroupCount() + aggType.size()];
-            for (int i = 0; i < aggregate.getGroupCount(); i++)
-                flattenFields[i] = kv.field(0).field(i).applyCloneIfNeeded();
-            for (int i = 0; i < aggType.size(); i++) {
-                DBSPExpression flattenField = kv.field(1).field(i).applyCloneIfNeeded();
-                // Here we correct from the type produced by the Folder (typeFromAggregate) to the
-                // actual expected type aggType (which is the tuple of aggTypes).
-                flattenFields[aggregate.getGroupCount() + i] = flattenField.cast(aggTypes[i]);
+            DBSPOperator map;
+            DBSPExpression defaultZero;
+            if (this.isMinMax(aggregates)) {
+                AggregateCall call = aggregates.get(0);
+                DBSPTupleExpression value = this.minMaxValue(node, call, t);
+                DBSPExpression groupKeys = new DBSPRawTupleExpression(keyExpression, value)
+                        .closure(t.asParameter());
+                DBSPIndexOperator index = new DBSPIndexOperator(
+                        node, groupKeys, groupType, value.getType(), DBSPTypeWeight.INSTANCE, false, opInput);
+                this.circuit.addOperator(index);
+                String aggregator = call.getAggregation().getKind() == SqlKind.MIN ? "Min" : "Max";
+                DBSPExpression function = DBSPTypeAny.INSTANCE.path(new DBSPPath(aggregator));
+                DBSPAggregateOperator agg = new DBSPAggregateOperator(node, groupType, value.getType(),
+                        DBSPTypeWeight.INSTANCE, function, null, index, false);
+                defaultZero = new DBSPTupleExpression(DBSPLiteral.none(aggTypes[0]));
+                map = this.flattenAggregate(node, agg, tuple, aggregate.getGroupCount(), value.size() - 1);
+            } else {
+                DBSPExpression groupKeys =
+                        new DBSPRawTupleExpression(
+                                keyExpression,
+                                DBSPTupleExpression.flatten(t)).closure(
+                        t.asParameter());
+                DBSPIndexOperator index = new DBSPIndexOperator(
+                        node, groupKeys,
+                        groupType, inputRowType, DBSPTypeWeight.INSTANCE, false, opInput);
+                this.circuit.addOperator(index);
+                DBSPAggregate fold = this.createAggregate(aggregate, aggregates, tuple, inputRowType, aggregate.getGroupCount());
+                defaultZero = fold.defaultZero();
+                if (this.isPartiallyLinear(fold)) {
+                    map = this.splitLinear(node, fold, index, tuple, aggregate.getGroupCount());
+                } else {
+                    // The aggregate operator will not return a stream of type aggType, but a stream
+                    // with a type given by fd.defaultZero.
+                    DBSPTypeTuple typeFromAggregate = fold.defaultZeroType();
+                    DBSPAggregateOperator agg = new DBSPAggregateOperator(node, groupType,
+                            typeFromAggregate, DBSPTypeWeight.INSTANCE, null, fold, index, fold.isLinear());
+                    map = this.flattenAggregate(node, agg, tuple, aggregate.getGroupCount(), 0);
+                }
             }
-            DBSPExpression mapper = new DBSPTupleExpression(flattenFields).closure(kv.asParameter());
-            this.circuit.addOperator(agg);
-            DBSPMapOperator map = new DBSPMapOperator(node,
-                    mapper, tuple, DBSPTypeWeight.INSTANCE, agg);
+
             if (aggregate.getGroupCount() == 0) {
                 // This almost works, but we have a problem with empty input collections
                 // for aggregates without grouping.
@@ -370,13 +649,13 @@ public class CalciteToDBSPCompiler extends RelVisitor
                 //              {z->1}/{c->1}
                 this.circuit.addOperator(map);
                 DBSPVariablePath _t = tuple.var("_t");
-                DBSPExpression toZero = fold.defaultZero().closure(_t.asRefParameter());
+                DBSPExpression toZero = defaultZero.closure(_t.asRefParameter());
                 DBSPOperator map1 = new DBSPMapOperator(node, toZero, type, DBSPTypeWeight.INSTANCE, map);
                 this.circuit.addOperator(map1);
                 DBSPOperator neg = new DBSPNegateOperator(node, map1);
                 this.circuit.addOperator(neg);
                 DBSPOperator constant = new DBSPConstantOperator(
-                        node, new DBSPZSetLiteral(DBSPTypeWeight.INSTANCE, fold.defaultZero()), false);
+                        node, new DBSPZSetLiteral(DBSPTypeWeight.INSTANCE, defaultZero), false);
                 this.circuit.addOperator(constant);
                 DBSPOperator sum = new DBSPSumOperator(node, Linq.list(constant, neg, map));
                 this.assignOperator(aggregate, sum);
@@ -417,8 +696,13 @@ public class CalciteToDBSPCompiler extends RelVisitor
             if (et != null)
                 comment = et.getStatement();
         }
+        List<Integer> primaryKey = new ArrayList<>();
+        CreateTableStatement def = this.tableContents.findTableDefinition(tableName);
+        if (def != null)
+            primaryKey = def.primaryKey;
         DBSPType rowType = this.convertType(scan.getRowType());
-        DBSPSourceOperator result = new DBSPSourceOperator(node, this.makeZSet(rowType), comment, tableName);
+        DBSPSourceOperator result = new DBSPSourceOperator(
+                node, this.makeZSet(rowType), comment, tableName, primaryKey);
         this.assignOperator(scan, result);
     }
 
@@ -569,11 +853,185 @@ public class CalciteToDBSPCompiler extends RelVisitor
         return filter;
     }
 
+    /**
+     * Generate a semi-join: the rows of an indexed collection whose keys appear in a set.
+     * The rows keep their multiplicity; only the distinct keys of the set are stored.
+     * @param indexed     Indexed collection with tuple values.
+     * @param set         Collection of tuples; duplicates are removed.
+     * @param setKey      Computes the key of a tuple in the set, with the type of the keys of 'indexed'.
+     * @param resultType  Type of the result; the values of 'indexed' are cast to this type.
+     */
+    private DBSPOperator semiJoin(CalciteObject node, DBSPIndexOperator indexed, DBSPOperator set,
+                                  Function<DBSPVariablePath, DBSPExpression> setKey, DBSPTypeTuple resultType) {
+        DBSPOperator distinct = new DBSPDistinctOperator(node, set);
+        this.circuit.addOperator(distinct);
+        DBSPVariablePath s = set.getOutputZSetElementType().ref().var("s");
+        DBSPIndexOperator keys = new DBSPIndexOperator(node,
+                new DBSPRawTupleExpression(setKey.apply(s), new DBSPRawTupleExpression()).closure(s.asParameter()),
+                indexed.keyType, new DBSPTypeRawTuple(), DBSPTypeWeight.INSTANCE, false, distinct);
+        this.circuit.addOperator(keys);
+        DBSPVariablePath k = indexed.keyType.var("k");
+        DBSPVariablePath v = indexed.elementType.ref().var("v");
+        DBSPVariablePath u = DBSPTypeRawTuple.EMPTY_TUPLE_TYPE.ref().var("u");
+        DBSPOperator result = new DBSPJoinOperator(node, resultType, DBSPTypeWeight.INSTANCE,
+                DBSPTupleExpression.flatten(v).pointwiseCast(resultType).closure(
+                        k.asRefParameter(), v.asParameter(), u.asParameter()),
+                indexed.isMultiset, indexed, keys);
+        this.circuit.addOperator(result);
+        return result;
+    }
+
+    /**
+     * Generate an anti-join: the rows of a collection that are not in its semi-join.
+     * @param input     Collection.
+     * @param semiJoin  Semi-join of the collection; the result has the same type.
+     */
+    private DBSPOperator antiJoin(CalciteObject node, DBSPOperator input, DBSPOperator semiJoin) {
+        DBSPTypeTuple inputType = input.getOutputZSetElementType();
+        DBSPTypeTuple resultType = semiJoin.getOutputZSetElementType();
+        if (!resultType.sameType(inputType)) {
+            DBSPVariablePath t = inputType.ref().var("t");
+            input = new DBSPMapOperator(node,
+                    DBSPTupleExpression.flatten(t).pointwiseCast(resultType).closure(t.asParameter()),
+                    resultType, DBSPTypeWeight.INSTANCE, input);
+            this.circuit.addOperator(input);
+        }
+        DBSPOperator result = new DBSPSubtractOperator(node, input, semiJoin);
+        this.circuit.addOperator(result);
+        return result;
+    }
+
+    /**
+     * Index a collection on entire rows cast to the specified type.
+     */
+    private DBSPIndexOperator indexRows(CalciteObject node, DBSPOperator input, DBSPTypeTuple keyType) {
+        DBSPTypeTuple rowType = input.getOutputZSetElementType();
+        DBSPVariablePath t = rowType.ref().var("t");
+        DBSPIndexOperator result = new DBSPIndexOperator(node,
+                new DBSPRawTupleExpression(
+                        DBSPTupleExpression.flatten(t).pointwiseCast(keyType),
+                        DBSPTupleExpression.flatten(t)).closure(t.asParameter()),
+                keyType, rowType, DBSPTypeWeight.INSTANCE, input.isMultiset, input);
+        this.circuit.addOperator(result);
+        return result;
+    }
+
+    /**
+     * Key of a join: a raw tuple with the fields of a tuple.
+     */
+    static DBSPExpression joinKey(DBSPVariablePath tuple) {
+        return new DBSPRawTupleExpression(DBSPTupleExpression.flatten(tuple).fields);
+    }
+
+    /**
+     * Value of a column of a band join as a 64-bit integer:
+     * the value for integers, and the seconds since the epoch for timestamps.
+     * @param field  A column which is not null.
+     */
+    static DBSPExpression bandValue(DBSPExpression field, boolean isTimestamp) {
+        if (isTimestamp)
+            return new DBSPApplyExpression(field.getNode(), "extract_epoch_Timestamp", DBSPTypeInteger.SIGNED_64,
+                    field.cast(field.getType().setMayBeNull(false)));
+        return field.cast(DBSPTypeInteger.SIGNED_64);
+    }
+
+    /**
+     * Extend each row of a collection with a new field.
+     * @param row    Variable standing for a row of the input.
+     * @param field  Value of the new field, as a function of 'row'.
+     */
+    private DBSPOperator appendField(CalciteObject node, DBSPOperator input,
+                                     DBSPVariablePath row, DBSPExpression field) {
+        List<DBSPExpression> fields = new ArrayList<>(Arrays.asList(DBSPTupleExpression.flatten(row).fields));
+        fields.add(field);
+        DBSPTupleExpression tuple = new DBSPTupleExpression(fields, false);
+        DBSPOperator result = new DBSPMapOperator(node, tuple.closure(row.asParameter()),
+                tuple.getType(), DBSPTypeWeight.INSTANCE, input);
+        this.circuit.addOperator(result);
+        return result;
+    }
+
+    /**
+     * Compile a SEMI or ANTI join.
+     * The semi-join is the join of the left collection with the distinct set
+     * of keys of the right collection.
+     * If the condition is not just an equality of keys, the rows matching the
+     * condition are computed with a regular join, and the semi-join uses the
+     * distinct matching left rows as keys.  In this case the state includes
+     * all the rows of both collections, as for a regular join.
+     * The anti-join is the left collection minus the semi-join; anti-joins
+     * are produced by FilterJoinToAntiJoinRule.
+     */
+    private void visitSemiJoin(LogicalJoin join, DBSPOperator left,
+                               DBSPOperator filteredLeft, DBSPOperator filteredRight,
+                               JoinConditionAnalyzer.ConditionDecomposition decomposition) {
+        CalciteObject node = new CalciteObject(join);
+        DBSPTypeTuple resultType = this.convertType(join.getRowType()).to(DBSPTypeTuple.class);
+        DBSPTypeTuple leftElementType = filteredLeft.getOutputZSetElementType();
+        DBSPTypeTuple rightElementType = filteredRight.getOutputZSetElementType();
+        DBSPVariablePath l = leftElementType.ref().var("l");
+        DBSPVariablePath r = rightElementType.ref().var("r");
+        DBSPExpression leftKey = new DBSPRawTupleExpression(Linq.map(
+                decomposition.comparisons,
+                c -> l.field(c.leftColumn).applyCloneIfNeeded().cast(c.resultType)));
+        List<DBSPExpression> rightKeyFields = Linq.map(
+                decomposition.comparisons,
+                c -> r.field(c.rightColumn).applyCloneIfNeeded().cast(c.resultType));
+        DBSPType keyType = leftKey.getType();
+        DBSPIndexOperator leftIndex = new DBSPIndexOperator(node,
+                new DBSPRawTupleExpression(leftKey, DBSPTupleExpression.flatten(l)).closure(l.asParameter()),
+                keyType, leftElementType, DBSPTypeWeight.INSTANCE, filteredLeft.isMultiset, filteredLeft);
+        this.circuit.addOperator(leftIndex);
+
+        DBSPOperator result;
+        @Nullable
+        RexNode leftOver = decomposition.getLeftOver();
+        if (leftOver == null) {
+            DBSPTupleExpression rightKey = new DBSPTupleExpression(rightKeyFields, false);
+            DBSPOperator rightKeys = new DBSPMapOperator(node, rightKey.closure(r.asParameter()),
+                    rightKey.getType(), DBSPTypeWeight.INSTANCE, filteredRight);
+            this.circuit.addOperator(rightKeys);
+            result = this.semiJoin(node, leftIndex, rightKeys, CalciteToDBSPCompiler::joinKey, resultType);
+        } else {
+            // Join the two collections and keep the left rows that satisfy the condition
+            DBSPTypeTuple bothType = new DBSPTypeTuple(
+                    Linq.concat(leftElementType.tupFields, rightElementType.tupFields));
+            DBSPIndexOperator rightIndex = new DBSPIndexOperator(node,
+                    new DBSPRawTupleExpression(
+                            new DBSPRawTupleExpression(rightKeyFields),
+                            DBSPTupleExpression.flatten(r)).closure(r.asParameter()),
+                    keyType, rightElementType, DBSPTypeWeight.INSTANCE, filteredRight.isMultiset, filteredRight);
+            this.circuit.addOperator(rightIndex);
+            DBSPVariablePath k = keyType.var("k");
+            DBSPJoinOperator both = new DBSPJoinOperator(node, bothType, DBSPTypeWeight.INSTANCE,
+                    DBSPTupleExpression.flatten(l, r).closure(k.asRefParameter(), l.asParameter(), r.asParameter()),
+                    true, leftIndex, rightIndex);
+            this.circuit.addOperator(both);
+
+            DBSPVariablePath t = bothType.ref().var("t");
+            ExpressionCompiler expressionCompiler = new ExpressionCompiler(t, this.compiler);
+            DBSPExpression condition = expressionCompiler.compile(leftOver);
+            if (condition.getType().mayBeNull)
+                condition = ExpressionCompiler.wrapBoolIfNeeded(condition);
+            DBSPFilterOperator filter = new DBSPFilterOperator(node,
+                    new DBSPClosureExpression(new CalciteObject(join.getCondition()), condition, t.asParameter()),
+                    both);
+            this.circuit.addOperator(filter);
+            DBSPOperator matching = new DBSPMapOperator(node,
+                    DBSPTupleExpression.flatten(t).slice(0, leftElementType.size()).closure(t.asParameter()),
+                    leftElementType, DBSPTypeWeight.INSTANCE, filter);
+            this.circuit.addOperator(matching);
+            DBSPIndexOperator rowIndex = this.indexRows(node, filteredLeft, leftElementType);
+            result = this.semiJoin(node, rowIndex, matching, DBSPTupleExpression::flatten, resultType);
+        }
+        if (join.getJoinType() == JoinRelType.ANTI)
+            result = this.antiJoin(node, left, result);
+        Utilities.putNew(this.nodeOperator, join, result);
+    }
+
     private void visitJoin(LogicalJoin join) {
         CalciteObject node = new CalciteObject(join);
         JoinRelType joinType = join.getJoinType();
-        if (joinType == JoinRelType.ANTI || joinType == JoinRelType.SEMI)
-            throw new UnimplementedException(node);
 
         DBSPTypeTuple resultType = this.convertType(join.getRowType()).to(DBSPTypeTuple.class);
         if (join.getInputs().size() != 2)
@@ -589,6 +1047,17 @@ public class CalciteToDBSPCompiler extends RelVisitor
         // If any key field is nullable we need to filter the inputs; this will make key columns non-nullable
         DBSPOperator filteredLeft = this.filterNonNullKeys(join, Linq.map(decomposition.comparisons, c -> c.leftColumn), left);
         DBSPOperator filteredRight = this.filterNonNullKeys(join, Linq.map(decomposition.comparisons, c -> c.rightColumn), right);
+        if (joinType == JoinRelType.ANTI || joinType == JoinRelType.SEMI) {
+            this.visitSemiJoin(join, left, filteredLeft, filteredRight, decomposition);
+            return;
+        }
+        @Nullable
+        JoinConditionAnalyzer.RangeTest range = decomposition.range;
+        if (range != null) {
+            // Rows where the band columns are null cannot match
+            filteredLeft = this.filterNonNullKeys(join, Linq.list(range.leftColumn), filteredLeft);
+            filteredRight = this.filterNonNullKeys(join, Linq.list(range.rightColumn), filteredRight);
+        }
 
         leftElementType = filteredLeft.getType().to(DBSPTypeZSet.class).elementType.to(DBSPTypeTuple.class);
         DBSPTypeTuple rightElementType = filteredRight.getType().to(DBSPTypeZSet.class).elementType
@@ -609,8 +1078,50 @@ public class CalciteToDBSPCompiler extends RelVisitor
         List<DBSPExpression> rightKeyFields = Linq.map(
                 decomposition.comparisons,
                 c -> r.field(c.rightColumn).applyCloneIfNeeded().cast(c.resultType));
-        DBSPExpression leftKey = new DBSPRawTupleExpression(leftKeyFields);
-        DBSPExpression rightKey = new DBSPRawTupleExpression(rightKeyFields);
+        DBSPExpression leftKey;
+        DBSPExpression rightKey;
+        DBSPOperator rightInput = filteredRight;
+        DBSPVariablePath rightTuple = r;
+        if (range == null) {
+            leftKey = new DBSPRawTupleExpression(leftKeyFields);
+            rightKey = new DBSPRawTupleExpression(rightKeyFields);
+        } else {
+            // Band join: the rows are split into buckets of the band width;
+            // a left row can only match right rows in two buckets.
+            // Each right row is emitted in both buckets, extended with the bucket number.
+            long lower = range.lower;
+            long upper = range.upper;
+            if (range.isTimestamp) {
+                // Timestamps are bucketed by seconds; allow for the rounding
+                lower = Math.floorDiv(lower, 1000) - 2;
+                upper = -Math.floorDiv(-upper, 1000) + 2;
+            }
+            DBSPI64Literal width = new DBSPI64Literal(Math.max(upper - lower, 1));
+            DBSPExpression leftBucket = ExpressionCompiler.makeBinaryExpression(node,
+                    DBSPTypeInteger.SIGNED_64, DBSPOpcode.DIV,
+                    Linq.list(bandValue(l.field(range.leftColumn), range.isTimestamp), width));
+            DBSPExpression rightValue = ExpressionCompiler.makeBinaryExpression(node,
+                    DBSPTypeInteger.SIGNED_64, DBSPOpcode.ADD,
+                    Linq.list(bandValue(r.field(range.rightColumn), range.isTimestamp), new DBSPI64Literal(lower)));
+            DBSPExpression rightBucket = ExpressionCompiler.makeBinaryExpression(node,
+                    DBSPTypeInteger.SIGNED_64, DBSPOpcode.DIV, Linq.list(rightValue, width));
+            DBSPExpression nextBucket = ExpressionCompiler.makeBinaryExpression(node,
+                    DBSPTypeInteger.SIGNED_64, DBSPOpcode.ADD, Linq.list(rightBucket, new DBSPI64Literal(1)));
+            DBSPOperator first = this.appendField(node, filteredRight, r, rightBucket);
+            DBSPOperator second = this.appendField(node, filteredRight, r, nextBucket);
+            rightInput = new DBSPSumOperator(node, first, second);
+            this.circuit.addOperator(rightInput);
+            rightTuple = rightInput.getOutputZSetElementType().ref().var("r");
+
+            List<DBSPExpression> leftFields = new ArrayList<>(leftKeyFields);
+            leftFields.add(leftBucket);
+            leftKey = new DBSPRawTupleExpression(leftFields);
+            List<DBSPExpression> rightFields = new ArrayList<>();
+            for (JoinConditionAnalyzer.EqualityTest c: decomposition.comparisons)
+                rightFields.add(rightTuple.field(c.rightColumn).applyCloneIfNeeded().cast(c.resultType));
+            rightFields.add(rightTuple.field(rightColumns));
+            rightKey = new DBSPRawTupleExpression(rightFields);
+        }
 
         @Nullable
         RexNode leftOver = decomposition.getLeftOver();
@@ -634,11 +1145,12 @@ public class CalciteToDBSPCompiler extends RelVisitor
                 leftKey.getType(), leftElementType, DBSPTypeWeight.INSTANCE, false, filteredLeft);
         this.circuit.addOperator(leftIndex);
 
-        DBSPClosureExpression toRightKey = new DBSPRawTupleExpression(rightKey, DBSPTupleExpression.flatten(r))
-                .closure(r.asParameter());
+        DBSPClosureExpression toRightKey = new DBSPRawTupleExpression(
+                rightKey, DBSPTupleExpression.flatten(rightTuple).slice(0, rightColumns))
+                .closure(rightTuple.asParameter());
         DBSPIndexOperator rIndex = new DBSPIndexOperator(
                 node, toRightKey,
-                rightKey.getType(), rightElementType, DBSPTypeWeight.INSTANCE, false, filteredRight);
+                rightKey.getType(), rightElementType, DBSPTypeWeight.INSTANCE, false, rightInput);
         this.circuit.addOperator(rIndex);
 
         // For outer joins additional columns may become nullable.
@@ -661,37 +1173,37 @@ public class CalciteToDBSPCompiler extends RelVisitor
             // if blit it true we don't need to filter.
         }
 
-        // Handle outer joins
+        // Handle outer joins.  The unmatched rows of a side are computed with an anti-join.
+        // If the join condition is an equality of keys, a row is matched if its key appears
+        // on the other side; this reuses the index of the join.
+        // Otherwise, the matched rows are the projection of the inner join.
+        boolean keysOnly = inner == joinResult && !decomposition.comparisons.isEmpty();
         DBSPOperator result = inner;
         DBSPVariablePath joinVar = resultType.var("j");
         if (joinType == JoinRelType.LEFT || joinType == JoinRelType.FULL) {
             DBSPVariablePath lCasted = leftResultType.var("l");
             this.circuit.addOperator(result);
-            // project the join on the left columns
-            DBSPClosureExpression toLeftColumns =
-                    DBSPTupleExpression.flatten(joinVar)
-                            .slice(0, leftColumns)
-                            .pointwiseCast(leftResultType).closure(joinVar.asRefParameter());
-            DBSPOperator joinLeftColumns = new DBSPMapOperator(
-                    node, toLeftColumns,
-                    leftResultType, DBSPTypeWeight.INSTANCE, inner);
-            this.circuit.addOperator(joinLeftColumns);
-            DBSPOperator distJoin = new DBSPDistinctOperator(node, joinLeftColumns);
-            this.circuit.addOperator(distJoin);
-
-            // subtract from left relation
-            DBSPOperator leftCast = left;
-            if (!leftResultType.sameType(leftElementType)) {
-                DBSPClosureExpression castLeft =
-                    DBSPTupleExpression.flatten(l).pointwiseCast(leftResultType).closure(l.asParameter()
-                );
-                leftCast = new DBSPMapOperator(node, castLeft, leftResultType, DBSPTypeWeight.INSTANCE, left);
-                this.circuit.addOperator(leftCast);
+            DBSPOperator matched;
+            if (keysOnly) {
+                DBSPTupleExpression keyTuple = new DBSPTupleExpression(rightKeyFields, false);
+                DBSPOperator rightKeys = new DBSPMapOperator(node, keyTuple.closure(r.asParameter()),
+                        keyTuple.getType(), DBSPTypeWeight.INSTANCE, filteredRight);
+                this.circuit.addOperator(rightKeys);
+                matched = this.semiJoin(node, leftIndex, rightKeys, CalciteToDBSPCompiler::joinKey, leftResultType);
+            } else {
+                // project the join on the left columns
+                DBSPClosureExpression toLeftColumns =
+                        DBSPTupleExpression.flatten(joinVar)
+                                .slice(0, leftColumns)
+                                .pointwiseCast(leftResultType).closure(joinVar.asRefParameter());
+                DBSPOperator joinLeftColumns = new DBSPMapOperator(
+                        node, toLeftColumns,
+                        leftResultType, DBSPTypeWeight.INSTANCE, inner);
+                this.circuit.addOperator(joinLeftColumns);
+                DBSPIndexOperator leftRows = this.indexRows(node, filteredLeft, leftResultType);
+                matched = this.semiJoin(node, leftRows, joinLeftColumns, DBSPTupleExpression::flatten, leftResultType);
             }
-            DBSPOperator sub = new DBSPSubtractOperator(node, leftCast, distJoin);
-            this.circuit.addOperator(sub);
-            DBSPDistinctOperator dist = new DBSPDistinctOperator(node, sub);
-            this.circuit.addOperator(dist);
+            DBSPOperator unmatched = this.antiJoin(node, left, matched);
 
             // fill nulls in the right relation fields
             DBSPTupleExpression rEmpty = new DBSPTupleExpression(
@@ -700,40 +1212,35 @@ public class CalciteToDBSPCompiler extends RelVisitor
             DBSPClosureExpression leftRow = DBSPTupleExpression.flatten(lCasted, rEmpty).closure(
                     lCasted.asRefParameter());
             DBSPOperator expand = new DBSPMapOperator(node,
-                    leftRow, resultType, DBSPTypeWeight.INSTANCE, dist);
+                    leftRow, resultType, DBSPTypeWeight.INSTANCE, unmatched);
             this.circuit.addOperator(expand);
             result = new DBSPSumOperator(node, result, expand);
         }
         if (joinType == JoinRelType.RIGHT || joinType == JoinRelType.FULL) {
             DBSPVariablePath rCasted = rightResultType.var("r");
             this.circuit.addOperator(result);
-
-            // project the join on the right columns
-            DBSPClosureExpression toRightColumns =
-                    DBSPTupleExpression.flatten(joinVar)
-                            .slice(leftColumns, totalColumns)
-                            .pointwiseCast(rightResultType).closure(
-                    joinVar.asRefParameter());
-            DBSPOperator joinRightColumns = new DBSPMapOperator(
-                    node, toRightColumns,
-                    rightResultType, DBSPTypeWeight.INSTANCE, inner);
-            this.circuit.addOperator(joinRightColumns);
-            DBSPOperator distJoin = new DBSPDistinctOperator(node, joinRightColumns);
-            this.circuit.addOperator(distJoin);
-
-            // subtract from right relation
-            DBSPOperator rightCast = right;
-            if (!rightResultType.sameType(rightElementType)) {
-                DBSPClosureExpression castRight =
-                        DBSPTupleExpression.flatten(r).pointwiseCast(rightResultType).closure(
-                        r.asParameter());
-                rightCast = new DBSPMapOperator(node, castRight, rightResultType, DBSPTypeWeight.INSTANCE, right);
-                this.circuit.addOperator(rightCast);
+            DBSPOperator matched;
+            if (keysOnly) {
+                DBSPTupleExpression keyTuple = new DBSPTupleExpression(leftKeyFields, false);
+                DBSPOperator leftKeys = new DBSPMapOperator(node, keyTuple.closure(l.asParameter()),
+                        keyTuple.getType(), DBSPTypeWeight.INSTANCE, filteredLeft);
+                this.circuit.addOperator(leftKeys);
+                matched = this.semiJoin(node, rIndex, leftKeys, CalciteToDBSPCompiler::joinKey, rightResultType);
+            } else {
+                // project the join on the right columns
+                DBSPClosureExpression toRightColumns =
+                        DBSPTupleExpression.flatten(joinVar)
+                                .slice(leftColumns, totalColumns)
+                                .pointwiseCast(rightResultType).closure(
+                        joinVar.asRefParameter());
+                DBSPOperator joinRightColumns = new DBSPMapOperator(
+                        node, toRightColumns,
+                        rightResultType, DBSPTypeWeight.INSTANCE, inner);
+                this.circuit.addOperator(joinRightColumns);
+                DBSPIndexOperator rightRows = this.indexRows(node, filteredRight, rightResultType);
+                matched = this.semiJoin(node, rightRows, joinRightColumns, DBSPTupleExpression::flatten, rightResultType);
             }
-            DBSPOperator sub = new DBSPSubtractOperator(node, rightCast, distJoin);
-            this.circuit.addOperator(sub);
-            DBSPDistinctOperator dist = new DBSPDistinctOperator(node, sub);
-            this.circuit.addOperator(dist);
+            DBSPOperator unmatched = this.antiJoin(node, right, matched);
 
             // fill nulls in the left relation fields
             DBSPTupleExpression lEmpty = new DBSPTupleExpression(
@@ -743,7 +1250,7 @@ public class CalciteToDBSPCompiler extends RelVisitor
                     DBSPTupleExpression.flatten(lEmpty, rCasted).closure(
                     rCasted.asRefParameter());
             DBSPOperator expand = new DBSPMapOperator(node,
-                    rightRow, resultType, DBSPTypeWeight.INSTANCE, dist);
+                    rightRow, resultType, DBSPTypeWeight.INSTANCE, unmatched);
             this.circuit.addOperator(expand);
             result = new DBSPSumOperator(node, result, expand);
         }
@@ -873,6 +1380,234 @@ public class CalciteToDBSPCompiler extends RelVisitor
                 DBSPTypeAny.INSTANCE, numericBound);
     }
 
+    /**
+     * Number of bits used by window_order_key for a sort key of the specified type.
+     */
+    static int windowOrderKeyBits(DBSPType type, CalciteObject node) {
+        int bits;
+        if (type.is(DBSPTypeInteger.class))
+            bits = type.to(DBSPTypeInteger.class).getWidth();
+        else if (type.is(DBSPTypeBool.class))
+            bits = 1;
+        else if (type.is(DBSPTypeDate.class))
+            bits = 32;
+        else if (type.is(DBSPTypeTimestamp.class))
+            bits = 64;
+        else
+            throw new UnimplementedException("OVER does not support sorting on type " + type, node);
+        return type.mayBeNull ? bits + 1 : bits;
+    }
+
+    /**
+     * A literal of type u64 or u128.
+     */
+    static DBSPLiteral unsignedLiteral(DBSPType type, BigInteger value) {
+        if (type.sameType(DBSPTypeInteger.UNSIGNED_64))
+            return new DBSPU64Literal(value.longValue());
+        return new DBSPU128Literal(value);
+    }
+
+    /**
+     * Compile the bound of a window whose sort keys are combined into
+     * an unsigned integer by window_order_key.  The combined key preserves
+     * the distances between the values of a single sort key.
+     * @param boundType  Type of the combined key.
+     * @param sortType   Type of the sort key, or null if there are several sort keys.
+     */
+    DBSPExpression compileCombinedWindowBound(LogicalWindow window, RexWindowBound bound, DBSPType boundType,
+                                              @Nullable DBSPType sortType, CalciteObject node) {
+        DBSPExpression numericBound;
+        if (bound.isUnbounded())
+            numericBound = unsignedLiteral(boundType, boundType.sameType(DBSPTypeInteger.UNSIGNED_64) ?
+                    BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE) : DBSPU128Literal.MAX);
+        else if (bound.isCurrentRow())
+            numericBound = unsignedLiteral(boundType, BigInteger.ZERO);
+        else {
+            if (sortType == null)
+                throw new UnimplementedException("OVER with an offset requires a single ORDER BY column", node);
+            RexNode offset = Objects.requireNonNull(bound.getOffset());
+            int inputSize = window.getInput().getRowType().getFieldCount();
+            if (offset instanceof RexInputRef && ((RexInputRef) offset).getIndex() >= inputSize)
+                offset = window.constants.get(((RexInputRef) offset).getIndex() - inputSize);
+            if (!(offset instanceof RexLiteral))
+                throw new UnimplementedException("OVER only supports constant offsets", node);
+            if (SqlTypeName.YEAR_INTERVAL_TYPES.contains(offset.getType().getSqlTypeName()))
+                throw new UnimplementedException("OVER does not support offsets in months", node);
+            long value = Objects.requireNonNull(((RexLiteral) offset).getValueAs(Long.class));
+            if (sortType.is(DBSPTypeDate.class))
+                // Dates are represented in days, but intervals in milliseconds
+                value /= 86_400_000L;
+            numericBound = unsignedLiteral(boundType, BigInteger.valueOf(value));
+        }
+        String beforeAfter = bound.isPreceding() ? "Before" : "After";
+        return new DBSPStructExpression(DBSPTypeAny.INSTANCE.path(
+                new DBSPPath("RelOffset", beforeAfter)),
+                DBSPTypeAny.INSTANCE, numericBound);
+    }
+
+    /**
+     * True if the sort keys of a window have to be combined by window_order_key.
+     * A single ascending sort key of a non-nullable integer type is used directly.
+     */
+    static boolean combineWindowOrderKeys(List<RelFieldCollation> orderKeys, DBSPTypeTuple rowType) {
+        if (orderKeys.size() == 1 &&
+                orderKeys.get(0).getDirection() == RelFieldCollation.Direction.ASCENDING) {
+            DBSPType type = rowType.tupFields[orderKeys.get(0).getFieldIndex()];
+            return !type.is(DBSPTypeInteger.class) || type.mayBeNull;
+        }
+        return true;
+    }
+
+    /**
+     * Expression that computes the sort key of a window for the row 'row'.
+     * The natural order of the sort key is the order of the rows in the window.
+     */
+    DBSPExpression windowOrderField(List<RelFieldCollation> orderKeys, DBSPVariablePath row, CalciteObject node) {
+        DBSPTypeTuple rowType = row.getType().deref().to(DBSPTypeTuple.class);
+        if (!combineWindowOrderKeys(orderKeys, rowType))
+            return row.field(orderKeys.get(0).getFieldIndex());
+
+        // Combine the sort keys into an unsigned integer with the same order
+        int bits = 0;
+        for (RelFieldCollation collation: orderKeys)
+            bits += windowOrderKeyBits(rowType.tupFields[collation.getFieldIndex()], node);
+        if (bits > 128)
+            throw new UnimplementedException("OVER does not support sort keys with more than 128 bits", node);
+        DBSPType sortType = bits > 64 ? DBSPTypeInteger.UNSIGNED_128 : DBSPTypeInteger.UNSIGNED_64;
+        DBSPExpression orderField = unsignedLiteral(sortType, BigInteger.ZERO);
+        for (RelFieldCollation collation: orderKeys) {
+            DBSPExpression field = row.field(collation.getFieldIndex());
+            RelFieldCollation.NullDirection nulls = collation.nullDirection;
+            if (nulls == RelFieldCollation.NullDirection.UNSPECIFIED)
+                nulls = collation.getDirection().defaultNullDirection();
+            orderField = new DBSPApplyExpression(node, "window_order_key", sortType,
+                    orderField, field.borrow(),
+                    new DBSPBoolLiteral(collation.getDirection().isDescending()),
+                    new DBSPBoolLiteral(nulls == RelFieldCollation.NullDirection.FIRST));
+        }
+        return orderField;
+    }
+
+    /**
+     * True if the window function is computed by a group transformer
+     * instead of a window aggregate.
+     */
+    static boolean isGroupTransform(AggregateCall call) {
+        switch (call.getAggregation().getKind()) {
+            case ROW_NUMBER:
+            case RANK:
+            case DENSE_RANK:
+            case LAG:
+            case LEAD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The value of an argument of a window function that must be a constant.
+     */
+    static RexLiteral windowConstant(LogicalWindow window, int argument, String message, CalciteObject node) {
+        int inputSize = window.getInput().getRowType().getFieldCount();
+        if (argument < inputSize)
+            throw new UnimplementedException(message, node);
+        return window.constants.get(argument - inputSize);
+    }
+
+    /**
+     * Number the copies of each value of 'input' apart.  'input' is indexed
+     * by partition, and its values have the form (sort key, row).
+     * The result is the change of an indexed collection with the same keys,
+     * whose values have the form ((sort key, row), number), where the copies
+     * of each value are numbered starting from 1 and have weight 1.
+     * The copies are numbered within each distinct value, and not within the
+     * partition, so that inserting or deleting a row does not renumber all
+     * the rows that follow it.
+     */
+    DBSPOperator numberCopies(DBSPOperator input, CalciteObject node) {
+        DBSPTypeIndexedZSet inputType = input.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPVariablePath kv = new DBSPTypeRawTuple(
+                inputType.keyType.ref(), inputType.elementType.ref()).var("kv");
+        DBSPExpression partitionAndValue = new DBSPRawTupleExpression(
+                kv.field(0).applyClone(), kv.field(1).applyClone());
+        DBSPOperator byValue = new DBSPMapIndexOperator(node,
+                new DBSPRawTupleExpression(partitionAndValue, new DBSPRawTupleExpression())
+                        .closure(kv.asParameter()),
+                partitionAndValue.getType(), DBSPTypeRawTuple.EMPTY_TUPLE_TYPE,
+                DBSPTypeWeight.INSTANCE, input);
+        this.circuit.addOperator(byValue);
+        DBSPDifferentialOperator diff = new DBSPDifferentialOperator(node, byValue);
+        this.circuit.addOperator(diff);
+        DBSPOperator numbered = new DBSPIndexedRankOperator(
+                node, DBSPIndexedRankOperator.Kind.ROW_NUMBER, null, diff);
+        this.circuit.addOperator(numbered);
+
+        DBSPTypeIndexedZSet numberedType = numbered.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPVariablePath kn = new DBSPTypeRawTuple(
+                numberedType.keyType.ref(), numberedType.elementType.ref()).var("kn");
+        DBSPExpression valueAndNumber = new DBSPRawTupleExpression(
+                kn.field(0).field(1).applyClone(), kn.field(1).field(1).applyCloneIfNeeded());
+        DBSPOperator result = new DBSPMapIndexOperator(node,
+                new DBSPRawTupleExpression(kn.field(0).field(0).applyClone(), valueAndNumber)
+                        .closure(kn.asParameter()),
+                inputType.keyType, valueAndNumber.getType(), DBSPTypeWeight.INSTANCE, numbered);
+        this.circuit.addOperator(result);
+        return result;
+    }
+
+    /**
+     * Create the operator that computes LAG or LEAD for each value of 'input'.
+     * The values of 'input' have the form ((sort key, row), number), and the
+     * rows start with the fields of the input of the window.  The lag and lead
+     * operators step over distinct values, so the copies of a row must be
+     * numbered apart by numberCopies, which gives each copy a weight of 1.
+     */
+    DBSPIndexedLagOperator lagOperator(LogicalWindow window, AggregateCall call,
+                                       DBSPType resultType, DBSPOperator input, CalciteObject node) {
+        List<Integer> args = call.getArgList();
+        boolean lag = call.getAggregation().getKind() == SqlKind.LAG;
+        long offset = 1;
+        if (args.size() > 1) {
+            RexLiteral literal = windowConstant(window, args.get(1),
+                    "LAG and LEAD only support constant offsets", node);
+            offset = Objects.requireNonNull(literal.getValueAs(Long.class));
+            if (offset < 0) {
+                // LAG with a negative offset is LEAD
+                offset = -offset;
+                lag = !lag;
+            }
+        }
+        DBSPExpression defaultValue = DBSPLiteral.none(resultType);
+        if (args.size() > 2) {
+            RexLiteral literal = windowConstant(window, args.get(2),
+                    "LAG and LEAD only support constant default values", node);
+            ExpressionCompiler eComp = new ExpressionCompiler(null, window.constants, this.compiler);
+            defaultValue = eComp.compile(literal).cast(resultType);
+        }
+
+        int inputSize = window.getInput().getRowType().getFieldCount();
+        if (args.get(0) >= inputSize)
+            throw new UnimplementedException("LAG and LEAD only support columns", node);
+        DBSPType valueType = input.outputType.to(DBSPTypeIndexedZSet.class).elementType;
+        // The projection receives None if there is no row at the specified offset
+        DBSPVariablePath value = new DBSPTypeUser(node, USER, "Option", false, valueType.ref()).var("v");
+        DBSPExpression row = new DBSPApplyMethodExpression(node, "unwrap", valueType.ref(), value)
+                .field(0).field(1);
+        DBSPExpression projection = new DBSPIfExpression(node,
+                new DBSPApplyMethodExpression(node, "is_none", DBSPTypeBool.INSTANCE, value),
+                defaultValue,
+                row.field(args.get(0)).applyCloneIfNeeded().cast(resultType));
+        return new DBSPIndexedLagOperator(node, offset, lag, projection.closure(value.asParameter()), input);
+    }
+
+    /**
+     * Windows with the same partition and sort keys share the index of the input.
+     * Their aggregates are joined with each other, and then joined with the
+     * input rows only once.
+     * Ranking and offset functions do not use the window frame; each of them
+     * is computed by a group transformer over the rows of each partition.
+     */
     public void visitWindow(LogicalWindow window) {
         CalciteObject node = new CalciteObject(window);
         DBSPTypeTuple windowResultType = this.convertType(window.getRowType()).to(DBSPTypeTuple.class);
@@ -881,41 +1616,56 @@ public class CalciteToDBSPCompiler extends RelVisitor
         DBSPTypeTuple inputRowType = this.convertType(inputNode.getRowType()).to(DBSPTypeTuple.class);
         DBSPVariablePath inputRowRefVar = inputRowType.ref().var("t");
         ExpressionCompiler eComp = new ExpressionCompiler(inputRowRefVar, window.constants, this.compiler);
+
+        // Group the windows by partition and sort keys
+        Map<List<Object>, List<Integer>> clusters = new LinkedHashMap<>();
+        // Aggregates of each window, and their indexes in the result
+        List<List<AggregateCall>> windowAggregates = new ArrayList<>();
+        List<List<Integer>> windowAggregateFields = new ArrayList<>();
+        // Ranking and offset functions, with their windows and their indexes in the result
+        List<AggregateCall> transforms = new ArrayList<>();
+        List<Window.Group> transformWindows = new ArrayList<>();
+        List<Integer> transformFields = new ArrayList<>();
         int windowFieldIndex = inputRowType.size();
-        DBSPVariablePath previousRowRefVar = inputRowRefVar;
+        for (int i = 0; i < window.groups.size(); i++) {
+            Window.Group group = window.groups.get(i);
+            List<AggregateCall> aggregates = new ArrayList<>();
+            List<Integer> aggregateFields = new ArrayList<>();
+            for (AggregateCall call: group.getAggregateCalls(window)) {
+                if (isGroupTransform(call)) {
+                    transforms.add(call);
+                    transformWindows.add(group);
+                    transformFields.add(windowFieldIndex);
+                } else {
+                    aggregates.add(call);
+                    aggregateFields.add(windowFieldIndex);
+                }
+                windowFieldIndex++;
+            }
+            windowAggregates.add(aggregates);
+            windowAggregateFields.add(aggregateFields);
+            if (!aggregates.isEmpty())
+                clusters.computeIfAbsent(Arrays.asList(group.keys, group.orderKeys), k -> new ArrayList<>())
+                        .add(i);
+        }
 
+        // Index in the result of each field of the current tuple
+        List<Integer> resultFields = IntStream.range(0, inputRowType.size()).boxed().collect(Collectors.toList());
+        DBSPVariablePath previousRowRefVar = inputRowRefVar;
         DBSPTypeTuple currentTupleType = inputRowType;
         DBSPOperator lastOperator = input;
-        for (Window.Group group: window.groups) //noinspection GrazieInspection
-        {
+        for (List<Integer> cluster: clusters.values()) {
             if (lastOperator != input)
                 this.circuit.addOperator(lastOperator);
-            List<RelFieldCollation> orderKeys = group.orderKeys.getFieldCollations();
-            // Sanity checks
-            if (orderKeys.size() > 1)
-                throw new UnimplementedException("ORDER BY not yet supported with multiple columns", node);
-            RelFieldCollation collation = orderKeys.get(0);
-            if (collation.getDirection() != RelFieldCollation.Direction.ASCENDING)
-                throw new UnimplementedException("OVER only supports ascending sorting", node);
-            int orderColumnIndex = collation.getFieldIndex();
-            DBSPExpression orderField = inputRowRefVar.field(orderColumnIndex);
-            DBSPType sortType = inputRowType.tupFields[orderColumnIndex];
-            if (!sortType.is(DBSPTypeInteger.class) &&
-                    !sortType.is(DBSPTypeTimestamp.class))
-                throw new UnimplementedException("OVER currently requires an integer type for ordering ", node);
-            if (sortType.mayBeNull)
-                throw new UnimplementedException("OVER currently does not support sorting on nullable column ", node);
-
-            // Create window description
-            DBSPExpression lb = this.compileWindowBound(group.lowerBound, sortType, eComp);
-            DBSPExpression ub = this.compileWindowBound(group.upperBound, sortType, eComp);
-            DBSPExpression windowExpr = new DBSPStructExpression(
-                    DBSPTypeAny.INSTANCE.path(
-                            new DBSPPath("RelRange", "new")),
-                    DBSPTypeAny.INSTANCE, lb, ub);
+            Window.Group first = window.groups.get(cluster.get(0));
+            List<RelFieldCollation> orderKeys = first.orderKeys.getFieldCollations();
+            // If true the sort keys are combined by window_order_key
+            boolean combined = combineWindowOrderKeys(orderKeys, inputRowType);
+            DBSPExpression orderField = this.windowOrderField(orderKeys, inputRowRefVar, node);
+            DBSPType sortType = orderField.getType();
 
             // Map each row to an expression of the form: |t| (partition, (order, t.clone()))
-            List<Integer> partitionKeys = group.keys.toList();
+            List<Integer> partitionKeys = first.keys.toList();
             List<DBSPExpression> expressions = Linq.map(partitionKeys, inputRowRefVar::field);
             DBSPTupleExpression partition = new DBSPTupleExpression(node, expressions);
             DBSPExpression orderAndRow = new DBSPRawTupleExpression(orderField, inputRowRefVar.applyClone());
@@ -924,28 +1674,84 @@ public class CalciteToDBSPCompiler extends RelVisitor
             DBSPOperator mapIndex = new DBSPMapIndexOperator(node, mapClo,
                     partition.getType(), orderAndRow.getType(), DBSPTypeWeight.INSTANCE, input);
             this.circuit.addOperator(mapIndex);
-
-            List<AggregateCall> aggregateCalls = group.getAggregateCalls(window);
-            List<DBSPType> types = Linq.map(aggregateCalls, c -> this.convertType(c.type));
-            DBSPTypeTuple tuple = new DBSPTypeTuple(types);
-            DBSPAggregate fd = this.createAggregate(window, aggregateCalls, tuple, inputRowType, 0);
-
-            // Compute aggregates for the window
-            DBSPTypeTuple aggResultType = fd.defaultZeroType().to(DBSPTypeTuple.class);
-            // This operator is always incremental, so create the non-incremental version
-            // of it by adding a D and an I around it.
+            // The window aggregate is always incremental, so create the non-incremental
+            // version of it by adding a D and an I around it.
             DBSPDifferentialOperator diff = new DBSPDifferentialOperator(node, mapIndex);
             this.circuit.addOperator(diff);
-            DBSPWindowAggregateOperator windowAgg = new DBSPWindowAggregateOperator(
-                    node, null, fd,
-                    windowExpr, partition.getType(), sortType,
-                    aggResultType, DBSPTypeWeight.INSTANCE, diff);
-            this.circuit.addOperator(windowAgg);
-            DBSPIntegralOperator integral = new DBSPIntegralOperator(node, windowAgg);
-            this.circuit.addOperator(integral);
+            DBSPType partAndOrderType = new DBSPTypeRawTuple(partition.getType(), sortType);
+
+            // Compute the aggregates of all windows, and join them
+            @Nullable DBSPOperator aggregates = null;
+            @Nullable DBSPTypeTuple aggregatesType = null;
+            for (int groupIndex: cluster) {
+                Window.Group group = window.groups.get(groupIndex);
+                // Create window description
+                DBSPExpression lb;
+                DBSPExpression ub;
+                if (combined) {
+                    DBSPType keyType = orderKeys.size() == 1 ?
+                            inputRowType.tupFields[orderKeys.get(0).getFieldIndex()] : null;
+                    lb = this.compileCombinedWindowBound(window, group.lowerBound, sortType, keyType, node);
+                    ub = this.compileCombinedWindowBound(window, group.upperBound, sortType, keyType, node);
+                } else {
+                    lb = this.compileWindowBound(group.lowerBound, sortType, eComp);
+                    ub = this.compileWindowBound(group.upperBound, sortType, eComp);
+                }
+                DBSPExpression windowExpr = new DBSPStructExpression(
+                        DBSPTypeAny.INSTANCE.path(
+                                new DBSPPath("RelRange", "new")),
+                        DBSPTypeAny.INSTANCE, lb, ub);
+
+                List<AggregateCall> aggregateCalls = windowAggregates.get(groupIndex);
+                List<DBSPType> types = Linq.map(aggregateCalls, c -> this.convertType(c.type));
+                DBSPTypeTuple tuple = new DBSPTypeTuple(types);
+                DBSPAggregate fd = this.createAggregate(window, aggregateCalls, tuple, inputRowType, 0);
+
+                // Compute aggregates for the window
+                DBSPTypeTuple aggResultType = fd.defaultZeroType().to(DBSPTypeTuple.class);
+                DBSPWindowAggregateOperator windowAgg = new DBSPWindowAggregateOperator(
+                        node, null, fd,
+                        windowExpr, null, partition.getType(), sortType,
+                        aggResultType, DBSPTypeWeight.INSTANCE, diff);
+                this.circuit.addOperator(windowAgg);
+                DBSPIntegralOperator integral = new DBSPIntegralOperator(node, windowAgg);
+                this.circuit.addOperator(integral);
+                if (aggregates == null) {
+                    aggregates = integral;
+                    aggregatesType = aggResultType;
+                    continue;
+                }
+
+                // Join with the aggregates of the previous windows
+                DBSPVariablePath key = partAndOrderType.var("k");
+                DBSPVariablePath left = Objects.requireNonNull(aggregatesType).var("l");
+                DBSPVariablePath right = aggResultType.var("r");
+                DBSPExpression[] fields = new DBSPExpression[aggregatesType.size() + aggResultType.size()];
+                for (int i = 0; i < aggregatesType.size(); i++)
+                    fields[i] = left.field(i).applyCloneIfNeeded();
+                for (int i = 0; i < aggResultType.size(); i++)
+                    fields[aggregatesType.size() + i] = right.field(i).applyCloneIfNeeded();
+                DBSPTupleExpression allAggregates = new DBSPTupleExpression(fields);
+                DBSPExpression keyAndAggregates = new DBSPRawTupleExpression(key.applyClone(), allAggregates);
+                DBSPOperator join = new DBSPJoinOperator(node, keyAndAggregates.getType(),
+                        DBSPTypeWeight.INSTANCE, keyAndAggregates.closure(
+                                key.asRefParameter(), left.asRefParameter(), right.asRefParameter()),
+                        false, aggregates, integral);
+                this.circuit.addOperator(join);
+                DBSPVariablePath pair = keyAndAggregates.getType().ref().var("p");
+                DBSPExpression reindex = new DBSPRawTupleExpression(
+                        pair.field(0).applyClone(), pair.field(1).applyClone())
+                        .closure(pair.asParameter());
+                aggregatesType = allAggregates.getType().to(DBSPTypeTuple.class);
+                aggregates = new DBSPIndexOperator(node, reindex,
+                        partAndOrderType, aggregatesType, DBSPTypeWeight.INSTANCE, false, join);
+                this.circuit.addOperator(aggregates);
+            }
+            Objects.requireNonNull(aggregates);
+            Objects.requireNonNull(aggregatesType);
 
-            // Join the previous result with the aggregate
-            // First index the aggregate.
+            // Join the previous result with the aggregates
+            // First index the previous result.
             DBSPExpression partAndOrder = new DBSPRawTupleExpression(
                     partition.applyCloneIfNeeded(),
                     orderField.applyCloneIfNeeded());
@@ -958,35 +1764,368 @@ public class CalciteToDBSPCompiler extends RelVisitor
 
             DBSPVariablePath key = partAndOrder.getType().var("k");
             DBSPVariablePath left = currentTupleType.var("l");
-            DBSPVariablePath right = aggResultType.ref().var("r");
+            DBSPVariablePath right = aggregatesType.ref().var("r");
             DBSPExpression[] allFields = new DBSPExpression[
-                    currentTupleType.size() + aggResultType.size()];
+                    currentTupleType.size() + aggregatesType.size()];
             for (int i = 0; i < currentTupleType.size(); i++)
                 allFields[i] = left.field(i).applyCloneIfNeeded();
-            for (int i = 0; i < aggResultType.size(); i++) {
-                // Calcite is very smart and sometimes infers non-nullable result types
-                // for these aggregates.  So we have to cast the results to whatever
-                // Calcite says they will be.
-                allFields[i + currentTupleType.size()] = right.field(i).applyCloneIfNeeded().cast(
-                        windowResultType.getFieldType(windowFieldIndex));
-                windowFieldIndex++;
+            int aggregateIndex = 0;
+            for (int groupIndex: cluster) {
+                for (int resultIndex: windowAggregateFields.get(groupIndex)) {
+                    // Calcite is very smart and sometimes infers non-nullable result types
+                    // for these aggregates.  So we have to cast the results to whatever
+                    // Calcite says they will be.
+                    allFields[currentTupleType.size() + aggregateIndex] =
+                            right.field(aggregateIndex).applyCloneIfNeeded().cast(
+                                    windowResultType.getFieldType(resultIndex));
+                    resultFields.add(resultIndex);
+                    aggregateIndex++;
+                }
             }
             DBSPTupleExpression addExtraFieldBody = new DBSPTupleExpression(allFields);
             DBSPClosureExpression addExtraField =
                     addExtraFieldBody.closure(key.asRefParameter(), left.asRefParameter(), right.asParameter());
             lastOperator = new DBSPJoinOperator(node, addExtraFieldBody.getType(),
                     DBSPTypeWeight.INSTANCE, addExtraField,
-                    indexInput.isMultiset || windowAgg.isMultiset, indexInput, integral);
+                    indexInput.isMultiset || aggregates.isMultiset, indexInput, aggregates);
             currentTupleType = addExtraFieldBody.getType().to(DBSPTypeTuple.class);
             previousRowRefVar = currentTupleType.ref().var("t");
         }
+
+        // Ranking and offset functions are computed for each row by a group transformer
+        // applied to the current rows, indexed by partition and sorted by the sort key.
+        // Peers are ordered arbitrarily but consistently, by comparing the whole rows.
+        for (int i = 0; i < transforms.size(); i++) {
+            if (lastOperator != input)
+                this.circuit.addOperator(lastOperator);
+            AggregateCall call = transforms.get(i);
+            Window.Group group = transformWindows.get(i);
+            int resultIndex = transformFields.get(i);
+            DBSPType resultType = windowResultType.getFieldType(resultIndex);
+
+            // Map each row to an expression of the form: |t| (partition, (order, t.clone()))
+            DBSPExpression orderField = this.windowOrderField(
+                    group.orderKeys.getFieldCollations(), previousRowRefVar, node);
+            DBSPVariablePath rowVar = previousRowRefVar;
+            List<DBSPExpression> expressions = Linq.map(group.keys.toList(),
+                    f -> rowVar.field(f).applyCloneIfNeeded());
+            DBSPTupleExpression partition = new DBSPTupleExpression(node, expressions);
+            DBSPExpression orderAndRow = new DBSPRawTupleExpression(orderField, previousRowRefVar.applyClone());
+            DBSPClosureExpression indexClo = new DBSPRawTupleExpression(partition, orderAndRow)
+                    .closure(previousRowRefVar.asParameter());
+            DBSPOperator index = new DBSPMapIndexOperator(node, indexClo,
+                    partition.getType(), orderAndRow.getType(), DBSPTypeWeight.INSTANCE, lastOperator);
+            this.circuit.addOperator(index);
+            // The group transformers are incremental, so create the non-incremental
+            // version by adding a D and an I around them.
+            DBSPOperator transform;
+            SqlKind kind = call.getAggregation().getKind();
+            if (kind == SqlKind.LAG || kind == SqlKind.LEAD) {
+                transform = this.lagOperator(window, call, resultType, this.numberCopies(index, node), node);
+            } else {
+                DBSPDifferentialOperator diff = new DBSPDifferentialOperator(node, index);
+                this.circuit.addOperator(diff);
+                DBSPVariablePath value = orderAndRow.getType().ref().var("v");
+                DBSPExpression peerKey = value.field(0).closure(value.asParameter());
+                switch (kind) {
+                    case ROW_NUMBER:
+                        transform = new DBSPIndexedRankOperator(
+                                node, DBSPIndexedRankOperator.Kind.ROW_NUMBER, null, diff);
+                        break;
+                    case RANK:
+                        transform = new DBSPIndexedRankOperator(
+                                node, DBSPIndexedRankOperator.Kind.RANK, peerKey, diff);
+                        break;
+                    default:
+                        transform = new DBSPIndexedRankOperator(
+                                node, DBSPIndexedRankOperator.Kind.DENSE_RANK, peerKey, diff);
+                        break;
+                }
+            }
+            this.circuit.addOperator(transform);
+            DBSPIntegralOperator integral = new DBSPIntegralOperator(node, transform);
+            this.circuit.addOperator(integral);
+
+            // Append the result of the function to the row
+            DBSPTypeIndexedZSet transformType = transform.outputType.to(DBSPTypeIndexedZSet.class);
+            DBSPVariablePath kv = new DBSPTypeRawTuple(
+                    transformType.keyType.ref(), transformType.elementType.ref()).var("kv");
+            DBSPExpression orderAndRowValue = kv.field(1).field(0);
+            if (transform.is(DBSPIndexedLagOperator.class))
+                // Skip the row number
+                orderAndRowValue = orderAndRowValue.field(0);
+            DBSPExpression row = orderAndRowValue.field(1);
+            DBSPExpression[] allFields = new DBSPExpression[currentTupleType.size() + 1];
+            for (int j = 0; j < currentTupleType.size(); j++)
+                allFields[j] = row.field(j).applyCloneIfNeeded();
+            allFields[currentTupleType.size()] = kv.field(1).field(1).applyCloneIfNeeded().cast(resultType);
+            DBSPTupleExpression addExtraField = new DBSPTupleExpression(allFields);
+            lastOperator = new DBSPMapOperator(node, addExtraField.closure(kv.asParameter()),
+                    addExtraField.getType(), DBSPTypeWeight.INSTANCE, integral);
+            resultFields.add(resultIndex);
+            currentTupleType = addExtraField.getType().to(DBSPTypeTuple.class);
+            previousRowRefVar = currentTupleType.ref().var("t");
+        }
+
+        // Put the aggregates in the order of the windows
+        if (!IntStream.range(0, resultFields.size()).allMatch(i -> resultFields.get(i) == i)) {
+            this.circuit.addOperator(lastOperator);
+            DBSPExpression[] fields = new DBSPExpression[resultFields.size()];
+            for (int i = 0; i < resultFields.size(); i++)
+                fields[resultFields.get(i)] = previousRowRefVar.field(i).applyCloneIfNeeded();
+            DBSPExpression reorder = new DBSPTupleExpression(fields).closure(previousRowRefVar.asParameter());
+            lastOperator = new DBSPMapOperator(node, reorder, windowResultType, DBSPTypeWeight.INSTANCE, lastOperator);
+        }
         this.assignOperator(window, lastOperator);
     }
 
+    /**
+     * Convert a LIMIT or OFFSET value to a number.
+     */
+    static long getSortBound(CalciteObject node, RexNode bound) {
+        if (!(bound instanceof RexLiteral))
+            throw new UnimplementedException("LIMIT and OFFSET only support constant values", node);
+        Long value = ((RexLiteral) bound).getValueAs(Long.class);
+        if (value == null || value < 0)
+            throw new UnsupportedException("Illegal LIMIT/OFFSET value " + bound, node);
+        return value;
+    }
+
+    /**
+     * Expression that computes a component of the sort key of a LIMIT for the row 't'.
+     * The natural order of the result is the order specified by the collation.
+     * Nullable values are preceded by a Boolean that places the NULLs first or last,
+     * and descending values are wrapped in Descending, which reverses their order.
+     */
+    static DBSPExpression limitSortField(RelFieldCollation collation, DBSPVariablePath t, CalciteObject node) {
+        boolean descending;
+        switch (collation.getDirection()) {
+            case ASCENDING:
+                descending = false;
+                break;
+            case DESCENDING:
+                descending = true;
+                break;
+            default:
+                throw new UnimplementedException(node);
+        }
+        DBSPExpression field = t.field(collation.getFieldIndex());
+        DBSPExpression result = field.applyCloneIfNeeded();
+        if (field.getType().mayBeNull) {
+            RelFieldCollation.NullDirection nulls = collation.nullDirection;
+            if (nulls == RelFieldCollation.NullDirection.UNSPECIFIED)
+                nulls = collation.getDirection().defaultNullDirection();
+            boolean nullsFirst = nulls == RelFieldCollation.NullDirection.FIRST;
+            // 'false' precedes 'true'; Descending reverses this order too
+            String method = nullsFirst != descending ? "is_some" : "is_none";
+            result = new DBSPRawTupleExpression(
+                    new DBSPApplyMethodExpression(node, method, DBSPTypeBool.INSTANCE, field), result);
+        }
+        if (descending)
+            result = new DBSPApplyExpression(node, "Descending",
+                    new DBSPTypeUser(node, USER, "Descending", false, result.getType()), result);
+        return result;
+    }
+
+    /**
+     * Keep the first rows of each group of 'input' in the order of the collations.
+     * The rows are indexed by the 'partitionKeys' fields, and the value is a
+     * pair (sortKey, row), so that the natural order of the values matches
+     * the collation.
+     * A top-k operator keeps the LIMIT+OFFSET smallest distinct values of each
+     * group, which include at least LIMIT+OFFSET rows; the rows are then numbered,
+     * each copy of a row separately, and the rows numbered from OFFSET+1 to
+     * OFFSET+LIMIT are kept.
+     * The top-k and numbering operators are incremental, so they are
+     * surrounded by a differential and an integral.
+     * The result is an indexed collection whose values have the form
+     * ((sortKey, row), number).
+     */
+    DBSPOperator topK(CalciteObject node, DBSPOperator input, List<Integer> partitionKeys,
+                      List<RelFieldCollation> collations, long limit, long offset) {
+        DBSPTypeTuple inputRowType = input.getType().to(DBSPTypeZSet.class).elementType.to(DBSPTypeTuple.class);
+        DBSPVariablePath t = inputRowType.ref().var("t");
+        List<DBSPExpression> sortFields = Linq.map(collations, c -> limitSortField(c, t, node));
+        DBSPExpression value = new DBSPRawTupleExpression(
+                new DBSPTupleExpression(node, sortFields), t.applyClone());
+        List<DBSPExpression> keyFields = Linq.map(partitionKeys, f -> t.field(f).applyCloneIfNeeded());
+        DBSPExpression key = partitionKeys.isEmpty() ?
+                new DBSPRawTupleExpression() : new DBSPTupleExpression(node, keyFields);
+        DBSPExpression toValue = new DBSPRawTupleExpression(key, value).closure(t.asParameter());
+        DBSPIndexOperator index = new DBSPIndexOperator(
+                node, toValue, key.getType(), value.getType(), DBSPTypeWeight.INSTANCE,
+                input.isMultiset, input);
+        this.circuit.addOperator(index);
+
+        DBSPDifferentialOperator diff = new DBSPDifferentialOperator(node, index);
+        this.circuit.addOperator(diff);
+        DBSPIndexedTopKOperator topK = new DBSPIndexedTopKOperator(node, limit + offset, true, diff);
+        this.circuit.addOperator(topK);
+        DBSPIndexedRankOperator rowNumber = new DBSPIndexedRankOperator(
+                node, DBSPIndexedRankOperator.Kind.ROW_NUMBER, null, topK);
+        this.circuit.addOperator(rowNumber);
+        DBSPIntegralOperator integral = new DBSPIntegralOperator(node, rowNumber);
+        this.circuit.addOperator(integral);
+
+        // Keep the rows numbered from offset + 1 to offset + limit
+        DBSPTypeIndexedZSet numberedType = rowNumber.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPVariablePath kv = new DBSPTypeRawTuple(
+                numberedType.keyType.ref(), numberedType.elementType.ref()).var("kv");
+        DBSPExpression number = kv.field(1).field(1);
+        DBSPExpression inRange = new DBSPBinaryExpression(node, DBSPTypeBool.INSTANCE, DBSPOpcode.AND,
+                new DBSPBinaryExpression(node, DBSPTypeBool.INSTANCE, DBSPOpcode.GT,
+                        number, new DBSPI64Literal(offset)),
+                new DBSPBinaryExpression(node, DBSPTypeBool.INSTANCE, DBSPOpcode.LTE,
+                        number, new DBSPI64Literal(offset + limit)));
+        DBSPFilterOperator filter = new DBSPFilterOperator(node, inRange.closure(kv.asParameter()), integral);
+        this.circuit.addOperator(filter);
+        return filter;
+    }
+
+    /**
+     * Compile a sort that has a LIMIT.
+     * All rows are in a single group.  The result is a Z-set of rows, not a vector:
+     * the order of the rows is not preserved.
+     */
+    void visitTopK(LogicalSort sort) {
+        CalciteObject node = new CalciteObject(sort);
+        RelNode input = sort.getInput();
+        DBSPTypeTuple inputRowType = this.convertType(input.getRowType()).to(DBSPTypeTuple.class);
+        DBSPOperator opInput = this.getOperator(input);
+
+        long limit = getSortBound(node, Objects.requireNonNull(sort.fetch));
+        long offset = sort.offset != null ? getSortBound(node, sort.offset) : 0;
+        DBSPOperator topK = this.topK(node, opInput, Linq.list(),
+                sort.getCollation().getFieldCollations(), limit, offset);
+
+        // Extract the rows from the values
+        DBSPTypeIndexedZSet topKType = topK.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPVariablePath kv = new DBSPTypeRawTuple(
+                topKType.keyType.ref(), topKType.elementType.ref()).var("kv");
+        DBSPExpression toRow = kv.field(1).field(0).field(1).applyClone().closure(kv.asParameter());
+        DBSPMapOperator map = new DBSPMapOperator(
+                node, toRow, inputRowType, DBSPTypeWeight.INSTANCE, topK);
+        this.assignOperator(sort, map);
+    }
+
+    /**
+     * The window below 'filter', possibly below a projection of its fields.
+     * Returns null if there is no such window.
+     */
+    @Nullable
+    static LogicalWindow filteredWindow(LogicalFilter filter) {
+        RelNode input = filter.getInput();
+        if (input instanceof LogicalProject) {
+            if (!Linq.all(((LogicalProject) input).getProjects(), p -> p instanceof RexInputRef))
+                return null;
+            input = input.getInput(0);
+        }
+        return ICastable.as(input, LogicalWindow.class);
+    }
+
+    /**
+     * For each field of the input of 'filter', the index of the field of the
+     * window returned by filteredWindow.
+     */
+    static List<Integer> windowFields(LogicalFilter filter) {
+        RelNode input = filter.getInput();
+        if (input instanceof LogicalProject)
+            return Linq.map(((LogicalProject) input).getProjects(), p -> ((RexInputRef) p).getIndex());
+        return IntStream.range(0, input.getRowType().getFieldCount()).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * If 'filter' keeps the rows of a window whose ROW_NUMBER() is at most
+     * some constant K, return K, otherwise return -1.  The window must
+     * compute only the ROW_NUMBER, and the condition must have the form
+     * ROW_NUMBER <= K or ROW_NUMBER < K.
+     */
+    static long groupedTopKLimit(LogicalFilter filter) {
+        LogicalWindow window = filteredWindow(filter);
+        if (window == null || window.groups.size() != 1)
+            return -1;
+        List<AggregateCall> calls = window.groups.get(0).getAggregateCalls(window);
+        if (calls.size() != 1 || calls.get(0).getAggregation().getKind() != SqlKind.ROW_NUMBER)
+            return -1;
+        if (!(filter.getCondition() instanceof RexCall))
+            return -1;
+        RexCall condition = (RexCall) filter.getCondition();
+        if (condition.getOperands().size() != 2)
+            return -1;
+        SqlKind kind = condition.getKind();
+        RexNode left = condition.getOperands().get(0);
+        RexNode right = condition.getOperands().get(1);
+        if (left instanceof RexLiteral) {
+            // K >= ROW_NUMBER is ROW_NUMBER <= K
+            RexNode tmp = left;
+            left = right;
+            right = tmp;
+            kind = kind.reverse();
+        }
+        if (!(left instanceof RexInputRef) || !(right instanceof RexLiteral))
+            return -1;
+        int rowNumberField = window.getInput().getRowType().getFieldCount();
+        if (windowFields(filter).get(((RexInputRef) left).getIndex()) != rowNumberField)
+            return -1;
+        Long value = ((RexLiteral) right).getValueAs(Long.class);
+        if (value == null)
+            return -1;
+        switch (kind) {
+            case LESS_THAN_OR_EQUAL:
+                return Math.max(value, 0);
+            case LESS_THAN:
+                return Math.max(value - 1, 0);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Compile a filter that keeps the rows whose ROW_NUMBER() is at most 'limit'
+     * in each partition of a window, as recognized by groupedTopKLimit.
+     * This keeps the first 'limit' rows of each partition in the order of the
+     * window.  The window itself is not computed.
+     */
+    void visitGroupedTopK(LogicalFilter filter, long limit) {
+        CalciteObject node = new CalciteObject(filter);
+        LogicalWindow window = Objects.requireNonNull(filteredWindow(filter));
+        Window.Group group = window.groups.get(0);
+        DBSPTypeTuple resultType = this.convertType(filter.getRowType()).to(DBSPTypeTuple.class);
+        DBSPOperator input = this.getInputAs(window.getInput(), true);
+        DBSPOperator topK = this.topK(node, input, group.keys.toList(),
+                group.orderKeys.getFieldCollations(), limit, 0);
+
+        // Build the rows of the window, with the row number as the last field,
+        // and project them like the input of the filter.
+        DBSPTypeIndexedZSet topKType = topK.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPVariablePath kv = new DBSPTypeRawTuple(
+                topKType.keyType.ref(), topKType.elementType.ref()).var("kv");
+        DBSPExpression row = kv.field(1).field(0).field(1);
+        int rowNumberField = window.getInput().getRowType().getFieldCount();
+        List<Integer> fields = windowFields(filter);
+        DBSPExpression[] results = new DBSPExpression[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            int field = fields.get(i);
+            results[i] = field == rowNumberField ?
+                    kv.field(1).field(1).cast(resultType.getFieldType(i)) :
+                    row.field(field).applyCloneIfNeeded();
+        }
+        DBSPTupleExpression projection = new DBSPTupleExpression(results);
+        DBSPMapOperator map = new DBSPMapOperator(
+                node, projection.closure(kv.asParameter()), resultType, DBSPTypeWeight.INSTANCE, topK);
+        this.assignOperator(filter, map);
+    }
+
     public void visitSort(LogicalSort sort) {
+        if (sort.fetch != null) {
+            this.visitTopK(sort);
+            return;
+        }
         // Aggregate in a single group.
         // TODO: make this more efficient?
         CalciteObject node = new CalciteObject(sort);
+        if (sort.offset != null)
+            throw new UnimplementedException("OFFSET without LIMIT", node);
         RelNode input = sort.getInput();
         DBSPType inputRowType = this.convertType(input.getRowType());
         DBSPOperator opInput = this.getOperator(input);
@@ -1062,7 +2201,7 @@ public class CalciteToDBSPCompiler extends RelVisitor
             @Nullable RelNode parent) {
         Logger.INSTANCE.belowLevel(this, 3)
                 .append("Visiting ")
-                .append(node.toString())
+                .appendSupplier(node::toString)
                 .newline();
         if (this.nodeOperator.containsKey(node))
             // We have already done this one.  This can happen because the
@@ -1073,6 +2212,19 @@ public class CalciteToDBSPCompiler extends RelVisitor
         if (this.visitIfMatches(node, LogicalCorrelate.class, this::visitCorrelate))
             return;
 
+        // A filter on the ROW_NUMBER of a window is a grouped top-K;
+        // the window itself is not computed.
+        LogicalFilter filter = ICastable.as(node, LogicalFilter.class);
+        if (filter != null) {
+            long limit = groupedTopKLimit(filter);
+            if (limit >= 0) {
+                LogicalWindow window = Objects.requireNonNull(filteredWindow(filter));
+                this.visit(window.getInput(), 0, window);
+                this.visitGroupedTopK(filter, limit);
+                return;
+            }
+        }
+
         // First process children
         super.visit(node, ordinal, parent);
         // Synthesize current node
@@ -1088,7 +2240,8 @@ public class CalciteToDBSPCompiler extends RelVisitor
                 this.visitIfMatches(node, LogicalIntersect.class, this::visitIntersect) ||
                 this.visitIfMatches(node, LogicalWindow.class, this::visitWindow) ||
                 this.visitIfMatches(node, LogicalSort.class, this::visitSort) ||
-                this.visitIfMatches(node, Uncollect.class, this::visitUncollect);
+                this.visitIfMatches(node, Uncollect.class, this::visitUncollect) ||
+                this.visitIfMatches(node, LogicalTableFunctionScan.class, this::visitTableFunctionScan);
         if (!success)
             throw new UnimplementedException(new CalciteObject(node));
     }
@@ -1100,7 +2253,7 @@ public class CalciteToDBSPCompiler extends RelVisitor
             CreateViewStatement view = statement.to(CreateViewStatement.class);
             RelNode rel = view.getRelNode();
             Logger.INSTANCE.belowLevel(this, 2)
-                    .append(CalciteCompiler.getPlan(rel))
+                    .appendSupplier(() -> CalciteCompiler.getPlan(rel))
                     .newline();
             this.go(rel);
             // TODO: connect the result of the query compilation with
@@ -1132,7 +2285,8 @@ public class CalciteToDBSPCompiler extends RelVisitor
                 CreateTableStatement def = this.tableContents.getTableDefinition(tableName);
                 DBSPType rowType = def.getRowType(this.compiler.getTypeCompiler());
                 DBSPSourceOperator result = new DBSPSourceOperator(
-                        create.getCalciteObject(), this.makeZSet(rowType), def.statement, tableName);
+                        create.getCalciteObject(), this.makeZSet(rowType), def.statement, tableName,
+                        def.primaryKey);
                 this.circuit.addOperator(result);
             }
             return null;
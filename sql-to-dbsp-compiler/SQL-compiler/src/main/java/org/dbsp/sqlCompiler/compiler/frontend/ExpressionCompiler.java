@@ -429,9 +429,9 @@ public class ExpressionCompiler extends RexVisitorImpl<DBSPExpression> implement
     public DBSPExpression visitCall(RexCall call) {
         CalciteObject node = new CalciteObject(call);
         Logger.INSTANCE.belowLevel(this, 2)
-                .append(call.toString())
+                .appendSupplier(call::toString)
                 .append(" ")
-                .append(call.getType().toString());
+                .appendSupplier(call.getType()::toString);
         if (call.op.kind == SqlKind.SEARCH) {
             // TODO: Ideally the optimizer should do this before handing the expression to us.
             // Then the rexBuilder won't be needed.
@@ -732,7 +732,7 @@ public class ExpressionCompiler extends RexVisitorImpl<DBSPExpression> implement
     DBSPExpression compile(RexNode expression) {
         Logger.INSTANCE.belowLevel(this, 3)
                 .append("Compiling ")
-                .append(expression.toString())
+                .appendSupplier(expression::toString)
                 .newline();
         DBSPExpression result = expression.accept(this);
         if (result == null)
@@ -23,13 +23,18 @@
 
 package org.dbsp.sqlCompiler.compiler.frontend;
 
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rex.*;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.dbsp.sqlCompiler.compiler.errors.InternalCompilerError;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.util.IWritesLogs;
 import org.dbsp.util.Logger;
 
 import javax.annotation.Nullable;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -64,6 +69,66 @@ public class JoinConditionAnalyzer extends RexVisitorImpl<Void> implements IWrit
         }
     }
 
+    /**
+     * Represents a band test in a join: the difference between
+     * a column of the left table and a column of the right table
+     * is within a range: left - right in [lower, upper].
+     */
+    static class RangeTest {
+        public final int leftColumn;
+        public final int rightColumn;
+        /**
+         * True if the columns are timestamps; the bounds are then in milliseconds.
+         */
+        public final boolean isTimestamp;
+        public final long lower;
+        public final long upper;
+
+        RangeTest(int leftColumn, int rightColumn, boolean isTimestamp, long lower, long upper) {
+            this.leftColumn = leftColumn;
+            this.rightColumn = rightColumn;
+            this.isTimestamp = isTimestamp;
+            this.lower = lower;
+            this.upper = upper;
+        }
+    }
+
+    /**
+     * A column reference plus a constant offset, e.g., x + 10.
+     */
+    static class OffsetColumn {
+        final int column;
+        final long offset;
+        final boolean isTimestamp;
+
+        OffsetColumn(int column, long offset, boolean isTimestamp) {
+            this.column = column;
+            this.offset = offset;
+            this.isTimestamp = isTimestamp;
+        }
+    }
+
+    /**
+     * Bounds of the difference between two columns discovered so far.
+     */
+    static class Bounds {
+        final int leftColumn;
+        final int rightColumn;
+        final boolean isTimestamp;
+        @Nullable
+        Long lower;
+        @Nullable
+        Long upper;
+
+        Bounds(int leftColumn, int rightColumn, boolean isTimestamp) {
+            this.leftColumn = leftColumn;
+            this.rightColumn = rightColumn;
+            this.isTimestamp = isTimestamp;
+            this.lower = null;
+            this.upper = null;
+        }
+    }
+
     /**
      * A join condition is decomposed into a list of equality comparisons
      * and another general-purpose boolean expression.
@@ -73,11 +138,17 @@ public class JoinConditionAnalyzer extends RexVisitorImpl<Void> implements IWrit
         public final List<EqualityTest> comparisons;
         @Nullable
         RexNode            leftOver;
+        /**
+         * A band test implied by the leftOver, if any.
+         */
+        @Nullable
+        RangeTest          range;
 
         ConditionDecomposition(CalciteObject object) {
             this.object = object;
             this.comparisons = new ArrayList<>();
             this.leftOver = null;
+            this.range = null;
         }
 
         void setLeftOver(RexNode leftOver) {
@@ -190,12 +261,127 @@ public class JoinConditionAnalyzer extends RexVisitorImpl<Void> implements IWrit
         }
     }
 
+    /**
+     * Recognize a column of an ordered type, optionally plus or minus a constant.
+     * @return null if the expression does not have this shape.
+     */
+    @Nullable
+    static OffsetColumn asOffsetColumn(RexNode node) {
+        RexInputRef ref = asInputRef(node);
+        if (ref != null) {
+            SqlTypeName type = ref.getType().getSqlTypeName();
+            if (SqlTypeName.INT_TYPES.contains(type))
+                return new OffsetColumn(ref.getIndex(), 0, false);
+            if (type == SqlTypeName.TIMESTAMP)
+                return new OffsetColumn(ref.getIndex(), 0, true);
+            return null;
+        }
+        if (!(node instanceof RexCall))
+            return null;
+        RexCall call = (RexCall) node;
+        if (call.getKind() != SqlKind.PLUS && call.getKind() != SqlKind.MINUS)
+            return null;
+        RexNode column = call.operands.get(0);
+        RexNode constant = call.operands.get(1);
+        if (!(constant instanceof RexLiteral) && call.getKind() == SqlKind.PLUS) {
+            column = call.operands.get(1);
+            constant = call.operands.get(0);
+        }
+        if (!(constant instanceof RexLiteral))
+            return null;
+        OffsetColumn base = asOffsetColumn(column);
+        if (base == null)
+            return null;
+        RexLiteral literal = (RexLiteral) constant;
+        SqlTypeFamily family = literal.getType().getSqlTypeName().getFamily();
+        if (base.isTimestamp && family != SqlTypeFamily.INTERVAL_DAY_TIME)
+            return null;
+        if (!base.isTimestamp && !SqlTypeName.INT_TYPES.contains(literal.getType().getSqlTypeName()))
+            return null;
+        BigDecimal value = literal.getValueAs(BigDecimal.class);
+        if (value == null)
+            return null;
+        long offset;
+        try {
+            offset = value.longValueExact();
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+        if (call.getKind() == SqlKind.MINUS)
+            offset = -offset;
+        return new OffsetColumn(base.column, base.offset + offset, base.isTimestamp);
+    }
+
+    /**
+     * Find a pair of columns whose difference is bounded on both sides
+     * by the conjuncts of the leftOver condition.  For example,
+     * L.x >= R.y - 10 AND L.x < R.y + 5 bounds L.x - R.y to [-10, 5].
+     */
+    @Nullable
+    RangeTest findRange(RexNode condition) {
+        List<Bounds> bounds = new ArrayList<>();
+        for (RexNode conjunct: RelOptUtil.conjunctions(condition)) {
+            if (!(conjunct instanceof RexCall))
+                continue;
+            RexCall call = (RexCall) conjunct;
+            SqlKind kind = call.getKind();
+            if (kind != SqlKind.LESS_THAN && kind != SqlKind.LESS_THAN_OR_EQUAL &&
+                    kind != SqlKind.GREATER_THAN && kind != SqlKind.GREATER_THAN_OR_EQUAL)
+                continue;
+            OffsetColumn a = asOffsetColumn(call.operands.get(0));
+            OffsetColumn b = asOffsetColumn(call.operands.get(1));
+            if (a == null || b == null || a.isTimestamp != b.isTimestamp)
+                continue;
+            boolean aIsLeft = a.column < this.leftTableColumnCount;
+            boolean bIsLeft = b.column < this.leftTableColumnCount;
+            if (aIsLeft == bIsLeft)
+                continue;
+            // a.column + a.offset op b.column + b.offset
+            boolean upperBound = kind == SqlKind.LESS_THAN || kind == SqlKind.LESS_THAN_OR_EQUAL;
+            long bound = b.offset - a.offset;
+            if (!aIsLeft) {
+                // right - left op bound is left - right op' -bound
+                OffsetColumn tmp = a;
+                a = b;
+                b = tmp;
+                bound = -bound;
+                upperBound = !upperBound;
+            }
+            int left = a.column;
+            int right = b.column - this.leftTableColumnCount;
+            @Nullable
+            Bounds current = null;
+            for (Bounds candidate: bounds) {
+                if (candidate.leftColumn == left && candidate.rightColumn == right) {
+                    current = candidate;
+                    break;
+                }
+            }
+            if (current == null) {
+                current = new Bounds(left, right, a.isTimestamp);
+                bounds.add(current);
+            }
+            if (upperBound)
+                current.upper = current.upper == null ? bound : Math.min(current.upper, bound);
+            else
+                current.lower = current.lower == null ? bound : Math.max(current.lower, bound);
+        }
+        for (Bounds bound: bounds) {
+            if (bound.lower == null || bound.upper == null || bound.lower > bound.upper)
+                continue;
+            return new RangeTest(bound.leftColumn, bound.rightColumn, bound.isTimestamp, bound.lower, bound.upper);
+        }
+        return null;
+    }
+
     JoinConditionAnalyzer.ConditionDecomposition analyze(RexNode expression) {
         Logger.INSTANCE.belowLevel(this, 1)
                 .append("Analyzing ")
-                .append(expression.toString())
+                .appendSupplier(expression::toString)
                 .newline();
         expression.accept(this);
+        if (this.result.leftOver != null)
+            this.result.range = this.findRange(this.result.leftOver);
         return this.result;
     }
 }
@@ -94,6 +94,14 @@ public class TableContents implements ICompilerComponent {
         return Utilities.getExists(this.tableCreation, tableName);
     }
 
+    /**
+     * The definition of the specified table, or null if the table does not exist.
+     */
+    @Nullable
+    public CreateTableStatement findTableDefinition(String tableName) {
+        return this.tableCreation.get(tableName);
+    }
+
     public void addToTable(String tableName, DBSPZSetLiteral.Contents value) {
         if (this.tableContents == null)
             throw new UnsupportedException("Not keeping track of table contents", CalciteObject.EMPTY);
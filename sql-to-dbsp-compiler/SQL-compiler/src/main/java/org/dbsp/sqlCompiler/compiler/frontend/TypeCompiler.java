@@ -39,16 +39,29 @@ import java.util.Objects;
 
 public class TypeCompiler implements ICompilerComponent {
     final DBSPCompiler compiler;
+    /**
+     * All types produced by 'convertType' are interned in this table.
+     */
+    final TypeInterner interner;
 
     public TypeCompiler(DBSPCompiler parent) {
         this.compiler = parent;
+        this.interner = new TypeInterner();
     }
 
     public static DBSPType makeZSet(DBSPType elementType, DBSPType weightType) {
         return new DBSPTypeZSet(elementType.getNode(), elementType, weightType);
     }
 
+    /**
+     * Convert a Calcite type to a DBSP type.
+     * Structurally equal types are returned as the same instance.
+     */
     public DBSPType convertType(RelDataType dt) {
+        return this.interner.intern(this.createType(dt));
+    }
+
+    DBSPType createType(RelDataType dt) {
         CalciteObject node = new CalciteObject(dt);
         boolean nullable = dt.isNullable();
         if (dt.isStruct()) {
@@ -43,17 +43,20 @@ import org.apache.calcite.rel.rules.*;
 import org.apache.calcite.rel.type.*;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.ddl.SqlColumnDeclaration;
 import org.apache.calcite.sql.ddl.SqlCreateTable;
 import org.apache.calcite.sql.ddl.SqlCreateView;
 import org.apache.calcite.sql.ddl.SqlDropTable;
+import org.apache.calcite.sql.ddl.SqlKeyConstraint;
 import org.apache.calcite.sql.fun.SqlLibrary;
 import org.apache.calcite.sql.fun.SqlLibraryOperatorTableFactory;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
 import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.type.*;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
 import org.apache.calcite.sql.util.SqlOperatorTables;
 import org.apache.calcite.sql.util.SqlShuttle;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
@@ -75,6 +78,8 @@ import org.dbsp.util.*;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The calcite compiler compiles SQL into Calcite RelNode representations.
@@ -102,6 +107,11 @@ public class CalciteCompiler implements IWritesLogs {
     public final RelDataTypeFactory typeFactory;
     private final SqlToRelConverter.Config converterConfig;
     private final RewriteDivision astRewriter;
+    /**
+     * If not null, cache for the compiled views.
+     */
+    @Nullable
+    private ViewCache viewCache;
 
     /**
      * This class rewrites instances of the division operator in the SQL AST
@@ -205,8 +215,30 @@ public class CalciteCompiler implements IWritesLogs {
 
     // Adapted from https://www.querifylabs.com/blog/assembling-a-query-optimizer-with-apache-calcite
     public CalciteCompiler(CompilerOptions options) {
+        this(options, new SqlTypeFactoryImpl(TYPE_SYSTEM), new Catalog("schema"));
+    }
+
+    /**
+     * Create a compiler which shares the catalog and type factory with 'parent',
+     * but has its own validator, converter, and cluster.
+     * Such compilers are used to compile views on several threads.
+     */
+    CalciteCompiler(CalciteCompiler parent) {
+        this(parent.options, parent.typeFactory, parent.catalog);
+        this.viewCache = parent.viewCache;
+    }
+
+    /**
+     * Use the specified cache for compiled views; if null, do not cache views.
+     */
+    public void setViewCache(@Nullable ViewCache viewCache) {
+        this.viewCache = viewCache;
+    }
+
+    private CalciteCompiler(CompilerOptions options, RelDataTypeFactory typeFactory, Catalog catalog) {
         this.astRewriter = new RewriteDivision();
         this.options = options;
+        this.viewCache = null;
 
         final boolean preserveCasing = false;
         Properties connConfigProp = new Properties();
@@ -225,8 +257,8 @@ public class CalciteCompiler implements IWritesLogs {
                 //.withUnquotedCasing(Casing.UNCHANGED)
                 //.withQuotedCasing(Casing.UNCHANGED)
                 .withConformance(SqlConformanceEnum.LENIENT);
-        this.typeFactory = new SqlTypeFactoryImpl(TYPE_SYSTEM);
-        this.catalog = new Catalog("schema");
+        this.typeFactory = typeFactory;
+        this.catalog = catalog;
         CalciteSchema rootSchema = CalciteSchema.createRootSchema(false, false);
         rootSchema.add(catalog.schemaName, this.catalog);
         // Register new types
@@ -372,6 +404,15 @@ public class CalciteCompiler implements IWritesLogs {
                 // Convert DISTINCT aggregates into separate computations and join the results
                 CoreRules.AGGREGATE_EXPAND_DISTINCT_AGGREGATES_TO_JOIN
         );
+        HepProgram semiJoins = createProgram(
+                // Convert joins whose right input only contributes
+                // distinct keys (e.g., IN and EXISTS subqueries) into semi-joins
+                CoreRules.PROJECT_TO_SEMI_JOIN,
+                CoreRules.JOIN_ON_UNIQUE_TO_SEMI_JOIN,
+                CoreRules.JOIN_TO_SEMI_JOIN,
+                // Convert NOT EXISTS subqueries into anti-joins
+                FilterJoinToAntiJoinRule.INSTANCE
+        );
         HepProgram multiJoins = new HepProgramBuilder()
                 // Join order optimization
                 .addRuleInstance(CoreRules.FILTER_INTO_JOIN)
@@ -402,9 +443,9 @@ public class CalciteCompiler implements IWritesLogs {
                 );
         if (avoidBushyJoin(rel))
             return Linq.list(constantFold, removeEmpty, window,
-                    distinctAggregates, move, mergeNodes, remove);
+                    distinctAggregates, semiJoins, move, mergeNodes, remove);
         return Linq.list(constantFold, removeEmpty, window, distinctAggregates,
-                move, multiJoins, mergeNodes, remove);
+                semiJoins, move, multiJoins, mergeNodes, remove);
             /*
         return Linq.list(
                 CoreRules.AGGREGATE_PROJECT_PULL_UP_CONSTANTS,
@@ -462,47 +503,39 @@ public class CalciteCompiler implements IWritesLogs {
         return sqlParser.parseStmtList();
     }
 
-    RelNode optimize(RelNode rel) {
-        // Without the following some optimization rules do nothing.
-        Logger.INSTANCE.belowLevel(this, 2)
-                .append("Before optimizer")
+    /**
+     * Log the plan of 'rel'.  The plan is only dumped if logging is enabled.
+     */
+    void logPlan(int level, String message, RelNode rel) {
+        Logger.INSTANCE.belowLevel(this, level)
+                .append(message)
                 .increase()
-                .append(getPlan(rel))
+                .appendSupplier(() -> getPlan(rel))
                 .decrease()
                 .newline();
+    }
+
+    RelNode optimize(RelNode rel) {
+        // Without the following some optimization rules do nothing.
+        this.logPlan(2, "Before optimizer", rel);
 
         RelBuilder relBuilder = this.converterConfig.getRelBuilderFactory().create(
                 cluster, null);
         // This converts correlated sub-queries into standard joins.
         rel = RelDecorrelator.decorrelateQuery(rel, relBuilder);
-        Logger.INSTANCE.belowLevel(this, 2)
-                .append("After decorrelator")
-                .increase()
-                .append(getPlan(rel))
-                .decrease()
-                .newline();
+        this.logPlan(2, "After decorrelator", rel);
 
         int stage = 0;
         for (HepProgram program: this.getOptimizationStages(rel)) {
             HepPlanner planner = new HepPlanner(program);
             planner.setRoot(rel);
             rel = planner.findBestExp();
-            Logger.INSTANCE.belowLevel(this, 3)
-                    .append("After optimizer stage ")
-                    .append(stage)
-                    .increase()
-                    .append(getPlan(rel))
-                    .decrease()
-                    .newline();
+            if (Logger.INSTANCE.isLoggingEnabled(this, 3))
+                this.logPlan(3, "After optimizer stage " + stage, rel);
             stage++;
         }
 
-        Logger.INSTANCE.belowLevel(this, 2)
-                .append("After optimizer ")
-                .increase()
-                .append(getPlan(rel))
-                .decrease()
-                .newline();
+        this.logPlan(2, "After optimizer ", rel);
         return rel;
     }
 
@@ -514,19 +547,198 @@ public class CalciteCompiler implements IWritesLogs {
         return result;
     }
 
-    List<RelDataTypeField> getColumnTypes(SqlNodeList list) {
+    /**
+     * The types of the columns of a table.
+     * @param list        Column declarations and table constraints.
+     * @param primaryKey  Indexes of the columns in the primary key;
+     *                    these are implicitly NOT NULL.
+     */
+    List<RelDataTypeField> getColumnTypes(SqlNodeList list, List<Integer> primaryKey) {
         List<RelDataTypeField> result = new ArrayList<>();
         int index = 0;
         for (SqlNode col: Objects.requireNonNull(list)) {
-            if (col.getKind().equals(SqlKind.COLUMN_DECL)) {
-                SqlColumnDeclaration cd = (SqlColumnDeclaration)col;
-                RelDataType type = this.convertType(cd.dataType);
-                String name = Catalog.identifierToString(cd.name);
-                RelDataTypeField field = new RelDataTypeFieldImpl(name, index++, type);
-                result.add(field);
+            SqlIdentifier id;
+            SqlDataTypeSpec dataType;
+            if (col instanceof SqlKeyConstraint) {
+                continue;
+            } else if (col instanceof SqlExtendedColumnDeclaration) {
+                SqlExtendedColumnDeclaration cd = (SqlExtendedColumnDeclaration) col;
+                id = cd.name;
+                dataType = cd.dataType;
+            } else if (col instanceof SqlColumnDeclaration) {
+                SqlColumnDeclaration cd = (SqlColumnDeclaration) col;
+                id = cd.name;
+                dataType = cd.dataType;
+            } else {
+                throw new UnimplementedException(new CalciteObject(col));
+            }
+            RelDataType type = this.convertType(dataType);
+            if (primaryKey.contains(index))
+                type = this.typeFactory.createTypeWithNullability(type, false);
+            String name = Catalog.identifierToString(id);
+            RelDataTypeField field = new RelDataTypeFieldImpl(name, index++, type);
+            result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * The names of the columns declared in a CREATE TABLE statement, in order.
+     */
+    static List<String> getColumnNames(SqlNodeList list) {
+        List<String> result = new ArrayList<>();
+        for (SqlNode col: list) {
+            if (col instanceof SqlExtendedColumnDeclaration)
+                result.add(Catalog.identifierToString(((SqlExtendedColumnDeclaration) col).name));
+            else if (col instanceof SqlColumnDeclaration)
+                result.add(Catalog.identifierToString(((SqlColumnDeclaration) col).name));
+        }
+        return result;
+    }
+
+    /**
+     * The indexes of the columns listed in a PRIMARY KEY or UNIQUE constraint.
+     */
+    static List<Integer> getConstraintColumns(SqlKeyConstraint constraint, List<String> columnNames) {
+        List<Integer> result = new ArrayList<>();
+        SqlNodeList columns = (SqlNodeList) Objects.requireNonNull(constraint.getOperandList().get(1));
+        for (SqlNode column: columns) {
+            String name = Catalog.identifierToString((SqlIdentifier) column);
+            int index = columnNames.indexOf(name);
+            if (index < 0)
+                throw new UnsupportedException("Column '" + name + "' not found in table",
+                        new CalciteObject(column));
+            if (result.contains(index))
+                throw new UnsupportedException("Column '" + name + "' appears twice in key",
+                        new CalciteObject(column));
+            result.add(index);
+        }
+        return result;
+    }
+
+    /**
+     * The primary key of a table, as a list of column indexes, empty if the table has none.
+     * The key is declared either on a single column, or as a PRIMARY KEY table constraint.
+     */
+    List<Integer> getPrimaryKey(SqlNodeList list) {
+        List<String> columnNames = getColumnNames(list);
+        List<Integer> result = new ArrayList<>();
+        int index = 0;
+        for (SqlNode col: list) {
+            List<Integer> key;
+            if (col instanceof SqlExtendedColumnDeclaration) {
+                int columnIndex = index++;
+                if (!((SqlExtendedColumnDeclaration) col).primaryKey)
+                    continue;
+                key = Linq.list(columnIndex);
+            } else if (col.getKind() == SqlKind.PRIMARY_KEY) {
+                key = getConstraintColumns((SqlKeyConstraint) col, columnNames);
+            } else {
+                if (col.getKind() == SqlKind.COLUMN_DECL)
+                    index++;
+                continue;
+            }
+            if (!result.isEmpty())
+                throw new UnsupportedException("Table has more than one PRIMARY KEY",
+                        new CalciteObject(col));
+            result = key;
+        }
+        return result;
+    }
+
+    /**
+     * The keys declared with UNIQUE table constraints whose columns are all NOT NULL.
+     * A key that includes a nullable column may appear in multiple rows with NULL values,
+     * so it does not identify a row.
+     * @param list     Column declarations and table constraints.
+     * @param columns  Columns, as returned by getColumnTypes.
+     */
+    List<List<Integer>> getUniqueKeys(SqlNodeList list, List<RelDataTypeField> columns) {
+        List<String> columnNames = getColumnNames(list);
+        List<List<Integer>> result = new ArrayList<>();
+        for (SqlNode col: list) {
+            if (col.getKind() != SqlKind.UNIQUE)
                 continue;
+            List<Integer> key = getConstraintColumns((SqlKeyConstraint) col, columnNames);
+            if (Linq.any(key, k -> columns.get(k).getType().isNullable()))
+                continue;
+            result.add(key);
+        }
+        return result;
+    }
+
+    /**
+     * The lateness of the columns of a table that specify one, indexed by column number.
+     * The lateness is expressed in the units of the column values:
+     * milliseconds for TIMESTAMP columns, and days for DATE columns.
+     * @param list     Column declarations.
+     * @param columns  Columns, as returned by getColumnTypes.
+     */
+    Map<Integer, Long> getColumnLateness(SqlNodeList list, List<RelDataTypeField> columns) {
+        Map<Integer, Long> result = new HashMap<>();
+        int index = 0;
+        for (SqlNode col: list) {
+            if (col.getKind() != SqlKind.COLUMN_DECL)
+                continue;
+            int columnIndex = index++;
+            if (!(col instanceof SqlExtendedColumnDeclaration))
+                continue;
+            SqlNode lateness = ((SqlExtendedColumnDeclaration) col).lateness;
+            if (lateness == null)
+                continue;
+            RelDataType type = columns.get(columnIndex).getType();
+            CalciteObject object = new CalciteObject(lateness);
+            if (!(lateness instanceof SqlLiteral))
+                throw new UnsupportedException("LATENESS must be a constant", object);
+            SqlLiteral literal = (SqlLiteral) lateness;
+            boolean isInterval = SqlTypeName.DAY_INTERVAL_TYPES.contains(literal.getTypeName());
+            long value;
+            switch (type.getSqlTypeName()) {
+                case TIMESTAMP:
+                case DATE:
+                    if (!isInterval)
+                        throw new UnsupportedException("LATENESS of a " + type.getSqlTypeName() +
+                                " column must be an interval in days or smaller units", object);
+                    // Value of the interval in milliseconds
+                    value = Objects.requireNonNull(literal.getValueAs(Long.class));
+                    if (type.getSqlTypeName() == SqlTypeName.DATE)
+                        value = (value + 86_400_000L - 1) / 86_400_000L;
+                    break;
+                default:
+                    throw new UnsupportedException("LATENESS is not supported for columns of type " +
+                            type.getSqlTypeName(), object);
             }
-            throw new UnimplementedException(new CalciteObject(col));
+            if (value < 0)
+                throw new UnsupportedException("LATENESS cannot be negative", object);
+            result.put(columnIndex, value);
+        }
+        return result;
+    }
+
+    /**
+     * The properties of a table, declared in CREATE TABLE with
+     * WITH ('key' = 'value', ...).  Only 'append_only' is supported;
+     * its value must be 'true' or 'false'.
+     */
+    Map<String, String> getTableProperties(@Nullable SqlNodeList properties) {
+        Map<String, String> result = new HashMap<>();
+        if (properties == null)
+            return result;
+        for (int i = 0; i < properties.size(); i += 2) {
+            SqlNode key = properties.get(i);
+            SqlNode value = properties.get(i + 1);
+            String keyString = Objects.requireNonNull(((SqlLiteral) key).toValue());
+            String valueString = Objects.requireNonNull(((SqlLiteral) value).toValue());
+            if (!keyString.equals("append_only"))
+                throw new UnsupportedException("Unknown table property '" + keyString + "'",
+                        new CalciteObject(key));
+            if (!valueString.equals("true") && !valueString.equals("false"))
+                throw new UnsupportedException("Table property '" + keyString +
+                        "' must be 'true' or 'false'", new CalciteObject(value));
+            if (result.containsKey(keyString))
+                throw new UnsupportedException("Table property '" + keyString + "' is declared twice",
+                        new CalciteObject(key));
+            result.put(keyString, valueString);
         }
         return result;
     }
@@ -542,6 +754,191 @@ public class CalciteCompiler implements IWritesLogs {
         return columns;
     }
 
+    /**
+     * Compute the key of a view in the view cache.
+     * The key must be computed before the view is validated,
+     * since validation modifies the view.
+     */
+    String getCacheKey(SqlCreateView cv) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(this.options.optimizerOptions.optimizationLevel)
+                .append(" ")
+                .append(this.options.ioOptions.lexicalRules)
+                .append("\n")
+                .append(cv)
+                .append("\n");
+        // Schemas of all relations that may be referenced.
+        // The statement defining a table is also part of the key, since
+        // the compiler copies it to the generated code.
+        Map<String, Table> tables = this.catalog.getTableMap();
+        for (String id: new TreeSet<>(getIdentifiers(cv.query))) {
+            Table table = tables.get(id);
+            if (table == null)
+                continue;
+            builder.append(id)
+                    .append(":")
+                    .append(table.getRowType(this.typeFactory).getFullTypeString());
+            if (table instanceof CreateRelationStatement.EmulatedTable) {
+                CreateRelationStatement.EmulatedTable et = (CreateRelationStatement.EmulatedTable) table;
+                if (et.isTable())
+                    builder.append(et.getStatement());
+            }
+            builder.append("\n");
+        }
+        return builder.toString();
+    }
+
+    CreateViewStatement compileCreateView(String sqlStatement, SqlCreateView cv, @Nullable String comment) {
+        SqlNode query = cv.query;
+        if (cv.getReplace())
+            throw new UnsupportedException("OR REPLACE not supported", new CalciteObject(cv));
+        String viewName = Catalog.identifierToString(cv.name);
+        @Nullable String key = null;
+        @Nullable ViewCache.CompiledView compiled = null;
+        if (this.viewCache != null) {
+            key = this.getCacheKey(cv);
+            compiled = this.viewCache.get(key);
+        }
+        RelRoot relRoot;
+        List<RelDataTypeField> columns;
+        if (compiled != null) {
+            Logger.INSTANCE.belowLevel(this, 2)
+                    .append("Reusing cached plan for view ")
+                    .append(viewName)
+                    .newline();
+            relRoot = compiled.root;
+            columns = compiled.columns;
+        } else {
+            Logger.INSTANCE.belowLevel(this, 2)
+                    .appendSupplier(query::toString)
+                    .newline();
+            query = query.accept(this.astRewriter);
+            Logger.INSTANCE.belowLevel(this, 2)
+                    .append(Objects.requireNonNull(query).toString())
+                    .newline();
+            relRoot = this.converter.convertQuery(query, true, true);
+            columns = this.getColumnTypes(relRoot);
+            RelNode optimized = this.optimize(relRoot.rel);
+            relRoot = relRoot.withRel(optimized);
+            if (this.viewCache != null)
+                this.viewCache.put(Objects.requireNonNull(key), new ViewCache.CompiledView(relRoot, columns));
+        }
+        CreateViewStatement view = new CreateViewStatement(cv, sqlStatement,
+                viewName, comment, columns, cv.query, relRoot);
+        // From Calcite's point of view we treat this view just as another table.
+        this.catalog.addTable(viewName, view.getEmulatedTable());
+        return view;
+    }
+
+    /**
+     * Collects the names of all identifiers that appear in a SQL AST.
+     * This is a superset of the names of the relations used.
+     */
+    static Set<String> getIdentifiers(SqlNode node) {
+        Set<String> result = new HashSet<>();
+        node.accept(new SqlBasicVisitor<Void>() {
+            @Override
+            public Void visit(SqlIdentifier id) {
+                result.addAll(id.names);
+                return null;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Compile a list of statements, compiling independent views concurrently.
+     * The tables are compiled first, on the calling thread.  Then each view is
+     * compiled as soon as all the views it depends on have been compiled.
+     * Each view is compiled by a separate compiler, which shares the catalog with this one.
+     * The statements are compiled concurrently only if the program contains
+     * only CREATE TABLE and CREATE VIEW statements, each relation is
+     * defined once, and no view mentions a relation defined after it;
+     * otherwise the result of compilation could differ from sequential compilation.
+     * Statements are compiled without producing a JSON description;
+     * the caller can obtain it from the results.
+     *
+     * @param nodes    Statements to compile.
+     * @param threads  Number of threads to use.
+     * @param idGen    Id generator to use on the worker threads.
+     * @return         The compiled statements, in the order of 'nodes', or null
+     *                 if the statements cannot be compiled concurrently.
+     *                 Compilation errors are reported through the futures.
+     */
+    @Nullable
+    public List<CompletableFuture<FrontEndStatement>> compileConcurrently(
+            SqlNodeList nodes, int threads, IdGen idGen) {
+        // Position in the program of each relation defined
+        Map<String, Integer> defined = new HashMap<>();
+        List<Set<String>> identifiers = new ArrayList<>();
+        int views = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            SqlNode node = nodes.get(i);
+            SqlIdentifier name;
+            if (node.getKind().equals(SqlKind.CREATE_TABLE)) {
+                SqlCreateTable ct = (SqlCreateTable) node;
+                if (ct.columnList == null)
+                    return null;
+                name = ct.name;
+                identifiers.add(new HashSet<>());
+            } else if (node.getKind().equals(SqlKind.CREATE_VIEW)) {
+                SqlCreateView cv = (SqlCreateView) node;
+                name = cv.name;
+                identifiers.add(getIdentifiers(cv.query));
+                views++;
+            } else {
+                return null;
+            }
+            if (!name.isSimple() || defined.containsKey(name.getSimple()))
+                return null;
+            defined.put(name.getSimple(), i);
+        }
+        if (views < 2)
+            return null;
+        for (int i = 0; i < nodes.size(); i++) {
+            for (String id: identifiers.get(i)) {
+                Integer position = defined.get(id);
+                if (position != null && position >= i)
+                    return null;
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<CompletableFuture<FrontEndStatement>> result = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            SqlNode node = nodes.get(i);
+            String sqlStatement = node.toString();
+            if (node.getKind().equals(SqlKind.CREATE_TABLE)) {
+                CompletableFuture<FrontEndStatement> table = new CompletableFuture<>();
+                try {
+                    table.complete(this.compile(sqlStatement, node, null, null, null));
+                } catch (Throwable ex) {
+                    table.completeExceptionally(ex);
+                }
+                result.add(table);
+                continue;
+            }
+            List<CompletableFuture<FrontEndStatement>> dependencies = new ArrayList<>();
+            for (String id: identifiers.get(i)) {
+                Integer position = defined.get(id);
+                if (position != null && nodes.get(position).getKind().equals(SqlKind.CREATE_VIEW))
+                    dependencies.add(result.get(position));
+            }
+            CompletableFuture<FrontEndStatement> view = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture[0]))
+                    .thenApplyAsync(unused -> {
+                        try (IdGen.Scope ignored = idGen.enter()) {
+                            CalciteCompiler compiler = new CalciteCompiler(this);
+                            return compiler.compileCreateView(sqlStatement, (SqlCreateView) node, null);
+                        }
+                    }, pool);
+            result.add(view);
+        }
+        CompletableFuture.allOf(result.toArray(new CompletableFuture[0]))
+                .whenComplete((unused, ex) -> pool.shutdown());
+        return result;
+    }
+
     /**
      * Compile a SQL statement.  Return a description.
      * @param node         Compiled version of the SQL statement.
@@ -569,19 +966,31 @@ public class CalciteCompiler implements IWritesLogs {
                     throw new UnsupportedException("IF NOT EXISTS not supported", object);
                 String tableName = Catalog.identifierToString(ct.name);
                 List<RelDataTypeField> cols;
+                Map<Integer, Long> lateness = new HashMap<>();
+                List<Integer> primaryKey = new ArrayList<>();
+                List<List<Integer>> uniqueKeys = new ArrayList<>();
                 if (ct.columnList != null) {
-                    cols = this.getColumnTypes(Objects.requireNonNull(ct.columnList));
+                    primaryKey = this.getPrimaryKey(ct.columnList);
+                    cols = this.getColumnTypes(ct.columnList, primaryKey);
+                    lateness = this.getColumnLateness(ct.columnList, cols);
+                    uniqueKeys = this.getUniqueKeys(ct.columnList, cols);
                 } else {
                     if (ct.query == null)
                         throw new UnsupportedException("CREATE TABLE cannot contain a query",
                                 new CalciteObject(node));
                     Logger.INSTANCE.belowLevel(this, 1)
-                            .append(ct.query.toString())
+                            .appendSupplier(ct.query::toString)
                             .newline();
                     RelRoot relRoot = this.converter.convertQuery(ct.query, true, true);
                     cols = this.getColumnTypes(relRoot);
                 }
-                CreateTableStatement table = new CreateTableStatement(node, sqlStatement, tableName, comment, cols);
+                Map<String, String> properties = new HashMap<>();
+                if (ct instanceof SqlExtendedCreateTable)
+                    properties = this.getTableProperties(((SqlExtendedCreateTable) ct).properties);
+                boolean appendOnly = "true".equals(properties.get("append_only"));
+                CreateTableStatement table = new CreateTableStatement(
+                        node, sqlStatement, tableName, comment, cols, lateness, appendOnly,
+                        primaryKey, uniqueKeys);
                 this.catalog.addTable(tableName, table.getEmulatedTable());
                 if (inputs != null)
                     inputs.add(table.getDefinedObjectSchema());
@@ -589,27 +998,7 @@ public class CalciteCompiler implements IWritesLogs {
             }
 
             if (node.getKind().equals(SqlKind.CREATE_VIEW)) {
-                SqlCreateView cv = (SqlCreateView) node;
-                SqlNode query = cv.query;
-                if (cv.getReplace())
-                    throw new UnsupportedException("OR REPLACE not supported", object);
-                Logger.INSTANCE.belowLevel(this, 2)
-                        .append(query.toString())
-                        .newline();
-                query = query.accept(this.astRewriter);
-                Logger.INSTANCE.belowLevel(this, 2)
-                        .append(Objects.requireNonNull(query).toString())
-                        .newline();
-                RelRoot relRoot = this.converter.convertQuery(query, true, true);
-                List<RelDataTypeField> columns = this.getColumnTypes(relRoot);
-                RelNode optimized = this.optimize(relRoot.rel);
-                relRoot = relRoot.withRel(optimized);
-                String viewName = Catalog.identifierToString(cv.name);
-                CreateViewStatement view = new CreateViewStatement(node, sqlStatement,
-                        Catalog.identifierToString(cv.name), comment,
-                        columns, cv.query, relRoot);
-                // From Calcite's point of view we treat this view just as another table.
-                this.catalog.addTable(viewName, view.getEmulatedTable());
+                CreateViewStatement view = this.compileCreateView(sqlStatement, (SqlCreateView) node, comment);
                 if (outputs != null)
                     outputs.add(view.getDefinedObjectSchema());
                 return view;
@@ -29,11 +29,12 @@ import org.apache.calcite.sql.SqlIdentifier;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Maintains the catalog: a mapping from table names to table objects.
+ * The catalog can be shared by compilers running on several threads.
  */
 public class Catalog extends AbstractSchema {
     public final String schemaName;
@@ -41,7 +42,7 @@ public class Catalog extends AbstractSchema {
 
     public Catalog(String schemaName) {
         this.schemaName = schemaName;
-        this.tableMap = new HashMap<>();
+        this.tableMap = new ConcurrentHashMap<>();
     }
 
     public static String identifierToString(SqlIdentifier identifier) {
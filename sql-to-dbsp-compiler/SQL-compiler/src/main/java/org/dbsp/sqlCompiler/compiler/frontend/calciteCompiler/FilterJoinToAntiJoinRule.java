@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.tools.RelBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a left join followed by a filter that only keeps the rows
+ * without a match into an anti-join.
+ * The decorrelation of NOT EXISTS sub-queries produces plans of the form
+ * Filter(IS NULL(r), Join(LEFT, L, R)), where r is a column of R that
+ * cannot be NULL, so it is NULL exactly in the rows of L without a match.
+ * The result is the anti-join of L and R, followed by a projection that
+ * supplies NULL for the columns of R.
+ */
+public class FilterJoinToAntiJoinRule extends RelOptRule {
+    public static final FilterJoinToAntiJoinRule INSTANCE = new FilterJoinToAntiJoinRule();
+
+    FilterJoinToAntiJoinRule() {
+        super(operand(LogicalFilter.class, operand(LogicalJoin.class, any())),
+                "FilterJoinToAntiJoinRule");
+    }
+
+    @Override
+    public void onMatch(RelOptRuleCall call) {
+        LogicalFilter filter = call.rel(0);
+        LogicalJoin join = call.rel(1);
+        if (join.getJoinType() != JoinRelType.LEFT)
+            return;
+        RexNode condition = filter.getCondition();
+        if (condition.getKind() != SqlKind.IS_NULL)
+            return;
+        RexNode operand = ((RexCall) condition).getOperands().get(0);
+        if (!(operand instanceof RexInputRef))
+            return;
+        int leftSize = join.getLeft().getRowType().getFieldCount();
+        int rightIndex = ((RexInputRef) operand).getIndex() - leftSize;
+        if (rightIndex < 0 ||
+                join.getRight().getRowType().getFieldList().get(rightIndex).getType().isNullable())
+            return;
+
+        RelBuilder builder = call.builder();
+        builder.push(join.getLeft())
+                .push(join.getRight())
+                .antiJoin(join.getCondition());
+        RexBuilder rexBuilder = builder.getRexBuilder();
+        List<RexNode> fields = new ArrayList<>(builder.fields());
+        List<RelDataTypeField> joinFields = join.getRowType().getFieldList();
+        for (RelDataTypeField field: joinFields.subList(leftSize, joinFields.size()))
+            fields.add(rexBuilder.makeNullLiteral(field.getType()));
+        builder.project(fields, join.getRowType().getFieldNames());
+        call.transformTo(builder.build());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler;
+
+import org.apache.calcite.schema.ColumnStrategy;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDataTypeSpec;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.SqlSpecialOperator;
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.util.ImmutableNullableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Column declaration in a CREATE TABLE statement.
+ * Like the Calcite SqlColumnDeclaration, but can also specify
+ * the LATENESS of the column, and whether the column is the PRIMARY KEY.
+ */
+public class SqlExtendedColumnDeclaration extends SqlCall {
+    private static final SqlSpecialOperator OPERATOR =
+            new SqlSpecialOperator("COLUMN_DECL", SqlKind.COLUMN_DECL);
+
+    public final SqlIdentifier name;
+    public final SqlDataTypeSpec dataType;
+    public final ColumnStrategy strategy;
+    /**
+     * If not null, the values of this column are never smaller than the
+     * largest value received so far minus the lateness.
+     */
+    @Nullable
+    public final SqlNode lateness;
+    public final boolean primaryKey;
+
+    public SqlExtendedColumnDeclaration(SqlParserPos pos, SqlIdentifier name, SqlDataTypeSpec dataType,
+                                        ColumnStrategy strategy, @Nullable SqlNode lateness, boolean primaryKey) {
+        super(pos);
+        this.name = name;
+        this.dataType = dataType;
+        this.strategy = strategy;
+        this.lateness = lateness;
+        this.primaryKey = primaryKey;
+    }
+
+    @Override
+    public SqlOperator getOperator() {
+        return OPERATOR;
+    }
+
+    @Override
+    public List<SqlNode> getOperandList() {
+        return ImmutableNullableList.of(this.name, this.dataType);
+    }
+
+    @Override
+    public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+        this.name.unparse(writer, 0, 0);
+        this.dataType.unparse(writer, 0, 0);
+        if (Boolean.FALSE.equals(this.dataType.getNullable()))
+            writer.keyword("NOT NULL");
+        if (this.lateness != null) {
+            writer.keyword("LATENESS");
+            this.lateness.unparse(writer, 0, 0);
+        }
+        if (this.primaryKey)
+            writer.keyword("PRIMARY KEY");
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler;
+
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.ddl.SqlCreateTable;
+import org.apache.calcite.sql.parser.SqlParserPos;
+
+import javax.annotation.Nullable;
+
+/**
+ * CREATE TABLE statement.
+ * Like the Calcite SqlCreateTable, but can also specify table
+ * properties: WITH ('key' = 'value', ...).
+ */
+public class SqlExtendedCreateTable extends SqlCreateTable {
+    /**
+     * If not null, a list containing alternating property keys and values.
+     * Both are string literals.
+     */
+    @Nullable
+    public final SqlNodeList properties;
+
+    public SqlExtendedCreateTable(SqlParserPos pos, boolean replace, boolean ifNotExists,
+                                  SqlIdentifier name, @Nullable SqlNodeList columnList,
+                                  @Nullable SqlNode query, @Nullable SqlNodeList properties) {
+        super(pos, replace, ifNotExists, name, columnList, query);
+        this.properties = properties;
+    }
+
+    @Override
+    public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+        writer.keyword("CREATE");
+        writer.keyword("TABLE");
+        if (this.ifNotExists)
+            writer.keyword("IF NOT EXISTS");
+        this.name.unparse(writer, leftPrec, rightPrec);
+        if (this.columnList != null) {
+            SqlWriter.Frame frame = writer.startList("(", ")");
+            for (SqlNode c : this.columnList) {
+                writer.sep(",");
+                c.unparse(writer, 0, 0);
+            }
+            writer.endList(frame);
+        }
+        if (this.properties != null) {
+            writer.keyword("WITH");
+            SqlWriter.Frame frame = writer.startList("(", ")");
+            for (int i = 0; i < this.properties.size(); i += 2) {
+                writer.sep(",");
+                this.properties.get(i).unparse(writer, 0, 0);
+                writer.keyword("=");
+                this.properties.get(i + 1).unparse(writer, 0, 0);
+            }
+            writer.endList(frame);
+        }
+        if (this.query != null) {
+            writer.keyword("AS");
+            writer.newlineAndIndent();
+            this.query.unparse(writer, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler;
+
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.type.RelDataTypeField;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the optimized Calcite plans of views across compilations.
+ * The key of a view contains the text of the view definition,
+ * the schemas of the relations it may reference, and the compiler options
+ * that influence the Calcite optimizer, so a view whose key is unchanged
+ * compiles to the same plan.
+ * The cache can be shared by several compilers, including compilers running concurrently.
+ * When full, the least recently used view is evicted.
+ */
+public class ViewCache {
+    /**
+     * The result of compiling a view.
+     */
+    static class CompiledView {
+        final RelRoot root;
+        final List<RelDataTypeField> columns;
+
+        CompiledView(RelRoot root, List<RelDataTypeField> columns) {
+            this.root = root;
+            this.columns = columns;
+        }
+    }
+
+    final Map<String, CompiledView> views;
+    final AtomicLong hits;
+    final AtomicLong misses;
+
+    /**
+     * Create a cache.
+     * @param capacity  Maximum number of views to remember.
+     */
+    public ViewCache(int capacity) {
+        this.views = new LinkedHashMap<String, CompiledView>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledView> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    @Nullable
+    synchronized CompiledView get(String key) {
+        CompiledView result = this.views.get(key);
+        if (result != null)
+            this.hits.incrementAndGet();
+        else
+            this.misses.incrementAndGet();
+        return result;
+    }
+
+    synchronized void put(String key, CompiledView view) {
+        this.views.put(key, view);
+    }
+
+    /**
+     * Number of views found in the cache.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Number of views that had to be compiled.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public synchronized int size() {
+        return this.views.size();
+    }
+}
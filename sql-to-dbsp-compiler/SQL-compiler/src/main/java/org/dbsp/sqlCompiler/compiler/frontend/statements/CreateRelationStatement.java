@@ -35,9 +35,12 @@ import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.JsonBuilder;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
@@ -80,9 +83,35 @@ public abstract class CreateRelationStatement extends FrontEndStatement {
             return builder.build();
         }
 
+        /**
+         * Expose the keys of the relation to the Calcite optimizer,
+         * which can use them, e.g., to remove DISTINCT aggregations.
+         */
+        @Override
+        public Statistic getStatistic() {
+            List<ImmutableBitSet> keys = CreateRelationStatement.this.getUniqueKeys();
+            if (keys.isEmpty())
+                return Statistics.UNKNOWN;
+            return Statistics.of(null, keys, null, null);
+        }
+
         public String getStatement() {
             return CreateRelationStatement.this.statement;
         }
+
+        /**
+         * True if this is a table, false if this is a view.
+         */
+        public boolean isTable() {
+            return CreateRelationStatement.this.is(CreateTableStatement.class);
+        }
+    }
+
+    /**
+     * Sets of columns that uniquely identify a row of the relation.
+     */
+    public List<ImmutableBitSet> getUniqueKeys() {
+        return new ArrayList<>();
     }
 
     public AbstractTable getEmulatedTable() {
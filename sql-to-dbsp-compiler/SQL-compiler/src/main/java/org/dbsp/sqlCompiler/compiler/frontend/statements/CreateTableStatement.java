@@ -25,16 +25,54 @@ package org.dbsp.sqlCompiler.compiler.frontend.statements;
 
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.util.ImmutableBitSet;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Describes a table as produced by a CREATE TABLE DDL statement.
  */
 public class CreateTableStatement extends CreateRelationStatement {
+    /**
+     * Lateness of the columns that declare one, indexed by column number.
+     * The lateness is expressed in the units of the column values.
+     */
+    public final Map<Integer, Long> lateness;
+    /**
+     * True if rows are never deleted from the table.
+     * Declared with WITH ('append_only' = 'true').
+     */
+    public final boolean appendOnly;
+    /**
+     * Indexes of the columns in the PRIMARY KEY; empty if the table has no primary key.
+     */
+    public final List<Integer> primaryKey;
+    /**
+     * Column indexes of the UNIQUE constraints whose columns are all NOT NULL.
+     */
+    public final List<List<Integer>> uniqueKeys;
+
     public CreateTableStatement(SqlNode node, String statement,
-                                String tableName, @Nullable String comment, List<RelDataTypeField> columns) {
+                                String tableName, @Nullable String comment, List<RelDataTypeField> columns,
+                                Map<Integer, Long> lateness, boolean appendOnly,
+                                List<Integer> primaryKey, List<List<Integer>> uniqueKeys) {
         super(node, statement, tableName, comment, columns);
+        this.lateness = lateness;
+        this.appendOnly = appendOnly;
+        this.primaryKey = primaryKey;
+        this.uniqueKeys = uniqueKeys;
+    }
+
+    @Override
+    public List<ImmutableBitSet> getUniqueKeys() {
+        List<ImmutableBitSet> result = new ArrayList<>();
+        if (!this.primaryKey.isEmpty())
+            result.add(ImmutableBitSet.of(this.primaryKey));
+        for (List<Integer> key: this.uniqueKeys)
+            result.add(ImmutableBitSet.of(key));
+        return result;
     }
 }
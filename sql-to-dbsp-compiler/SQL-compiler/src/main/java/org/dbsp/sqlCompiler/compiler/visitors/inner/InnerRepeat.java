@@ -21,7 +21,7 @@ public class InnerRepeat implements IWritesLogs, IRTransform {
             IDBSPInnerNode result = this.visitor.apply(node);
             Logger.INSTANCE.belowLevel(this, 3)
                     .append("After ")
-                    .append(this.visitor.toString())
+                    .appendSupplier(this.visitor::toString)
                     .newline()
                     .appendSupplier(result::toString)
                     .newline();
@@ -28,6 +28,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPTimeLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPTimestampLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU32Literal;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU64Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU128Literal;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPUSizeLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPVecLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPZSetLiteral;
@@ -103,7 +104,7 @@ public abstract class InnerRewriteVisitor
         }
 
         Logger.INSTANCE.belowLevel(this, 1)
-                .append(this.toString())
+                .appendSupplier(this::toString)
                 .append(":")
                 .appendSupplier(old::toString)
                 .append(" -> ")
@@ -196,7 +197,7 @@ public abstract class InnerRewriteVisitor
         this.push(type);
         DBSPType[] elements = this.transform(type.tupFields);
         this.pop(type);
-        DBSPType result = new DBSPTypeRawTuple(elements);
+        DBSPType result = new DBSPTypeRawTuple(elements).setMayBeNull(type.mayBeNull);
         this.map(type, result);
         return VisitDecision.STOP;
     }
@@ -206,7 +207,7 @@ public abstract class InnerRewriteVisitor
         this.push(type);
         DBSPType[] elements = this.transform(type.tupFields);
         this.pop(type);
-        DBSPType result = new DBSPTypeTuple(elements);
+        DBSPType result = new DBSPTypeTuple(type.getNode(), type.mayBeNull, elements);
         this.map(type, result);
         return VisitDecision.STOP;
     }
@@ -475,6 +476,16 @@ public abstract class InnerRewriteVisitor
         return VisitDecision.STOP;
     }
 
+    @Override
+    public VisitDecision preorder(DBSPU128Literal expression) {
+        this.push(expression);
+        DBSPType type = this.transform(expression.getType());
+        this.pop(expression);
+        DBSPExpression result = new DBSPU128Literal(expression.getNode(), type, expression.value);
+        this.map(expression, result);
+        return VisitDecision.STOP;
+    }
+
     @Override
     public VisitDecision preorder(DBSPUSizeLiteral expression) {
         this.push(expression);
@@ -924,6 +935,8 @@ public abstract class InnerRewriteVisitor
         DBSPExpression emptySetResult = this.transform(implementation.emptySetResult);
         DBSPType semiGroup = this.transform(implementation.semigroup);
         DBSPExpression linear = this.transformN(implementation.linearFunction);
+        DBSPExpression linearPost = this.transformN(implementation.linearPostProcess);
+        DBSPExpression combine = this.transformN(implementation.combine);
         this.pop(implementation);
 
         DBSPAggregate.Implementation result = new DBSPAggregate.Implementation(
@@ -931,7 +944,9 @@ public abstract class InnerRewriteVisitor
                 increment.to(DBSPClosureExpression.class),
                 postProcess != null ? postProcess.to(DBSPClosureExpression.class) : null,
                 emptySetResult, semiGroup,
-                linear != null ? linear.to(DBSPClosureExpression.class) : null);
+                linear != null ? linear.to(DBSPClosureExpression.class) : null,
+                linearPost != null ? linearPost.to(DBSPClosureExpression.class) : null,
+                combine != null ? combine.to(DBSPClosureExpression.class) : null);
         result.validate();
         this.map(implementation, result);
         return VisitDecision.STOP;
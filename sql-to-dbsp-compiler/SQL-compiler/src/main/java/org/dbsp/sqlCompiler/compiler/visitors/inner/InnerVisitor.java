@@ -91,7 +91,7 @@ public abstract class InnerVisitor implements IRTransform, IWritesLogs {
     public void startVisit() {
         Logger.INSTANCE.belowLevel(this, 4)
                 .append("Starting ")
-                .append(this.toString());
+                .appendSupplier(this::toString);
     }
 
     /**
@@ -549,6 +549,10 @@ public abstract class InnerVisitor implements IRTransform, IWritesLogs {
         return this.preorder((DBSPIntLiteral) node);
     }
 
+    public VisitDecision preorder(DBSPU128Literal node) {
+        return this.preorder((DBSPIntLiteral) node);
+    }
+
     public VisitDecision preorder(DBSPBoolLiteral node) {
         return this.preorder((DBSPLiteral) node);
     }
@@ -997,6 +1001,10 @@ public abstract class InnerVisitor implements IRTransform, IWritesLogs {
         this.postorder((DBSPIntLiteral) node);
     }
 
+    public void postorder(DBSPU128Literal node) {
+        this.postorder((DBSPIntLiteral) node);
+    }
+
     public void postorder(DBSPBoolLiteral node) {
         this.postorder((DBSPLiteral) node);
     }
@@ -9,6 +9,7 @@ import org.dbsp.sqlCompiler.ir.expression.DBSPApplyExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPBlockExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPCloneExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPDerefExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPFieldExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPTupleExpression;
@@ -74,6 +75,24 @@ public class Projection extends InnerVisitor {
         this.description = new Description();
     }
 
+    /**
+     * If 'expression' copies a field of the variable 'var' return the field number, otherwise -1.
+     */
+    public static int copiedField(DBSPExpression expression, String var) {
+        if (expression.is(DBSPCloneExpression.class))
+            expression = expression.to(DBSPCloneExpression.class).expression;
+        DBSPFieldExpression field = expression.as(DBSPFieldExpression.class);
+        if (field == null)
+            return -1;
+        DBSPExpression source = field.expression;
+        if (source.is(DBSPDerefExpression.class))
+            source = source.to(DBSPDerefExpression.class).expression;
+        DBSPVariablePath path = source.as(DBSPVariablePath.class);
+        if (path == null || !path.variable.equals(var))
+            return -1;
+        return field.fieldNo;
+    }
+
     @Override
     public VisitDecision preorder(DBSPExpression expression) {
         // Any other expression makes this not be a projection.
@@ -33,6 +33,13 @@ public class ReferenceMap {
         return Utilities.getExists(this.declarations, var);
     }
 
+    /**
+     * True if some variable refers to the specified declaration.
+     */
+    public boolean isReferenced(IDBSPDeclaration declaration) {
+        return this.declarations.containsValue(declaration);
+    }
+
     public void clear() {
         this.declarations.clear();
     }
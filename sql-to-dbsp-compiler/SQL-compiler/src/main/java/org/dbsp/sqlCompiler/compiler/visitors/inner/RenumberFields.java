@@ -0,0 +1,76 @@
+package org.dbsp.sqlCompiler.compiler.visitors.inner;
+
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.errors.InternalCompilerError;
+import org.dbsp.sqlCompiler.compiler.visitors.VisitDecision;
+import org.dbsp.sqlCompiler.ir.DBSPParameter;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPFieldExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeRef;
+
+/**
+ * Changes the type of a tuple variable to a narrower tuple
+ * and renumbers the field accesses of the variable accordingly.
+ * Like UsedFields, the variable is identified by name.
+ */
+public class RenumberFields extends InnerRewriteVisitor {
+    final String variable;
+    /**
+     * New type of the variable.
+     */
+    final DBSPType type;
+    /**
+     * For each field of the original type the index of the field in the new type,
+     * or -1 if the field is not present in the new type.
+     */
+    final int[] fieldMap;
+
+    public RenumberFields(IErrorReporter reporter, String variable, DBSPType type, int[] fieldMap) {
+        super(reporter);
+        this.variable = variable;
+        this.type = type;
+        this.fieldMap = fieldMap;
+    }
+
+    /**
+     * The new type of the variable, which may have been a reference.
+     */
+    DBSPType retype(DBSPType type) {
+        if (type.is(DBSPTypeRef.class))
+            return this.type.ref();
+        return this.type;
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPFieldExpression expression) {
+        DBSPVariablePath var = expression.expression.as(DBSPVariablePath.class);
+        if (var == null || !var.variable.equals(this.variable))
+            return super.preorder(expression);
+        int field = this.fieldMap[expression.fieldNo];
+        if (field < 0)
+            throw new InternalCompilerError("Field " + expression.fieldNo + " was removed", expression);
+        DBSPExpression result = new DBSPVariablePath(var.variable, this.retype(var.getType())).field(field);
+        this.map(expression, result);
+        return VisitDecision.STOP;
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPVariablePath expression) {
+        if (!expression.variable.equals(this.variable))
+            return super.preorder(expression);
+        DBSPExpression result = new DBSPVariablePath(expression.variable, this.retype(expression.getType()));
+        this.map(expression, result);
+        return VisitDecision.STOP;
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPParameter parameter) {
+        if (!parameter.name.equals(this.variable))
+            return super.preorder(parameter);
+        DBSPParameter result = new DBSPParameter(parameter.name, this.retype(parameter.type), parameter.mutable);
+        this.map(parameter, result);
+        return VisitDecision.STOP;
+    }
+}
@@ -0,0 +1,53 @@
+package org.dbsp.sqlCompiler.compiler.visitors.inner;
+
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.visitors.VisitDecision;
+import org.dbsp.sqlCompiler.ir.expression.DBSPFieldExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds the fields of a tuple variable that are used by an expression.
+ * The variable is identified by name, so it should not be shadowed
+ * by other declarations in the visited expression.
+ */
+public class UsedFields extends InnerVisitor {
+    /**
+     * Name of the variable whose fields are tracked.
+     */
+    public final String variable;
+    /**
+     * Fields of the variable that are used.
+     */
+    public final Set<Integer> fields;
+    /**
+     * Set to true if the variable is used other than through a field access.
+     */
+    public boolean allUsed;
+
+    public UsedFields(IErrorReporter reporter, String variable) {
+        super(reporter);
+        this.variable = variable;
+        this.fields = new HashSet<>();
+        this.allUsed = false;
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPFieldExpression expression) {
+        DBSPVariablePath var = expression.expression.as(DBSPVariablePath.class);
+        if (var != null && var.variable.equals(this.variable)) {
+            this.fields.add(expression.fieldNo);
+            return VisitDecision.STOP;
+        }
+        return VisitDecision.CONTINUE;
+    }
+
+    @Override
+    public VisitDecision preorder(DBSPVariablePath variable) {
+        if (variable.variable.equals(this.variable))
+            this.allUsed = true;
+        return VisitDecision.STOP;
+    }
+}
@@ -0,0 +1,19 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+
+import java.util.function.Function;
+
+/**
+ * Uses the implementations for append-only inputs for the incremental
+ * aggregates and distinct operators whose inputs only receive insertions.
+ */
+public class AppendOnlyOperators extends Passes {
+    public AppendOnlyOperators(IErrorReporter reporter, Function<DBSPSourceOperator, Boolean> isAppendOnlySource) {
+        super(reporter);
+        AppendOnlyVisitor appendOnly = new AppendOnlyVisitor(reporter, isAppendOnlySource);
+        this.add(appendOnly);
+        this.add(new AppendOnlyOperatorsVisitor(reporter, appendOnly::isAppendOnly));
+    }
+}
@@ -0,0 +1,54 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+
+import java.util.function.Function;
+
+/**
+ * You probably don't want to use this visitor directly, consider using
+ * AppendOnlyOperators, which also computes the append-only operators.
+ * Optimizes the incremental operators whose input only contains insertions.
+ * A non-linear aggregate keeps a running accumulator for each group,
+ * which it updates with the rows inserted in each step, instead of all the
+ * rows of the group.  A distinct outputs each row the first time it appears
+ * and never retracts it.  Linear aggregates already keep a single value per
+ * group, and are not changed.
+ */
+public class AppendOnlyOperatorsVisitor extends CircuitCloneVisitor {
+    /**
+     * If this function returns 'true' the output of the operator only contains insertions.
+     */
+    protected final Function<DBSPOperator, Boolean> isAppendOnly;
+
+    public AppendOnlyOperatorsVisitor(IErrorReporter reporter, Function<DBSPOperator, Boolean> isAppendOnly) {
+        super(reporter, false);
+        this.isAppendOnly = isAppendOnly;
+    }
+
+    @Override
+    public void postorder(DBSPIncrementalAggregateOperator operator) {
+        if (operator.isLinear || operator.keyBound != null || !this.isAppendOnly.apply(operator.input())) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPIncrementalAggregateOperator(operator.getNode(),
+                operator.keyType, operator.outputElementType, operator.weightType,
+                operator.function, operator.aggregate, null, true,
+                this.mapped(operator.input()), false);
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPIncrementalDistinctOperator operator) {
+        if (!this.isAppendOnly.apply(operator.input())) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPIncrementalDistinctOperator(operator.getNode(),
+                this.mapped(operator.input()), true);
+        this.map(operator, result);
+    }
+}
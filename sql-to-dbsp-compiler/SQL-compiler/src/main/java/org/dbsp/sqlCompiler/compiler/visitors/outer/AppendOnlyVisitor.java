@@ -0,0 +1,91 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFilterOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFlatMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPNoopOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSumOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.ir.IDBSPOuterNode;
+import org.dbsp.util.Linq;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Finds the operators of an incremental circuit whose output
+ * only contains insertions, i.e., all changes have positive weights.
+ * This is true for the sources that are known to be append-only,
+ * and for the operators that preserve this property when all
+ * their inputs have it.
+ */
+public class AppendOnlyVisitor extends CircuitVisitor {
+    /**
+     * If this function returns 'true' the source never receives deletions.
+     */
+    protected final Function<DBSPSourceOperator, Boolean> isAppendOnlySource;
+    final Set<DBSPOperator> appendOnly = new HashSet<>();
+
+    public AppendOnlyVisitor(IErrorReporter reporter, Function<DBSPSourceOperator, Boolean> isAppendOnlySource) {
+        super(reporter, true);
+        this.isAppendOnlySource = isAppendOnlySource;
+    }
+
+    @Override
+    public void startVisit(IDBSPOuterNode node) {
+        this.appendOnly.clear();
+        super.startVisit(node);
+    }
+
+    public boolean isAppendOnly(DBSPOperator operator) {
+        return this.appendOnly.contains(operator);
+    }
+
+    /**
+     * The output of 'operator' is append-only if all its inputs are.
+     */
+    void ifInputsAppendOnly(DBSPOperator operator) {
+        if (Linq.all(operator.inputs, this::isAppendOnly))
+            this.appendOnly.add(operator);
+    }
+
+    @Override
+    public void postorder(DBSPSourceOperator operator) {
+        if (this.isAppendOnlySource.apply(operator))
+            this.appendOnly.add(operator);
+    }
+
+    @Override
+    public void postorder(DBSPMapOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPFilterOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPIndexOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPMapIndexOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPFlatMapOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPNoopOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPSumOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPIncrementalJoinOperator operator) { this.ifInputsAppendOnly(operator); }
+
+    @Override
+    public void postorder(DBSPIncrementalDistinctOperator operator) { this.ifInputsAppendOnly(operator); }
+}
@@ -0,0 +1,143 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.*;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.backend.rust.LowerCircuitVisitor;
+import org.dbsp.sqlCompiler.compiler.backend.rust.ToRustInnerVisitor;
+import org.dbsp.sqlCompiler.ir.IDBSPOuterNode;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPFlatmap;
+import org.dbsp.util.Linq;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Common subexpression elimination for operators.
+ * Two operators are merged if they have the same class, perform the same operation
+ * with an equivalent function, produce the same output type, and have the same inputs.
+ * Functions are considered equivalent if they generate the same Rust code.
+ * Operators are visited in topological order, so chains of identical operators
+ * are merged completely.
+ * Only operators whose result is completely described by these
+ * fields are merged; sources, sinks, and aggregates are never merged.
+ */
+public class CSE extends CircuitCloneVisitor {
+    /**
+     * Maps an operator signature to the operator in the result circuit that computes it.
+     */
+    final Map<String, DBSPOperator> canonical;
+    /**
+     * Numbers the operators of the result circuit.
+     * Operator ids are not used, since they are only unique within a compilation.
+     */
+    final Map<DBSPOperator, Integer> number;
+
+    public CSE(IErrorReporter reporter) {
+        super(reporter, false);
+        this.canonical = new HashMap<>();
+        this.number = new IdentityHashMap<>();
+    }
+
+    int getNumber(DBSPOperator operator) {
+        return this.number.computeIfAbsent(operator, o -> this.number.size());
+    }
+
+    /**
+     * A string that uniquely describes the computation performed by the operator.
+     * @param operator  Operator to describe.
+     * @param inputs    Inputs of the operator in the result circuit.
+     */
+    String signature(DBSPOperator operator, List<DBSPOperator> inputs) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(operator.getClass().getSimpleName())
+                .append(" ")
+                .append(operator.operation)
+                .append(" ")
+                .append(operator.isMultiset)
+                .append(" ")
+                .append(operator.outputType)
+                .append("(");
+        for (DBSPOperator input: inputs)
+            builder.append(this.getNumber(input))
+                    .append(",");
+        builder.append(")");
+        if (operator.function != null) {
+            DBSPExpression function = operator.function;
+            if (function.is(DBSPFlatmap.class))
+                function = LowerCircuitVisitor.rewriteFlatmap(function.to(DBSPFlatmap.class));
+            builder.append(ToRustInnerVisitor.toRustString(this.errorReporter, function, false));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Replace the operator with an equivalent one that already exists in
+     * the result circuit, if such an operator exists.
+     */
+    void share(DBSPOperator operator) {
+        if (this.visited.contains(operator))
+            return;
+        List<DBSPOperator> sources = Linq.map(operator.inputs, this::mapped);
+        String signature = this.signature(operator, sources);
+        DBSPOperator existing = this.canonical.get(signature);
+        if (existing != null) {
+            this.visited.add(operator);
+            this.map(operator, existing, false);
+            return;
+        }
+        this.replace(operator);
+        this.canonical.put(signature, this.mapped(operator));
+    }
+
+    @Override
+    public void postorder(DBSPMapOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPMapIndexOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPIndexOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPFilterOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPFlatMapOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPDistinctOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPIncrementalDistinctOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPNegateOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPIntegralOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPDifferentialOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPSubtractOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPSumOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPJoinOperator operator) { this.share(operator); }
+
+    @Override
+    public void postorder(DBSPIncrementalJoinOperator operator) { this.share(operator); }
+
+    @Override
+    public void startVisit(IDBSPOuterNode circuit) {
+        this.canonical.clear();
+        this.number.clear();
+        super.startVisit(circuit);
+    }
+}
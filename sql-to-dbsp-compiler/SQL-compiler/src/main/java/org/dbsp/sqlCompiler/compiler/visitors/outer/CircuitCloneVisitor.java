@@ -76,11 +76,11 @@ public class CircuitCloneVisitor extends CircuitVisitor implements IWritesLogs {
     protected void map(DBSPOperator old, DBSPOperator newOp, boolean add) {
         if (old != newOp) {
             Logger.INSTANCE.belowLevel(this, 1)
-                    .append(this.toString())
+                    .appendSupplier(this::toString)
                     .append(":")
-                    .append(old.toString())
+                    .appendSupplier(old::toString)
                     .append(" -> ")
-                    .append(newOp.toString())
+                    .appendSupplier(newOp::toString)
                     .newline();
         }
         Utilities.putNew(this.remap, old, newOp);
@@ -98,9 +98,9 @@ public class CircuitCloneVisitor extends CircuitVisitor implements IWritesLogs {
      */
     protected void addOperator(DBSPOperator operator) {
         Logger.INSTANCE.belowLevel(this, 2)
-                .append(this.toString())
+                .appendSupplier(this::toString)
                 .append(" adding ")
-                .append(operator.toString())
+                .appendSupplier(operator::toString)
                 .newline();
         this.getResult().addOperator(operator);
     }
@@ -124,12 +124,12 @@ public class CircuitCloneVisitor extends CircuitVisitor implements IWritesLogs {
             return;
         this.visited.add(operator);
         List<DBSPOperator> sources = Linq.map(operator.inputs, this::mapped);
-        if (!Linq.same(sources, operator.inputs)) {
+        if (!Linq.same(sources, operator.inputs) && Logger.INSTANCE.isLoggingEnabled(this, 1)) {
             Logger.INSTANCE.belowLevel(this, 1)
-                    .append(this.toString())
+                    .appendSupplier(this::toString)
                     .append(" replacing inputs of ")
                     .increase()
-                    .append(operator.toString())
+                    .appendSupplier(operator::toString)
                     .append(":")
                     .join(", ", Linq.map(operator.inputs, DBSPOperator::toString))
                     .newline()
@@ -159,6 +159,21 @@ public class CircuitCloneVisitor extends CircuitVisitor implements IWritesLogs {
         this.replace(operator);
     }
 
+    @Override
+    public void postorder(DBSPIndexedTopKOperator operator) {
+        this.replace(operator);
+    }
+
+    @Override
+    public void postorder(DBSPIndexedRankOperator operator) {
+        this.replace(operator);
+    }
+
+    @Override
+    public void postorder(DBSPIndexedLagOperator operator) {
+        this.replace(operator);
+    }
+
     @Override
     public void postorder(DBSPConstantOperator operator) {
         this.replace(operator);
@@ -24,13 +24,17 @@
 package org.dbsp.sqlCompiler.compiler.visitors.outer;
 
 import org.dbsp.sqlCompiler.circuit.DBSPCircuit;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
 import org.dbsp.sqlCompiler.compiler.ICompilerComponent;
 import org.dbsp.sqlCompiler.compiler.IErrorReporter;
 import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
+import org.dbsp.sqlCompiler.compiler.frontend.statements.CreateTableStatement;
 import org.dbsp.sqlCompiler.compiler.visitors.inner.Simplify;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Very high level circuit-level optimizations.
@@ -59,12 +63,22 @@ public class CircuitOptimizer implements ICompilerComponent {
         passes.add(new MergeSums(reporter));
         passes.add(new PropagateEmptySources(reporter));
         passes.add(new DeadCode(reporter, true));
+        passes.add(new PushFilters(reporter));
         passes.add(new OptimizeProjections(reporter));
         passes.add(new OptimizeDistinctVisitor(reporter));
+        passes.add(new CSE(reporter));
+        passes.add(new NarrowColumns(reporter));
+        int partialAggregates = this.getCompiler().options.optimizerOptions.partialAggregates;
+        if (partialAggregates > 0 && !this.getCompiler().options.ioOptions.jit)
+            passes.add(new PartialAggregatesVisitor(reporter, partialAggregates));
         if (this.getCompiler().options.optimizerOptions.incrementalize) {
             passes.add(new IncrementalizeVisitor(reporter));
             passes.add(new OptimizeIncrementalVisitor(reporter));
+            passes.add(new AppendOnlyOperators(reporter, this::isAppendOnly));
+            // Incrementalization can create new identical integrals
+            passes.add(new CSE(reporter));
         }
+        passes.add(new Watermarks(reporter, this::getLateness));
         passes.add(new DeadCode(reporter, false));
         if (this.getCompiler().options.optimizerOptions.incrementalize)
             passes.add(new NoIntegralVisitor(reporter));
@@ -72,6 +86,26 @@ public class CircuitOptimizer implements ICompilerComponent {
         return new Passes(reporter, passes);
     }
 
+    /**
+     * Lateness of the columns of the table read by a source operator.
+     */
+    Map<Integer, Long> getLateness(DBSPSourceOperator source) {
+        CreateTableStatement table = this.compiler.getTableContents().findTableDefinition(source.outputName);
+        if (table == null)
+            return new HashMap<>();
+        return table.lateness;
+    }
+
+    /**
+     * True if rows are never deleted from the table read by a source operator.
+     */
+    boolean isAppendOnly(DBSPSourceOperator source) {
+        if (this.getCompiler().options.optimizerOptions.appendOnly)
+            return true;
+        CreateTableStatement table = this.compiler.getTableContents().findTableDefinition(source.outputName);
+        return table != null && table.appendOnly;
+    }
+
     public DBSPCircuit optimize(DBSPCircuit input) {
         CircuitTransform optimizer = this.getOptimizer();
         return optimizer.apply(input);
@@ -150,6 +150,7 @@ public class CircuitRewriter extends CircuitCloneVisitor {
         @Nullable DBSPAggregate aggregate = null;
         if (operator.aggregate != null)
             aggregate = this.transform.apply(operator.aggregate).to(DBSPAggregate.class);
+        @Nullable DBSPExpression keyBound = this.transformN(operator.keyBound);
         DBSPOperator input = this.mapped(operator.input());
 
         DBSPOperator result = operator;
@@ -158,9 +159,11 @@ public class CircuitRewriter extends CircuitCloneVisitor {
                 || weightType != operator.weightType
                 || input != operator.input()
                 || aggregate != operator.aggregate
-                || function != operator.function) {
+                || function != operator.function
+                || keyBound != operator.keyBound) {
             result = new DBSPIncrementalAggregateOperator(operator.getNode(),
-                    keyType, outputElementType, weightType, function, aggregate, input, operator.isLinear);
+                    keyType, outputElementType, weightType, function, aggregate, keyBound,
+                    operator.appendOnly, input, operator.isLinear);
         }
         this.map(operator, result);
     }
@@ -180,14 +183,16 @@ public class CircuitRewriter extends CircuitCloneVisitor {
         DBSPType elementResultType = this.transform(operator.elementResultType);
         DBSPType weightType = this.transform(operator.weightType);
         DBSPExpression function = this.transform(operator.getFunction());
+        @Nullable DBSPExpression keyBound = this.transformN(operator.keyBound);
         List<DBSPOperator> sources = Linq.map(operator.inputs, this::mapped);
         DBSPOperator result = operator;
         if (!elementResultType.sameType(operator.elementResultType)
                 || !weightType.sameType(operator.weightType)
                 || function != operator.function
+                || keyBound != operator.keyBound
                 || Linq.different(sources, operator.inputs)) {
             result = new DBSPIncrementalJoinOperator(operator.getNode(),
-                    elementResultType, weightType, function, operator.isMultiset,
+                    elementResultType, weightType, function, keyBound, operator.isMultiset,
                     sources.get(0), sources.get(1));
         }
         this.map(operator, result);
@@ -155,6 +155,21 @@ public abstract class CircuitVisitor
         else return VisitDecision.CONTINUE;
     }
 
+    public VisitDecision preorder(DBSPIndexedTopKOperator node) {
+        if (this.visitSuper) return this.preorder((DBSPUnaryOperator) node);
+        else return VisitDecision.CONTINUE;
+    }
+
+    public VisitDecision preorder(DBSPIndexedRankOperator node) {
+        if (this.visitSuper) return this.preorder((DBSPUnaryOperator) node);
+        else return VisitDecision.CONTINUE;
+    }
+
+    public VisitDecision preorder(DBSPIndexedLagOperator node) {
+        if (this.visitSuper) return this.preorder((DBSPUnaryOperator) node);
+        else return VisitDecision.CONTINUE;
+    }
+
     public VisitDecision preorder(DBSPConstantOperator node) {
         if (this.visitSuper) return this.preorder((DBSPOperator) node);
         else return VisitDecision.CONTINUE;
@@ -273,6 +288,18 @@ public abstract class CircuitVisitor
         if (this.visitSuper) this.postorder((DBSPAggregateOperatorBase) node);
     }
 
+    public void postorder(DBSPIndexedTopKOperator node) {
+        if (this.visitSuper) this.postorder((DBSPUnaryOperator) node);
+    }
+
+    public void postorder(DBSPIndexedRankOperator node) {
+        if (this.visitSuper) this.postorder((DBSPUnaryOperator) node);
+    }
+
+    public void postorder(DBSPIndexedLagOperator node) {
+        if (this.visitSuper) this.postorder((DBSPUnaryOperator) node);
+    }
+
     public void postorder(DBSPConstantOperator node) {
         if (this.visitSuper) this.postorder((DBSPOperator) node);
     }
@@ -2,9 +2,12 @@ package org.dbsp.sqlCompiler.compiler.visitors.outer;
 
 import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
 import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.ir.IDBSPOuterNode;
 import org.dbsp.util.Utilities;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -12,24 +15,39 @@ import java.util.Map;
  * This assumes that there is no dead code.
  */
 public class FanoutVisitor extends CircuitVisitor {
-    final Map<DBSPOperator, Integer> fanout = new HashMap<>();
+    final Map<DBSPOperator, List<DBSPOperator>> consumers = new HashMap<>();
 
     public FanoutVisitor(IErrorReporter errorReporter) {
         super(errorReporter, true);
     }
 
-    void reference(DBSPOperator node) {
-        this.fanout.compute(node, (k, v) -> v == null ? 1 : v + 1);
+    @Override
+    public void startVisit(IDBSPOuterNode node) {
+        // The same visitor is applied repeatedly by Repeat
+        this.consumers.clear();
+        super.startVisit(node);
+    }
+
+    void reference(DBSPOperator node, DBSPOperator consumer) {
+        this.consumers.computeIfAbsent(node, k -> new ArrayList<>()).add(consumer);
     }
 
     @Override
     public void postorder(DBSPOperator node) {
         for (DBSPOperator input: node.inputs) {
-            this.reference(input);
+            this.reference(input, node);
         }
     }
 
     public int getFanout(DBSPOperator operator) {
-        return Utilities.getExists(this.fanout, operator);
+        return this.getConsumers(operator).size();
+    }
+
+    /**
+     * The operators that consume the output of 'operator'.
+     * An operator that uses the same input twice appears twice.
+     */
+    public List<DBSPOperator> getConsumers(DBSPOperator operator) {
+        return Utilities.getExists(this.consumers, operator);
     }
 }
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPDifferentialOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFilterOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFlatMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIntegralOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPNoopOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPUnaryOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.Projection;
+import org.dbsp.sqlCompiler.ir.IDBSPOuterNode;
+import org.dbsp.sqlCompiler.ir.expression.DBSPApplyExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBaseTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBorrowExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPCloneExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPFieldExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPFlatmap;
+import org.dbsp.sqlCompiler.ir.expression.DBSPPathExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPRawTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPBoolLiteral;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI64Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU64Literal;
+import org.dbsp.sqlCompiler.ir.path.DBSPSimplePathSegment;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Finds the fields of the outputs of the operators whose values have a bounded
+ * lateness: each value is never smaller than the largest value received so far
+ * minus the lateness.  The lateness of the table columns is declared in
+ * CREATE TABLE; the operators that only drop rows or copy fields preserve it,
+ * and the start of a TUMBLE or HOP window increases it by the window size.
+ * For indexed outputs the fields are the fields of the values, and the
+ * lateness of the fields of the keys is tracked separately; the lateness
+ * of a vector field is the lateness of its elements.
+ */
+public class LatenessVisitor extends CircuitVisitor {
+    /**
+     * Lateness of the columns of the table read by a source, indexed by column number.
+     */
+    protected final Function<DBSPSourceOperator, Map<Integer, Long>> sourceLateness;
+    final Map<DBSPOperator, Map<Integer, Long>> lateness = new HashMap<>();
+    final Map<DBSPOperator, Map<Integer, Long>> keyLateness = new HashMap<>();
+
+    public LatenessVisitor(IErrorReporter reporter,
+                           Function<DBSPSourceOperator, Map<Integer, Long>> sourceLateness) {
+        super(reporter, true);
+        this.sourceLateness = sourceLateness;
+    }
+
+    @Override
+    public void startVisit(IDBSPOuterNode node) {
+        this.lateness.clear();
+        this.keyLateness.clear();
+        super.startVisit(node);
+    }
+
+    /**
+     * Lateness of the fields of the output of 'operator', indexed by field number.
+     */
+    public Map<Integer, Long> getLateness(DBSPOperator operator) {
+        Map<Integer, Long> result = this.lateness.get(operator);
+        if (result == null)
+            return new HashMap<>();
+        return result;
+    }
+
+    /**
+     * Lateness of the fields of the keys of the indexed output of 'operator',
+     * indexed by field number.
+     */
+    public Map<Integer, Long> getKeyLateness(DBSPOperator operator) {
+        Map<Integer, Long> result = this.keyLateness.get(operator);
+        if (result == null)
+            return new HashMap<>();
+        return result;
+    }
+
+    void set(DBSPOperator operator, Map<Integer, Long> fields) {
+        if (!fields.isEmpty())
+            this.lateness.put(operator, fields);
+    }
+
+    void setKeys(DBSPOperator operator, Map<Integer, Long> fields) {
+        if (!fields.isEmpty())
+            this.keyLateness.put(operator, fields);
+    }
+
+    /**
+     * The output of 'operator' only contains rows of its input.
+     */
+    void sameAsInput(DBSPUnaryOperator operator) {
+        this.set(operator, this.getLateness(operator.input()));
+        this.setKeys(operator, this.getKeyLateness(operator.input()));
+    }
+
+    /**
+     * If 'expression' copies a field of the key of the indexed variable 'var',
+     * as in kv.0.field, return the field number, otherwise -1.
+     */
+    static int copiedKeyField(DBSPExpression expression, String var) {
+        if (expression.is(DBSPCloneExpression.class))
+            expression = expression.to(DBSPCloneExpression.class).expression;
+        DBSPFieldExpression field = expression.as(DBSPFieldExpression.class);
+        if (field == null)
+            return -1;
+        if (Projection.copiedField(field.expression, var) != 0)
+            return -1;
+        return field.fieldNo;
+    }
+
+    /**
+     * Lateness of the fields of 'tuple', which is computed from the
+     * lateness 'input' of the fields of the variable 'var', and, if 'var'
+     * is indexed, from the lateness 'keys' of the fields of its key.
+     */
+    static Map<Integer, Long> fieldsLateness(DBSPBaseTupleExpression tuple, String var,
+                                             Map<Integer, Long> input, Map<Integer, Long> keys) {
+        Map<Integer, Long> result = new HashMap<>();
+        for (int i = 0; i < tuple.fields.length; i++) {
+            int field = Projection.copiedField(tuple.fields[i], var);
+            Long lateness = input.get(field);
+            if (lateness == null)
+                lateness = windowStartLateness(tuple.fields[i], var, input);
+            if (lateness == null)
+                lateness = keys.get(copiedKeyField(tuple.fields[i], var));
+            if (lateness != null)
+                result.put(i, lateness);
+        }
+        return result;
+    }
+
+    /**
+     * Lateness of a window sort key of the form window_order_key(0, &t.field, false, _),
+     * computed from the lateness 'input' of the fields of 't'.  Such a key
+     * preserves the order and the distances between the values of the field.
+     * Nullable fields are excluded: NULL values would never be later than the
+     * other values.
+     */
+    @Nullable
+    static Long orderKeyLateness(DBSPExpression key, String var, Map<Integer, Long> input) {
+        DBSPApplyExpression apply = key.as(DBSPApplyExpression.class);
+        if (apply == null || apply.arguments.length != 4)
+            return null;
+        DBSPPathExpression path = apply.function.as(DBSPPathExpression.class);
+        if (path == null || path.path.components.length != 1)
+            return null;
+        DBSPSimplePathSegment segment = path.path.components[0].as(DBSPSimplePathSegment.class);
+        if (segment == null || !segment.identifier.equals("window_order_key"))
+            return null;
+        // The key must be the first and only sort key, in ascending order
+        DBSPU64Literal prefix = apply.arguments[0].as(DBSPU64Literal.class);
+        if (prefix == null || prefix.value == null || prefix.value != 0)
+            return null;
+        DBSPBoolLiteral descending = apply.arguments[2].as(DBSPBoolLiteral.class);
+        if (descending == null || !Boolean.FALSE.equals(descending.value))
+            return null;
+        DBSPBorrowExpression borrow = apply.arguments[1].as(DBSPBorrowExpression.class);
+        if (borrow == null || borrow.expression.getType().mayBeNull)
+            return null;
+        int field = Projection.copiedField(borrow.expression, var);
+        if (field < 0)
+            return null;
+        return input.get(field);
+    }
+
+    /**
+     * Lateness of a window start of the form tumble_start_Timestamp(t.field, size, _),
+     * or of the vector of window starts hop_start_Timestamp(t.field, _, size, _),
+     * computed from the lateness 'input' of the fields of 't'.  The start of a
+     * window that contains a value is at most 'size' smaller than the value.
+     */
+    @Nullable
+    static Long windowStartLateness(DBSPExpression expression, String var, Map<Integer, Long> input) {
+        DBSPApplyExpression apply = expression.as(DBSPApplyExpression.class);
+        if (apply == null)
+            return null;
+        DBSPPathExpression path = apply.function.as(DBSPPathExpression.class);
+        if (path == null || path.path.components.length != 1)
+            return null;
+        DBSPSimplePathSegment segment = path.path.components[0].as(DBSPSimplePathSegment.class);
+        if (segment == null)
+            return null;
+        int sizeArgument;
+        if (segment.identifier.equals("tumble_start_Timestamp") && apply.arguments.length == 3)
+            sizeArgument = 1;
+        else if (segment.identifier.equals("hop_start_Timestamp") && apply.arguments.length == 4)
+            sizeArgument = 2;
+        else
+            return null;
+        DBSPI64Literal size = apply.arguments[sizeArgument].as(DBSPI64Literal.class);
+        if (size == null || size.value == null)
+            return null;
+        Long lateness = input.get(Projection.copiedField(apply.arguments[0], var));
+        if (lateness == null)
+            return null;
+        return lateness + size.value;
+    }
+
+    @Override
+    public void postorder(DBSPSourceOperator operator) {
+        this.set(operator, this.sourceLateness.apply(operator));
+    }
+
+    @Override
+    public void postorder(DBSPFilterOperator operator) { this.sameAsInput(operator); }
+
+    @Override
+    public void postorder(DBSPDifferentialOperator operator) { this.sameAsInput(operator); }
+
+    @Override
+    public void postorder(DBSPIntegralOperator operator) { this.sameAsInput(operator); }
+
+    @Override
+    public void postorder(DBSPNoopOperator operator) { this.sameAsInput(operator); }
+
+    @Override
+    public void postorder(DBSPDistinctOperator operator) { this.sameAsInput(operator); }
+
+    @Override
+    public void postorder(DBSPIncrementalDistinctOperator operator) { this.sameAsInput(operator); }
+
+    @Override
+    public void postorder(DBSPMapOperator operator) {
+        Map<Integer, Long> input = this.getLateness(operator.input());
+        Map<Integer, Long> keys = this.getKeyLateness(operator.input());
+        if (input.isEmpty() && keys.isEmpty())
+            return;
+        DBSPClosureExpression closure = operator.getFunction().to(DBSPClosureExpression.class);
+        DBSPTupleExpression tuple = closure.body.as(DBSPTupleExpression.class);
+        if (tuple == null || closure.parameters.length != 1)
+            return;
+        String var = closure.parameters[0].asVariableReference().variable;
+        this.set(operator, fieldsLateness(tuple, var, input, keys));
+    }
+
+    @Override
+    public void postorder(DBSPIndexOperator operator) {
+        Map<Integer, Long> input = this.getLateness(operator.input());
+        if (input.isEmpty())
+            return;
+        DBSPClosureExpression closure = operator.getFunction().to(DBSPClosureExpression.class);
+        if (closure.parameters.length != 1)
+            return;
+        DBSPRawTupleExpression keyValue = closure.body.as(DBSPRawTupleExpression.class);
+        if (keyValue == null || keyValue.fields.length != 2)
+            return;
+        DBSPBaseTupleExpression key = keyValue.fields[0].as(DBSPBaseTupleExpression.class);
+        if (key == null)
+            return;
+        String var = closure.parameters[0].asVariableReference().variable;
+        this.setKeys(operator, fieldsLateness(key, var, input, new HashMap<>()));
+    }
+
+    @Override
+    public void postorder(DBSPIncrementalAggregateOperator operator) {
+        // The groups have the keys of the input
+        this.setKeys(operator, this.getKeyLateness(operator.input()));
+    }
+
+    @Override
+    public void postorder(DBSPIncrementalJoinOperator operator) {
+        // A key appears in the output only when it appears in one of the inputs,
+        // so the larger lateness of the two inputs holds for the output.
+        Map<Integer, Long> left = this.getKeyLateness(operator.inputs.get(0));
+        Map<Integer, Long> right = this.getKeyLateness(operator.inputs.get(1));
+        Map<Integer, Long> keys = new HashMap<>();
+        for (Map.Entry<Integer, Long> entry: left.entrySet()) {
+            Long other = right.get(entry.getKey());
+            if (other != null)
+                keys.put(entry.getKey(), Math.max(entry.getValue(), other));
+        }
+        if (keys.isEmpty())
+            return;
+        DBSPClosureExpression closure = operator.getFunction().to(DBSPClosureExpression.class);
+        DBSPTupleExpression tuple = closure.body.as(DBSPTupleExpression.class);
+        if (tuple == null || closure.parameters.length != 3)
+            return;
+        String var = closure.parameters[0].asVariableReference().variable;
+        this.set(operator, fieldsLateness(tuple, var, keys, new HashMap<>()));
+    }
+
+    @Override
+    public void postorder(DBSPMapIndexOperator operator) {
+        // Recognize the index of a window: |t| (partition, (order, t.clone()))
+        Map<Integer, Long> input = this.getLateness(operator.input());
+        if (input.isEmpty())
+            return;
+        DBSPClosureExpression closure = operator.getFunction().to(DBSPClosureExpression.class);
+        if (closure.parameters.length != 1)
+            return;
+        DBSPRawTupleExpression keyValue = closure.body.as(DBSPRawTupleExpression.class);
+        if (keyValue == null || keyValue.fields.length != 2)
+            return;
+        DBSPRawTupleExpression value = keyValue.fields[1].as(DBSPRawTupleExpression.class);
+        if (value == null || value.fields.length == 0)
+            return;
+        String var = closure.parameters[0].asVariableReference().variable;
+        Long lateness = orderKeyLateness(value.fields[0], var, input);
+        if (lateness == null)
+            return;
+        Map<Integer, Long> result = new HashMap<>();
+        result.put(0, lateness);
+        this.set(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPFlatMapOperator operator) {
+        // The elements of a collection field have the lateness of the field
+        Map<Integer, Long> input = this.getLateness(operator.input());
+        if (input.isEmpty())
+            return;
+        DBSPFlatmap flatmap = operator.getFunction().as(DBSPFlatmap.class);
+        if (flatmap == null)
+            return;
+        Map<Integer, Long> result = new HashMap<>();
+        for (int i = 0; i < flatmap.outputFieldIndexes.size(); i++) {
+            int field = flatmap.outputFieldIndexes.get(i);
+            if (field == DBSPFlatmap.ITERATED_ELEMENT)
+                field = flatmap.collectionFieldIndex;
+            Long lateness = input.get(field);
+            if (lateness != null)
+                result.put(i, lateness);
+        }
+        this.set(operator, result);
+    }
+}
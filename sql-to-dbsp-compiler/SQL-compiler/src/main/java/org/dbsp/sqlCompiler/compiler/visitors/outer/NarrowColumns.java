@@ -0,0 +1,22 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+
+/**
+ * Removes the columns that are never read from the outputs of
+ * joins, maps, and index operators, until convergence is achieved.
+ */
+public class NarrowColumns extends Repeat {
+    static CircuitTransform createOnePass(IErrorReporter reporter) {
+        Passes result = new Passes(reporter);
+        FanoutVisitor consumers = new FanoutVisitor(reporter);
+        result.add(consumers);
+        result.add(new NarrowColumnsVisitor(reporter, consumers));
+        result.add(new DeadCode(reporter, false));
+        return result;
+    }
+
+    public NarrowColumns(IErrorReporter reporter) {
+        super(reporter, createOnePass(reporter));
+    }
+}
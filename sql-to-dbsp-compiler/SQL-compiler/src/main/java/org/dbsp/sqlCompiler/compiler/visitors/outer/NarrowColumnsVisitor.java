@@ -0,0 +1,284 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFilterOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.RenumberFields;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.UsedFields;
+import org.dbsp.sqlCompiler.ir.DBSPAggregate;
+import org.dbsp.sqlCompiler.ir.IDBSPInnerNode;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPRawTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPTupleExpression;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeZSet;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * You probably don't want to use this visitor directly, consider using
+ * NarrowColumns, which iterates until convergence.
+ * Computes the columns of each stream that are read by the consumers
+ * of the stream, and removes the other columns from the tuples
+ * produced by joins, maps, and from the values produced by index operators.
+ * Joins and aggregates store their indexed inputs, so this reduces
+ * the size of the arrangements.
+ * A stream is only narrowed if all its consumers are maps, filters,
+ * index operators, joins, or aggregates.
+ * Filters do not change their input, so the columns read after a filter
+ * are also read from the input of the filter.
+ */
+public class NarrowColumnsVisitor extends CircuitCloneVisitor {
+    final FanoutVisitor consumers;
+    /**
+     * For each operator of the original circuit whose output was narrowed
+     * the description of the narrowing.
+     */
+    final Map<DBSPOperator, Narrowing> narrowed;
+
+    static class Narrowing {
+        /**
+         * Type of the narrowed tuples.
+         */
+        final DBSPType type;
+        /**
+         * For each field of the original tuple its index in the narrowed tuple, or -1.
+         */
+        final int[] fieldMap;
+
+        Narrowing(DBSPType type, int[] fieldMap) {
+            this.type = type;
+            this.fieldMap = fieldMap;
+        }
+    }
+
+    public NarrowColumnsVisitor(IErrorReporter reporter, FanoutVisitor consumers) {
+        super(reporter, false);
+        this.consumers = consumers;
+        this.narrowed = new HashMap<>();
+    }
+
+    /**
+     * Add to 'fields' the fields of the variable that are read by 'node'.
+     * @return False if the variable is used as a whole.
+     */
+    boolean addUsedFields(String variable, IDBSPInnerNode node, Set<Integer> fields) {
+        UsedFields used = new UsedFields(this.errorReporter, variable);
+        used.apply(node);
+        fields.addAll(used.fields);
+        return !used.allUsed;
+    }
+
+    /**
+     * Add to 'fields' the fields of the output of 'producer' that are read by 'consumer'.
+     * @return False if the consumer may read all the fields.
+     */
+    boolean addUsedFields(DBSPOperator consumer, DBSPOperator producer, Set<Integer> fields) {
+        if (consumer.is(DBSPJoinOperator.class)) {
+            DBSPClosureExpression function = consumer.getFunction().to(DBSPClosureExpression.class);
+            for (int i = 0; i < 2; i++) {
+                if (consumer.inputs.get(i) != producer)
+                    continue;
+                // Parameter 0 is the key
+                if (!this.addUsedFields(function.parameters[i + 1].name, function, fields))
+                    return false;
+            }
+            return true;
+        } else if (consumer.is(DBSPAggregateOperator.class)) {
+            DBSPAggregate aggregate = consumer.to(DBSPAggregateOperator.class).aggregate;
+            if (aggregate == null)
+                return false;
+            return this.addUsedFields(aggregate.rowVar.variable, aggregate, fields);
+        } else if (consumer.is(DBSPMapOperator.class) ||
+                consumer.is(DBSPFilterOperator.class) ||
+                consumer.is(DBSPIndexOperator.class)) {
+            DBSPClosureExpression function = consumer.getFunction().as(DBSPClosureExpression.class);
+            if (!producer.getType().is(DBSPTypeZSet.class) || function == null)
+                return false;
+            if (!this.addUsedFields(function.parameters[0].name, function, fields))
+                return false;
+            if (consumer.is(DBSPFilterOperator.class)) {
+                // The output of the filter has the same fields as its input
+                Set<Integer> afterFilter = this.usedFields(consumer);
+                if (afterFilter == null)
+                    return false;
+                fields.addAll(afterFilter);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The fields of the output of 'operator' that are read by its consumers,
+     * or null if all fields may be read.
+     */
+    @Nullable
+    Set<Integer> usedFields(DBSPOperator operator) {
+        Set<Integer> used = new HashSet<>();
+        for (DBSPOperator consumer: this.consumers.getConsumers(operator)) {
+            if (!this.addUsedFields(consumer, operator, used))
+                return null;
+        }
+        return used;
+    }
+
+    /**
+     * Remove from 'tuple', which is produced by 'operator', the fields
+     * that are not read by the consumers of 'operator'.
+     * @return The narrowed tuple, or null if no field can be removed.
+     */
+    @Nullable
+    DBSPTupleExpression narrow(DBSPOperator operator, DBSPTupleExpression tuple) {
+        if (tuple.getType().mayBeNull)
+            return null;
+        Set<Integer> used = this.usedFields(operator);
+        if (used == null || used.size() == tuple.size())
+            return null;
+        int[] fieldMap = new int[tuple.size()];
+        Arrays.fill(fieldMap, -1);
+        List<DBSPExpression> fields = new ArrayList<>();
+        for (int i = 0; i < tuple.size(); i++) {
+            if (used.contains(i)) {
+                fieldMap[i] = fields.size();
+                fields.add(tuple.get(i));
+            }
+        }
+        DBSPTupleExpression result = new DBSPTupleExpression(tuple.getNode(), fields);
+        this.narrowed.put(operator, new Narrowing(result.getType(), fieldMap));
+        return result;
+    }
+
+    /**
+     * If 'input' was narrowed, renumber the fields of the variable 'variable' in 'node'.
+     */
+    <T extends IDBSPInnerNode> T renumber(T node, String variable, DBSPOperator input, Class<T> clazz) {
+        Narrowing narrowing = this.narrowed.get(input);
+        if (narrowing == null)
+            return node;
+        RenumberFields renumber = new RenumberFields(
+                this.errorReporter, variable, narrowing.type, narrowing.fieldMap);
+        return renumber.apply(node).to(clazz);
+    }
+
+    /**
+     * The function of 'operator', with the fields of its input renumbered
+     * if the input was narrowed.
+     */
+    DBSPClosureExpression renumberInput(DBSPOperator operator) {
+        DBSPClosureExpression function = operator.getFunction().to(DBSPClosureExpression.class);
+        return this.renumber(function, function.parameters[0].name,
+                operator.inputs.get(0), DBSPClosureExpression.class);
+    }
+
+    @Override
+    public void postorder(DBSPIndexOperator operator) {
+        if (!operator.getFunction().is(DBSPClosureExpression.class)) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPClosureExpression function = this.renumberInput(operator);
+        DBSPRawTupleExpression keyValue = function.body.as(DBSPRawTupleExpression.class);
+        if (keyValue != null && keyValue.size() == 2 && keyValue.fields[1].is(DBSPTupleExpression.class)) {
+            DBSPTupleExpression value = this.narrow(operator, keyValue.fields[1].to(DBSPTupleExpression.class));
+            if (value != null)
+                function = new DBSPRawTupleExpression(keyValue.fields[0], value).closure(function.parameters);
+        }
+        if (function == operator.getFunction()) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPType valueType = function.body.to(DBSPRawTupleExpression.class).fields[1].getType();
+        DBSPOperator result = new DBSPIndexOperator(operator.getNode(), function,
+                operator.keyType, valueType, operator.weightType, operator.isMultiset,
+                this.mapped(operator.input()));
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPMapOperator operator) {
+        if (!operator.getFunction().is(DBSPClosureExpression.class)) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPClosureExpression function = this.renumberInput(operator);
+        if (function.body.is(DBSPTupleExpression.class)) {
+            DBSPTupleExpression value = this.narrow(operator, function.body.to(DBSPTupleExpression.class));
+            if (value != null)
+                function = value.closure(function.parameters);
+        }
+        if (function == operator.getFunction()) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPMapOperator(operator.getNode(), function,
+                function.body.getType(), operator.weightType, this.mapped(operator.input()));
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPFilterOperator operator) {
+        Narrowing narrowing = this.narrowed.get(operator.input());
+        if (narrowing == null) {
+            super.postorder(operator);
+            return;
+        }
+        // The output of the filter is narrowed like its input
+        this.narrowed.put(operator, narrowing);
+        DBSPOperator result = new DBSPFilterOperator(operator.getNode(),
+                this.renumberInput(operator), this.mapped(operator.input()));
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPJoinOperator operator) {
+        DBSPClosureExpression function = operator.getFunction().to(DBSPClosureExpression.class);
+        for (int i = 0; i < 2; i++)
+            function = this.renumber(function, function.parameters[i + 1].name,
+                    operator.inputs.get(i), DBSPClosureExpression.class);
+        if (function.body.is(DBSPTupleExpression.class)) {
+            DBSPTupleExpression value = this.narrow(operator, function.body.to(DBSPTupleExpression.class));
+            if (value != null)
+                function = value.closure(function.parameters);
+        }
+        if (function == operator.getFunction()) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPJoinOperator(operator.getNode(), function.body.getType(),
+                operator.weightType, function, operator.isMultiset,
+                this.mapped(operator.inputs.get(0)), this.mapped(operator.inputs.get(1)));
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPAggregateOperator operator) {
+        if (operator.aggregate == null) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPAggregate aggregate = operator.aggregate;
+        DBSPAggregate newAggregate = this.renumber(aggregate, aggregate.rowVar.variable,
+                operator.input(), DBSPAggregate.class);
+        if (newAggregate == aggregate) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPAggregateOperator(operator.getNode(), operator.keyType,
+                operator.outputElementType, operator.weightType, null, newAggregate,
+                this.mapped(operator.input()), operator.isLinear);
+        this.map(operator, result);
+    }
+}
@@ -25,16 +25,77 @@ package org.dbsp.sqlCompiler.compiler.visitors.outer;
 
 import org.dbsp.sqlCompiler.circuit.operator.*;
 import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.Projection;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitCloneVisitor;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPTupleExpression;
 import org.dbsp.util.Linq;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OptimizeDistinctVisitor extends CircuitCloneVisitor {
+    /**
+     * For the (new) operators whose output is known to be a set because
+     * it has a key, the indexes of the key fields.
+     * Keys originate from the PRIMARY KEY of the tables.
+     */
+    final Map<DBSPOperator, List<Integer>> keys = new HashMap<>();
+
     public OptimizeDistinctVisitor(IErrorReporter reporter) {
         super(reporter, false);
     }
 
+    @Override
+    public void postorder(DBSPSourceOperator source) {
+        super.postorder(source);
+        if (source.hasPrimaryKey())
+            this.keys.put(this.mapped(source), source.primaryKey);
+    }
+
+    /**
+     * The key of the output of a map whose input has key 'inputKey',
+     * or null if the map does not copy all the key fields.
+     */
+    @Nullable
+    static List<Integer> mapKey(DBSPMapOperator map, List<Integer> inputKey) {
+        DBSPClosureExpression closure = map.getFunction().to(DBSPClosureExpression.class);
+        DBSPTupleExpression tuple = closure.body.as(DBSPTupleExpression.class);
+        if (tuple == null || closure.parameters.length != 1)
+            return null;
+        String var = closure.parameters[0].asVariableReference().variable;
+        List<Integer> result = new ArrayList<>();
+        for (int keyField: inputKey) {
+            int index = -1;
+            for (int i = 0; i < tuple.fields.length; i++) {
+                if (Projection.copiedField(tuple.fields[i], var) == keyField) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0)
+                return null;
+            result.add(index);
+        }
+        return result;
+    }
+
+    @Override
+    public void postorder(DBSPMapOperator map) {
+        super.postorder(map);
+        DBSPOperator result = this.mapped(map);
+        List<Integer> inputKey = this.keys.get(result.inputs.get(0));
+        if (inputKey == null)
+            return;
+        // A map that copies all the key fields is injective, so it produces a set.
+        List<Integer> key = mapKey(map, inputKey);
+        if (key != null)
+            this.keys.put(result, key);
+    }
+
     @Override
     public void postorder(DBSPDistinctOperator distinct) {
         // distinct (distinct) = distinct
@@ -43,6 +104,11 @@ public class OptimizeDistinctVisitor extends CircuitCloneVisitor {
             this.map(distinct, input);
             return;
         }
+        // distinct (set) = set
+        if (this.keys.containsKey(input)) {
+            this.map(distinct, input);
+            return;
+        }
         if (input.is(DBSPJoinOperator.class) ||
             input.is(DBSPMapOperator.class) ||
             input.is(DBSPSumOperator.class)) {
@@ -70,6 +136,10 @@ public class OptimizeDistinctVisitor extends CircuitCloneVisitor {
             this.map(filter, result);
         } else {
             super.postorder(filter);
+            // filter (set) is a set with the same key
+            List<Integer> key = this.keys.get(input);
+            if (key != null)
+                this.keys.put(this.mapped(filter), key);
         }
     }
 
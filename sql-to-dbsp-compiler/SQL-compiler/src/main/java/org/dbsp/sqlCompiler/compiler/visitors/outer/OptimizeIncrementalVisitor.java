@@ -98,7 +98,7 @@ public class OptimizeIncrementalVisitor extends CircuitCloneVisitor {
         if (Linq.all(sources, s -> s.is(DBSPIntegralOperator.class))) {
             List<DBSPOperator> sourceSource = Linq.map(sources, s -> s.inputs.get(0));
             DBSPOperator replace = new DBSPIncrementalJoinOperator(operator.getNode(), operator.elementResultType,
-                    operator.weightType, operator.getFunction(), operator.isMultiset,
+                    operator.weightType, operator.getFunction(), null, operator.isMultiset,
                     sourceSource.get(0), sourceSource.get(1));
             this.addOperator(replace);
             DBSPIntegralOperator integral = new DBSPIntegralOperator(operator.getNode(), replace);
@@ -140,7 +140,7 @@ public class OptimizeIncrementalVisitor extends CircuitCloneVisitor {
     public void postorder(DBSPDistinctOperator operator) {
         DBSPOperator source = this.mapped(operator.input());
         if (source.is(DBSPIntegralOperator.class)) {
-            DBSPOperator replace = new DBSPIncrementalDistinctOperator(operator.getNode(), source.inputs.get(0));
+            DBSPOperator replace = new DBSPIncrementalDistinctOperator(operator.getNode(), source.inputs.get(0), false);
             this.addOperator(replace);
             DBSPIntegralOperator integral = new DBSPIntegralOperator(operator.getNode(), replace);
             this.map(operator, integral);
@@ -155,7 +155,7 @@ public class OptimizeIncrementalVisitor extends CircuitCloneVisitor {
         if (source.is(DBSPIntegralOperator.class)) {
             DBSPOperator replace = new DBSPIncrementalAggregateOperator(
                     source.getNode(), operator.keyType, operator.outputElementType, operator.weightType,
-                    operator.function, operator.aggregate, source.inputs.get(0), operator.isLinear);
+                    operator.function, operator.aggregate, null, false, source.inputs.get(0), operator.isLinear);
             this.addOperator(replace);
             DBSPIntegralOperator integral = new DBSPIntegralOperator(operator.getNode(), replace);
             this.map(operator, integral);
@@ -0,0 +1,165 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.BetaReduction;
+import org.dbsp.sqlCompiler.ir.DBSPAggregate;
+import org.dbsp.sqlCompiler.ir.DBSPParameter;
+import org.dbsp.sqlCompiler.ir.expression.DBSPApplyExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPRawTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPUSizeLiteral;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeIndexedZSet;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeRawTuple;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeUSize;
+import org.dbsp.util.Linq;
+
+import java.util.Objects;
+
+/**
+ * Splits each aggregate into partial aggregates, followed by a final aggregate
+ * that combines the partial results.
+ * The runtime sends all the rows of a group to the same worker, so a large group
+ * is processed by a single worker.  This visitor splits the rows of each group
+ * into a fixed number of partitions, by hashing the rows, and aggregates each
+ * partition separately.  The partitions of a group are spread across all workers,
+ * and the final aggregate receives a single value for each partition.
+ * Hashing the rows ensures that a row and its deletion are in the same partition.
+ * Only aggregates whose partial results can be combined are split: MIN and MAX,
+ * and the folds where all components have a combine function.
+ * Linear aggregates are not changed: the runtime already adds up the rows
+ * of each group in each worker before sending the sums to the group's worker.
+ */
+public class PartialAggregatesVisitor extends CircuitCloneVisitor {
+    /**
+     * Number of partitions of each group.
+     */
+    final int partitions;
+
+    public PartialAggregatesVisitor(IErrorReporter reporter, int partitions) {
+        super(reporter, false);
+        this.partitions = partitions;
+    }
+
+    /**
+     * True if the results of the aggregate for disjoint collections can be combined.
+     */
+    static boolean canCombine(DBSPAggregateOperator operator) {
+        if (operator.isMinMax())
+            return true;
+        if (operator.aggregate == null || operator.isLinear || operator.aggregate.isWindowAggregate)
+            return false;
+        return Linq.all(operator.aggregate.components, c -> c.combine != null);
+    }
+
+    /**
+     * Aggregate that produces the accumulators of the components of 'aggregate'
+     * instead of their final results.
+     */
+    static DBSPAggregate partialAggregate(DBSPAggregate aggregate) {
+        DBSPAggregate.Implementation[] components = Linq.map(aggregate.components,
+                c -> new DBSPAggregate.Implementation(c.getNode(), c.zero, c.increment, null,
+                        c.zero, c.semigroup, null, null, c.combine), DBSPAggregate.Implementation.class);
+        return new DBSPAggregate(aggregate.getNode(), aggregate.rowVar, components, false);
+    }
+
+    /**
+     * Aggregate that combines the accumulators produced by partialAggregate(aggregate).
+     * @param partial   Variable holding a reference to a pair (partition, accumulators).
+     */
+    DBSPAggregate finalAggregate(DBSPAggregate aggregate, DBSPVariablePath partial) {
+        BetaReduction reducer = new BetaReduction(this.errorReporter);
+        DBSPAggregate.Implementation[] components = new DBSPAggregate.Implementation[aggregate.components.length];
+        for (int i = 0; i < components.length; i++) {
+            DBSPAggregate.Implementation c = aggregate.components[i];
+            DBSPClosureExpression combine = Objects.requireNonNull(c.combine);
+            DBSPParameter accumulator = c.increment.parameters[0];
+            DBSPParameter weight = c.increment.parameters[2];
+            // Each partition has a single value, so the weight is ignored
+            DBSPExpression body = combine.call(accumulator.asVariableReference(),
+                    partial.field(1).field(i).applyCloneIfNeeded());
+            body = Objects.requireNonNull(reducer.apply(body)).to(DBSPExpression.class);
+            DBSPClosureExpression increment = body.closure(accumulator, partial.asParameter(), weight);
+            components[i] = new DBSPAggregate.Implementation(c.getNode(), c.zero, increment, c.postProcess,
+                    c.emptySetResult, c.semigroup, null, null, c.combine);
+        }
+        return new DBSPAggregate(aggregate.getNode(), partial, components, false);
+    }
+
+    @Override
+    public void postorder(DBSPAggregateOperator operator) {
+        if (!canCombine(operator)) {
+            super.postorder(operator);
+            return;
+        }
+
+        CalciteObject node = operator.getNode();
+        DBSPOperator input = this.mapped(operator.input());
+        DBSPTypeIndexedZSet inputType = input.outputType.to(DBSPTypeIndexedZSet.class);
+        DBSPType partitionType = DBSPTypeUSize.INSTANCE;
+        DBSPType partitionKeyType = new DBSPTypeRawTuple(operator.keyType, partitionType);
+
+        // Add the partition of each row to the key
+        DBSPVariablePath kv = new DBSPTypeRawTuple(
+                inputType.keyType.ref(), inputType.elementType.ref()).var("kv");
+        DBSPExpression partition = new DBSPApplyExpression(node, "hash_partition", partitionType,
+                kv.field(1), new DBSPUSizeLiteral(this.partitions));
+        DBSPExpression toPartitions = new DBSPRawTupleExpression(
+                new DBSPRawTupleExpression(kv.field(0).deref().applyClone(), partition),
+                kv.field(1).deref().applyClone())
+                .closure(kv.asParameter());
+        DBSPOperator partitioned = new DBSPMapIndexOperator(node, toPartitions,
+                partitionKeyType, inputType.elementType, operator.weightType, input);
+        this.addOperator(partitioned);
+
+        DBSPOperator partial;
+        DBSPOperator regrouped;
+        DBSPOperator result;
+        if (operator.isMinMax()) {
+            // The minimum of the partial minimums is the minimum
+            partial = new DBSPAggregateOperator(node, partitionKeyType, operator.outputElementType,
+                    operator.weightType, operator.function, null, partitioned, false);
+            this.addOperator(partial);
+            DBSPVariablePath pv = new DBSPTypeRawTuple(
+                    partitionKeyType.ref(), operator.outputElementType.ref()).var("kv");
+            DBSPExpression regroup = new DBSPRawTupleExpression(
+                    pv.field(0).field(0).applyClone(),
+                    pv.field(1).deref().applyClone())
+                    .closure(pv.asParameter());
+            regrouped = new DBSPMapIndexOperator(node, regroup,
+                    operator.keyType, operator.outputElementType, operator.weightType, partial);
+            this.addOperator(regrouped);
+            result = new DBSPAggregateOperator(node, operator.keyType, operator.outputElementType,
+                    operator.weightType, operator.function, null, regrouped, false);
+        } else {
+            DBSPAggregate partialAggregate = partialAggregate(operator.getAggregate());
+            DBSPType partialType = partialAggregate.defaultZeroType();
+            partial = new DBSPAggregateOperator(node, partitionKeyType, partialType,
+                    operator.weightType, null, partialAggregate, partitioned, false);
+            this.addOperator(partial);
+            // The partition is kept in the value, otherwise the equal results
+            // of two partitions would be merged into a single value.
+            DBSPType valueType = new DBSPTypeRawTuple(partitionType, partialType);
+            DBSPVariablePath pv = new DBSPTypeRawTuple(partitionKeyType.ref(), partialType.ref()).var("kv");
+            DBSPExpression regroup = new DBSPRawTupleExpression(
+                    pv.field(0).field(0).applyClone(),
+                    new DBSPRawTupleExpression(pv.field(0).field(1),
+                            pv.field(1).deref().applyClone()))
+                    .closure(pv.asParameter());
+            regrouped = new DBSPMapIndexOperator(node, regroup,
+                    operator.keyType, valueType, operator.weightType, partial);
+            this.addOperator(regrouped);
+            DBSPAggregate finalAggregate = this.finalAggregate(
+                    operator.getAggregate(), valueType.ref().var("p"));
+            result = new DBSPAggregateOperator(node, operator.keyType, operator.outputElementType,
+                    operator.weightType, null, finalAggregate, regrouped, false);
+        }
+        this.map(operator, result);
+    }
+}
@@ -68,7 +68,7 @@ public class Passes implements IWritesLogs, CircuitTransform {
         for (CircuitTransform pass: this.passes) {
             Logger.INSTANCE.belowLevel(this, 1)
                     .append("Executing ")
-                    .append(pass.toString())
+                    .appendSupplier(pass::toString)
                     .newline();
             circuit = pass.apply(circuit);
             if (this.getDebugLevel() >= 3) {
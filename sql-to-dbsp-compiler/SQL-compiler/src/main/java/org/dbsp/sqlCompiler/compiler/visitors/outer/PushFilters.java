@@ -0,0 +1,23 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+
+/**
+ * Pushes filters towards the sources of a circuit until convergence is achieved.
+ */
+public class PushFilters extends Repeat {
+    static CircuitTransform createOnePass(IErrorReporter reporter) {
+        Passes result = new Passes(reporter);
+        FanoutVisitor fanout = new FanoutVisitor(reporter);
+        result.add(fanout);
+        result.add(new PushFiltersVisitor(reporter,
+                // Do not duplicate stateful operators with fanout > 1
+                op -> fanout.getFanout(op) == 1));
+        result.add(new DeadCode(reporter, false));
+        return result;
+    }
+
+    public PushFilters(IErrorReporter reporter) {
+        super(reporter, createOnePass(reporter));
+    }
+}
@@ -0,0 +1,222 @@
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFilterOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPNegateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSubtractOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSumOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.sqlCompiler.compiler.frontend.ExpressionCompiler;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.BetaReduction;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerPasses;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.ResolveReferences;
+import org.dbsp.sqlCompiler.compiler.visitors.inner.Simplify;
+import org.dbsp.sqlCompiler.ir.DBSPParameter;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBaseTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBinaryExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPClosureExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPOpcode;
+import org.dbsp.sqlCompiler.ir.expression.DBSPRawTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPUnaryExpression;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeZSet;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBool;
+import org.dbsp.util.Linq;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * You probably don't want to use this visitor directly, consider using
+ * PushFilters, which packages this nicely and iterates until convergence.
+ * Moves a filter below the operator that produces its input:
+ * - below a map, by composing the filter condition with the map function
+ * - below sum, subtract, negate, and distinct, by filtering each input
+ * - into the inputs of a join, for the conjuncts of the condition that
+ *   only depend on one of the inputs.
+ * Each step moves the filter by one operator.
+ */
+public class PushFiltersVisitor extends CircuitCloneVisitor {
+    /**
+     * If this function returns 'true' a stateful operator can be replaced.
+     */
+    protected final Function<DBSPOperator, Boolean> canOptimize;
+
+    public PushFiltersVisitor(IErrorReporter reporter, Function<DBSPOperator, Boolean> canOptimize) {
+        super(reporter, false);
+        this.canOptimize = canOptimize;
+    }
+
+    /**
+     * Beta-reduce and simplify a closure.
+     */
+    DBSPClosureExpression reduce(DBSPClosureExpression closure) {
+        InnerPasses passes = new InnerPasses(
+                new BetaReduction(this.errorReporter),
+                new Simplify(this.errorReporter));
+        return passes.apply(closure).to(DBSPClosureExpression.class);
+    }
+
+    /**
+     * Compose a condition with one parameter after a closure.
+     * The result has the parameters of the closure.
+     */
+    DBSPClosureExpression applyAfter(DBSPClosureExpression condition, DBSPClosureExpression before) {
+        return this.reduce(new DBSPClosureExpression(condition.call(before.body), before.parameters));
+    }
+
+    /**
+     * Split a Boolean expression into a list of conjuncts.
+     */
+    static void conjuncts(DBSPExpression expression, List<DBSPExpression> result) {
+        DBSPExpression source = expression;
+        DBSPUnaryExpression unary = expression.as(DBSPUnaryExpression.class);
+        if (unary != null && unary.operation == DBSPOpcode.WRAP_BOOL)
+            // wrap_bool(a && b) is the same as wrap_bool(a) && wrap_bool(b)
+            source = unary.source;
+        DBSPBinaryExpression binary = source.as(DBSPBinaryExpression.class);
+        if (binary != null && binary.operation == DBSPOpcode.AND &&
+                (source != expression || !source.getType().mayBeNull)) {
+            conjuncts(ExpressionCompiler.wrapBoolIfNeeded(binary.left), result);
+            conjuncts(ExpressionCompiler.wrapBoolIfNeeded(binary.right), result);
+            return;
+        }
+        result.add(expression);
+    }
+
+    static DBSPExpression conjunction(CalciteObject node, List<DBSPExpression> conjuncts) {
+        DBSPExpression result = conjuncts.get(0);
+        for (int i = 1; i < conjuncts.size(); i++)
+            result = new DBSPBinaryExpression(node, DBSPTypeBool.INSTANCE, DBSPOpcode.AND, result, conjuncts.get(i));
+        return result;
+    }
+
+    /**
+     * Filter the input of an index operator that feeds a join.
+     * @param index     Index operator in the new circuit.
+     * @param key       Join function parameter for the key.
+     * @param value     Join function parameter for the value from this index.
+     * @param conjuncts Conditions depending only on 'key' and 'value'.
+     * @return          The index of the filtered input, or null if the input cannot be filtered.
+     */
+    @Nullable
+    DBSPOperator filterIndexInput(CalciteObject node, DBSPOperator index,
+                                  DBSPParameter key, DBSPParameter value, List<DBSPExpression> conjuncts) {
+        if (!index.is(DBSPIndexOperator.class))
+            return null;
+        DBSPClosureExpression indexFunction = index.getFunction().to(DBSPClosureExpression.class);
+        DBSPRawTupleExpression keyValue = indexFunction.body.as(DBSPRawTupleExpression.class);
+        if (keyValue == null)
+            return null;
+        DBSPClosureExpression condition = new DBSPClosureExpression(conjunction(node, conjuncts), key, value);
+        DBSPClosureExpression filterFunction = this.reduce(new DBSPClosureExpression(
+                condition.call(keyValue.fields[0], keyValue.fields[1]), indexFunction.parameters));
+        DBSPOperator filter = new DBSPFilterOperator(node, filterFunction, index.inputs.get(0));
+        this.addOperator(filter);
+        DBSPOperator result = index.withInputs(Linq.list(filter), true);
+        this.addOperator(result);
+        return result;
+    }
+
+    /**
+     * Push the conjuncts of a filter that depend on a single input of a join
+     * into that input.
+     * @return The replacement for the filter, or null if nothing can be pushed.
+     */
+    @Nullable
+    DBSPOperator pushIntoJoin(DBSPFilterOperator operator, DBSPJoinOperator original, DBSPOperator source) {
+        CalciteObject node = operator.getNode();
+        DBSPClosureExpression condition = this.applyAfter(
+                operator.getFunction().to(DBSPClosureExpression.class),
+                source.getFunction().to(DBSPClosureExpression.class));
+        DBSPParameter key = condition.parameters[0];
+        DBSPParameter left = condition.parameters[1];
+        DBSPParameter right = condition.parameters[2];
+
+        List<DBSPExpression> conjuncts = new ArrayList<>();
+        conjuncts(condition.body, conjuncts);
+        List<DBSPExpression> leftConjuncts = new ArrayList<>();
+        List<DBSPExpression> rightConjuncts = new ArrayList<>();
+        boolean keepFilter = false;
+        for (DBSPExpression conjunct: conjuncts) {
+            ResolveReferences resolver = new ResolveReferences(this.errorReporter);
+            resolver.apply(new DBSPClosureExpression(conjunct, condition.parameters));
+            boolean usesLeft = resolver.reference.isReferenced(left);
+            boolean usesRight = resolver.reference.isReferenced(right);
+            if (!usesRight && this.canOptimize.apply(original.inputs.get(0)))
+                leftConjuncts.add(conjunct);
+            else if (!usesLeft && this.canOptimize.apply(original.inputs.get(1)))
+                rightConjuncts.add(conjunct);
+            else
+                keepFilter = true;
+        }
+
+        DBSPOperator newLeft = source.inputs.get(0);
+        if (!leftConjuncts.isEmpty()) {
+            DBSPOperator filtered = this.filterIndexInput(node, newLeft, key, left, leftConjuncts);
+            if (filtered == null)
+                keepFilter = true;
+            else
+                newLeft = filtered;
+        }
+        DBSPOperator newRight = source.inputs.get(1);
+        if (!rightConjuncts.isEmpty()) {
+            DBSPOperator filtered = this.filterIndexInput(node, newRight, key, right, rightConjuncts);
+            if (filtered == null)
+                keepFilter = true;
+            else
+                newRight = filtered;
+        }
+        if (newLeft == source.inputs.get(0) && newRight == source.inputs.get(1))
+            return null;
+
+        DBSPOperator join = source.withInputs(Linq.list(newLeft, newRight), true);
+        if (!keepFilter)
+            return join;
+        this.addOperator(join);
+        return operator.withInputs(Linq.list(join), true);
+    }
+
+    @Override
+    public void postorder(DBSPFilterOperator operator) {
+        DBSPOperator source = this.mapped(operator.input());
+        DBSPOperator result = null;
+        if (source.is(DBSPMapOperator.class)) {
+            DBSPClosureExpression function = source.getFunction().to(DBSPClosureExpression.class);
+            // Only push below maps that produce tuples, so the condition can be simplified
+            if (source.inputs.get(0).getType().is(DBSPTypeZSet.class) &&
+                    function.body.is(DBSPBaseTupleExpression.class)) {
+                DBSPClosureExpression condition = this.applyAfter(
+                        operator.getFunction().to(DBSPClosureExpression.class), function);
+                DBSPOperator filter = new DBSPFilterOperator(operator.getNode(), condition, source.inputs.get(0));
+                this.addOperator(filter);
+                result = source.withInputs(Linq.list(filter), true);
+            }
+        } else if (source.is(DBSPSumOperator.class) ||
+                source.is(DBSPSubtractOperator.class) ||
+                source.is(DBSPNegateOperator.class) ||
+                (source.is(DBSPDistinctOperator.class) && this.canOptimize.apply(operator.input()))) {
+            List<DBSPOperator> newSources = new ArrayList<>();
+            for (DBSPOperator sourceSource: source.inputs) {
+                DBSPOperator filter = operator.withInputs(Linq.list(sourceSource), true);
+                newSources.add(filter);
+                this.addOperator(filter);
+            }
+            result = source.withInputs(newSources, true);
+        } else if (source.is(DBSPJoinOperator.class) && this.canOptimize.apply(operator.input())) {
+            result = this.pushIntoJoin(operator, operator.input().to(DBSPJoinOperator.class), source);
+        }
+        if (result != null) {
+            this.map(operator, result);
+            return;
+        }
+        super.postorder(operator);
+    }
+}
@@ -51,7 +51,7 @@ public class RemoveOperatorsVisitor extends CircuitCloneVisitor {
         } else {
             Logger.INSTANCE.belowLevel(this, 2)
                     .append("Removing ")
-                    .append(node.toString())
+                    .appendSupplier(node::toString)
                     .newline();
         }
         return VisitDecision.STOP;
@@ -65,7 +65,7 @@ public class RemoveOperatorsVisitor extends CircuitCloneVisitor {
         } else {
             Logger.INSTANCE.belowLevel(this, 2)
                     .append("Removing ")
-                    .append(node.toString())
+                    .appendSupplier(node::toString)
                     .newline();
         }
         return VisitDecision.STOP;
@@ -76,7 +76,7 @@ public class RemoveOperatorsVisitor extends CircuitCloneVisitor {
         super.startVisit(node);
         Logger.INSTANCE.belowLevel(this, 2)
                 .append("Keeping ")
-                .append(this.keep.toString())
+                .appendSupplier(this.keep::toString)
                 .newline();
     }
 }
@@ -26,7 +26,7 @@ public class Repeat implements IWritesLogs, CircuitTransform {
             DBSPCircuit result = this.transform.apply(circuit);
             Logger.INSTANCE.belowLevel(this, 3)
                     .append("After ")
-                    .append(this.transform.toString())
+                    .appendSupplier(this.transform::toString)
                     .newline()
                     .appendSupplier(result::toString)
                     .newline();
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.ir.expression.DBSPBinaryExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
+import org.dbsp.sqlCompiler.ir.expression.DBSPOpcode;
+import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPBoolLiteral;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPIntervalMillisLiteral;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPStringLiteral;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeIndexedZSet;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeTupleBase;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBaseType;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBool;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeDate;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeString;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeTimestamp;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * You probably don't want to use this visitor directly, consider using
+ * Watermarks, which also computes the lateness of the operators.
+ * Sets the key bound of the incremental aggregates and joins whose keys
+ * start with a TIMESTAMP or DATE field with a bounded lateness, such as a
+ * table column or the start of a TUMBLE or HOP window, possibly copied
+ * through other aggregates and joins.  Once a key with timestamp t has
+ * been received, no key with a timestamp smaller than t minus the lateness
+ * can appear, so the aggregates and joins can discard the state of these
+ * keys.
+ */
+public class WatermarkKeysVisitor extends CircuitCloneVisitor {
+    /**
+     * Lateness of the fields of the keys of the output of an operator, indexed by field number.
+     */
+    protected final Function<DBSPOperator, Map<Integer, Long>> getKeyLateness;
+
+    public WatermarkKeysVisitor(IErrorReporter reporter,
+                                Function<DBSPOperator, Map<Integer, Long>> getKeyLateness) {
+        super(reporter, false);
+        this.getKeyLateness = getKeyLateness;
+    }
+
+    /**
+     * The smallest value of 'type', or null if we don't know it.
+     */
+    @Nullable
+    static DBSPExpression minimumValue(DBSPType type) {
+        if (type.mayBeNull && type.is(DBSPTypeBaseType.class))
+            return type.to(DBSPTypeBaseType.class).nullValue();
+        if (type.mayBeNull)
+            return null;
+        if (type.is(DBSPTypeBool.class))
+            return new DBSPBoolLiteral(false);
+        if (type.is(DBSPTypeString.class))
+            return new DBSPStringLiteral("");
+        DBSPTypeInteger integer = type.as(DBSPTypeInteger.class);
+        if (integer != null && integer.signed && (integer.getWidth() == 32 || integer.getWidth() == 64))
+            return integer.getMinValue();
+        return null;
+    }
+
+    /**
+     * A closure that maps a key to the smallest key that can follow it:
+     * the timestamp or date in the first field minus the lateness, followed
+     * by the smallest values of the other fields.  Returns null if the key
+     * does not have this form.  The lateness of a date is in days.
+     */
+    @Nullable
+    static DBSPExpression keyBound(DBSPType keyType, @Nullable Long lateness) {
+        if (lateness == null)
+            return null;
+        DBSPTypeTupleBase tuple = keyType.as(DBSPTypeTupleBase.class);
+        if (tuple == null || tuple.size() == 0)
+            return null;
+        DBSPType timestampType = tuple.getFieldType(0);
+        if (timestampType.mayBeNull)
+            return null;
+        if (timestampType.is(DBSPTypeDate.class))
+            lateness = lateness * 86400000;
+        else if (!timestampType.is(DBSPTypeTimestamp.class))
+            return null;
+        DBSPVariablePath k = keyType.var("k");
+        DBSPExpression[] fields = new DBSPExpression[tuple.size()];
+        fields[0] = new DBSPBinaryExpression(keyType.getNode(), timestampType, DBSPOpcode.SUB,
+                k.field(0), new DBSPIntervalMillisLiteral(lateness, false));
+        for (int i = 1; i < fields.length; i++) {
+            fields[i] = minimumValue(tuple.getFieldType(i));
+            if (fields[i] == null)
+                return null;
+        }
+        return tuple.makeTuple(fields).closure(k.asRefParameter());
+    }
+
+    @Override
+    public void postorder(DBSPIncrementalAggregateOperator operator) {
+        DBSPExpression bound = keyBound(operator.keyType,
+                this.getKeyLateness.apply(operator.input()).get(0));
+        if (bound == null || operator.keyBound != null) {
+            super.postorder(operator);
+            return;
+        }
+        // An append-only aggregate keeps the accumulators of all the keys,
+        // so the bounded implementation, which discards old keys, replaces it.
+        DBSPOperator result = new DBSPIncrementalAggregateOperator(operator.getNode(),
+                operator.keyType, operator.outputElementType, operator.weightType,
+                operator.function, operator.aggregate, bound, false,
+                this.mapped(operator.input()), operator.isLinear);
+        this.map(operator, result);
+    }
+
+    @Override
+    public void postorder(DBSPIncrementalJoinOperator operator) {
+        // Both inputs must have a lateness; the larger one holds for both.
+        Long left = this.getKeyLateness.apply(operator.inputs.get(0)).get(0);
+        Long right = this.getKeyLateness.apply(operator.inputs.get(1)).get(0);
+        DBSPType keyType = operator.inputs.get(0).getType().to(DBSPTypeIndexedZSet.class).keyType;
+        DBSPExpression bound = null;
+        if (left != null && right != null)
+            bound = keyBound(keyType, Math.max(left, right));
+        if (bound == null || operator.keyBound != null) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPIncrementalJoinOperator(operator.getNode(),
+                operator.elementResultType, operator.weightType, operator.getFunction(), bound,
+                operator.isMultiset, this.mapped(operator.inputs.get(0)), this.mapped(operator.inputs.get(1)));
+        this.map(operator, result);
+    }
+}
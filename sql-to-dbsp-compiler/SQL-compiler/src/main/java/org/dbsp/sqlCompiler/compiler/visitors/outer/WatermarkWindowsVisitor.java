@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPWindowAggregateOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPU64Literal;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * You probably don't want to use this visitor directly, consider using
+ * Watermarks, which also computes the lateness of the operators.
+ * Sets the lateness of the window aggregates whose sort key has a
+ * bounded lateness.  The window aggregate then computes the watermark
+ * of its input, and only keeps the state needed by the rows that are
+ * newer than the watermark.
+ */
+public class WatermarkWindowsVisitor extends CircuitCloneVisitor {
+    /**
+     * Lateness of the fields of the output of an operator, indexed by field number.
+     */
+    protected final Function<DBSPOperator, Map<Integer, Long>> getLateness;
+
+    public WatermarkWindowsVisitor(IErrorReporter reporter,
+                                   Function<DBSPOperator, Map<Integer, Long>> getLateness) {
+        super(reporter, false);
+        this.getLateness = getLateness;
+    }
+
+    @Override
+    public void postorder(DBSPWindowAggregateOperator operator) {
+        // The first field of the input values is the sort key
+        Long lateness = this.getLateness.apply(operator.input()).get(0);
+        if (lateness == null || operator.lateness != null ||
+                !operator.timestampType.sameType(DBSPTypeInteger.UNSIGNED_64)) {
+            super.postorder(operator);
+            return;
+        }
+        DBSPOperator result = new DBSPWindowAggregateOperator(operator.getNode(),
+                operator.function, operator.aggregate, operator.window, new DBSPU64Literal(lateness),
+                operator.partitionKeyType, operator.timestampType, operator.aggregateType,
+                operator.weightType, this.mapped(operator.input()));
+        this.map(operator, result);
+    }
+}
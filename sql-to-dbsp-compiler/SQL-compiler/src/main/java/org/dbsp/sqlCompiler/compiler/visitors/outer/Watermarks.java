@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler.visitors.outer;
+
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
+import org.dbsp.sqlCompiler.compiler.IErrorReporter;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounds the state of the window aggregates whose sort key is
+ * a table column with a declared LATENESS, and of the incremental
+ * aggregates and joins whose keys start with such a column.
+ */
+public class Watermarks extends Passes {
+    public Watermarks(IErrorReporter reporter, Function<DBSPSourceOperator, Map<Integer, Long>> sourceLateness) {
+        super(reporter);
+        LatenessVisitor lateness = new LatenessVisitor(reporter, sourceLateness);
+        this.add(lateness);
+        this.add(new WatermarkWindowsVisitor(reporter, lateness::getLateness));
+        this.add(new WatermarkKeysVisitor(reporter, lateness::getKeyLateness));
+    }
+}
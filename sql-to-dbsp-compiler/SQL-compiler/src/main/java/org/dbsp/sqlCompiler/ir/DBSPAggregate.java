@@ -8,6 +8,7 @@ import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.visitors.inner.BetaReduction;
 import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.sqlCompiler.ir.expression.*;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI64Literal;
 import org.dbsp.sqlCompiler.ir.path.DBSPPath;
 import org.dbsp.sqlCompiler.ir.path.DBSPSimplePathSegment;
 import org.dbsp.sqlCompiler.ir.statement.DBSPLetStatement;
@@ -145,6 +146,7 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
 
         List<DBSPStatement> body = new ArrayList<>();
         List<DBSPExpression> tmpVars = new ArrayList<>();
+        // Index of the first field of the flattened accumulator for the current closure
         int start = 0;
         for (int i = 0; i < closures.length; i++) {
             DBSPClosureExpression closure = closures[i];
@@ -152,13 +154,16 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
             // Must package together several accumulator fields if the original type was a tuple
             DBSPType accumulatorType = accumulatorTypes[i];
             DBSPTypeTupleBase tuple = accumulatorType.as(DBSPTypeTupleBase.class);
-            DBSPExpression accumulatorArgs = accumParam.field(i + start);
+            DBSPExpression accumulatorArgs;
             if (tuple != null) {
                 DBSPExpression[] accumArgFields = new DBSPExpression[tuple.size()];
                 for (int j = 0; j < tuple.size(); j++, start++) {
                     accumArgFields[j] = accumParam.field(start);
                 }
                 accumulatorArgs = new DBSPRawTupleExpression(accumArgFields);
+            } else {
+                accumulatorArgs = accumParam.field(start);
+                start++;
             }
             DBSPExpression init = closure.call(
                     accumulatorArgs, row.asVariableReference(), weight.asVariableReference());
@@ -250,7 +255,9 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
      * The linear functions have the signature:
      * '|row| value', where 'row' is always the same variable.
      * The result function will have the signature:
-     * |row| (value0, value1, ...).
+     * |row| (1, value0, value1, ...).
+     * The first field counts the rows of the group: the runtime drops the
+     * groups whose sum is zero, and this field is never zero for a non-empty group.
      */
     public DBSPClosureExpression combineLinear() {
         DBSPClosureExpression[] closures = Linq.map(this.components, c -> c.linearFunction, DBSPClosureExpression.class);
@@ -259,11 +266,38 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
                 throw new InternalCompilerError("Expected exactly 1 parameter for linear closure", expr);
         }
         DBSPParameter row = closures[0].parameters[0];
-        DBSPExpression[] bodies = Linq.map(closures, c -> c.body, DBSPExpression.class);
-        DBSPTupleExpression tuple = new DBSPTupleExpression(bodies);
+        List<DBSPExpression> bodies = new ArrayList<>();
+        bodies.add(new DBSPI64Literal(1L));
+        for (DBSPClosureExpression closure: closures)
+            bodies.add(closure.body);
+        DBSPTupleExpression tuple = new DBSPTupleExpression(bodies, false);
         return tuple.closure(row);
     }
 
+    /**
+     * Get a function that post-processes the result of the function
+     * produced by combineLinear.  The function has the signature:
+     * |a: &(count, sum0, sum1, ...)| (post0(sum0), post1(sum1), ...),
+     * where the post-processing of each component is its linearPostProcess function.
+     * @param accumulatorType  Result type of the function produced by combineLinear.
+     */
+    public DBSPClosureExpression getLinearPostprocessing(IErrorReporter reporter, DBSPType accumulatorType) {
+        DBSPVariablePath accumulator = accumulatorType.ref().var("a");
+        BetaReduction reducer = new BetaReduction(reporter);
+        DBSPExpression[] results = new DBSPExpression[this.components.length];
+        for (int i = 0; i < this.components.length; i++) {
+            DBSPExpression sum = accumulator.field(i + 1);
+            DBSPClosureExpression post = this.components[i].linearPostProcess;
+            if (post == null) {
+                results[i] = sum.applyCloneIfNeeded();
+            } else {
+                DBSPExpression expr = post.call(sum.applyCloneIfNeeded());
+                results[i] = Objects.requireNonNull(reducer.apply(expr)).to(DBSPExpression.class);
+            }
+        }
+        return new DBSPTupleExpression(results).closure(accumulator.asParameter());
+    }
+
     /**
      * An aggregate is compiled as functional fold operation,
      * described by a zero (initial value), an increment
@@ -303,6 +337,19 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
          */
         @Nullable
         public final DBSPClosureExpression linearFunction;
+        /**
+         * Function that may post-process the sum computed using the linearFunction
+         * to produce the final result.  This is the identity function if null.
+         */
+        @Nullable
+        public final DBSPClosureExpression linearPostProcess;
+        /**
+         * If non-null this is a function with the signature
+         * |accumulator, accumulator| accumulator, which combines the
+         * accumulators of two disjoint collections.
+         */
+        @Nullable
+        public final DBSPClosureExpression combine;
 
         public Implementation(
                 CalciteObject origin,
@@ -313,7 +360,11 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
                 DBSPExpression emptySetResult,
                 DBSPType semigroup,
                 @Nullable
-                DBSPClosureExpression linearFunction) {
+                DBSPClosureExpression linearFunction,
+                @Nullable
+                DBSPClosureExpression linearPostProcess,
+                @Nullable
+                DBSPClosureExpression combine) {
             super(origin);
             this.zero = zero;
             this.increment = increment;
@@ -321,6 +372,37 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
             this.emptySetResult = emptySetResult;
             this.semigroup = semigroup;
             this.linearFunction = linearFunction;
+            this.linearPostProcess = linearPostProcess;
+            this.combine = combine;
+        }
+
+        public Implementation(
+                CalciteObject origin,
+                DBSPExpression zero,
+                DBSPClosureExpression increment,
+                @Nullable
+                DBSPClosureExpression postProcess,
+                DBSPExpression emptySetResult,
+                DBSPType semigroup,
+                @Nullable
+                DBSPClosureExpression linearFunction,
+                @Nullable
+                DBSPClosureExpression linearPostProcess) {
+            this(origin, zero, increment, postProcess, emptySetResult, semigroup,
+                    linearFunction, linearPostProcess, null);
+        }
+
+        public Implementation(
+                CalciteObject origin,
+                DBSPExpression zero,
+                DBSPClosureExpression increment,
+                @Nullable
+                DBSPClosureExpression postProcess,
+                DBSPExpression emptySetResult,
+                DBSPType semigroup,
+                @Nullable
+                DBSPClosureExpression linearFunction) {
+            this(origin, zero, increment, postProcess, emptySetResult, semigroup, linearFunction, null);
         }
 
         public Implementation(
@@ -361,6 +443,12 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
             if (this.postProcess != null)
                 this.postProcess.accept(visitor);
             this.emptySetResult.accept(visitor);
+            if (this.linearFunction != null)
+                this.linearFunction.accept(visitor);
+            if (this.linearPostProcess != null)
+                this.linearPostProcess.accept(visitor);
+            if (this.combine != null)
+                this.combine.accept(visitor);
             visitor.pop(this);
             visitor.postorder(this);
         }
@@ -382,7 +470,10 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
                 this.increment == o.increment &&
                 this.postProcess == o.postProcess &&
                 this.emptySetResult == o.emptySetResult &&
-                this.semigroup == o.semigroup;
+                this.semigroup == o.semigroup &&
+                this.linearFunction == o.linearFunction &&
+                this.linearPostProcess == o.linearPostProcess &&
+                this.combine == o.combine;
         }
 
         public DBSPExpression asFold(boolean compact) {
@@ -431,6 +522,16 @@ public class DBSPAggregate extends DBSPNode implements IDBSPInnerNode {
                         .append("linearFunction=")
                         .append(this.linearFunction);
             }
+            if (this.linearPostProcess != null) {
+                builder.newline()
+                        .append("linearPostProcess=")
+                        .append(this.linearPostProcess);
+            }
+            if (this.combine != null) {
+                builder.newline()
+                        .append("combine=")
+                        .append(this.combine);
+            }
             return builder;
         }
     }
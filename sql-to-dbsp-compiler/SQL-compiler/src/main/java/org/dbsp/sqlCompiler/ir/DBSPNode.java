@@ -24,6 +24,7 @@
 package org.dbsp.sqlCompiler.ir;
 
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
+import org.dbsp.util.IdGen;
 import org.dbsp.util.IndentStream;
 
 /**
@@ -31,8 +32,11 @@ import org.dbsp.util.IndentStream;
  */
 public abstract class DBSPNode
         implements IDBSPNode {
-    static long crtId = 0;
-
+    /**
+     * Unique within a compilation; allocated by the current IdGen.
+     * Static nodes (e.g., type instances) get their ids from the default
+     * generator, see IdGen.withDefault.
+     */
     public final long id;
 
     /**
@@ -43,15 +47,7 @@ public abstract class DBSPNode
 
     protected DBSPNode(CalciteObject node) {
         this.node = node;
-        this.id = crtId++;
-    }
-
-    /**
-     * Do not call this method!
-     * It is only used for testing.
-     */
-    public static void reset() {
-        crtId = 0;
+        this.id = IdGen.current().nextNodeId();
     }
 
     public CalciteObject getNode() { return this.node; }
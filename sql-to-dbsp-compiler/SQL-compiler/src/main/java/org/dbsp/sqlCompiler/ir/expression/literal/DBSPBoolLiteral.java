@@ -29,6 +29,7 @@ import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeBool;
 import org.dbsp.util.IIndentStream;
+import org.dbsp.util.IdGen;
 
 import javax.annotation.Nullable;
 import java.util.Objects;
@@ -37,11 +38,11 @@ public class DBSPBoolLiteral extends DBSPLiteral {
     @Nullable
     public final Boolean value;
 
-    public static final DBSPBoolLiteral NONE = new DBSPBoolLiteral();
-    public static final DBSPBoolLiteral TRUE = new DBSPBoolLiteral(true);
-    public static final DBSPBoolLiteral FALSE = new DBSPBoolLiteral(false);
-    public static final DBSPBoolLiteral NULLABLE_TRUE = new DBSPBoolLiteral(true, true);
-    public static final DBSPBoolLiteral NULLABLE_FALSE = new DBSPBoolLiteral(false, true);
+    public static final DBSPBoolLiteral NONE = IdGen.withDefault(() -> new DBSPBoolLiteral());
+    public static final DBSPBoolLiteral TRUE = IdGen.withDefault(() -> new DBSPBoolLiteral(true));
+    public static final DBSPBoolLiteral FALSE = IdGen.withDefault(() -> new DBSPBoolLiteral(false));
+    public static final DBSPBoolLiteral NULLABLE_TRUE = IdGen.withDefault(() -> new DBSPBoolLiteral(true, true));
+    public static final DBSPBoolLiteral NULLABLE_FALSE = IdGen.withDefault(() -> new DBSPBoolLiteral(false, true));
 
     public DBSPBoolLiteral(CalciteObject node, DBSPType type, @Nullable Boolean value) {
         super(node, type, value == null);
@@ -7,6 +7,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeNull;
 import org.dbsp.util.IIndentStream;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import javax.annotation.Nullable;
 
@@ -14,7 +15,7 @@ import javax.annotation.Nullable;
  * A literal with type NULL, the only value of this type.
  */
 public class DBSPNullLiteral extends DBSPLiteral {
-    public static final DBSPNullLiteral INSTANCE = new DBSPNullLiteral();
+    public static final DBSPNullLiteral INSTANCE = IdGen.withDefault(() -> new DBSPNullLiteral());
 
     public DBSPNullLiteral(CalciteObject node, DBSPType type, @Nullable Object value) {
         super(node,  type, true);
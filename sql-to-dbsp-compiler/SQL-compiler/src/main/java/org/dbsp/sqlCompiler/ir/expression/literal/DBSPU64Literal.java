@@ -84,6 +84,6 @@ public class DBSPU64Literal extends DBSPIntLiteral {
                     .append(this.type)
                     .append(")null");
         else
-            return builder.append(this.value.toString());
+            return builder.append(Long.toUnsignedString(this.value));
     }
 }
@@ -82,7 +82,7 @@ public abstract class DBSPType extends DBSPNode implements IDBSPInnerNode {
         if (left.length != right.length)
             return false;
         for (int i = 0; i < left.length; i++) {
-            if (!left[i].sameType(right[i]))
+            if (left[i] != right[i] && !left[i].sameType(right[i]))
                 return false;
         }
         return true;
@@ -90,14 +90,21 @@ public abstract class DBSPType extends DBSPNode implements IDBSPInnerNode {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
         if (!(obj instanceof DBSPType))
             return false;
         return this.sameType((DBSPType)obj);
     }
 
+    /**
+     * Hash code consistent with 'sameType'.
+     * Derived types must combine this value with the hash codes of their components,
+     * otherwise hash tables keyed by types degenerate into linear scans.
+     */
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.mayBeNull);
+        return Objects.hash(this.mayBeNull, this.code.ordinal());
     }
 
     /**
@@ -26,6 +26,7 @@ package org.dbsp.sqlCompiler.ir.type;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.util.IIndentStream;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -33,7 +34,7 @@ import java.util.Objects;
  * An unknown type, represented in code as _.
  */
 public class DBSPTypeAny extends DBSPType {
-    public static final DBSPType INSTANCE = new DBSPTypeAny();
+    public static final DBSPType INSTANCE = IdGen.withDefault(() -> new DBSPTypeAny());
 
     protected DBSPTypeAny() {
         super(CalciteObject.EMPTY, DBSPTypeCode.ANY, false);
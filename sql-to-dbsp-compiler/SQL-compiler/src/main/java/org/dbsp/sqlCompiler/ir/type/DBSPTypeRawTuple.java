@@ -29,6 +29,7 @@ import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPRawTupleExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPVariablePath;
 import org.dbsp.util.IIndentStream;
+import org.dbsp.util.IdGen;
 
 import java.util.Arrays;
 import java.util.List;
@@ -37,7 +38,7 @@ import java.util.List;
  * A Raw Rust tuple.
  */
 public class DBSPTypeRawTuple extends DBSPTypeTupleBase {
-    public static final DBSPTypeRawTuple EMPTY_TUPLE_TYPE = new DBSPTypeRawTuple();
+    public static final DBSPTypeRawTuple EMPTY_TUPLE_TYPE = IdGen.withDefault(() -> new DBSPTypeRawTuple());
 
     private DBSPTypeRawTuple(CalciteObject node, DBSPTypeCode code, boolean mayBeNull, DBSPType... tupArgs) {
         super(node, code, mayBeNull, tupArgs);
@@ -65,11 +66,13 @@ public class DBSPTypeRawTuple extends DBSPTypeTupleBase {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(tupFields);
+        return 31 * super.hashCode() + Arrays.hashCode(this.tupFields);
     }
 
     @Override
     public boolean sameType(DBSPType type) {
+        if (this == type)
+            return true;
         if (!super.sameNullability(type))
             return false;
         if (!type.is(DBSPTypeRawTuple.class))
@@ -57,10 +57,13 @@ public class DBSPTypeRef extends DBSPType {
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), type.hashCode(), mutable);
+        // 'mutable' is ignored by sameType, so it cannot contribute to the hash code
+        return Objects.hash(super.hashCode(), this.type.hashCode());
     }
 
     public boolean sameType(DBSPType other) {
+        if (this == other)
+            return true;
         if (!super.sameNullability(other))
             return false;
         DBSPTypeRef oRef = other.as(DBSPTypeRef.class);
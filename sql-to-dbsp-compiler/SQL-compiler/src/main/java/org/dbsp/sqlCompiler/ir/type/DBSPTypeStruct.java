@@ -128,6 +128,8 @@ public class DBSPTypeStruct extends DBSPType {
 
     @Override
     public boolean sameType(DBSPType type) {
+        if (this == type)
+            return true;
         if (!super.sameNullability(type))
             return false;
         if (!type.is(DBSPTypeStruct.class))
@@ -145,7 +147,7 @@ public class DBSPTypeStruct extends DBSPType {
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), this.name, this.fields.hashCode());
+        return Objects.hash(super.hashCode(), this.name, this.args.hashCode());
     }
 
     @Override
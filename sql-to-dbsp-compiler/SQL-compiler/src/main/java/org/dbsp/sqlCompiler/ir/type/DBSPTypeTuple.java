@@ -70,11 +70,13 @@ public class DBSPTypeTuple extends DBSPTypeTupleBase {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(tupFields);
+        return 31 * super.hashCode() + Arrays.hashCode(this.tupFields);
     }
 
     @Override
     public boolean sameType(DBSPType type) {
+        if (this == type)
+            return true;
         if (!super.sameNullability(type))
             return false;
         if (!type.is(DBSPTypeTuple.class))
@@ -56,11 +56,16 @@ public class DBSPTypeUser extends DBSPType {
 
     @Override
     public boolean sameType(DBSPType type) {
+        if (this == type)
+            return true;
         if (!super.sameNullability(type))
             return false;
         if (!type.is(DBSPTypeUser.class))
             return false;
         DBSPTypeUser other = type.to(DBSPTypeUser.class);
+        // The code is part of the hash code, so it must be compared too
+        if (this.code != other.code)
+            return false;
         if (!this.name.equals(other.name))
             return false;
         return DBSPType.sameTypes(this.typeArgs, other.typeArgs);
@@ -0,0 +1,39 @@
+package org.dbsp.sqlCompiler.ir.type;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hash-consing table for types.
+ * Structurally equal types that are interned in the same table
+ * are represented by a single instance, so they can be compared by identity.
+ * Interning is shallow: a composite type shares its components with other
+ * types only if the components were interned before the composite type was built.
+ */
+public class TypeInterner {
+    final Map<DBSPType, DBSPType> canonical;
+
+    public TypeInterner() {
+        this.canonical = new HashMap<>();
+    }
+
+    /**
+     * Return the canonical instance of the specified type.
+     * The first instance interned for a type becomes the canonical one.
+     */
+    public <T extends DBSPType> T intern(T type) {
+        DBSPType result = this.canonical.putIfAbsent(type, type);
+        // Types of different classes may compare equal, e.g., a ZSet and the equivalent user type
+        if (result == null || result.getClass() != type.getClass())
+            return type;
+        //noinspection unchecked
+        return (T)result;
+    }
+
+    /**
+     * Number of distinct types in the table.
+     */
+    public int size() {
+        return this.canonical.size();
+    }
+}
@@ -29,6 +29,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPBoolLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -58,8 +59,8 @@ public class DBSPTypeBool extends DBSPTypeBaseType {
         return type.is(DBSPTypeBool.class);
     }
 
-    public static final DBSPTypeBool INSTANCE = new DBSPTypeBool(CalciteObject.EMPTY, false);
-    public static final DBSPTypeBool NULLABLE_INSTANCE = new DBSPTypeBool(CalciteObject.EMPTY, true);
+    public static final DBSPTypeBool INSTANCE = IdGen.withDefault(() -> new DBSPTypeBool(CalciteObject.EMPTY, false));
+    public static final DBSPTypeBool NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeBool(CalciteObject.EMPTY, true));
 
     @Override
     public void accept(InnerVisitor visitor) {
@@ -32,14 +32,15 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.IsDateType;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
 import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.DATE;
 
 public class DBSPTypeDate extends DBSPTypeBaseType implements IsNumericType, IsDateType {
-    public static final DBSPTypeDate INSTANCE =new DBSPTypeDate(CalciteObject.EMPTY, false);
-    public static final DBSPTypeDate NULLABLE_INSTANCE = new DBSPTypeDate(CalciteObject.EMPTY, true);
+    public static final DBSPTypeDate INSTANCE = IdGen.withDefault(() -> new DBSPTypeDate(CalciteObject.EMPTY, false));
+    public static final DBSPTypeDate NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeDate(CalciteObject.EMPTY, true));
 
     protected DBSPTypeDate(CalciteObject node, boolean mayBeNull) {
         super(node, DATE, mayBeNull);
@@ -31,6 +31,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.math.BigDecimal;
 import java.util.Objects;
@@ -41,9 +42,9 @@ public class DBSPTypeDecimal extends DBSPTypeBaseType
     public static final int MAX_SCALE = 10;       // Digits after decimal period.  Rather arbitrary.
 
     public static final DBSPTypeDecimal DEFAULT =
-            new DBSPTypeDecimal(CalciteObject.EMPTY, MAX_PRECISION, MAX_SCALE, false);
+            IdGen.withDefault(() -> new DBSPTypeDecimal(CalciteObject.EMPTY, MAX_PRECISION, MAX_SCALE, false));
     public static final DBSPTypeDecimal DEFAULT_NULLABLE =
-            new DBSPTypeDecimal(CalciteObject.EMPTY, MAX_PRECISION, MAX_SCALE, true);
+            IdGen.withDefault(() -> new DBSPTypeDecimal(CalciteObject.EMPTY, MAX_PRECISION, MAX_SCALE, true));
 
     public final int precision;
     public final int scale;
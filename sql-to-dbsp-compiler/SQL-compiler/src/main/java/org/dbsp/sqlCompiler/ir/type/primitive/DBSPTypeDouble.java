@@ -30,6 +30,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -43,8 +44,8 @@ public class DBSPTypeDouble extends DBSPTypeFP implements IsNumericType {
         return new DBSPTypeDouble(this.getNode(), mayBeNull);
     }
 
-    public static final DBSPTypeDouble INSTANCE = new DBSPTypeDouble(CalciteObject.EMPTY,false);
-    public static final DBSPTypeDouble NULLABLE_INSTANCE = new DBSPTypeDouble(CalciteObject.EMPTY,true);
+    public static final DBSPTypeDouble INSTANCE = IdGen.withDefault(() -> new DBSPTypeDouble(CalciteObject.EMPTY,false));
+    public static final DBSPTypeDouble NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeDouble(CalciteObject.EMPTY,true));
 
     @Override
     public boolean sameType(DBSPType type) {
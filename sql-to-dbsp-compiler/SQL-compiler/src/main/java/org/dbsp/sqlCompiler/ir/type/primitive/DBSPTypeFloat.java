@@ -30,6 +30,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -43,8 +44,8 @@ public class DBSPTypeFloat extends DBSPTypeFP implements IsNumericType {
         return new DBSPTypeFloat(this.getNode(), mayBeNull);
     }
 
-    public static final DBSPTypeFloat INSTANCE =new DBSPTypeFloat(CalciteObject.EMPTY,false);
-    public static final DBSPTypeFloat NULLABLE_INSTANCE = new DBSPTypeFloat(CalciteObject.EMPTY,true);
+    public static final DBSPTypeFloat INSTANCE = IdGen.withDefault(() -> new DBSPTypeFloat(CalciteObject.EMPTY,false));
+    public static final DBSPTypeFloat NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeFloat(CalciteObject.EMPTY,true));
 
     @Override
     public boolean sameType(DBSPType type) {
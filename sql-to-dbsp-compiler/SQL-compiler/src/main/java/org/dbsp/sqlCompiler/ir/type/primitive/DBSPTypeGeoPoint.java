@@ -29,12 +29,13 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPGeoPointLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
 public class DBSPTypeGeoPoint extends DBSPTypeGeo {
-    public static final DBSPTypeGeoPoint INSTANCE =new DBSPTypeGeoPoint(CalciteObject.EMPTY, false);
-    public static final DBSPTypeGeoPoint NULLABLE_INSTANCE = new DBSPTypeGeoPoint(CalciteObject.EMPTY, true);
+    public static final DBSPTypeGeoPoint INSTANCE = IdGen.withDefault(() -> new DBSPTypeGeoPoint(CalciteObject.EMPTY, false));
+    public static final DBSPTypeGeoPoint NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeGeoPoint(CalciteObject.EMPTY, true));
 
     public DBSPTypeGeoPoint(CalciteObject node, boolean mayBeNull) {
         super(node, DBSPTypeCode.GEOPOINT, mayBeNull);
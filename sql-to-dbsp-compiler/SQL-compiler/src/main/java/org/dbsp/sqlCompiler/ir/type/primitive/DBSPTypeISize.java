@@ -30,6 +30,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -40,7 +41,7 @@ import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.ISIZE;
  */
 public class DBSPTypeISize extends DBSPTypeBaseType
         implements IsNumericType {
-    public static final DBSPTypeISize INSTANCE =new DBSPTypeISize(CalciteObject.EMPTY, false);
+    public static final DBSPTypeISize INSTANCE = IdGen.withDefault(() -> new DBSPTypeISize(CalciteObject.EMPTY, false));
 
     @SuppressWarnings("SameParameterValue")
     protected DBSPTypeISize(CalciteObject node, boolean mayBeNull) {
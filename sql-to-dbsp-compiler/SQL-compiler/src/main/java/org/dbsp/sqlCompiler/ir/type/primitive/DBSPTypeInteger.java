@@ -33,6 +33,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -44,23 +45,25 @@ public class DBSPTypeInteger extends DBSPTypeBaseType
     public final boolean signed;
 
     public static final DBSPTypeInteger SIGNED_8 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT8,  8, true,false);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT8,  8, true,false));
     public static final DBSPTypeInteger SIGNED_16 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT16, 16, true,false);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT16, 16, true,false));
     public static final DBSPTypeInteger SIGNED_32 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT32, 32, true,false);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT32, 32, true,false));
     public static final DBSPTypeInteger SIGNED_64 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT64,64, true,false);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT64,64, true,false));
     public static final DBSPTypeInteger UNSIGNED_32 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, UINT32,32, false,false);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, UINT32,32, false,false));
     public static final DBSPTypeInteger UNSIGNED_64 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, UINT64,64, false,false);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, UINT64,64, false,false));
+    public static final DBSPTypeInteger UNSIGNED_128 =
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, UINT128,128, false,false));
     public static final DBSPTypeInteger NULLABLE_SIGNED_16 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT16,16, true,true);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT16,16, true,true));
     public static final DBSPTypeInteger NULLABLE_SIGNED_32 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT32,32, true,true);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT32,32, true,true));
     public static final DBSPTypeInteger NULLABLE_SIGNED_64 =
-            new DBSPTypeInteger(CalciteObject.EMPTY, INT64,64, true,true);
+            IdGen.withDefault(() -> new DBSPTypeInteger(CalciteObject.EMPTY, INT64,64, true,true));
 
     public DBSPTypeCode getCode(int width, boolean signed) {
         if (signed) {
@@ -75,6 +78,7 @@ public class DBSPTypeInteger extends DBSPTypeBaseType
                 case 16: return UINT16;
                 case 32: return UINT32;
                 case 64: return UINT64;
+                case 128: return UINT128;
             }
         }
         throw new InternalCompilerError("Unexpected width " + width);
@@ -29,6 +29,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -38,7 +39,7 @@ import java.util.Objects;
  * It should never surface in code.
  */
 public class DBSPTypeKeyword extends DBSPTypeBaseType {
-    public static final DBSPTypeKeyword INSTANCE = new DBSPTypeKeyword();
+    public static final DBSPTypeKeyword INSTANCE = IdGen.withDefault(() -> new DBSPTypeKeyword());
 
     protected DBSPTypeKeyword() {
         super(CalciteObject.EMPTY, DBSPTypeCode.KEYWORD, false);
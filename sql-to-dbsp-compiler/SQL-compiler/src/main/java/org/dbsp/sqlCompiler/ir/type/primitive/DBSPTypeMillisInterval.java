@@ -31,6 +31,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.IsDateType;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -41,8 +42,8 @@ import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.INTERVAL_SHORT;
  * Always stores the interval value in milliseconds.
  */
 public class DBSPTypeMillisInterval extends DBSPTypeBaseType implements IsNumericType, IsDateType {
-    public static final DBSPType INSTANCE = new DBSPTypeMillisInterval(CalciteObject.EMPTY, false);
-    public static final DBSPType NULLABLE_INSTANCE = new DBSPTypeMillisInterval(CalciteObject.EMPTY, true);
+    public static final DBSPType INSTANCE = IdGen.withDefault(() -> new DBSPTypeMillisInterval(CalciteObject.EMPTY, false));
+    public static final DBSPType NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeMillisInterval(CalciteObject.EMPTY, true));
 
     public DBSPTypeMillisInterval(CalciteObject node, boolean mayBeNull) {
         super(node, INTERVAL_SHORT, mayBeNull);
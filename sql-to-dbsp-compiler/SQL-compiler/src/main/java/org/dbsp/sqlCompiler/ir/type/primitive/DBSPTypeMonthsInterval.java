@@ -32,6 +32,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
 import org.dbsp.sqlCompiler.ir.type.IsDateType;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -40,8 +41,8 @@ import java.util.Objects;
  * Always stores the interval value in days.
  */
 public class DBSPTypeMonthsInterval extends DBSPTypeBaseType implements IsNumericType, IsDateType {
-    public static final DBSPType INSTANCE = new DBSPTypeMonthsInterval(CalciteObject.EMPTY, false);
-    public static final DBSPType NULLABLE_INSTANCE = new DBSPTypeMonthsInterval(CalciteObject.EMPTY, true);
+    public static final DBSPType INSTANCE = IdGen.withDefault(() -> new DBSPTypeMonthsInterval(CalciteObject.EMPTY, false));
+    public static final DBSPType NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeMonthsInterval(CalciteObject.EMPTY, true));
 
     public DBSPTypeMonthsInterval(CalciteObject node, boolean mayBeNull) {
         super(node, DBSPTypeCode.INTERVAL_LONG, mayBeNull);
@@ -28,6 +28,7 @@ import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPNullLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -37,7 +38,7 @@ import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.NULL;
  * This type has a single value, NULL.
  */
 public class DBSPTypeNull extends DBSPTypeBaseType {
-    public static final DBSPType INSTANCE = new DBSPTypeNull(CalciteObject.EMPTY, true);
+    public static final DBSPType INSTANCE = IdGen.withDefault(() -> new DBSPTypeNull(CalciteObject.EMPTY, true));
 
     @SuppressWarnings("SameParameterValue")
     protected DBSPTypeNull(CalciteObject node, boolean mayBeNull) {
@@ -28,13 +28,14 @@ import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
 import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.STR;
 
 public class DBSPTypeStr extends DBSPTypeBaseType {
-    public static final DBSPTypeStr INSTANCE =new DBSPTypeStr(CalciteObject.EMPTY,false);
+    public static final DBSPTypeStr INSTANCE = IdGen.withDefault(() -> new DBSPTypeStr(CalciteObject.EMPTY,false));
 
     protected DBSPTypeStr(CalciteObject node, boolean mayBeNull) { super(node, STR, mayBeNull); }
 
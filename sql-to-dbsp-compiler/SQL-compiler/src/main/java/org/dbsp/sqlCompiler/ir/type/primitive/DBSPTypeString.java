@@ -29,6 +29,7 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPStringLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.util.IIndentStream;
+import org.dbsp.util.IdGen;
 
 import java.nio.charset.StandardCharsets;
 
@@ -41,7 +42,7 @@ public class DBSPTypeString extends DBSPTypeBaseType {
      * Strings with unlimited precision.
      */
     public static final DBSPTypeString UNLIMITED_INSTANCE =
-            new DBSPTypeString(CalciteObject.EMPTY, UNLIMITED_PRECISION, false, false);
+            IdGen.withDefault(() -> new DBSPTypeString(CalciteObject.EMPTY, UNLIMITED_PRECISION, false, false));
 
     /**
      * If true the width is fixed, i.e., this is a CHAR type.
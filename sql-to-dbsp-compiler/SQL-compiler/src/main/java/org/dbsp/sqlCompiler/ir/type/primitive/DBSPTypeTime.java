@@ -32,14 +32,15 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.IsDateType;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
 import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.TIME;
 
 public class DBSPTypeTime extends DBSPTypeBaseType implements IsNumericType, IsDateType {
-    public static final DBSPTypeTime INSTANCE = new DBSPTypeTime(CalciteObject.EMPTY, false);
-    public static final DBSPTypeTime NULLABLE_INSTANCE = new DBSPTypeTime(CalciteObject.EMPTY, true);
+    public static final DBSPTypeTime INSTANCE = IdGen.withDefault(() -> new DBSPTypeTime(CalciteObject.EMPTY, false));
+    public static final DBSPTypeTime NULLABLE_INSTANCE = IdGen.withDefault(() -> new DBSPTypeTime(CalciteObject.EMPTY, true));
 
     protected DBSPTypeTime(CalciteObject node, boolean mayBeNull) {
         super(node, TIME, mayBeNull);
@@ -31,6 +31,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.IsDateType;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -39,9 +40,9 @@ import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.TIMESTAMP;
 public class DBSPTypeTimestamp extends DBSPTypeBaseType
         implements IsNumericType, IsDateType {
     public static final DBSPTypeTimestamp INSTANCE =
-            new DBSPTypeTimestamp(CalciteObject.EMPTY, false);
+            IdGen.withDefault(() -> new DBSPTypeTimestamp(CalciteObject.EMPTY, false));
     public static final DBSPTypeTimestamp NULLABLE_INSTANCE =
-            new DBSPTypeTimestamp(CalciteObject.EMPTY, true);
+            IdGen.withDefault(() -> new DBSPTypeTimestamp(CalciteObject.EMPTY, true));
 
     protected DBSPTypeTimestamp(CalciteObject node, boolean mayBeNull) {
         super(node, TIMESTAMP, mayBeNull);
@@ -31,6 +31,7 @@ import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
 import org.dbsp.sqlCompiler.ir.type.IsNumericType;
 import org.dbsp.sqlCompiler.compiler.errors.UnsupportedException;
+import org.dbsp.util.IdGen;
 
 import java.util.Objects;
 
@@ -39,7 +40,7 @@ import java.util.Objects;
  */
 public class DBSPTypeUSize extends DBSPTypeBaseType
         implements IsNumericType {
-    public static final DBSPTypeUSize INSTANCE =new DBSPTypeUSize(CalciteObject.EMPTY, false);
+    public static final DBSPTypeUSize INSTANCE = IdGen.withDefault(() -> new DBSPTypeUSize(CalciteObject.EMPTY, false));
 
     @SuppressWarnings("SameParameterValue")
     protected DBSPTypeUSize(CalciteObject node, boolean mayBeNull) {
@@ -5,11 +5,12 @@ import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.visitors.inner.InnerVisitor;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.util.IdGen;
 
 import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.VOID;
 
 public class DBSPTypeVoid extends DBSPTypeBaseType {
-    public static final DBSPTypeVoid INSTANCE = new DBSPTypeVoid();
+    public static final DBSPTypeVoid INSTANCE = IdGen.withDefault(() -> new DBSPTypeVoid());
 
     protected DBSPTypeVoid() {
         super(CalciteObject.EMPTY, VOID, false);
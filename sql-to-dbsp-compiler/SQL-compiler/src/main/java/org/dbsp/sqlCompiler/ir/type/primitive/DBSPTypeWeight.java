@@ -7,13 +7,14 @@ import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.type.DBSPType;
 import org.dbsp.sqlCompiler.compiler.errors.UnimplementedException;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeCode;
+import org.dbsp.util.IdGen;
 
 /**
  * This type stands for the weights of an element in a collection.
  * The compiler decides how this is implemented.
  */
 public class DBSPTypeWeight extends DBSPTypeBaseType {
-    public static final DBSPTypeWeight INSTANCE = new DBSPTypeWeight();
+    public static final DBSPTypeWeight INSTANCE = IdGen.withDefault(() -> new DBSPTypeWeight());
 
     protected DBSPTypeWeight() {
         super(CalciteObject.EMPTY, DBSPTypeCode.WEIGHT, false);
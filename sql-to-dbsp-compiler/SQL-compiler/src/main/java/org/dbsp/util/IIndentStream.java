@@ -37,6 +37,7 @@ public interface IIndentStream {
     IIndentStream append(long value);
     /**
      * For lazy evaluation of the argument.
+     * The supplier is not invoked if the stream discards its output.
      */
     IIndentStream appendSupplier(Supplier<String> supplier);
     IIndentStream joinS(String separator, Collection<String> data);
@@ -0,0 +1,102 @@
+package org.dbsp.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Generates node ids and the numeric suffixes of fresh names.
+ * Each compiler owns an IdGen, so that compilations running concurrently
+ * in the same JVM do not interfere with each other, and each compilation
+ * produces deterministic ids and names.
+ * A thread uses the IdGen installed by 'enter'; nodes created outside of any
+ * compilation use a default generator.  Static nodes (e.g., type instances)
+ * are created by 'withDefault', so they also use the default generator,
+ * even if their class is initialized during a compilation.
+ * All methods are thread-safe, so an IdGen can be shared by the
+ * threads working on the same compilation.
+ */
+public class IdGen {
+    private final AtomicLong nextNodeId;
+    private final ConcurrentHashMap<String, AtomicInteger> nextNameId;
+
+    /**
+     * Used by threads that are not performing a compilation.
+     */
+    private static final IdGen DEFAULT = new IdGen();
+    private static final ThreadLocal<IdGen> current = new ThreadLocal<>();
+
+    public IdGen() {
+        this.nextNodeId = new AtomicLong();
+        this.nextNameId = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Restores the generator that was in use before 'enter' was called.
+     */
+    public static class Scope implements AutoCloseable {
+        private final IdGen previous;
+
+        Scope(IdGen previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (this.previous == DEFAULT)
+                current.remove();
+            else
+                current.set(this.previous);
+        }
+    }
+
+    /**
+     * The generator used by the current thread.
+     */
+    public static IdGen current() {
+        IdGen result = current.get();
+        if (result == null)
+            return DEFAULT;
+        return result;
+    }
+
+    /**
+     * Make this generator the current one for the calling thread
+     * until the returned scope is closed.
+     */
+    public Scope enter() {
+        IdGen previous = current();
+        current.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * Call 'supplier' with the default generator as the current one.
+     * Used to initialize static nodes, which must not consume the ids
+     * of the compilation that happens to load their class.
+     */
+    public static <T> T withDefault(Supplier<T> supplier) {
+        try (Scope ignored = DEFAULT.enter()) {
+            return supplier.get();
+        }
+    }
+
+    public long nextNodeId() {
+        return this.nextNodeId.getAndIncrement();
+    }
+
+    /**
+     * The next number that will be returned by 'nextNameId' for this prefix.
+     */
+    public int peekNameId(String prefix) {
+        return this.nextNameId.computeIfAbsent(prefix, p -> new AtomicInteger()).get();
+    }
+
+    /**
+     * Returns numbers 0, 1, 2, ... for successive calls with the same prefix.
+     */
+    public int nextNameId(String prefix) {
+        return this.nextNameId.computeIfAbsent(prefix, p -> new AtomicInteger()).getAndIncrement();
+    }
+}
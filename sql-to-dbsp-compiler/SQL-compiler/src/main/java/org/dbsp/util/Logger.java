@@ -25,6 +25,7 @@ package org.dbsp.util;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Logging class which can output nicely indented strings.
@@ -32,7 +33,7 @@ import java.util.Map;
  * to output nicely indented hierarchical visualizations.
  */
 public class Logger {
-    private final Map<String, Integer> loggingLevel = new HashMap<>();
+    private final Map<String, Integer> loggingLevel = new ConcurrentHashMap<>();
     private final IndentStream debugStream;
     private final IIndentStream noStream;
 
@@ -53,12 +54,31 @@ public class Logger {
      * @return        A stream where the message can be appended.
      */
     public IIndentStream belowLevel(String clazz, int level) {
-        int debugLevel = this.getLoggingLevel(clazz);
-        if (debugLevel >= level)
+        if (this.isLoggingEnabled(clazz, level))
             return this.debugStream;
         return this.noStream;
     }
 
+    /**
+     * True if messages at this logging level are being emitted.
+     * Messages should not be built eagerly: use IIndentStream.appendSupplier
+     * for expensive arguments, or guard the logging code with this method.
+     * @param clazz   Class which does the logging.
+     * @param level   Level of message that is being logged.
+     */
+    public boolean isLoggingEnabled(String clazz, int level) {
+        return this.getLoggingLevel(clazz) >= level;
+    }
+
+    /**
+     * True if messages at this logging level are being emitted.
+     * @param module  Module which does the logging.
+     * @param level   Level of message that is being logged.
+     */
+    public boolean isLoggingEnabled(IWritesLogs module, int level) {
+        return this.isLoggingEnabled(module.getClassName(), level);
+    }
+
     /**
      * Get the logging stream for messages below this logging level.
      * @param module  Module which does the logging.
@@ -93,6 +113,22 @@ public class Logger {
         this.setLoggingLevel(clazz.getSimpleName(), level);
     }
 
+    /**
+     * A copy of the logging levels of all classes.
+     */
+    public Map<String, Integer> getLoggingLevels() {
+        return new HashMap<>(this.loggingLevel);
+    }
+
+    /**
+     * Replace the logging levels of all classes.
+     * @param levels  Levels, as returned by getLoggingLevels.
+     */
+    public void setLoggingLevels(Map<String, Integer> levels) {
+        this.loggingLevel.clear();
+        this.loggingLevel.putAll(levels);
+    }
+
     /**
      * Where logging should be redirected.
      * Notice that the indentation is *not* reset when the stream is changed.
@@ -25,17 +25,13 @@
 
 package org.dbsp.util;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Used to generate new names during a program execution.
+ * The numbering is kept per compilation by the current IdGen.
  */
 public class NameGen {
     private final String prefix;
 
-    static final Map<String, Integer> nextId = new HashMap<>();
-
     @SuppressWarnings("unused")
     public NameGen() {
         this.prefix = "id";
@@ -49,25 +45,13 @@ public class NameGen {
      */
     public NameGen(String prefix) {
         this.prefix = prefix;
-        if (!nextId.containsKey(this.prefix))
-            nextId.put(this.prefix, 0);
     }
 
     public int getNext() {
-        return nextId.get(this.prefix);
+        return IdGen.current().peekNameId(this.prefix);
     }
 
     public String nextName() {
-        int id = this.getNext();
-        nextId.put(this.prefix, id+1);
-        return this.prefix + id;
-    }
-
-    /**
-     * Do not use this method.
-     * It is for testing only.
-     */
-    public static void reset() {
-        nextId.clear();
+        return this.prefix + IdGen.current().nextNameId(this.prefix);
     }
 }
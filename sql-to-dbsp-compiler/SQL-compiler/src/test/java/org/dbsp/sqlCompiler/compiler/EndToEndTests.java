@@ -64,7 +64,7 @@ public class EndToEndTests extends BaseSQLTests {
         return compiler;
     }
 
-    void testQueryBase(String query, InputOutputPair... streams) {
+    protected void testQueryBase(String query, InputOutputPair... streams) {
         query = "CREATE VIEW V AS " + query;
         DBSPCompiler compiler = this.compileQuery(query);
         DBSPCircuit circuit = getCircuit(compiler);
@@ -286,6 +286,65 @@ public class EndToEndTests extends BaseSQLTests {
         this.testQuery(query, new DBSPZSetLiteral.Contents(t, t));
     }
 
+    @Test
+    public void overDescendingTest() {
+        String query = "SELECT T.COL3, " +
+                "COUNT(*) OVER (ORDER BY T.COL3 DESC RANGE UNBOUNDED PRECEDING) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, new DBSPI64Literal(1)),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, new DBSPI64Literal(2))));
+    }
+
+    @Test
+    public void overMultipleColumnsTest() {
+        // NULL is last in ascending order
+        String query = "SELECT T.COL5, " +
+                "SUM(T.COL2) OVER (ORDER BY T.COL1, T.COL5) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true), new DBSPDoubleLiteral(1.0)),
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32),
+                        new DBSPDoubleLiteral(13.0))));
+    }
+
+    @Test
+    public void overRankTest() {
+        // NULL is last in ascending order
+        String query = "SELECT T.COL5, " +
+                "ROW_NUMBER() OVER (ORDER BY T.COL5), " +
+                "RANK() OVER (ORDER BY T.COL1), " +
+                "DENSE_RANK() OVER (ORDER BY T.COL3 DESC) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true), new DBSPI64Literal(1),
+                        new DBSPI64Literal(1), new DBSPI64Literal(2)),
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32),
+                        new DBSPI64Literal(2), new DBSPI64Literal(1), new DBSPI64Literal(1))));
+    }
+
+    @Test
+    public void overLagTest() {
+        String query = "SELECT T.COL5, " +
+                "LAG(T.COL5) OVER (ORDER BY T.COL3), " +
+                "LEAD(T.COL1, 1, 0) OVER (ORDER BY T.COL3) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true),
+                        DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32), new DBSPI32Literal(10)),
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32),
+                        new DBSPI32Literal(1, true), new DBSPI32Literal(0))));
+    }
+
+    @Test
+    public void overLagDuplicatesTest() {
+        // The first row appears twice; each copy of a row is matched with a different row
+        String query = "SELECT T.COL1, LAG(T.COL1) OVER (ORDER BY T.COL1) FROM T";
+        DBSPExpression lagged = new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPI32Literal(10, true));
+        this.testQueryBase(query, new InputOutputPair(
+                new DBSPZSetLiteral.Contents(e0, e0, e1),
+                new DBSPZSetLiteral.Contents(
+                        new DBSPTupleExpression(new DBSPI32Literal(10),
+                                DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32)),
+                        lagged, lagged)));
+    }
+
     @SuppressWarnings("SpellCheckingInspection")
     @Test
     public void correlatedAggregate() {
@@ -476,6 +535,70 @@ public class EndToEndTests extends BaseSQLTests {
         this.testQuery(query, empty);
     }
 
+    @Test
+    public void semiJoinTest() {
+        // Each row has two matches, but appears only once in the result
+        String query = "SELECT T1.COL3 FROM T AS T1 WHERE T1.COL1 IN (SELECT T2.COL1 FROM T AS T2)";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE),
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE)));
+    }
+
+    @Test
+    public void semiJoinConditionTest() {
+        String query = "SELECT T1.COL3 FROM T AS T1 WHERE T1.COL1 IN " +
+                "(SELECT T2.COL1 FROM T AS T2 WHERE T2.COL2 > T1.COL2)";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE)));
+    }
+
+    @Test
+    public void antiJoinTest() {
+        String query = "SELECT T1.COL3 FROM T AS T1 WHERE NOT EXISTS " +
+                "(SELECT * FROM T AS T2 WHERE T2.COL3 = T1.COL3 AND T2.COL2 < 5)";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE)));
+    }
+
+    @Test
+    public void antiJoinConditionTest() {
+        String query = "SELECT T1.COL3 FROM T AS T1 WHERE NOT EXISTS " +
+                "(SELECT * FROM T AS T2 WHERE T2.COL1 = T1.COL1 AND T2.COL2 > T1.COL2)";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE)));
+    }
+
+    @Test
+    public void unnestFilterMapTest() {
+        // The filter and the projection of V are fused with the flat_map of U
+        // in the optimized circuit; the unoptimized circuits must produce the same output.
+        DBSPCompiler compiler = this.testCompiler();
+        compiler.compileStatement("CREATE TABLE ARR_TABLE (VALS INTEGER ARRAY NOT NULL, ID INTEGER NOT NULL)");
+        compiler.compileStatement("CREATE VIEW U AS SELECT VAL, ID FROM ARR_TABLE, UNNEST(VALS) AS VAL");
+        compiler.compileStatement("CREATE VIEW V AS SELECT VAL + ID FROM U WHERE VAL > 1");
+        DBSPCircuit circuit = getCircuit(compiler);
+        DBSPExpression vals = new DBSPVecLiteral(
+                new DBSPI32Literal(1), new DBSPI32Literal(2), new DBSPI32Literal(3));
+        DBSPZSetLiteral.Contents input = new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(vals, new DBSPI32Literal(6)),
+                new DBSPTupleExpression(vals, new DBSPI32Literal(7)));
+        DBSPZSetLiteral.Contents u = new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1), new DBSPI32Literal(6)),
+                new DBSPTupleExpression(new DBSPI32Literal(2), new DBSPI32Literal(6)),
+                new DBSPTupleExpression(new DBSPI32Literal(3), new DBSPI32Literal(6)),
+                new DBSPTupleExpression(new DBSPI32Literal(1), new DBSPI32Literal(7)),
+                new DBSPTupleExpression(new DBSPI32Literal(2), new DBSPI32Literal(7)),
+                new DBSPTupleExpression(new DBSPI32Literal(3), new DBSPI32Literal(7)));
+        DBSPZSetLiteral.Contents v = new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(8)),
+                new DBSPTupleExpression(new DBSPI32Literal(9)),
+                new DBSPTupleExpression(new DBSPI32Literal(9)),
+                new DBSPTupleExpression(new DBSPI32Literal(10)));
+        this.addRustTestCase("unnestFilterMapTest", compiler, circuit, new InputOutputPair(
+                new DBSPZSetLiteral.Contents[] { input },
+                new DBSPZSetLiteral.Contents[] { u, v }));
+    }
+
     @Test
     public void zero() {
         String query = "SELECT 0";
@@ -528,6 +651,77 @@ public class EndToEndTests extends BaseSQLTests {
         ));
     }
 
+    @Test
+    public void leftOuterJoinConditionTest() {
+        String query = "SELECT T1.COL3, T2.COL3 FROM T AS T1 LEFT JOIN T AS T2 " +
+                "ON T1.COL1 = T2.COL1 AND T1.COL2 > T2.COL2";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.NONE),
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, DBSPBoolLiteral.NULLABLE_FALSE)
+        ));
+    }
+
+    @Test
+    public void leftOuterJoinLeftConditionTest() {
+        String query = "SELECT T1.COL3, T2.COL3 FROM T AS T1 LEFT JOIN T AS T2 " +
+                "ON T1.COL1 = T2.COL1 AND T1.COL2 > 5";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, DBSPBoolLiteral.NULLABLE_TRUE),
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, DBSPBoolLiteral.NULLABLE_FALSE),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.NONE)
+        ));
+    }
+
+    @Test
+    public void leftOuterJoinMultisetTest() {
+        // Both unmatched rows are in the output
+        String query = "SELECT T1.COL1, T2.COL3 FROM (SELECT COL1 FROM T) AS T1 LEFT JOIN T AS T2 " +
+                "ON T1.COL1 = T2.COL5";
+        DBSPExpression row = new DBSPTupleExpression(new DBSPI32Literal(10), DBSPBoolLiteral.NONE);
+        this.testQuery(query, new DBSPZSetLiteral.Contents(row, row));
+    }
+
+    @Test
+    public void joinAggregateTest() {
+        String query = "SELECT T1.COL3, SUM(T2.COL2) FROM T AS T1 JOIN T AS T2 " +
+                "ON T1.COL1 = T2.COL1 GROUP BY T1.COL3";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, new DBSPDoubleLiteral(13.0)),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, new DBSPDoubleLiteral(13.0))
+        ));
+    }
+
+    @Test
+    public void bandJoinTest() {
+        String query = "SELECT T1.COL3, T2.COL3 FROM T AS T1 JOIN T AS T2 " +
+                "ON T1.COL1 BETWEEN T2.COL5 + 5 AND T2.COL5 + 10";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, DBSPBoolLiteral.FALSE),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.FALSE)
+        ));
+    }
+
+    @Test
+    public void bandJoinWithKeyTest() {
+        String query = "SELECT T1.COL3, T2.COL3 FROM T AS T1 JOIN T AS T2 " +
+                "ON T1.COL1 = T2.COL1 AND T2.COL1 - 10 < T1.COL5 AND T1.COL5 < T2.COL1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.TRUE),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.FALSE)
+        ));
+    }
+
+    @Test
+    public void leftOuterBandJoinTest() {
+        String query = "SELECT T1.COL3, T2.COL3 FROM T AS T1 LEFT JOIN T AS T2 " +
+                "ON T1.COL5 BETWEEN T2.COL1 - 10 AND T2.COL1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, DBSPBoolLiteral.NONE),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.NULLABLE_TRUE),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, DBSPBoolLiteral.NULLABLE_FALSE)
+        ));
+    }
+
     @Test
     public void emptyWhereTest() {
         String query = "SELECT * FROM T WHERE FALSE";
@@ -719,6 +913,41 @@ public class EndToEndTests extends BaseSQLTests {
                         new DBSPI32Literal(10, true))));
     }
 
+    @Test
+    public void minNullsTest() {
+        String query = "SELECT T.COL1, MIN(T.COL5) FROM T GROUP BY T.COL1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(
+                        new DBSPI32Literal(10), new DBSPI32Literal(1, true))));
+    }
+
+    @Test
+    public void maxFilterTest() {
+        String query = "SELECT MAX(T.COL2) FILTER (WHERE T.COL3) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(
+                        new DBSPDoubleLiteral(12.0, true))));
+    }
+
+    @Test
+    public void avgFilterTest() {
+        String query = "SELECT T.COL1, AVG(T.COL2), COUNT(*) FILTER (WHERE T.COL3), " +
+                "SUM(T.COL5) FILTER (WHERE T.COL3) FROM T GROUP BY T.COL1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(
+                        new DBSPI32Literal(10), new DBSPDoubleLiteral(6.5),
+                        new DBSPI64Literal(1), DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32))));
+    }
+
+    @Test
+    public void linearAndMaxTest() {
+        String query = "SELECT T.COL1, COUNT(*), MAX(T.COL2), SUM(T.COL5) FROM T GROUP BY T.COL1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(
+                        new DBSPI32Literal(10), new DBSPI64Literal(2),
+                        new DBSPDoubleLiteral(12.0), new DBSPI32Literal(1, true))));
+    }
+
     @Test
     public void maxConst() {
         String query = "SELECT MAX(6) FROM T";
@@ -832,4 +1061,82 @@ public class EndToEndTests extends BaseSQLTests {
                 new DBSPVecLiteral(e1, e0)
         ));
     }
+
+    @Test
+    public void orderbyLimitTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL2 LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e1));
+    }
+
+    @Test
+    public void orderbyDescendingLimitTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL2 DESC LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e0));
+    }
+
+    @Test
+    public void orderbyLimitOffsetTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL2 LIMIT 1 OFFSET 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e0));
+    }
+
+    @Test
+    public void limitDuplicatesTest() {
+        // Both rows have the same value for COL1
+        String query = "SELECT T.COL1 FROM T ORDER BY T.COL1 LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(10))));
+    }
+
+    @Test
+    public void limitOffsetDuplicatesTest() {
+        String query = "SELECT T.COL1 FROM T ORDER BY T.COL1 LIMIT 3 OFFSET 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(10))));
+    }
+
+    @Test
+    public void limitNullsTest() {
+        // NULLs are last in ascending order, and first in descending order
+        String query = "SELECT T.COL5 FROM T ORDER BY T.COL5 LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true))));
+    }
+
+    @Test
+    public void limitNullsDescendingTest() {
+        String query = "SELECT T.COL5 FROM T ORDER BY T.COL5 DESC LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32))));
+    }
+
+    @Test
+    public void limitNullsFirstTest() {
+        String query = "SELECT T.COL5 FROM T ORDER BY T.COL5 NULLS FIRST LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32))));
+    }
+
+    @Test
+    public void limitMixedDirectionsTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL1, T.COL2 DESC LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e0));
+    }
+
+    @Test
+    public void groupedTopKTest() {
+        String query = "SELECT COL3, COL2, RN FROM (SELECT T.COL3, T.COL2, " +
+                "ROW_NUMBER() OVER (PARTITION BY T.COL3 ORDER BY T.COL2) AS RN FROM T) WHERE RN <= 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, new DBSPDoubleLiteral(12.0), new DBSPI64Literal(1)),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, new DBSPDoubleLiteral(1.0), new DBSPI64Literal(1))));
+    }
+
+    @Test
+    public void groupedTopKDescendingTest() {
+        String query = "SELECT COL2 FROM (SELECT T.COL2, " +
+                "ROW_NUMBER() OVER (PARTITION BY T.COL1 ORDER BY T.COL2 DESC) AS RN FROM T) WHERE RN < 2";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPDoubleLiteral(12.0))));
+    }
 }
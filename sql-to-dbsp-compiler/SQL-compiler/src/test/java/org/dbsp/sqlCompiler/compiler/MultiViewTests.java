@@ -118,4 +118,34 @@ public class MultiViewTests extends EndToEndTests {
         );
         this.addRustTestCase("MultiViewTests.multiViewTest", compiler, circuit, stream);
     }
+
+    /**
+     * A view filters the output of another view.
+     */
+    @Test
+    public void filteredViewTest() {
+        String query1 = "CREATE VIEW V1 AS SELECT T.COL1, T.COL3 FROM T UNION ALL SELECT T.COL1 + 1, T.COL3 FROM T";
+        String query2 = "CREATE VIEW V2 as SELECT COL3 FROM V1 WHERE COL1 > 10";
+
+        DBSPCompiler compiler = testCompiler();
+        compiler.compileStatement(E2E_TABLE);
+        compiler.compileStatement(query1);
+        compiler.compileStatement(query2);
+
+        DBSPCircuit circuit = getCircuit(compiler);
+        InputOutputPair stream = new InputOutputPair(
+                new DBSPZSetLiteral.Contents[] { this.createInput() },
+                new DBSPZSetLiteral.Contents[] {
+                        new DBSPZSetLiteral.Contents(
+                                new DBSPTupleExpression(new DBSPI32Literal(10), DBSPBoolLiteral.TRUE),
+                                new DBSPTupleExpression(new DBSPI32Literal(10), DBSPBoolLiteral.FALSE),
+                                new DBSPTupleExpression(new DBSPI32Literal(11), DBSPBoolLiteral.TRUE),
+                                new DBSPTupleExpression(new DBSPI32Literal(11), DBSPBoolLiteral.FALSE)),
+                        new DBSPZSetLiteral.Contents(
+                                new DBSPTupleExpression(DBSPBoolLiteral.TRUE),
+                                new DBSPTupleExpression(DBSPBoolLiteral.FALSE))
+                }
+        );
+        this.addRustTestCase("MultiViewTests.filteredViewTest", compiler, circuit, stream);
+    }
 }
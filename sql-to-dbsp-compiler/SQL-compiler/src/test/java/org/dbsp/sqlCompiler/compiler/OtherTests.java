@@ -34,33 +34,61 @@ import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.calcite.tools.RelBuilder;
 import org.apache.calcite.tools.RelRunner;
+import org.dbsp.sqlCompiler.compiler.backend.rust.FuseOperators;
+import org.dbsp.sqlCompiler.compiler.backend.rust.LowerCircuitVisitor;
 import org.dbsp.sqlCompiler.compiler.backend.rust.RustFileWriter;
+import org.dbsp.sqlCompiler.compiler.backend.rust.ToRustHandleVisitor;
 import org.dbsp.sqlCompiler.compiler.errors.CompilerMessages;
 import org.dbsp.sqlCompiler.CompilerMain;
+import org.dbsp.sqlCompiler.CompilerServer;
 import org.dbsp.sqlCompiler.circuit.DBSPCircuit;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFilterOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPFlatMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalAggregateOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalDistinctOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIncrementalJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexedLagOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPIndexedRankOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPJoinOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapIndexOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPMapOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPSourceOperator;
+import org.dbsp.sqlCompiler.circuit.operator.DBSPWindowAggregateOperator;
 import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
 import org.dbsp.sqlCompiler.compiler.backend.ToCsvVisitor;
 import org.dbsp.sqlCompiler.compiler.backend.rust.ToRustVisitor;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.compiler.frontend.CollectIdentifiers;
 import org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler.CalciteCompiler;
+import org.dbsp.sqlCompiler.compiler.frontend.calciteCompiler.ViewCache;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.CircuitVisitor;
+import org.dbsp.sqlCompiler.compiler.visitors.outer.OptimizeDistinctVisitor;
 import org.dbsp.sqlCompiler.compiler.visitors.outer.Passes;
 import org.dbsp.sqlCompiler.ir.DBSPFunction;
-import org.dbsp.sqlCompiler.ir.DBSPNode;
 import org.dbsp.sqlCompiler.ir.expression.*;
 import org.dbsp.sqlCompiler.ir.expression.literal.*;
 import org.dbsp.sqlCompiler.ir.statement.DBSPExpressionStatement;
 import org.dbsp.sqlCompiler.ir.statement.DBSPLetStatement;
 import org.dbsp.sqlCompiler.ir.statement.DBSPStatement;
+import org.dbsp.sqlCompiler.ir.type.DBSPType;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeRawTuple;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeTuple;
 import org.dbsp.sqlCompiler.ir.type.DBSPTypeUser;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeVec;
+import org.dbsp.sqlCompiler.ir.type.DBSPTypeZSet;
+import org.dbsp.sqlCompiler.ir.type.TypeInterner;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeString;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeVoid;
 import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeWeight;
 import org.dbsp.util.FreshName;
 import org.dbsp.util.IWritesLogs;
+import org.dbsp.util.IdGen;
 import org.dbsp.util.Linq;
 import org.dbsp.util.Logger;
-import org.dbsp.util.NameGen;
 import org.dbsp.util.StringPrintStream;
 import org.dbsp.util.Utilities;
 import org.junit.Assert;
@@ -70,6 +98,9 @@ import org.junit.Test;
 import javax.imageio.ImageIO;
 import javax.sql.DataSource;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -77,6 +108,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import static org.dbsp.sqlCompiler.ir.type.DBSPTypeCode.USER;
 
@@ -88,7 +124,11 @@ public class OtherTests extends BaseSQLTests implements IWritesLogs {
     }
 
     private DBSPCompiler compileDef() {
-        DBSPCompiler compiler = new DBSPCompiler(getOptions());
+        return this.compileDef(getOptions());
+    }
+
+    private DBSPCompiler compileDef(CompilerOptions options) {
+        DBSPCompiler compiler = new DBSPCompiler(options);
         String ddl = "CREATE TABLE T (\n" +
                 "COL1 INT NOT NULL" +
                 ", COL2 DOUBLE NOT NULL" +
@@ -117,8 +157,6 @@ public class OtherTests extends BaseSQLTests implements IWritesLogs {
     // This is also testing the deterministic node numbering
     // The numbering of the nodes will change when the optimizations are changed.
     public void toStringTest() {
-        NameGen.reset();
-        DBSPNode.reset();
         String query = "CREATE VIEW V AS SELECT T.COL3 FROM T";
         DBSPCompiler compiler = this.compileDef();
         compiler.compileStatement(query);
@@ -129,15 +167,734 @@ public class OtherTests extends BaseSQLTests implements IWritesLogs {
                 "    // CREATE TABLE T (\n" +
                 "    // COL1 INT NOT NULL, COL2 DOUBLE NOT NULL, COL3 BOOLEAN NOT NULL, COL4 VARCHAR NOT NULL, COL5 INT, COL6 DOUBLE)\n" +
                 "    let T = T();\n" +
-                "    // DBSPMapOperator 63\n" +
+                "    // DBSPMapOperator 70\n" +
                 "    let stream1: stream<OrdZSet<Tuple1<b>, Weight>> = T.map((|t: &Tuple6<i32, d, b, s, i32?, d?>| Tuple1::new((t.2))));\n" +
                 "    // CREATE VIEW V AS SELECT T.COL3 FROM T\n" +
-                "    // DBSPSinkOperator 67\n" +
+                "    // DBSPSinkOperator 74\n" +
                 "    let V: stream<OrdZSet<Tuple1<b>, Weight>> = stream1;\n" +
                 "}\n";
         Assert.assertEquals(expected, str);
     }
 
+    // Compilers running concurrently produce the same ids and names
+    // as a compiler running alone.
+    @Test
+    public void concurrentCompilationTest() throws Exception {
+        Callable<String> compile = () -> {
+            DBSPCompiler compiler = this.compileDef();
+            compiler.compileStatement("CREATE VIEW V AS SELECT T.COL1 + 1 FROM T WHERE T.COL3");
+            compiler.optimize();
+            return compiler.getFinalCircuit("circuit").toString();
+        };
+        String expected = compile.call();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                results.add(executor.submit(compile));
+            for (Future<String> result : results)
+                Assert.assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    String compileWithThreads(String program, int threads) {
+        CompilerOptions options = new CompilerOptions();
+        options.optimizerOptions.threads = threads;
+        DBSPCompiler compiler = new DBSPCompiler(options);
+        compiler.compileStatements(program);
+        if (compiler.hasErrors())
+            return compiler.messages.toString();
+        compiler.optimize();
+        return compiler.getFinalCircuit("circuit").toString();
+    }
+
+    // Compiling views concurrently produces the same circuit and
+    // the same errors as compiling them sequentially.
+    @Test
+    public void parallelFrontendTest() {
+        String program = "CREATE TABLE T(COL1 INT NOT NULL, COL2 DOUBLE NOT NULL);\n" +
+                "CREATE TABLE S(COL1 INT NOT NULL, COL3 VARCHAR);\n" +
+                "CREATE VIEW V0 AS SELECT COL1, COL2 FROM T WHERE COL2 > 0;\n" +
+                "CREATE VIEW V1 AS SELECT COL1, COL3 FROM S WHERE COL3 IS NOT NULL;\n" +
+                "CREATE VIEW V2 AS SELECT V0.COL1, V1.COL3 FROM V0 JOIN V1 ON V0.COL1 = V1.COL1;\n" +
+                "CREATE VIEW V3 AS SELECT COL3, COUNT(*) FROM V2 GROUP BY COL3;\n" +
+                "CREATE VIEW V4 AS SELECT SUM(COL2) FROM T;\n";
+        String expected = this.compileWithThreads(program, 1);
+        Assert.assertEquals(expected, this.compileWithThreads(program, 4));
+
+        String error = "CREATE TABLE T(COL1 INT NOT NULL);\n" +
+                "CREATE VIEW V0 AS SELECT COL1 FROM T;\n" +
+                "CREATE VIEW V1 AS SELECT COL1 FROM X;\n" +
+                "CREATE VIEW V2 AS SELECT COL1 FROM V1;\n" +
+                "CREATE VIEW V3 AS SELECT COL2 FROM V0;\n";
+        expected = this.compileWithThreads(error, 1);
+        Assert.assertTrue(expected.contains("Object 'X' not found"));
+        Assert.assertEquals(expected, this.compileWithThreads(error, 4));
+    }
+
+    // Views whose definition and inputs are unchanged are not recompiled.
+    @Test
+    public void viewCacheTest() {
+        String tables = "CREATE TABLE T(COL1 INT NOT NULL, COL2 DOUBLE NOT NULL);\n" +
+                "CREATE TABLE S(COL1 INT NOT NULL, COL3 VARCHAR);\n";
+        String v0 = "CREATE VIEW V0 AS SELECT COL1, COL2 FROM T WHERE COL2 > 0;\n";
+        String v1 = "CREATE VIEW V1 AS SELECT V0.COL1, S.COL3 FROM V0 JOIN S ON V0.COL1 = S.COL1;\n";
+        String v2 = "CREATE VIEW V2 AS SELECT SUM(COL2) FROM T;\n";
+        String v2changed = "CREATE VIEW V2 AS SELECT MAX(COL2) FROM T;\n";
+        ViewCache cache = new ViewCache(100);
+
+        Function<String, String> compile = program -> {
+            DBSPCompiler compiler = new DBSPCompiler(new CompilerOptions());
+            compiler.setViewCache(cache);
+            compiler.compileStatements(program);
+            Assert.assertFalse(compiler.hasErrors());
+            compiler.optimize();
+            return compiler.getFinalCircuit("circuit").toString();
+        };
+        compile.apply(tables + v0 + v1 + v2);
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+
+        String cached = compile.apply(tables + v0 + v1 + v2changed);
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(4, cache.getMisses());
+        String expected = this.compileWithThreads(tables + v0 + v1 + v2changed, 1);
+        Assert.assertEquals(expected, cached);
+
+        // Changing a table invalidates the views that use it
+        compile.apply(tables.replace("COL3 VARCHAR", "COL3 VARCHAR NOT NULL") + v0 + v1 + v2);
+        Assert.assertEquals(4, cache.getHits());
+        Assert.assertEquals(5, cache.getMisses());
+    }
+
+    // Adding a view does not change the names of the streams of other views.
+    @Test
+    public void stableNamesTest() {
+        String tables = "CREATE TABLE T(COL1 INT NOT NULL, COL2 DOUBLE NOT NULL);\n";
+        String views = "CREATE VIEW V0 AS SELECT COL1, SUM(COL2) FROM T GROUP BY COL1;\n" +
+                "CREATE VIEW V1 AS SELECT COL1 FROM T WHERE COL2 > 0;\n";
+        String extra = "CREATE VIEW V2 AS SELECT COL1 + 1 FROM T WHERE COL2 < 0;\n";
+        String extraAggregate = "CREATE VIEW V3 AS SELECT COL1, MIN(COL2), COUNT(*) FROM T GROUP BY COL1;\n";
+        // Streams and the comments describing them
+        Function<String, List<String>> streams = program -> {
+            DBSPCompiler compiler = new DBSPCompiler(new CompilerOptions());
+            compiler.compileStatements(program);
+            String rust = ToRustVisitor.toRustString(compiler, getCircuit(compiler));
+            return Linq.where(Arrays.asList(rust.split("\n")),
+                    l -> l.trim().startsWith("let stream") || l.trim().startsWith("//"));
+        };
+        List<String> before = streams.apply(tables + views);
+        Assert.assertFalse(before.isEmpty());
+        Assert.assertEquals(before, streams.apply(tables + views));
+        List<String> after = streams.apply(tables + extra + views);
+        Assert.assertTrue(after.size() > before.size());
+        Assert.assertTrue(after.containsAll(before));
+        after = streams.apply(tables + extraAggregate + views);
+        Assert.assertTrue(after.size() > before.size());
+        Assert.assertTrue(after.containsAll(before));
+    }
+
+    // Test the -split command-line parameter
+    @Test
+    public void splitCircuitTest() throws IOException, InterruptedException {
+        String[] statements = new String[]{
+                "CREATE TABLE T (COL1 INT NOT NULL, COL2 DOUBLE NOT NULL)",
+                // V0 and V1 share the filter
+                "CREATE VIEW V0 AS SELECT COL1, SUM(COL2) FROM T WHERE COL1 > 5 GROUP BY COL1",
+                "CREATE VIEW V1 AS SELECT COL2 FROM T WHERE COL1 > 5"
+        };
+        File file = this.createInputScript(statements);
+        CompilerMessages messages = CompilerMain.execute("-split", "-o", BaseSQLTests.testFilePath, file.getPath());
+        Assert.assertEquals(0, messages.exitCode);
+        String rust = new String(Files.readAllBytes(Paths.get(BaseSQLTests.testFilePath)), StandardCharsets.UTF_8);
+        Assert.assertTrue(rust.contains("mod circuit_V0 {"));
+        Assert.assertTrue(rust.contains("mod circuit_V1 {"));
+        // The filter is computed in V0 and passed to V1
+        Assert.assertTrue(rust.contains(") = circuit_V0::build(circuit, &mut catalog, T.clone());"));
+        Assert.assertTrue(rust.contains("circuit_V1::build(circuit, &mut catalog, stream_"));
+        Utilities.compileAndTestRust(BaseSQLTests.rustDirectory, false);
+        boolean success = file.delete();
+        Assert.assertTrue(success);
+    }
+
+    @Test
+    public void cseTest() {
+        // The two views share the same filter
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V0 AS SELECT T.COL1 FROM T WHERE T.COL1 > 5");
+        compiler.compileStatement("CREATE VIEW V1 AS SELECT T.COL1 FROM T WHERE T.COL1 > 5");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] filters = new int[1];
+        CircuitVisitor counter = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPFilterOperator operator) {
+                filters[0]++;
+            }
+        };
+        counter.apply(circuit);
+        Assert.assertEquals(1, filters[0]);
+    }
+
+    @Test
+    public void pushFiltersTest() {
+        // The filter of V1 is moved below the union and the projections of V0
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V0 AS SELECT T.COL1, T.COL3 FROM T " +
+                "UNION ALL SELECT T.COL1 + 1, T.COL3 FROM T");
+        compiler.compileStatement("CREATE VIEW V1 AS SELECT COL3 FROM V0 WHERE COL1 > 10");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] filters = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPFilterOperator operator) {
+                filters[0]++;
+                Assert.assertTrue(operator.input().is(DBSPSourceOperator.class));
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(2, filters[0]);
+    }
+
+    @Test
+    public void narrowColumnsTest() {
+        // The join inputs only store the columns used by the filter and the projection
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V AS SELECT T1.COL3, T2.COL3 FROM T AS T1 JOIN T AS T2 " +
+                "ON T1.COL1 = T2.COL1 AND T1.COL5 < T2.COL2");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] indexes = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIndexOperator operator) {
+                indexes[0]++;
+                Assert.assertEquals(2, operator.elementType.to(DBSPTypeTuple.class).size());
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(2, indexes[0]);
+    }
+
+    @Test
+    public void appendOnlyMinMaxTest() {
+        // The aggregate keeps a running accumulator for each group
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.incrementalize = true;
+        options.optimizerOptions.appendOnly = true;
+        DBSPCompiler compiler = this.compileDef(options);
+        compiler.compileStatement("CREATE VIEW V AS SELECT COL1, MIN(COL5) FROM T GROUP BY COL1");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] aggregates = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIncrementalAggregateOperator operator) {
+                aggregates[0]++;
+                Assert.assertTrue(operator.isMinMax());
+                Assert.assertTrue(operator.appendOnly);
+                Assert.assertEquals("aggregate_append_only", operator.operation);
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, aggregates[0]);
+    }
+
+    @Test
+    public void appendOnlyOperatorsTest() {
+        // Non-linear aggregates and distinct use the append-only implementations,
+        // linear aggregates are not changed
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.incrementalize = true;
+        options.optimizerOptions.appendOnly = true;
+        DBSPCompiler compiler = this.compileDef(options);
+        compiler.compileStatement("CREATE VIEW V AS SELECT COL1, MAX(COL5), SUM(COL1) FROM T GROUP BY COL1");
+        compiler.compileStatement("CREATE VIEW W AS SELECT DISTINCT COL1, COL3 FROM T");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] operators = new int[3];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIncrementalAggregateOperator operator) {
+                Assert.assertEquals(!operator.isLinear, operator.appendOnly);
+                operators[operator.appendOnly ? 0 : 1]++;
+            }
+
+            @Override
+            public void postorder(DBSPIncrementalDistinctOperator operator) {
+                Assert.assertTrue(operator.appendOnly);
+                Assert.assertEquals("distinct_append_only", operator.operation);
+                operators[2]++;
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, operators[0]);
+        Assert.assertEquals(1, operators[1]);
+        Assert.assertEquals(1, operators[2]);
+    }
+
+    @Test
+    public void appendOnlyTableTest() throws FileNotFoundException, UnsupportedEncodingException {
+        // Only the aggregate of the append-only table keeps running accumulators
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.incrementalize = true;
+        DBSPCompiler compiler = new DBSPCompiler(options);
+        compiler.compileStatement("CREATE TABLE A (X INT, Y INT) WITH ('append_only' = 'true')");
+        compiler.compileStatement("CREATE TABLE B (X INT, Y INT) WITH ('append_only' = 'false')");
+        compiler.compileStatement("CREATE VIEW VA AS SELECT X, MIN(Y) FROM A GROUP BY X");
+        compiler.compileStatement("CREATE VIEW VB AS SELECT X, MIN(Y) FROM B GROUP BY X");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] aggregates = new int[2];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIncrementalAggregateOperator operator) {
+                aggregates[operator.appendOnly ? 0 : 1]++;
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, aggregates[0]);
+        Assert.assertEquals(1, aggregates[1]);
+
+        String[] statements = new String[] {
+                "CREATE TABLE S (X INT) WITH ('append_only' = 'yes')"
+        };
+        File file = this.createInputScript(statements);
+        CompilerMessages messages = CompilerMain.execute("-o", BaseSQLTests.testFilePath, file.getPath());
+        Assert.assertEquals(1, messages.errorCount());
+        Assert.assertEquals("Table property 'append_only' must be 'true' or 'false'",
+                messages.getError(0).message);
+        boolean success = file.delete();
+        Assert.assertTrue(success);
+    }
+
+    @Test
+    public void primaryKeyTest() throws FileNotFoundException, UnsupportedEncodingException {
+        // Without Calcite optimizations the DISTINCT reaches the circuit;
+        // it is redundant only for the table with a primary key.
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.optimizationLevel = 0;
+        DBSPCompiler compiler = new DBSPCompiler(options);
+        compiler.compileStatement("CREATE TABLE A (X INT PRIMARY KEY, Y INT)");
+        compiler.compileStatement("CREATE TABLE B (X INT, Y INT)");
+        compiler.compileStatement("CREATE VIEW VA AS SELECT DISTINCT Y, X FROM A WHERE Y > 0");
+        compiler.compileStatement("CREATE VIEW VB AS SELECT DISTINCT Y, X FROM B WHERE Y > 0");
+        DBSPCircuit circuit = getCircuit(compiler);
+        circuit = new OptimizeDistinctVisitor(compiler).apply(circuit);
+        int[] distinct = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPDistinctOperator operator) {
+                distinct[0]++;
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, distinct[0]);
+        // The primary key column is NOT NULL, and the table receives upserts
+        DBSPSourceOperator source = circuit.circuit.getOperator("A").to(DBSPSourceOperator.class);
+        Assert.assertEquals(Linq.list(0), source.primaryKey);
+        Assert.assertFalse(source.getOutputZSetElementType().tupFields[0].mayBeNull);
+        String rust = ToRustHandleVisitor.toRustString(compiler, circuit, "circuit");
+        Assert.assertTrue(rust.contains("circuit.add_input_map::<i32, Tuple2<i32, Option<i32>>, Weight>()"));
+        Assert.assertTrue(rust.contains("catalog.register_input_map(\"A\""));
+        Assert.assertTrue(rust.contains("catalog.register_input_zset(\"B\""));
+        // The circuit is not incremental, so it receives the whole table
+        Assert.assertTrue(rust.contains("let A = A_upsert.map(|(_, v)| v.clone()).integrate();"));
+
+        // An incremental circuit receives the changes produced by the upserts
+        options = getOptions();
+        options.optimizerOptions.incrementalize = true;
+        compiler = new DBSPCompiler(options);
+        compiler.compileStatement("CREATE TABLE A (X INT PRIMARY KEY, Y INT)");
+        compiler.compileStatement("CREATE VIEW VA AS SELECT Y, X FROM A WHERE Y > 0");
+        rust = ToRustHandleVisitor.toRustString(compiler, getCircuit(compiler), "circuit");
+        Assert.assertTrue(rust.contains("let A = A_upsert.map(|(_, v)| v.clone());"));
+
+        String[] statements = new String[] {
+                "CREATE TABLE S (X INT PRIMARY KEY, Y INT, PRIMARY KEY (Y))"
+        };
+        File file = this.createInputScript(statements);
+        CompilerMessages messages = CompilerMain.execute("-o", BaseSQLTests.testFilePath, file.getPath());
+        Assert.assertEquals(1, messages.errorCount());
+        Assert.assertEquals("Table has more than one PRIMARY KEY", messages.getError(0).message);
+        boolean success = file.delete();
+        Assert.assertTrue(success);
+    }
+
+    @Test
+    public void splitLinearAggregateTest() {
+        // COUNT and AVG are computed by a linear aggregate, MAX by a separate one
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V AS SELECT COL1, COUNT(*), MAX(COL2), AVG(COL5) " +
+                "FROM T GROUP BY COL1");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] linear = new int[2];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPAggregateOperator operator) {
+                linear[operator.isLinear ? 0 : 1]++;
+                Assert.assertEquals(operator.isLinear ? 2 : 1, operator.getAggregate().components.length);
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, linear[0]);
+        Assert.assertEquals(1, linear[1]);
+    }
+
+    @Test
+    public void partialAggregatesTest() {
+        // MAX is computed by a partial aggregate per partition and a final aggregate
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.partialAggregates = 4;
+        DBSPCompiler compiler = this.compileDef(options);
+        compiler.compileStatement("CREATE VIEW V AS SELECT COL1, MAX(COL2) FROM T GROUP BY COL1");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] aggregates = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPAggregateOperator operator) {
+                aggregates[0]++;
+                Assert.assertTrue(operator.input().is(DBSPMapIndexOperator.class));
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(2, aggregates[0]);
+    }
+
+    @Test
+    public void windowSharingTest() {
+        // The aggregates of the three windows are joined with the rows only once
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V AS SELECT COL1, " +
+                "SUM(COL2) OVER (ORDER BY COL1 RANGE UNBOUNDED PRECEDING), " +
+                "COUNT(*) OVER (ORDER BY COL1 RANGE BETWEEN 2 PRECEDING AND 1 PRECEDING), " +
+                "MAX(COL2) OVER (ORDER BY COL1 RANGE BETWEEN 1 PRECEDING AND CURRENT ROW) FROM T");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] counts = new int[2];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPWindowAggregateOperator operator) {
+                counts[0]++;
+            }
+
+            @Override
+            public void postorder(DBSPJoinOperator operator) {
+                // Joins of aggregates produce (key, aggregates) pairs
+                if (!operator.outputType.to(DBSPTypeZSet.class).elementType.is(DBSPTypeRawTuple.class))
+                    counts[1]++;
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(3, counts[0]);
+        Assert.assertEquals(1, counts[1]);
+    }
+
+    @Test
+    public void windowGroupTransformTest() {
+        // Ranking and offset functions are computed by group transformers, without joins
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V AS SELECT COL1, " +
+                "ROW_NUMBER() OVER (PARTITION BY COL3 ORDER BY COL1), " +
+                "LAG(COL2, 2) OVER (PARTITION BY COL3 ORDER BY COL1) FROM T");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] counts = new int[2];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIndexedRankOperator operator) {
+                Assert.assertEquals(DBSPIndexedRankOperator.Kind.ROW_NUMBER, operator.kind);
+                counts[0]++;
+            }
+
+            @Override
+            public void postorder(DBSPIndexedLagOperator operator) {
+                Assert.assertTrue(operator.lag);
+                Assert.assertEquals(2, operator.offset);
+                counts[1]++;
+            }
+
+            @Override
+            public void postorder(DBSPJoinOperator operator) {
+                Assert.fail("Unexpected join");
+            }
+        };
+        visitor.apply(circuit);
+        // LAG numbers the copies of each row too
+        Assert.assertEquals(2, counts[0]);
+        Assert.assertEquals(1, counts[1]);
+    }
+
+    @Test
+    public void latenessTest() throws FileNotFoundException, UnsupportedEncodingException {
+        // Only the window ordered by a column with a declared lateness bounds its state
+        DBSPCompiler compiler = new DBSPCompiler(getOptions());
+        compiler.compileStatement("CREATE TABLE S (" +
+                "TS TIMESTAMP NOT NULL LATENESS INTERVAL '1' HOUR, " +
+                "D DATE NOT NULL LATENESS INTERVAL '36' HOUR, " +
+                "T2 TIMESTAMP NOT NULL, " +
+                "X INT)");
+        compiler.compileStatement("CREATE VIEW V AS SELECT " +
+                "SUM(X) OVER (ORDER BY TS RANGE BETWEEN INTERVAL '1' MINUTE PRECEDING AND CURRENT ROW), " +
+                "SUM(X) OVER (ORDER BY D RANGE BETWEEN INTERVAL '1' DAY PRECEDING AND CURRENT ROW), " +
+                "SUM(X) OVER (ORDER BY T2 RANGE BETWEEN INTERVAL '1' MINUTE PRECEDING AND CURRENT ROW) " +
+                "FROM (SELECT TS, D, T2, X + 1 AS X FROM S)");
+        DBSPCircuit circuit = getCircuit(compiler);
+        List<Long> lateness = new ArrayList<>();
+        int[] unbounded = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPWindowAggregateOperator operator) {
+                if (operator.lateness == null)
+                    unbounded[0]++;
+                else
+                    lateness.add(operator.lateness.to(DBSPU64Literal.class).value);
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, unbounded[0]);
+        // 1 hour in milliseconds, and 36 hours rounded up to days
+        lateness.sort(Long::compareTo);
+        Assert.assertEquals(Linq.list(2L, 3600000L), lateness);
+
+        String[] statements = new String[] {
+                "CREATE TABLE S (V VARCHAR LATENESS INTERVAL '1' HOUR)"
+        };
+        File file = this.createInputScript(statements);
+        CompilerMessages messages = CompilerMain.execute("-o", BaseSQLTests.testFilePath, file.getPath());
+        Assert.assertEquals(1, messages.errorCount());
+        Assert.assertEquals("LATENESS is not supported for columns of type VARCHAR",
+                messages.getError(0).message);
+        boolean success = file.delete();
+        Assert.assertTrue(success);
+
+        statements = new String[] {
+                "CREATE TABLE S (X INT NOT NULL LATENESS 10)"
+        };
+        file = this.createInputScript(statements);
+        messages = CompilerMain.execute("-o", BaseSQLTests.testFilePath, file.getPath());
+        Assert.assertEquals(1, messages.errorCount());
+        Assert.assertEquals("LATENESS is not supported for columns of type INTEGER",
+                messages.getError(0).message);
+        success = file.delete();
+        Assert.assertTrue(success);
+    }
+
+    @Test
+    public void windowTableLatenessTest() {
+        // The window starts of TUMBLE and HOP are at most one window size later than the time column
+        DBSPCompiler compiler = new DBSPCompiler(getOptions());
+        compiler.compileStatement("CREATE TABLE S (TS TIMESTAMP NOT NULL LATENESS INTERVAL '1' HOUR, X INT)");
+        compiler.compileStatement("CREATE VIEW V AS SELECT " +
+                "SUM(X) OVER (ORDER BY \"window_start\" RANGE BETWEEN INTERVAL '1' MINUTE PRECEDING AND CURRENT ROW) " +
+                "FROM TABLE(TUMBLE(TABLE S, DESCRIPTOR(TS), INTERVAL '1' MINUTE))");
+        compiler.compileStatement("CREATE VIEW W AS SELECT " +
+                "SUM(X) OVER (ORDER BY \"window_start\" RANGE BETWEEN INTERVAL '1' MINUTE PRECEDING AND CURRENT ROW) " +
+                "FROM TABLE(HOP(TABLE S, DESCRIPTOR(TS), INTERVAL '1' MINUTE, INTERVAL '2' MINUTE))");
+        DBSPCircuit circuit = getCircuit(compiler);
+        List<Long> lateness = new ArrayList<>();
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPWindowAggregateOperator operator) {
+                Assert.assertNotNull(operator.lateness);
+                lateness.add(operator.lateness.to(DBSPU64Literal.class).value);
+            }
+        };
+        visitor.apply(circuit);
+        lateness.sort(Long::compareTo);
+        Assert.assertEquals(Linq.list(3660000L, 3720000L), lateness);
+    }
+
+    @Test
+    public void windowGroupByLatenessTest() {
+        // The aggregates grouped by the start of a window, and the join that combines
+        // them, discard the groups older than the lateness of the window start
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.incrementalize = true;
+        DBSPCompiler compiler = new DBSPCompiler(options);
+        compiler.compileStatement("CREATE TABLE S (TS TIMESTAMP NOT NULL LATENESS INTERVAL '1' HOUR, X INT)");
+        compiler.compileStatement("CREATE VIEW V AS SELECT \"window_start\", MAX(X), COUNT(*) " +
+                "FROM TABLE(TUMBLE(TABLE S, DESCRIPTOR(TS), INTERVAL '1' MINUTE)) GROUP BY \"window_start\"");
+        compiler.compileStatement("CREATE VIEW W AS SELECT X, COUNT(*) FROM S GROUP BY X");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] bounded = new int[3];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIncrementalAggregateOperator operator) {
+                if (operator.keyBound == null) {
+                    bounded[0]++;
+                } else {
+                    bounded[1]++;
+                    Assert.assertTrue(operator.operation.endsWith("_with_bound"));
+                }
+            }
+
+            @Override
+            public void postorder(DBSPIncrementalJoinOperator operator) {
+                Assert.assertNotNull(operator.keyBound);
+                bounded[2]++;
+            }
+        };
+        visitor.apply(circuit);
+        // The aggregate of W is not bounded
+        Assert.assertEquals(1, bounded[0]);
+        Assert.assertEquals(2, bounded[1]);
+        Assert.assertEquals(1, bounded[2]);
+        // The bound subtracts the lateness of the window start: one hour plus one minute
+        String rust = ToRustVisitor.toRustString(compiler, circuit);
+        Assert.assertTrue(rust.contains(".aggregate_with_bound("));
+        Assert.assertTrue(rust.contains(".aggregate_linear_with_bound("));
+        Assert.assertTrue(rust.contains(".join_with_bound("));
+        Assert.assertTrue(rust.contains("ShortInterval::new(3660000)"));
+    }
+
+    @Test
+    public void latenessKeysTest() {
+        // Aggregates grouped by lateness columns, aggregates of their results,
+        // and equi-joins on lateness columns discard their old state
+        CompilerOptions options = getOptions();
+        options.optimizerOptions.incrementalize = true;
+        DBSPCompiler compiler = new DBSPCompiler(options);
+        compiler.compileStatement("CREATE TABLE S (TS TIMESTAMP NOT NULL LATENESS INTERVAL '1' HOUR, X INT)");
+        compiler.compileStatement("CREATE TABLE R (TS TIMESTAMP NOT NULL LATENESS INTERVAL '2' HOUR, Y INT)");
+        compiler.compileStatement("CREATE TABLE D (DT DATE NOT NULL LATENESS INTERVAL '3' DAY, Z INT)");
+        compiler.compileStatement("CREATE VIEW V AS SELECT TS, X, COUNT(*) AS CNT FROM S GROUP BY TS, X");
+        compiler.compileStatement("CREATE VIEW V2 AS SELECT TS, SUM(CNT) FROM V GROUP BY TS");
+        compiler.compileStatement("CREATE VIEW J AS SELECT S.TS, X, Y FROM S JOIN R ON S.TS = R.TS");
+        compiler.compileStatement("CREATE VIEW DV AS SELECT DT, MAX(Z) FROM D GROUP BY DT");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] bounded = new int[3];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPIncrementalAggregateOperator operator) {
+                if (operator.keyBound == null)
+                    bounded[0]++;
+                else
+                    bounded[1]++;
+            }
+
+            @Override
+            public void postorder(DBSPIncrementalJoinOperator operator) {
+                if (operator.keyBound != null)
+                    bounded[2]++;
+            }
+        };
+        visitor.apply(circuit);
+        // V2 aggregates the output of V, which has the same lateness
+        Assert.assertEquals(0, bounded[0]);
+        Assert.assertEquals(3, bounded[1]);
+        Assert.assertEquals(1, bounded[2]);
+        String rust = ToRustVisitor.toRustString(compiler, circuit);
+        // The join uses the larger lateness of its inputs
+        Assert.assertTrue(rust.contains("ShortInterval::new(7200000)"));
+        // The lateness of a date is converted to milliseconds
+        Assert.assertTrue(rust.contains("ShortInterval::new(259200000)"));
+    }
+
+    @Test
+    public void fuseOperatorsTest() {
+        // The filter and the projection are fused into a single flat_map
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V AS SELECT T.COL1 + 1 FROM T WHERE T.COL3");
+        DBSPCircuit circuit = getCircuit(compiler);
+        try (IdGen.Scope ignored = compiler.idGen.enter()) {
+            circuit = new FuseOperators(compiler).apply(circuit);
+        }
+        int[] operators = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPFilterOperator operator) {
+                Assert.fail("Filter was not fused");
+            }
+
+            @Override
+            public void postorder(DBSPMapOperator operator) {
+                Assert.fail("Map was not fused");
+            }
+
+            @Override
+            public void postorder(DBSPFlatMapOperator operator) {
+                operators[0]++;
+                Assert.assertTrue(operator.input().is(DBSPSourceOperator.class));
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, operators[0]);
+    }
+
+    @Test
+    public void fuseFlatMapTest() {
+        // The filter and the projection of V are fused into the flat_map of U
+        DBSPCompiler compiler = this.testCompiler();
+        compiler.compileStatement("CREATE TABLE ARR_TABLE (VALS INTEGER ARRAY NOT NULL, ID INTEGER NOT NULL)");
+        compiler.compileStatement("CREATE VIEW U AS SELECT VAL, ID FROM ARR_TABLE, UNNEST(VALS) AS VAL");
+        compiler.compileStatement("CREATE VIEW V AS SELECT VAL + ID FROM U WHERE VAL > 1");
+        DBSPCircuit circuit = getCircuit(compiler);
+        try (IdGen.Scope ignored = compiler.idGen.enter()) {
+            // Only lowered flat_map functions are fused
+            circuit = new LowerCircuitVisitor(compiler).apply(circuit);
+            circuit = new FuseOperators(compiler).apply(circuit);
+        }
+        int[] operators = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPFilterOperator operator) {
+                Assert.fail("Filter was not fused");
+            }
+
+            @Override
+            public void postorder(DBSPMapOperator operator) {
+                Assert.fail("Map was not fused");
+            }
+
+            @Override
+            public void postorder(DBSPFlatMapOperator operator) {
+                operators[0]++;
+                Assert.assertTrue(operator.input().is(DBSPSourceOperator.class));
+            }
+        };
+        visitor.apply(circuit);
+        // One flat_map for each view
+        Assert.assertEquals(2, operators[0]);
+    }
+
+    @Test
+    public void pushFiltersRepeatTest() {
+        // The filter reaches the join only in the second iteration of PushFilters;
+        // the join, which is not changed by the first iteration, must still have fanout 1.
+        DBSPCompiler compiler = this.compileDef();
+        compiler.compileStatement("CREATE VIEW V AS SELECT X FROM " +
+                "(SELECT T.COL1 + 1 AS X, T.COL2 + S.COL2 AS Y FROM T JOIN T AS S ON T.COL1 = S.COL1) " +
+                "WHERE X > 10");
+        DBSPCircuit circuit = getCircuit(compiler);
+        int[] filters = new int[1];
+        CircuitVisitor visitor = new CircuitVisitor(compiler, true) {
+            @Override
+            public void postorder(DBSPFilterOperator operator) {
+                filters[0]++;
+                Assert.assertTrue(operator.input().is(DBSPSourceOperator.class));
+            }
+        };
+        visitor.apply(circuit);
+        Assert.assertEquals(1, filters[0]);
+    }
+
+    @Test
+    public void typeInternTest() {
+        DBSPType t0 = new DBSPTypeTuple(DBSPTypeInteger.SIGNED_32, DBSPTypeString.UNLIMITED_INSTANCE);
+        DBSPType t1 = new DBSPTypeTuple(DBSPTypeInteger.SIGNED_32, DBSPTypeString.UNLIMITED_INSTANCE);
+        DBSPType t2 = new DBSPTypeTuple(DBSPTypeString.UNLIMITED_INSTANCE, DBSPTypeInteger.SIGNED_32);
+        Assert.assertEquals(t0.hashCode(), t1.hashCode());
+        Assert.assertNotEquals(t0.hashCode(), t2.hashCode());
+        TypeInterner interner = new TypeInterner();
+        Assert.assertSame(t0, interner.intern(t0));
+        Assert.assertSame(t0, interner.intern(t1));
+        Assert.assertSame(t2, interner.intern(t2));
+        DBSPType r0 = interner.intern(t0.ref());
+        Assert.assertSame(r0, interner.intern(t1.ref()));
+        Assert.assertEquals(3, interner.size());
+        // A user type named Vec is not a vector type
+        DBSPType vec = new DBSPTypeVec(DBSPTypeInteger.SIGNED_32, false);
+        DBSPType user = new DBSPTypeUser(CalciteObject.EMPTY, USER, "Vec", false, DBSPTypeInteger.SIGNED_32);
+        Assert.assertFalse(vec.sameType(user));
+        Assert.assertFalse(user.sameType(vec));
+    }
+
     // Test the ability to redirect logging streams.
     @Test
     public void loggerTest() {
@@ -157,6 +914,30 @@ public class OtherTests extends BaseSQLTests implements IWritesLogs {
         Logger.INSTANCE.setLoggingLevel(this.getClassName(), 0);
     }
 
+    // Messages that are not logged should not be built.
+    @Test
+    public void lazyLoggerTest() {
+        int[] evaluated = new int[1];
+        Logger.INSTANCE.setLoggingLevel(this.getClassName(), 0);
+        Assert.assertFalse(Logger.INSTANCE.isLoggingEnabled(this, 1));
+        Logger.INSTANCE.belowLevel(this, 1)
+                .appendSupplier(() -> { evaluated[0]++; return "Not logged"; })
+                .newline();
+        Assert.assertEquals(0, evaluated[0]);
+
+        StringBuilder builder = new StringBuilder();
+        Appendable save = Logger.INSTANCE.setDebugStream(builder);
+        Logger.INSTANCE.setLoggingLevel(this.getClassName(), 1);
+        Assert.assertTrue(Logger.INSTANCE.isLoggingEnabled(this, 1));
+        Logger.INSTANCE.belowLevel(this, 1)
+                .appendSupplier(() -> { evaluated[0]++; return "Logged"; })
+                .newline();
+        Logger.INSTANCE.setDebugStream(save);
+        Logger.INSTANCE.setLoggingLevel(this.getClassName(), 0);
+        Assert.assertEquals(1, evaluated[0]);
+        Assert.assertEquals("Logged\n", builder.toString());
+    }
+
     // Test the -T command-line parameter
     @Test
     public void loggingParameter() throws IOException, InterruptedException {
@@ -474,6 +1255,90 @@ public class OtherTests extends BaseSQLTests implements IWritesLogs {
         Assert.assertTrue(success);
     }
 
+    @Test
+    public void testCompilerServer() throws IOException {
+        String program = "CREATE TABLE T(COL1 INT NOT NULL, COL2 DOUBLE NOT NULL);\n" +
+                "CREATE VIEW V AS SELECT COL1 FROM T WHERE COL2 > 0;";
+        ObjectMapper mapper = new ObjectMapper();
+        String requests =
+                mapper.createObjectNode()
+                        .put("id", 1)
+                        .put("sql", program)
+                        .toString() + "\n" +
+                "\n" +
+                mapper.createObjectNode()
+                        .put("id", 2)
+                        .put("sql", program)
+                        .set("options", mapper.createArrayNode().add("-j").add("-i"))
+                        .toString() + "\n" +
+                mapper.createObjectNode()
+                        .put("id", 3)
+                        .put("sql", "CREATE VIEW V AS SELECT * FROM X")
+                        .toString() + "\n" +
+                mapper.createObjectNode()
+                        .put("id", 4)
+                        .set("options", mapper.createArrayNode().add("-O").add("x"))
+                        .toString() + "\n" +
+                "not json\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(bytes);
+        CompilerServer server = new CompilerServer(
+                new ByteArrayInputStream(requests.getBytes()), stream);
+        int exitCode = server.serve();
+        Assert.assertEquals(0, exitCode);
+        String[] responses = bytes.toString().split("\n");
+        Assert.assertEquals(5, responses.length);
+
+        JsonNode rust = mapper.readTree(responses[0]);
+        Assert.assertEquals(1, rust.get("id").asInt());
+        Assert.assertEquals(0, rust.get("exitCode").asInt());
+        Assert.assertTrue(rust.get("output").asText().contains("pub fn circuit"));
+        Assert.assertEquals(0, rust.get("messages").size());
+        Assert.assertTrue(rust.get("latencyMs").asDouble() > 0);
+
+        JsonNode jit = mapper.readTree(responses[1]);
+        Assert.assertEquals(2, jit.get("id").asInt());
+        Assert.assertEquals(0, jit.get("exitCode").asInt());
+        JsonNode program2 = mapper.readTree(jit.get("output").asText());
+        Assert.assertTrue(program2.has("nodes"));
+        // The view was compiled by the first request
+        Assert.assertEquals(0, rust.get("cacheHits").asInt());
+        Assert.assertEquals(1, rust.get("cacheMisses").asInt());
+        Assert.assertEquals(1, jit.get("cacheHits").asInt());
+        Assert.assertEquals(0, jit.get("cacheMisses").asInt());
+
+        JsonNode error = mapper.readTree(responses[2]);
+        Assert.assertEquals(1, error.get("exitCode").asInt());
+        Assert.assertEquals("", error.get("output").asText());
+        Assert.assertTrue(error.get("messages").get(0).get("message").asText().contains("Object 'X' not found"));
+
+        JsonNode badOption = mapper.readTree(responses[3]);
+        Assert.assertEquals(4, badOption.get("id").asInt());
+        Assert.assertEquals(1, badOption.get("exitCode").asInt());
+
+        JsonNode badRequest = mapper.readTree(responses[4]);
+        Assert.assertFalse(badRequest.has("id"));
+        Assert.assertEquals(1, badRequest.get("exitCode").asInt());
+        Assert.assertTrue(badRequest.get("messages").get(0).get("message").asText().startsWith("Could not parse request"));
+    }
+
+    @Test
+    public void testCompilerServerLogging() {
+        // The logging levels set by a request do not leak into the following requests
+        ObjectMapper mapper = new ObjectMapper();
+        String requests = mapper.createObjectNode()
+                .put("id", 1)
+                .put("sql", "CREATE TABLE T(COL1 INT NOT NULL)")
+                .set("options", mapper.createArrayNode().add("-TServerLoggingTest=2"))
+                .toString() + "\n";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompilerServer server = new CompilerServer(
+                new ByteArrayInputStream(requests.getBytes()), new PrintStream(bytes));
+        int exitCode = server.serve();
+        Assert.assertEquals(0, exitCode);
+        Assert.assertEquals(0, Logger.INSTANCE.getLoggingLevel("ServerLoggingTest"));
+    }
+
     @Test @Ignore("Only run if we want to preserve casing for names")
     public void testCaseSensitive() throws IOException {
         String[] statements = new String[]{
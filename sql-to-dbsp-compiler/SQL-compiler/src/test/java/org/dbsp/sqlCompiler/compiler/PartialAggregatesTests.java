@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 VMware, Inc.
+ * SPDX-License-Identifier: MIT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.dbsp.sqlCompiler.compiler;
+
+import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
+import org.dbsp.sqlCompiler.ir.expression.DBSPTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPDoubleLiteral;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI32Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI64Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPZSetLiteral;
+import org.junit.Test;
+
+// Runs the incremental EndToEnd tests on an optimized circuit
+// where aggregates are split into partial and final aggregates.
+public class PartialAggregatesTests extends NaiveIncrementalTests {
+    @Override
+    public DBSPCompiler testCompiler() {
+        CompilerOptions options = this.testOptions(true, true, false);
+        options.optimizerOptions.partialAggregates = 4;
+        return new DBSPCompiler(options);
+    }
+
+    /**
+     * Insert both rows of the group COL1 = 10, then delete them one at a time.
+     * @param query   Query to test.
+     * @param both    Output for the group when it contains both rows.
+     * @param second  Output for the group when it contains only the second row.
+     */
+    void testGroupDeletions(String query, DBSPTupleExpression both, DBSPTupleExpression second) {
+        DBSPZSetLiteral.Contents bothOutput = new DBSPZSetLiteral.Contents(both);
+        DBSPZSetLiteral.Contents secondOutput = new DBSPZSetLiteral.Contents(second);
+        this.invokeTestQueryBase(query,
+                new InputOutputPair(this.createInput(), bothOutput),
+                // Delete the first row of the group
+                new InputOutputPair(z0.negate(), secondOutput.minus(bothOutput)),
+                // Delete the last row of the group
+                new InputOutputPair(z1.negate(), secondOutput.negate()));
+    }
+
+    @Test
+    public void linearGroupDeletionsTest() {
+        // Linear aggregates are not split
+        String query = "SELECT COL1, SUM(COL2), COUNT(*) FROM T GROUP BY COL1";
+        this.testGroupDeletions(query,
+                new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPDoubleLiteral(13.0), new DBSPI64Literal(2)),
+                new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPDoubleLiteral(1.0), new DBSPI64Literal(1)));
+    }
+
+    @Test
+    public void minMaxGroupDeletionsTest() {
+        // The partition holding the largest value loses it
+        String query = "SELECT COL1, MAX(COL2), MIN(COL2) FROM T GROUP BY COL1";
+        this.testGroupDeletions(query,
+                new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPDoubleLiteral(12.0), new DBSPDoubleLiteral(1.0)),
+                new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPDoubleLiteral(1.0), new DBSPDoubleLiteral(1.0)));
+    }
+
+    @Test
+    public void mixedGroupDeletionsTest() {
+        // A non-linear fold with a linear component
+        String query = "SELECT COL1, MAX(COL2), COUNT(*) FROM T GROUP BY COL1";
+        this.testGroupDeletions(query,
+                new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPDoubleLiteral(12.0), new DBSPI64Literal(2)),
+                new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPDoubleLiteral(1.0), new DBSPI64Literal(1)));
+    }
+}
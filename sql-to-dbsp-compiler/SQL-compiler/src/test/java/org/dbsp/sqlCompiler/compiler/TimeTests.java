@@ -61,6 +61,42 @@ public class TimeTests extends BaseSQLTests {
         this.testQuery(query, new DBSPTimestampLiteral(100));
     }
 
+    @Test
+    public void timestampBandJoinTest() {
+        String query = "SELECT T1.COL1 FROM T AS T1 JOIN T AS T2 " +
+                "ON T1.COL1 BETWEEN T2.COL1 - INTERVAL '1' SECOND AND T2.COL1 + INTERVAL '1' MINUTE";
+        this.testQuery(query, new DBSPTimestampLiteral(100));
+    }
+
+    @Test
+    public void tumbleTest() {
+        String query = "SELECT \"window_start\", \"window_end\" " +
+                "FROM TABLE(TUMBLE(TABLE T, DESCRIPTOR(COL1), INTERVAL '1' SECOND))";
+        this.testQuery(query, new DBSPTimestampLiteral(0), new DBSPTimestampLiteral(1000));
+    }
+
+    @Test
+    public void tumbleOffsetTest() {
+        String query = "SELECT \"window_start\", \"window_end\" " +
+                "FROM TABLE(TUMBLE(TABLE T, DESCRIPTOR(COL1), INTERVAL '1' SECOND, INTERVAL '0.5' SECOND))";
+        this.testQuery(query, new DBSPTimestampLiteral(-500), new DBSPTimestampLiteral(500));
+    }
+
+    @Test
+    public void hopTest() {
+        String query = "CREATE VIEW V AS SELECT COL1, \"window_start\", \"window_end\" " +
+                "FROM TABLE(HOP(TABLE T, DESCRIPTOR(COL1), INTERVAL '1' SECOND, INTERVAL '2' SECOND))";
+        DBSPCompiler compiler = this.compileQuery(query);
+        DBSPCircuit circuit = getCircuit(compiler);
+        DBSPZSetLiteral.Contents expectedOutput = new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPTimestampLiteral(100),
+                        new DBSPTimestampLiteral(-1000), new DBSPTimestampLiteral(1000)),
+                new DBSPTupleExpression(new DBSPTimestampLiteral(100),
+                        new DBSPTimestampLiteral(0), new DBSPTimestampLiteral(2000)));
+        InputOutputPair streams = new InputOutputPair(this.createInput(), expectedOutput);
+        this.addRustTestCase(query, compiler, circuit, streams);
+    }
+
     @Test
     public void castTimestampToString() {
         String query = "SELECT CAST(T.COL1 AS STRING) FROM T";
@@ -2,16 +2,20 @@ package org.dbsp.sqlCompiler.compiler.jit;
 
 import org.dbsp.sqlCompiler.compiler.CompilerOptions;
 import org.dbsp.sqlCompiler.compiler.EndToEndTests;
+import org.dbsp.sqlCompiler.compiler.InputOutputPair;
 import org.dbsp.sqlCompiler.compiler.backend.DBSPCompiler;
 import org.dbsp.sqlCompiler.compiler.frontend.CalciteObject;
 import org.dbsp.sqlCompiler.ir.expression.DBSPExpression;
 import org.dbsp.sqlCompiler.ir.expression.DBSPTupleExpression;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPBoolLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPDoubleLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPGeoPointLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI32Literal;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPI64Literal;
+import org.dbsp.sqlCompiler.ir.expression.literal.DBSPLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPVecLiteral;
 import org.dbsp.sqlCompiler.ir.expression.literal.DBSPZSetLiteral;
+import org.dbsp.sqlCompiler.ir.type.primitive.DBSPTypeInteger;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -75,6 +79,63 @@ public class JitTests extends EndToEndTests {
         this.testQuery(query, new DBSPZSetLiteral.Contents(t, t));
     }
 
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void overDescendingTest() {
+        String query = "SELECT T.COL3, " +
+                "COUNT(*) OVER (ORDER BY T.COL3 DESC RANGE UNBOUNDED PRECEDING) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, new DBSPI64Literal(1)),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, new DBSPI64Literal(2))));
+    }
+
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void overMultipleColumnsTest() {
+        String query = "SELECT T.COL5, " +
+                "SUM(T.COL2) OVER (ORDER BY T.COL1, T.COL5) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true), new DBSPDoubleLiteral(1.0)),
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32),
+                        new DBSPDoubleLiteral(13.0))));
+    }
+
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void overRankTest() {
+        String query = "SELECT T.COL5, " +
+                "ROW_NUMBER() OVER (ORDER BY T.COL5), " +
+                "RANK() OVER (ORDER BY T.COL1), " +
+                "DENSE_RANK() OVER (ORDER BY T.COL3 DESC) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true), new DBSPI64Literal(1),
+                        new DBSPI64Literal(1), new DBSPI64Literal(2)),
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32),
+                        new DBSPI64Literal(2), new DBSPI64Literal(1), new DBSPI64Literal(1))));
+    }
+
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void overLagTest() {
+        String query = "SELECT T.COL5, " +
+                "LAG(T.COL5) OVER (ORDER BY T.COL3), " +
+                "LEAD(T.COL1, 1, 0) OVER (ORDER BY T.COL3) FROM T";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true),
+                        DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32), new DBSPI32Literal(10)),
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32),
+                        new DBSPI32Literal(1, true), new DBSPI32Literal(0))));
+    }
+
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void overLagDuplicatesTest() {
+        // The first row appears twice; each copy of a row is matched with a different row
+        String query = "SELECT T.COL1, LAG(T.COL1) OVER (ORDER BY T.COL1) FROM T";
+        DBSPExpression lagged = new DBSPTupleExpression(new DBSPI32Literal(10), new DBSPI32Literal(10, true));
+        this.testQueryBase(query, new InputOutputPair(
+                new DBSPZSetLiteral.Contents(e0, e0, e1),
+                new DBSPZSetLiteral.Contents(
+                        new DBSPTupleExpression(new DBSPI32Literal(10),
+                                DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32)),
+                        lagged, lagged)));
+    }
+
     @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
     public void orderbyTest() {
         String query = "SELECT * FROM T ORDER BY T.COL2";
@@ -99,6 +160,84 @@ public class JitTests extends EndToEndTests {
         ));
     }
 
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void orderbyLimitTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL2 LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e1));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void orderbyDescendingLimitTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL2 DESC LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e0));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void orderbyLimitOffsetTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL2 LIMIT 1 OFFSET 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e0));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void limitDuplicatesTest() {
+        // Both rows have the same value for COL1
+        String query = "SELECT T.COL1 FROM T ORDER BY T.COL1 LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(10))));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void limitOffsetDuplicatesTest() {
+        String query = "SELECT T.COL1 FROM T ORDER BY T.COL1 LIMIT 3 OFFSET 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(10))));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void limitNullsTest() {
+        // NULLs are last in ascending order, and first in descending order
+        String query = "SELECT T.COL5 FROM T ORDER BY T.COL5 LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPI32Literal(1, true))));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void limitNullsDescendingTest() {
+        String query = "SELECT T.COL5 FROM T ORDER BY T.COL5 DESC LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32))));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void limitNullsFirstTest() {
+        String query = "SELECT T.COL5 FROM T ORDER BY T.COL5 NULLS FIRST LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPLiteral.none(DBSPTypeInteger.NULLABLE_SIGNED_32))));
+    }
+
+    @Test @Override @Ignore("ORDER BY not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void limitMixedDirectionsTest() {
+        String query = "SELECT * FROM T ORDER BY T.COL1, T.COL2 DESC LIMIT 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(e0));
+    }
+
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void groupedTopKTest() {
+        String query = "SELECT COL3, COL2, RN FROM (SELECT T.COL3, T.COL2, " +
+                "ROW_NUMBER() OVER (PARTITION BY T.COL3 ORDER BY T.COL2) AS RN FROM T) WHERE RN <= 1";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(DBSPBoolLiteral.TRUE, new DBSPDoubleLiteral(12.0), new DBSPI64Literal(1)),
+                new DBSPTupleExpression(DBSPBoolLiteral.FALSE, new DBSPDoubleLiteral(1.0), new DBSPI64Literal(1))));
+    }
+
+    @Test @Override @Ignore("WINDOWS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void groupedTopKDescendingTest() {
+        String query = "SELECT COL2 FROM (SELECT T.COL2, " +
+                "ROW_NUMBER() OVER (PARTITION BY T.COL1 ORDER BY T.COL2 DESC) AS RN FROM T) WHERE RN < 2";
+        this.testQuery(query, new DBSPZSetLiteral.Contents(
+                new DBSPTupleExpression(new DBSPDoubleLiteral(12.0))));
+    }
+
     @Test @Override @Ignore("GEO POINT not yet implemented https://github.com/feldera/dbsp/issues/158")
     public void geoPointTest() {
         String query = "SELECT ST_POINT(0, 0)";
@@ -114,4 +253,9 @@ public class JitTests extends EndToEndTests {
         this.testQuery(query, new DBSPZSetLiteral.Contents(
                 new DBSPTupleExpression(new DBSPDoubleLiteral(1).some())));
     }
+
+    @Test @Override @Ignore("ARRAYS not yet implemented https://github.com/feldera/dbsp/issues/158")
+    public void unnestFilterMapTest() {
+        super.unnestFilterMapTest();
+    }
 }
@@ -40,6 +40,32 @@ public class JitTimeTests extends TimeTests {
         );
     }
 
+    @Test @Ignore("No support for intervals https://github.com/feldera/dbsp/issues/309")
+    public void timestampBandJoinTest() {
+        String query = "SELECT T1.COL1 FROM T AS T1 JOIN T AS T2 " +
+                "ON T1.COL1 BETWEEN T2.COL1 - INTERVAL '1' SECOND AND T2.COL1 + INTERVAL '1' MINUTE";
+        this.testQuery(query, new DBSPTimestampLiteral(100));
+    }
+
+    @Test @Ignore("No support for intervals https://github.com/feldera/dbsp/issues/309")
+    public void tumbleTest() {
+        String query = "SELECT \"window_start\", \"window_end\" " +
+                "FROM TABLE(TUMBLE(TABLE T, DESCRIPTOR(COL1), INTERVAL '1' SECOND))";
+        this.testQuery(query, new DBSPTimestampLiteral(0), new DBSPTimestampLiteral(1000));
+    }
+
+    @Test @Ignore("No support for intervals https://github.com/feldera/dbsp/issues/309")
+    public void tumbleOffsetTest() {
+        String query = "SELECT \"window_start\", \"window_end\" " +
+                "FROM TABLE(TUMBLE(TABLE T, DESCRIPTOR(COL1), INTERVAL '1' SECOND, INTERVAL '0.5' SECOND))";
+        this.testQuery(query, new DBSPTimestampLiteral(-500), new DBSPTimestampLiteral(500));
+    }
+
+    @Test @Ignore("No support for intervals https://github.com/feldera/dbsp/issues/309")
+    public void hopTest() {
+        super.hopTest();
+    }
+
     @Test @Ignore("IString parsing not supported https://github.com/feldera/dbsp/issues/338")
     public void castTimestampToStringToTimestamp() {
         String query = "SELECT CAST(CAST(T.COL1 AS STRING) AS Timestamp) FROM T";
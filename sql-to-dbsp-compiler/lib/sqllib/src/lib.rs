@@ -8,11 +8,16 @@ pub mod string;
 pub mod timestamp;
 
 use crate::interval::ShortInterval;
+use crate::timestamp::{Date, Timestamp};
 use dbsp::algebra::{Semigroup, SemigroupValue, ZRingValue, F32, F64};
+use dbsp::default_hash;
 use geopoint::GeoPoint;
-use num::{Signed, ToPrimitive};
+use num::{NumCast, PrimInt, Signed, ToPrimitive};
 use rust_decimal::{Decimal, MathematicalOps};
+use size_of::SizeOf;
+use std::cmp::Ordering;
 use std::fmt::Debug;
+use std::hash::Hash;
 use std::marker::PhantomData;
 use std::ops::{Add, Index};
 
@@ -496,6 +501,124 @@ pub fn indicator<T>(value: Option<T>) -> i64 {
     }
 }
 
+/// Partition in `0..partitions` of a value.  Equal values are always
+/// in the same partition.
+#[inline(always)]
+pub fn hash_partition<T: Hash>(value: &T, partitions: usize) -> usize {
+    (default_hash(value) % (partitions as u64)) as usize
+}
+
+/// Values that can be mapped to an unsigned integer with the same order.
+/// Used to combine the sort keys of a window into a single integer.
+pub trait OrderKey {
+    /// Number of bits used by the mapped values.
+    const BITS: u32;
+    fn order_key(&self, nulls_first: bool) -> u128;
+}
+
+macro_rules! signed_order_key {
+    ($type:ty, $unsigned:ty) => {
+        impl OrderKey for $type {
+            const BITS: u32 = <$type>::BITS;
+
+            #[inline(always)]
+            fn order_key(&self, _nulls_first: bool) -> u128 {
+                // Flipping the sign bit preserves the order and the distances
+                ((*self as $unsigned) ^ (1 << (<$type>::BITS - 1))) as u128
+            }
+        }
+    };
+}
+
+signed_order_key!(i8, u8);
+signed_order_key!(i16, u16);
+signed_order_key!(i32, u32);
+signed_order_key!(i64, u64);
+
+impl OrderKey for bool {
+    const BITS: u32 = 1;
+
+    #[inline(always)]
+    fn order_key(&self, _nulls_first: bool) -> u128 {
+        *self as u128
+    }
+}
+
+impl OrderKey for Date {
+    const BITS: u32 = i32::BITS;
+
+    #[inline(always)]
+    fn order_key(&self, nulls_first: bool) -> u128 {
+        self.days().order_key(nulls_first)
+    }
+}
+
+impl OrderKey for Timestamp {
+    const BITS: u32 = i64::BITS;
+
+    #[inline(always)]
+    fn order_key(&self, nulls_first: bool) -> u128 {
+        self.milliseconds().order_key(nulls_first)
+    }
+}
+
+impl<T: OrderKey> OrderKey for Option<T> {
+    const BITS: u32 = T::BITS + 1;
+
+    #[inline(always)]
+    fn order_key(&self, nulls_first: bool) -> u128 {
+        match (self, nulls_first) {
+            (None, true) => 0,
+            // All ones, so that NULL is far from the other values
+            (None, false) => (1 << T::BITS) | ((1 << T::BITS) - 1),
+            (Some(value), true) => (1 << T::BITS) | value.order_key(nulls_first),
+            (Some(value), false) => value.order_key(nulls_first),
+        }
+    }
+}
+
+/// Append the order key of `value` to the order key `prefix` of the
+/// previous sort keys.  `K` is `u64` or `u128`; the compiler ensures
+/// that all the sort keys fit in `K`.
+#[inline(always)]
+pub fn window_order_key<K, T>(prefix: K, value: &T, descending: bool, nulls_first: bool) -> K
+where
+    K: PrimInt,
+    T: OrderKey,
+{
+    let key = value.order_key(nulls_first != descending);
+    let key = if descending {
+        !key & ((1 << T::BITS) - 1)
+    } else {
+        key
+    };
+    let key = <K as NumCast>::from(key).unwrap();
+    if T::BITS >= K::zero().count_zeros() {
+        return key;
+    }
+    (prefix << T::BITS as usize) | key
+}
+
+/// A sort key that orders values in descending order.  Used to build the
+/// keys of `ORDER BY ... LIMIT`, whose natural order must match the
+/// collation.
+#[derive(Debug, Default, Clone, PartialEq, Eq, Hash, SizeOf)]
+pub struct Descending<T>(pub T);
+
+impl<T: Ord> Ord for Descending<T> {
+    #[inline(always)]
+    fn cmp(&self, other: &Self) -> Ordering {
+        other.0.cmp(&self.0)
+    }
+}
+
+impl<T: Ord> PartialOrd for Descending<T> {
+    #[inline(always)]
+    fn partial_cmp(&self, other: &Self) -> Option<Ordering> {
+        Some(self.cmp(other))
+    }
+}
+
 pub fn agg_max_N_N<T>(left: Option<T>, right: Option<T>) -> Option<T>
 where
     T: Ord + Copy,
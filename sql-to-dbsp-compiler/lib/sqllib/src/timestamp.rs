@@ -321,6 +321,28 @@ pub fn floor_week_Timestamp(value: Timestamp) -> Timestamp {
 
 some_polymorphic_function1!(floor_week, Timestamp, Timestamp, Timestamp);
 
+/// Start of the tumbling window that contains `value`.  Windows have
+/// length `size` and are aligned at `offset` (both in milliseconds).
+pub fn tumble_start_Timestamp(value: Timestamp, size: i64, offset: i64) -> Timestamp {
+    let ms = value.milliseconds();
+    Timestamp::new(ms - (ms - offset).rem_euclid(size))
+}
+
+/// Starts of all the hopping windows that contain `value`, in increasing
+/// order.  A new window of length `size` starts every `slide` milliseconds,
+/// aligned at `offset`.
+pub fn hop_start_Timestamp(value: Timestamp, slide: i64, size: i64, offset: i64) -> Vec<Timestamp> {
+    let ms = value.milliseconds();
+    let mut start = ms - (ms - offset).rem_euclid(slide);
+    let mut result = Vec::new();
+    while start > ms - size {
+        result.push(Timestamp::new(start));
+        start -= slide;
+    }
+    result.reverse();
+    result
+}
+
 //////////////////////////// Date
 
 #[derive(Debug, Default, Clone, Copy, PartialEq, Eq, PartialOrd, Ord, Hash, SizeOf)]
@@ -431,6 +453,10 @@ pub fn minus_DateN_DateN_LongIntervalN(
     }
 }
 
+pub fn minus_Date_ShortInterval_Date(left: Date, right: ShortInterval) -> Date {
+    Date::new(left.days() - (right.milliseconds() / (86400 * 1000)) as i32)
+}
+
 pub fn minus_Date_Date_ShortInterval(left: Date, right: Date) -> ShortInterval {
     let ld = left.days() as i64;
     let rd = right.days() as i64;